@@ -0,0 +1,28 @@
+package com.trinofed.parser.bench;
+
+import org.openjdk.jmh.Main;
+
+import java.util.Arrays;
+
+/**
+ * Entry point of {@code benchmarks.jar}: JMH's own, with the GC profiler on unless other
+ * profilers are asked for, so every run reports allocation per operation
+ * ({@code gc.alloc.rate.norm}) next to throughput. Takes JMH's usual arguments.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("-prof")) {
+            Main.main(args);
+            return;
+        }
+        String[] withGc = new String[args.length + 2];
+        withGc[0] = "-prof";
+        withGc[1] = "gc";
+        System.arraycopy(args, 0, withGc, 2, args.length);
+        Main.main(withGc);
+    }
+}
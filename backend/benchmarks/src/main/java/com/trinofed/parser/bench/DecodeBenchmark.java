@@ -0,0 +1,57 @@
+package com.trinofed.parser.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trinofed.parser.consumer.TrinoEventDecoder;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.TrinoEventWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka message to {@link QueryEvent}: the databind path ({@code readValue} into
+ * {@link TrinoEventWrapper} followed by {@code toQueryEvent()}) against the streaming
+ * {@link TrinoEventDecoder}. Run with {@code -prof gc} to compare allocation per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({"CREATED", "COMPLETED", "WIDE"})
+    public TrinoEventPayloads.Shape shape;
+
+    private ObjectMapper objectMapper;
+    private TrinoEventDecoder decoder;
+    private byte[] message;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper();
+        decoder = new TrinoEventDecoder(objectMapper);
+        message = TrinoEventPayloads.bytes(shape);
+    }
+
+    @Benchmark
+    public QueryEvent databindThenToQueryEvent() throws Exception {
+        return objectMapper.readValue(message, TrinoEventWrapper.class).toQueryEvent();
+    }
+
+    @Benchmark
+    public QueryEvent streamingDecoder() throws Exception {
+        return decoder.decode(message);
+    }
+}
@@ -0,0 +1,163 @@
+package com.trinofed.parser.bench;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.trinofed.parser.service.QueryEventService;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A WebSocket client subscribed to the query updates, as the UI is. Every event in a
+ * delivered delta is matched (by query id and event type) to the time its record was
+ * produced, and the difference is recorded as that event's end-to-end latency.
+ */
+final class DeliveryProbe extends StompSessionHandlerAdapter {
+
+    private static final int MAX_MESSAGE_BYTES = 64 * 1024 * 1024;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Produce times of the events not delivered yet, by query id and event type
+    private final Map<String, Deque<Long>> produced = new HashMap<>();
+    private final Recorder latencyMs = new Recorder(3);
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+    private final AtomicLong transportErrors = new AtomicLong();
+
+    void connect(int port) throws Exception {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(MAX_MESSAGE_BYTES);
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient(container)))));
+        client.setInboundMessageSizeLimit(MAX_MESSAGE_BYTES);
+        StompSession session = client.connectAsync("http://localhost:{port}/ws", this, port)
+                .get(30, TimeUnit.SECONDS);
+        session.subscribe(QueryEventService.QUERY_UPDATES_TOPIC, this);
+    }
+
+    /**
+     * Called just before the record is sent, with its produce timestamp.
+     */
+    synchronized void expect(String queryId, String eventType, long producedAtMillis) {
+        produced.computeIfAbsent(queryId + '/' + eventType, k -> new ArrayDeque<>()).add(producedAtMillis);
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        return byte[].class;
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        long now = System.currentTimeMillis();
+        try (JsonParser parser = JSON.createParser((byte[]) payload)) {
+            readDelta(parser, now);
+        } catch (IOException e) {
+            unmatched.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        transportErrors.incrementAndGet();
+        System.err.println("WebSocket transport error: " + exception);
+    }
+
+    long getDelivered() {
+        return delivered.get();
+    }
+
+    long getUnmatched() {
+        return unmatched.get();
+    }
+
+    long getTransportErrors() {
+        return transportErrors.get();
+    }
+
+    /**
+     * Latencies recorded since the previous call.
+     */
+    Histogram intervalLatencies() {
+        return latencyMs.getIntervalHistogram();
+    }
+
+    // Reads the delta's queryId and the eventType of each of its events, skipping the rest
+    private void readDelta(JsonParser parser, long now) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return;
+        }
+        String queryId = null;
+        List<String> eventTypes = List.of();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("queryId".equals(field)) {
+                queryId = parser.getText();
+            } else if ("events".equals(field) && value == JsonToken.START_ARRAY) {
+                eventTypes = readEventTypes(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        for (String eventType : eventTypes) {
+            Long producedAt = take(queryId + '/' + eventType);
+            if (producedAt == null) {
+                unmatched.incrementAndGet();
+            } else {
+                latencyMs.recordValue(Math.max(0, now - producedAt));
+            }
+            delivered.incrementAndGet();
+        }
+    }
+
+    private static List<String> readEventTypes(JsonParser parser) throws IOException {
+        List<String> eventTypes = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String eventType = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("eventType".equals(field)) {
+                    eventType = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            eventTypes.add(eventType);
+        }
+        return eventTypes;
+    }
+
+    private synchronized Long take(String key) {
+        Deque<Long> times = produced.get(key);
+        if (times == null) {
+            return null;
+        }
+        Long producedAt = times.poll();
+        if (times.isEmpty()) {
+            produced.remove(key);
+        }
+        return producedAt;
+    }
+}
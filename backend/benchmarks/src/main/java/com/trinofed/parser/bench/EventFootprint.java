@@ -0,0 +1,92 @@
+package com.trinofed.parser.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trinofed.parser.consumer.StringPool;
+import com.trinofed.parser.consumer.TrinoEventDecoder;
+import com.trinofed.parser.model.QueryEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap retained by decoded events, with and without {@link StringPool}. Decodes a stream of
+ * completed events (distinct query ids and times; users, catalogs, tables and columns drawn
+ * from small sets, as on a real cluster), keeps them, and reports the used heap after GC.
+ *
+ * <pre>java -cp target/benchmarks.jar com.trinofed.parser.bench.EventFootprint [events]</pre>
+ */
+public final class EventFootprint {
+
+    private static final String[] USERS = {"etl", "analyst", "bi_service", "airflow", "admin", "reporting"};
+    private static final String[] STATES = {"FINISHED", "FAILED"};
+
+    private EventFootprint() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        long unpooled = retainedBytes(new TrinoEventDecoder(objectMapper, new StringPool(0)), events);
+        long pooled = retainedBytes(new TrinoEventDecoder(objectMapper, new StringPool(StringPool.DEFAULT_SIZE)), events);
+
+        System.out.printf("%d events: %,d bytes without pool, %,d bytes with pool (%.1f%% less, %,d bytes/event)%n",
+                events, unpooled, pooled, 100.0 * (unpooled - pooled) / unpooled, (unpooled - pooled) / events);
+    }
+
+    private static long retainedBytes(TrinoEventDecoder decoder, int events) throws Exception {
+        long before = usedAfterGc();
+        List<QueryEvent> retained = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            retained.add(decoder.decode(message(i)));
+        }
+        long used = usedAfterGc() - before;
+        if (retained.size() != events) {
+            throw new IllegalStateException();
+        }
+        return used;
+    }
+
+    private static long usedAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // A completed event like TrinoEventPayloads.COMPLETED, without the plan
+    static byte[] message(int i) {
+        String queryId = String.format("20251002_%06d_%05d_abcde", i / 1000, i % 100_000);
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("{\"eventPayload\":{\"metadata\":{\"queryId\":\"").append(queryId).append("\",")
+                .append("\"query\":\"SELECT * FROM t").append(i % 50).append(" WHERE id = ").append(i).append("\",")
+                .append("\"queryState\":\"").append(STATES[i % 7 == 0 ? 1 : 0]).append("\"},")
+                .append("\"context\":{\"user\":\"").append(USERS[i % USERS.length]).append("\"},")
+                .append("\"createTime\":\"2025-10-02T10:").append(String.format("%02d:%02d.%03dZ", i / 60_000 % 60,
+                        i / 1000 % 60, i % 1000)).append("\",")
+                .append("\"statistics\":{\"cpuTime\":\"1.25s\",\"wallTime\":\"2.50s\",\"peakMemoryBytes\":1048576},")
+                .append("\"ioMetadata\":{\"inputs\":[");
+        for (int input = 0; input < 3; input++) {
+            if (input > 0) {
+                sb.append(',');
+            }
+            int table = (i + input * 17) % 40;
+            sb.append("{\"catalogName\":\"").append(input == 1 ? "mongodb" : "postgres").append("\",")
+                    .append("\"schema\":\"").append(input == 1 ? "sample_db" : "public").append("\",")
+                    .append("\"table\":\"table_").append(table).append("\",\"columns\":[");
+            for (int c = 0; c < 12; c++) {
+                if (c > 0) {
+                    sb.append(',');
+                }
+                sb.append("{\"name\":\"column_").append(c).append("\",\"type\":\"")
+                        .append(c % 3 == 0 ? "bigint" : c % 3 == 1 ? "varchar" : "timestamp(3)").append("\"}");
+            }
+            sb.append("]}");
+        }
+        sb.append("]}}}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,149 @@
+package com.trinofed.parser.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trinofed.parser.consumer.TrinoEventDecoder;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryPlan;
+import com.trinofed.parser.model.QueryTree;
+import com.trinofed.parser.model.QueryTreeDelta;
+import com.trinofed.parser.model.TrinoEventWrapper;
+import com.trinofed.parser.service.DatabaseService;
+import com.trinofed.parser.service.LiveQueryTree;
+import com.trinofed.parser.service.PlanParser;
+import com.trinofed.parser.service.ResponseCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each stage a completed query goes through on ingestion, on a deterministic stream of
+ * {@value #STREAM} queries from {@link TrinoEventPayloads#stream}: decoding the Kafka message
+ * (databind into {@link TrinoEventWrapper}, {@code toQueryEvent()}, and the streaming
+ * {@link TrinoEventDecoder} used in production), registering its tables with
+ * {@link DatabaseService}, building its tree from the created and completed events, and
+ * serializing the completed event's WebSocket delta. Each call takes the next query of the
+ * stream; input is decoded and parsed up front, so a stage is measured on its own.
+ *
+ * Sizes are parameters: inputs (tables read) per query, columns per input and operators in
+ * the plan. Run through {@link BenchmarkMain} to get the allocation rate next to throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestionBenchmark {
+
+    static final int STREAM = 256;
+
+    @Param({"1", "12"})
+    public int inputs;
+
+    @Param({"12", "250"})
+    public int columnsPerInput;
+
+    @Param({"40", "600"})
+    public int planOperators;
+
+    private ObjectMapper objectMapper;
+    private TrinoEventDecoder decoder;
+    private DatabaseService databaseService;
+    private MappingJackson2MessageConverter converter;
+
+    private byte[][] messages;
+    private TrinoEventWrapper[] wrappers;
+    private QueryEvent[] created;
+    private QueryEvent[] completed;
+    private QueryPlan[] plans;
+    private QueryTreeDelta[] deltas;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper();
+        decoder = new TrinoEventDecoder(objectMapper);
+        databaseService = new DatabaseService(new ResponseCache(objectMapper, DataSize.ofMegabytes(64), true, 1024,
+                new SimpleMeterRegistry()));
+        // The broker's converter, with an ObjectMapper configured like the application's
+        converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+
+        messages = TrinoEventPayloads.stream(true, inputs, columnsPerInput, planOperators, STREAM);
+        byte[][] createdMessages = TrinoEventPayloads.stream(false, inputs, columnsPerInput, planOperators, STREAM);
+        wrappers = new TrinoEventWrapper[STREAM];
+        created = new QueryEvent[STREAM];
+        completed = new QueryEvent[STREAM];
+        plans = new QueryPlan[STREAM];
+        deltas = new QueryTreeDelta[STREAM];
+        for (int i = 0; i < STREAM; i++) {
+            wrappers[i] = objectMapper.readValue(messages[i], TrinoEventWrapper.class);
+            created[i] = decoder.decode(createdMessages[i]);
+            completed[i] = decoder.decode(messages[i]);
+            plans[i] = PlanParser.parse(completed[i].getPlan());
+
+            LiveQueryTree tree = new LiveQueryTree(created[i].getQueryId());
+            tree.apply(created[i], null);
+            tree.drainDelta();
+            tree.apply(completed[i], plans[i]);
+            deltas[i] = tree.drainDelta();
+        }
+    }
+
+    @Benchmark
+    public TrinoEventWrapper readWrapper() throws Exception {
+        return objectMapper.readValue(messages[next()], TrinoEventWrapper.class);
+    }
+
+    @Benchmark
+    public QueryEvent toQueryEvent() {
+        return wrappers[next()].toQueryEvent();
+    }
+
+    @Benchmark
+    public QueryEvent streamingDecode() throws Exception {
+        return decoder.decode(messages[next()]);
+    }
+
+    // The query's ordinal is its place in the stream, so after the first pass every call
+    // updates nodes that already count the query, as repeated events of a query do
+    @Benchmark
+    public void databaseServiceProcessEvent() {
+        int i = next();
+        databaseService.processEvent(completed[i], plans[i], i);
+    }
+
+    @Benchmark
+    public QueryTree buildQueryTree() {
+        int i = next();
+        LiveQueryTree tree = new LiveQueryTree(created[i].getQueryId());
+        tree.apply(created[i], null);
+        tree.apply(completed[i], plans[i]);
+        return tree.snapshot();
+    }
+
+    @Benchmark
+    public Object serializeDelta() {
+        return converter.toMessage(deltas[next()], null).getPayload();
+    }
+
+    private int next() {
+        int i = next;
+        next = (i + 1) % STREAM;
+        return i;
+    }
+}
@@ -0,0 +1,257 @@
+package com.trinofed.parser.bench;
+
+import com.trinofed.parser.TrinoKafkaParserApplication;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays Trino events through the whole backend to size an instance: an embedded Kafka
+ * broker, the application's real Spring context consuming from it, and a WebSocket client
+ * subscribed to the query updates. Events come from a JSONL dump of Kafka message values
+ * (replayed at their original pace times {@code --multiplier}) or from
+ * {@link TrinoEventPayloads} (at {@code --rate} times {@code --multiplier} events per second).
+ *
+ * Every {@code --report-every} seconds, and once at the end, it prints events produced and
+ * delivered over the WebSocket per second, the consumer group's lag, the used heap and the
+ * produce-to-delivery latency distribution. The run ends once every event has been
+ * delivered, or nothing was delivered for {@code --drain-timeout} seconds.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.trinofed.parser.bench.LoadGenerator \
+ *     --source=events.jsonl --multiplier=4 [--trino.kafka.listener.concurrency=6 ...]
+ * </pre>
+ *
+ * Options it doesn't know ({@code --name=value}) are passed to the application.
+ */
+public final class LoadGenerator {
+
+    private static final String TOPIC = "trino-query-events";
+    private static final int MAX_MESSAGE_BYTES = 16 * 1024 * 1024;
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private final Map<String, String> options;
+    private final Map<String, String> applicationProperties;
+    private final AtomicLong produced = new AtomicLong();
+    private final Histogram latencyMs = new Histogram(3);
+    private final DeliveryProbe probe = new DeliveryProbe();
+    private long startNanos;
+    private long lastReportNanos;
+    private long lastProduced;
+    private long lastDelivered;
+    private long maxLag;
+
+    private LoadGenerator(Map<String, String> options, Map<String, String> applicationProperties) {
+        this.options = options;
+        this.applicationProperties = applicationProperties;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "source", "synthetic",
+                "multiplier", "1",
+                "rate", "1000",
+                "events", "100000",
+                "inputs", "3",
+                "columns", "12",
+                "plan-operators", "40",
+                "partitions", "3",
+                "report-every", "5",
+                "drain-timeout", "30"));
+        Map<String, String> applicationProperties = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, equals);
+            (options.containsKey(name) ? options : applicationProperties).put(name, arg.substring(equals + 1));
+        }
+        new LoadGenerator(options, applicationProperties).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        double multiplier = Double.parseDouble(options.get("multiplier"));
+        ReplaySource source = "synthetic".equals(options.get("source"))
+                ? ReplaySource.synthetic(Long.parseLong(options.get("events")),
+                        Double.parseDouble(options.get("rate")) * multiplier, intOption("inputs"),
+                        intOption("columns"), intOption("plan-operators"))
+                : ReplaySource.jsonl(Path.of(options.get("source")), multiplier);
+
+        EmbeddedKafkaZKBroker broker = new EmbeddedKafkaZKBroker(1, false, intOption("partitions"), TOPIC);
+        broker.brokerProperty("message.max.bytes", MAX_MESSAGE_BYTES);
+        broker.afterPropertiesSet();
+        ConfigurableApplicationContext context = startApplication(broker.getBrokersAsString());
+        int port = context.getEnvironment().getProperty("local.server.port", Integer.class);
+        String groupId = context.getEnvironment().getProperty("spring.kafka.consumer.group-id");
+        probe.connect(port);
+
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()));
+             KafkaProducer<String, byte[]> producer = new KafkaProducer<>(producerConfig(broker.getBrokersAsString()))) {
+            System.gc();
+            long heapBefore = MEMORY.getHeapMemoryUsage().getUsed();
+            System.out.printf("Replaying %,d events to %s (%d partitions), application on port %d%n",
+                    source.size(), TOPIC, intOption("partitions"), port);
+
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+            startNanos = System.nanoTime();
+            lastReportNanos = startNanos;
+            long every = intOption("report-every");
+            reporter.scheduleAtFixedRate(() -> report(admin, groupId), every, every, TimeUnit.SECONDS);
+
+            produce(source, producer);
+            drain(intOption("drain-timeout"));
+            reporter.shutdown();
+            reporter.awaitTermination(1, TimeUnit.MINUTES);
+            report(admin, groupId);
+
+            System.gc();
+            long heapAfter = MEMORY.getHeapMemoryUsage().getUsed();
+            summarize(heapBefore, heapAfter);
+        } finally {
+            context.close();
+            broker.destroy();
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication(String bootstrapServers) throws Exception {
+        Path dataDir = Files.createTempDirectory("trino-load");
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.kafka.bootstrap-servers", bootstrapServers);
+        properties.put("server.port", "0");
+        properties.put("trino.kafka.topic", TOPIC);
+        properties.put("trino.storage.dir", dataDir.resolve("event-log").toString());
+        properties.put("trino.storage.snapshot-dir", dataDir.resolve("snapshots").toString());
+        // application.yml logs every event at DEBUG, which would dominate the run
+        properties.put("logging.level.com.trinofed.parser", "WARN");
+        properties.putAll(applicationProperties);
+
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(TrinoKafkaParserApplication.class).run(args);
+    }
+
+    private static Map<String, Object> producerConfig(String bootstrapServers) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        config.put(ProducerConfig.MAX_REQUEST_SIZE_CONFIG, MAX_MESSAGE_BYTES);
+        return config;
+    }
+
+    // Sends each message at its time; once behind schedule, as fast as the producer allows
+    private void produce(ReplaySource source, KafkaProducer<String, byte[]> producer) {
+        while (source.hasNext()) {
+            ReplaySource.Message message = source.next();
+            long wait = startNanos + message.sendAtNanos() - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long now = System.currentTimeMillis();
+            probe.expect(message.queryId(), message.eventType(), now);
+            producer.send(new ProducerRecord<>(TOPIC, null, now, message.queryId(), message.value()));
+            produced.incrementAndGet();
+        }
+        producer.flush();
+    }
+
+    private void drain(long timeoutSeconds) throws InterruptedException {
+        long delivered = probe.getDelivered();
+        long lastProgress = System.nanoTime();
+        while (probe.getDelivered() < produced.get()
+                && System.nanoTime() - lastProgress < TimeUnit.SECONDS.toNanos(timeoutSeconds)) {
+            Thread.sleep(100);
+            if (probe.getDelivered() != delivered) {
+                delivered = probe.getDelivered();
+                lastProgress = System.nanoTime();
+            }
+        }
+    }
+
+    private synchronized void report(Admin admin, String groupId) {
+        long now = System.nanoTime();
+        double seconds = (now - lastReportNanos) / 1e9;
+        long producedNow = produced.get();
+        long deliveredNow = probe.getDelivered();
+        long lag = consumerLag(admin, groupId);
+        maxLag = Math.max(maxLag, lag);
+        Histogram interval = probe.intervalLatencies();
+        latencyMs.add(interval);
+
+        System.out.printf("%6.0fs  produced %,9d (%,8.0f/s)  delivered %,9d (%,8.0f/s)  lag %,7d  heap %,6d MB"
+                        + "  latency ms p50 %,d p99 %,d max %,d%n",
+                (now - startNanos) / 1e9, producedNow, (producedNow - lastProduced) / seconds,
+                deliveredNow, (deliveredNow - lastDelivered) / seconds, lag,
+                MEMORY.getHeapMemoryUsage().getUsed() >> 20, interval.getValueAtPercentile(50),
+                interval.getValueAtPercentile(99), interval.getMaxValue());
+        lastReportNanos = now;
+        lastProduced = producedNow;
+        lastDelivered = deliveredNow;
+    }
+
+    // Records produced but not yet committed by the application's consumer group
+    private static long consumerLag(Admin admin, String groupId) {
+        try {
+            Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                    .partitionsToOffsetAndMetadata().get(10, TimeUnit.SECONDS);
+            Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+            committed.keySet().forEach(partition -> latest.put(partition, OffsetSpec.latest()));
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> ends = admin.listOffsets(latest)
+                    .all().get(10, TimeUnit.SECONDS);
+            long lag = 0;
+            for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+                lag += ends.get(entry.getKey()).offset() - entry.getValue().offset();
+            }
+            return lag;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private void summarize(long heapBefore, long heapAfter) {
+        double seconds = (lastReportNanos - startNanos) / 1e9;
+        System.out.println();
+        System.out.printf("Events:    %,d produced, %,d delivered over WebSocket (%,d unmatched), %,d transport errors%n",
+                produced.get(), probe.getDelivered(), probe.getUnmatched(), probe.getTransportErrors());
+        System.out.printf("Sustained: %,.0f events/s delivered over %.0f s%n", probe.getDelivered() / seconds, seconds);
+        System.out.printf("Lag:       %,d records at most%n", maxLag);
+        System.out.printf("Heap:      %,d MB -> %,d MB after GC (%+,d MB)%n",
+                heapBefore >> 20, heapAfter >> 20, (heapAfter - heapBefore) >> 20);
+        System.out.printf("Latency:   produce to WebSocket delivery, ms: p50 %,d  p90 %,d  p99 %,d  p99.9 %,d  max %,d%n",
+                latencyMs.getValueAtPercentile(50), latencyMs.getValueAtPercentile(90),
+                latencyMs.getValueAtPercentile(99), latencyMs.getValueAtPercentile(99.9), latencyMs.getMaxValue());
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+}
@@ -0,0 +1,133 @@
+package com.trinofed.parser.bench;
+
+import com.trinofed.parser.model.QueryPlan;
+import com.trinofed.parser.service.PlanParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plan text to tables: {@link PlanParser} building the whole fragment/operator tree against
+ * the line-split scan it replaced, which only looked for {@code FROM}/{@code JOIN}/
+ * {@code TABLE:} and split what followed on {@code :} and {@code .}. Plans are generated
+ * distributed plans of about the given size with joins, long predicates and table scans.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanParseBenchmark {
+
+    @Param({"100", "300", "600"})
+    public int kilobytes;
+
+    private String plan;
+
+    @Setup
+    public void setup() {
+        plan = generatePlan(kilobytes * 1024);
+    }
+
+    @Benchmark
+    public QueryPlan planParser() {
+        return PlanParser.parse(plan);
+    }
+
+    @Benchmark
+    public void lineSplitScan(Blackhole blackhole) {
+        for (String line : plan.split("\n")) {
+            if (line.length() < 5) continue;
+            for (String pattern : Arrays.asList("FROM ", "JOIN ", "TABLE: ")) {
+                int idx = line.indexOf(pattern);
+                if (idx >= 0) {
+                    String[] parts = line.substring(idx + pattern.length()).split("[:\\.]");
+                    if (parts.length >= 2) {
+                        blackhole.consume(parts[0].trim());
+                        blackhole.consume(parts[1].trim());
+                        blackhole.consume(parts.length > 2 ? parts[2].trim() : null);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A distributed plan of at least {@code size} characters: an output fragment over a chain
+     * of join fragments, each joining a filtered scan with the next join through remote
+     * sources.
+     */
+    static String generatePlan(int size) {
+        StringBuilder plan = new StringBuilder(size + 4096);
+        plan.append("Fragment 0 [SINGLE]\n")
+                .append("    CPU: 2.56ms, Scheduled: 3.03ms, Input: 5 rows (145B); per task: avg.: 5.00 std.dev.: 0.00, Output: 5 rows (145B)\n")
+                .append("    Output layout: [id, name, total]\n")
+                .append("    Output partitioning: SINGLE []\n")
+                .append("    Output[columnNames = [id, name, total]]\n")
+                .append("    │   Layout: [id:bigint, name:varchar, total:double]\n")
+                .append("    │   CPU: 0.00ns (0.00%), Scheduled: 0.00ns (0.00%), Output: 5 rows (145B)\n")
+                .append("    └─ RemoteSource[sourceFragmentIds = [1]]\n")
+                .append("           Layout: [id:bigint, name:varchar, total:double]\n\n");
+
+        int fragment = 1;
+        while (plan.length() < size) {
+            int scan = fragment + 1;
+            int next = fragment + 2;
+            plan.append("Fragment ").append(fragment).append(" [HASH]\n")
+                    .append("    Output layout: [id_").append(fragment).append(", name, total]\n")
+                    .append("    Output partitioning: HASH [id_").append(fragment).append("]\n")
+                    .append("    InnerJoin[criteria = (\"cid_").append(fragment).append("\" = \"id_").append(next)
+                    .append("\"), hash = [$hashvalue, $hashvalue_1], distribution = PARTITIONED]\n")
+                    .append("    │   Layout: [id_").append(fragment).append(":bigint, name:varchar, total:double]\n")
+                    .append("    │   Estimates: {rows: 15000 (1.02MB), cpu: 3.42M, memory: 512.00kB, network: 0B}\n")
+                    .append("    │   CPU: 1.20ms (10.00%), Scheduled: 1.50ms (9.00%), Output: 1.5K rows (2.50kB)\n")
+                    .append("    │   Distribution: PARTITIONED\n")
+                    .append("    ├─ RemoteSource[sourceFragmentIds = [").append(scan).append("]]\n")
+                    .append("    │      Layout: [id:bigint, cid:bigint, total:double]\n")
+                    .append("    └─ LocalExchange[partitioning = HASH, arguments = [\"id_").append(next).append("\"]]\n")
+                    .append("       │   Layout: [id_").append(next).append(":bigint, name:varchar]\n")
+                    .append("       └─ RemoteSource[sourceFragmentIds = [").append(next).append("]]\n")
+                    .append("              Layout: [id_").append(next).append(":bigint, name:varchar]\n\n");
+
+            plan.append("Fragment ").append(scan).append(" [SOURCE]\n")
+                    .append("    Output layout: [id, cid, total]\n")
+                    .append("    Output partitioning: HASH [cid]\n")
+                    .append("    ScanFilterProject[table = postgresql:public.orders_").append(scan)
+                    .append(" public.orders_").append(scan).append(", filterPredicate = ");
+            for (int i = 0; i < 40; i++) {
+                plan.append(i == 0 ? "(" : " OR ").append("(\"status\" = VARCHAR 'status_").append(i)
+                        .append("' AND \"total\" > DOUBLE '").append(i * 100).append(".0')");
+            }
+            plan.append(")]\n")
+                    .append("        Layout: [id:bigint, cid:bigint, total:double]\n")
+                    .append("        Estimates: {rows: 150000 (4.00MB), cpu: 4.00M, memory: 0B, network: 0B}\n")
+                    .append("        CPU: 8.00ms (60.00%), Scheduled: 9.10ms (61.00%), Output: 600 rows (10.00kB)\n")
+                    .append("        Input: 150000 rows (4.00MB), Filtered: 99.60%, Physical input: 3.20MB\n")
+                    .append("        id := id:bigint:int8\n")
+                    .append("        cid := customer_id:bigint:int8\n")
+                    .append("        total := total:double:float8\n\n");
+            fragment = next;
+        }
+
+        plan.append("Fragment ").append(fragment).append(" [SOURCE]\n")
+                .append("    Output layout: [id_").append(fragment).append(", name]\n")
+                .append("    Output partitioning: HASH [id_").append(fragment).append("]\n")
+                .append("    TableScan[table = mongodb:sample_db.customers]\n")
+                .append("        Layout: [id_").append(fragment).append(":bigint, name:varchar]\n")
+                .append("        CPU: 1.00ms (5.00%), Output: 2000 rows (48.00kB)\n");
+        return plan.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package com.trinofed.parser.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trinofed.parser.consumer.TrinoEventDecoder;
+import com.trinofed.parser.model.QueryEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages {@link LoadGenerator} sends, each with the time to send it at, relative to
+ * the start of the run.
+ */
+interface ReplaySource {
+
+    // eventType as decoded (CREATED, COMPLETED), to match the event in the delivered delta
+    record Message(String queryId, String eventType, byte[] value, long sendAtNanos) {
+    }
+
+    boolean hasNext();
+
+    Message next();
+
+    /**
+     * Number of messages in the source.
+     */
+    long size();
+
+    /**
+     * {@code events} messages from {@link TrinoEventPayloads#stream}: each query's created
+     * event followed by its completed event, evenly spaced at {@code eventsPerSecond}.
+     */
+    static ReplaySource synthetic(long events, double eventsPerSecond, int inputs, int columnsPerInput,
+                                  int planOperators) {
+        double intervalNanos = 1e9 / eventsPerSecond;
+        return new ReplaySource() {
+            private long sent;
+
+            @Override
+            public boolean hasNext() {
+                return sent < events;
+            }
+
+            @Override
+            public Message next() {
+                long i = sent++;
+                boolean completed = i % 2 == 1;
+                int query = (int) (i / 2);
+                String json = TrinoEventPayloads.json(completed, inputs, columnsPerInput, planOperators, query);
+                return new Message(TrinoEventPayloads.queryId(query), completed ? "COMPLETED" : "CREATED",
+                        json.getBytes(StandardCharsets.UTF_8), (long) (i * intervalNanos));
+            }
+
+            @Override
+            public long size() {
+                return events;
+            }
+        };
+    }
+
+    /**
+     * A dump of Kafka message values, one per line, replayed with the gaps between their
+     * event times (the end time of completed events, the create time of others) divided by
+     * {@code multiplier}. Lines that don't decode to an event with a query id are skipped.
+     */
+    static ReplaySource jsonl(Path dump, double multiplier) throws IOException {
+        TrinoEventDecoder decoder = new TrinoEventDecoder(new ObjectMapper());
+        List<Message> messages = new ArrayList<>();
+        Instant first = null;
+        long previousNanos = 0;
+        try (BufferedReader reader = Files.newBufferedReader(dump, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                byte[] value = line.getBytes(StandardCharsets.UTF_8);
+                QueryEvent event = decoder.decode(value);
+                if (event == null || event.getQueryId() == null) {
+                    continue;
+                }
+                long sendAt = previousNanos;
+                Instant eventTime = eventTime(event);
+                if (eventTime != null) {
+                    if (first == null) {
+                        first = eventTime;
+                    }
+                    long sinceFirst = eventTime.toEpochMilli() - first.toEpochMilli();
+                    // Out-of-order events go out right away
+                    sendAt = Math.max(previousNanos, (long) (sinceFirst * 1_000_000L / multiplier));
+                }
+                previousNanos = sendAt;
+                messages.add(new Message(event.getQueryId(), event.getEventType(), value, sendAt));
+            }
+        }
+        return new ReplaySource() {
+            private int sent;
+
+            @Override
+            public boolean hasNext() {
+                return sent < messages.size();
+            }
+
+            @Override
+            public Message next() {
+                return messages.get(sent++);
+            }
+
+            @Override
+            public long size() {
+                return messages.size();
+            }
+        };
+    }
+
+    private static Instant eventTime(QueryEvent event) {
+        if (event.getEndTime() != null) {
+            try {
+                return Instant.parse(event.getEndTime());
+            } catch (DateTimeParseException e) {
+                // Fall back to the create time
+            }
+        }
+        return event.getTimestamp();
+    }
+}
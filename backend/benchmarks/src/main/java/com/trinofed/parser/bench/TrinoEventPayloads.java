@@ -0,0 +1,210 @@
+package com.trinofed.parser.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Representative Trino Kafka event listener messages, shaped like what
+ * {@code TrinoEventWrapper} reads: a small "created" event, a typical completed
+ * federated query, and a wide completed query with many inputs, columns and a large plan.
+ *
+ * {@link #stream} generates any number of such messages at chosen sizes. The stream is
+ * deterministic: message {@code n} always has the same query id, user, times and tables,
+ * so runs on different machines and commits see the same input.
+ */
+public final class TrinoEventPayloads {
+
+    public enum Shape {
+        CREATED(0, 0, 0),
+        COMPLETED(3, 12, 40),
+        WIDE(12, 250, 600);
+
+        final int inputs;
+        final int columnsPerInput;
+        final int planOperators;
+
+        Shape(int inputs, int columnsPerInput, int planOperators) {
+            this.inputs = inputs;
+            this.columnsPerInput = columnsPerInput;
+            this.planOperators = planOperators;
+        }
+    }
+
+    private static final String[] CATALOGS = {"postgres", "mongodb", "hive"};
+    private static final String[] USERS = {"etl", "analyst", "bi_service", "airflow", "reporting"};
+    private static final int TABLES = 64;
+    private static final Instant CREATE_TIME = Instant.parse("2025-10-02T10:15:00.123Z");
+    private static final String[] TYPES = {"bigint", "varchar", "double", "timestamp(3)", "array(varchar)"};
+
+    private TrinoEventPayloads() {
+    }
+
+    public static byte[] bytes(Shape shape) {
+        return json(shape).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String json(Shape shape) {
+        return json(shape != Shape.CREATED, shape.inputs, shape.columnsPerInput, shape.planOperators, 0);
+    }
+
+    /**
+     * Messages {@code 0} to {@code count - 1} of the stream: completed events with the given
+     * number of inputs, columns per input and plan operators, or created events if
+     * {@code completed} is false (which have no inputs or plan).
+     */
+    public static byte[][] stream(boolean completed, int inputs, int columnsPerInput, int planOperators, int count) {
+        byte[][] messages = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            messages[i] = json(completed, inputs, columnsPerInput, planOperators, i)
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        return messages;
+    }
+
+    /**
+     * Message {@code sequence} of the stream. Its query id, user, times and the tables it reads
+     * follow from the sequence; message 0 is the one of the matching {@link Shape}.
+     */
+    public static String json(boolean completed, int inputs, int columnsPerInput, int planOperators, int sequence) {
+        String queryId = queryId(sequence);
+        String user = USERS[sequence % USERS.length];
+        Instant createTime = CREATE_TIME.plusSeconds(sequence);
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("{\"eventPayload\":{");
+
+        sb.append("\"metadata\":{")
+                .append("\"queryId\":\"").append(queryId).append("\",")
+                .append("\"transactionId\":\"8f7e0d53-b0c6-4e55-9d2c-2cf4c6a0f1b1\",")
+                .append("\"query\":\"SELECT o.id, o.total, c.name FROM postgres.public.orders o ")
+                .append("JOIN mongodb.sample_db.customers c ON o.customer_id = c.id WHERE o.total > 100\",")
+                .append("\"queryState\":\"").append(completed ? "FINISHED" : "QUEUED").append("\",")
+                .append("\"uri\":\"http://trino:8080/v1/query/").append(queryId).append("\",")
+                .append("\"tables\":[],\"routines\":[]");
+        if (completed) {
+            sb.append(",\"plan\":\"").append(escape(plan(inputs, planOperators, sequence))).append('"');
+        }
+        sb.append("},");
+
+        sb.append("\"context\":{\"user\":\"").append(user).append("\",\"principal\":\"").append(user)
+                .append("\",\"remoteClientAddress\":\"10.0.0.12\",")
+                .append("\"userAgent\":\"trino-cli\",\"clientInfo\":null,\"source\":\"trino-cli\",")
+                .append("\"catalog\":\"postgres\",\"schema\":\"public\",\"resourceGroupId\":[\"global\"],")
+                .append("\"sessionProperties\":{\"query_max_memory\":\"1GB\"},\"serverAddress\":\"trino\",")
+                .append("\"serverVersion\":\"435\",\"environment\":\"docker\",\"queryType\":\"SELECT\"},");
+
+        sb.append("\"createTime\":\"").append(createTime).append("\",");
+
+        if (completed) {
+            sb.append("\"endTime\":\"").append(createTime.plusMillis(2500)).append("\",");
+            sb.append("\"statistics\":{\"cpuTime\":\"1.25s\",\"wallTime\":\"2.50s\",\"queuedTime\":\"15.00ms\",")
+                    .append("\"scheduledTime\":\"3.10s\",\"analysisTime\":\"120.00ms\",\"planningTime\":\"80.00ms\",")
+                    .append("\"executionTime\":\"2.30s\",\"peakMemoryBytes\":1048576,\"totalBytes\":20480,")
+                    .append("\"totalRows\":1200,\"completedSplits\":7,\"operatorSummaries\":[");
+            for (int i = 0; i < Math.min(planOperators, 20); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append("{\"stageId\":").append(i % 3).append(",\"operatorId\":").append(i)
+                        .append(",\"operatorType\":\"ScanFilterAndProjectOperator\",\"inputPositions\":")
+                        .append(1000 + i).append(",\"outputPositions\":").append(900 + i).append('}');
+            }
+            sb.append("]},");
+
+            sb.append("\"ioMetadata\":{\"inputs\":[");
+            for (int i = 0; i < inputs; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                String catalog = CATALOGS[i % CATALOGS.length];
+                sb.append("{\"catalogName\":\"").append(catalog).append("\",")
+                        .append("\"catalogVersion\":\"default\",")
+                        .append("\"schema\":\"").append("mongodb".equals(catalog) ? "sample_db" : "public").append("\",")
+                        .append("\"table\":\"table_").append(table(i, sequence)).append("\",\"columns\":[");
+                for (int c = 0; c < columnsPerInput; c++) {
+                    if (c > 0) {
+                        sb.append(',');
+                    }
+                    sb.append("{\"name\":\"column_").append(c).append("\",\"type\":\"")
+                            .append(TYPES[c % TYPES.length]).append("\"}");
+                }
+                sb.append("],\"connectorInfo\":{},\"connectorMetrics\":{\"metrics\":{}},")
+                        .append("\"physicalInputBytes\":").append(10240L * (i + 1))
+                        .append(",\"physicalInputRows\":").append(600L * (i + 1)).append('}');
+            }
+            sb.append("],\"output\":null},");
+            sb.append("\"warnings\":[]");
+        } else {
+            sb.append("\"endTime\":null");
+        }
+
+        sb.append("},\"eventType\":\"").append(completed ? "QueryCompletedEvent" : "QueryCreatedEvent").append("\"}");
+        return sb.toString();
+    }
+
+    /**
+     * Text plan in the shape Trino emits in QueryCompletedEvent.metadata.plan.
+     */
+    public static String plan(Shape shape) {
+        return plan(shape.inputs, shape.planOperators, 0);
+    }
+
+    private static String plan(int inputs, int planOperators, int sequence) {
+        StringBuilder sb = new StringBuilder();
+        int fragments = Math.max(1, inputs);
+        int operatorsPerFragment = Math.max(1, planOperators / fragments);
+        for (int f = 0; f < fragments; f++) {
+            sb.append("Fragment ").append(f).append(f == 0 ? " [SINGLE]\n" : " [SOURCE]\n");
+            sb.append("    CPU: 120.00ms, Scheduled: 200.00ms, Blocked 10.00ms (Input: 5.00ms, Output: 0.00ns), ")
+                    .append("Input: 600 rows (10.00kB); per task: avg.: 600.00 std.dev.: 0.00, Output: 540 rows (9.00kB)\n");
+            sb.append("    Output layout: [id, total, name]\n");
+            sb.append("    Output partitioning: ").append(f == 0 ? "SINGLE []" : "HASH [customer_id]").append('\n');
+            String indent = "    ";
+            String prefix = indent;
+            for (int o = 0; o < operatorsPerFragment; o++) {
+                boolean leaf = o == operatorsPerFragment - 1;
+                sb.append(prefix);
+                if (leaf && f > 0) {
+                    String catalog = CATALOGS[(f - 1) % CATALOGS.length];
+                    sb.append("ScanFilterProject[table = ").append(catalog).append(':')
+                            .append("mongodb".equals(catalog) ? "sample_db" : "public").append(".table_")
+                            .append(table(f - 1, sequence))
+                            .append(", filterPredicate = (\"total\" > DOUBLE '100.0')]\n");
+                } else if (leaf) {
+                    sb.append("RemoteSource[sourceFragmentIds = [1]]\n");
+                } else {
+                    sb.append(o % 2 == 0 ? "Project[]\n" : "FilterProject[filterPredicate = (\"x\" > 1)]\n");
+                }
+                String detail = indent + (leaf ? "    " : "│   ");
+                sb.append(detail).append("Layout: [id:bigint, total:double, name:varchar]\n");
+                sb.append(detail).append("Estimates: {rows: 540 (9.00kB), cpu: 12.00k, memory: 0B, network: 0B}\n");
+                sb.append(detail).append("CPU: 10.00ms (1.00%), Scheduled: 12.00ms (1.00%), Output: 540 rows (9.00kB)\n");
+                prefix = indent + "└─ ";
+                indent = indent + "   ";
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    static String queryId(int sequence) {
+        return String.format("20251002_%06d_%05d_abcde", 101500 + (42 + sequence) / 100_000, (42 + sequence) % 100_000);
+    }
+
+    private static int table(int input, int sequence) {
+        return (input + sequence) % TABLES;
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 64);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
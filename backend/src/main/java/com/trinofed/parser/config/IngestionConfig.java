@@ -0,0 +1,25 @@
+package com.trinofed.parser.config;
+
+import com.trinofed.parser.service.KeyedLaneExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class IngestionConfig {
+
+    /**
+     * Number of parallel lanes used to apply a batch of events. 0 means one lane per core.
+     */
+    @Value("${trino.ingestion.parallelism:0}")
+    private int parallelism;
+
+    @Bean(destroyMethod = "shutdown")
+    public KeyedLaneExecutor ingestionLanes() {
+        int lanes = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        log.info("Starting {} ingestion lanes", lanes);
+        return new KeyedLaneExecutor(lanes, "ingest-lane-");
+    }
+}
@@ -0,0 +1,83 @@
+package com.trinofed.parser.config;
+
+import com.trinofed.parser.service.QueryEventService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outbound channel interceptor that counts the messages queued for each WebSocket session.
+ * Once a session has more than {@code maxPendingPerSession} messages waiting, further query
+ * deltas for it are dropped instead of queued behind the slow client. The client sees the
+ * gap in delta versions and fetches a fresh snapshot, and other sessions are not held up.
+ * Other messages (subscription snapshots, receipts, errors) are never dropped.
+ *
+ * A message counts as pending from {@link #preSend} until it was handled or its send failed,
+ * and a session's count is dropped when it disconnects.
+ */
+@Slf4j
+public class SlowSessionInterceptor implements ExecutorChannelInterceptor, ApplicationListener<SessionDisconnectEvent> {
+
+    private final int maxPendingPerSession;
+    private final Map<String, AtomicInteger> pendingBySession = new ConcurrentHashMap<>();
+
+    public SlowSessionInterceptor(int maxPendingPerSession) {
+        this.maxPendingPerSession = maxPendingPerSession;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+        AtomicInteger pending = pendingBySession.computeIfAbsent(sessionId, k -> new AtomicInteger());
+        if (pending.get() >= maxPendingPerSession
+                && QueryEventService.QUERY_UPDATES_TOPIC.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+            log.debug("Dropping query update for slow session {} ({} messages pending)", sessionId, pending.get());
+            return null;
+        }
+        pending.incrementAndGet();
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        // Not handed to the executor (rejected, or dropped by a later interceptor): never handled
+        if (!sent) {
+            release(message);
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        release(message);
+    }
+
+    @Override
+    public void onApplicationEvent(SessionDisconnectEvent event) {
+        pendingBySession.remove(event.getSessionId());
+    }
+
+    int pending(String sessionId) {
+        AtomicInteger pending = pendingBySession.get(sessionId);
+        return pending != null ? pending.get() : 0;
+    }
+
+    private void release(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return;
+        }
+        pendingBySession.computeIfPresent(sessionId, (id, pending) -> pending.decrementAndGet() <= 0 ? null : pending);
+    }
+}
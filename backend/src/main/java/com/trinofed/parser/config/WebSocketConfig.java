@@ -1,15 +1,35 @@
 package com.trinofed.parser.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    /**
+     * Bytes buffered per session while a send is in progress; the session is closed
+     * if it stays over this limit for longer than the send time limit.
+     */
+    @Value("${trino.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${trino.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    /**
+     * Messages queued for one session before query updates to it are dropped.
+     */
+    @Value("${trino.websocket.max-pending-per-session:32}")
+    private int maxPendingPerSession;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic");
@@ -22,4 +42,21 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOrigins("http://localhost:5173")
                 .withSockJS();
     }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs);
+    }
+
+    // A bean, so it hears about disconnected sessions
+    @Bean
+    public SlowSessionInterceptor slowSessionInterceptor() {
+        return new SlowSessionInterceptor(maxPendingPerSession);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(slowSessionInterceptor());
+    }
 }
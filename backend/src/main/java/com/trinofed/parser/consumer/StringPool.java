@@ -0,0 +1,139 @@
+package com.trinofed.parser.consumer;
+
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryInput;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Canonical instances of the low-cardinality strings in decoded events: catalog, schema,
+ * table and column names, column types, users and states. Retained events share one copy of
+ * each instead of holding their own, and {@link TrinoEventDecoder} looks values up straight
+ * from the parser's buffer, so a value already pooled is never allocated as a String at all.
+ *
+ * The pool is a fixed table of {@code size} slots in pairs: a value's hash picks a pair,
+ * a hit is moved to the pair's first slot and a miss takes it, pushing the older one out.
+ * Values that are not reused simply get replaced; nothing keeps them alive. Slots are read
+ * and written without locking; a lost update only costs a later miss. Values over
+ * {@value #MAX_LENGTH} characters are never pooled.
+ */
+@Component
+public class StringPool {
+
+    public static final int DEFAULT_SIZE = 4096;
+
+    static final int MAX_LENGTH = 128;
+
+    private final String[] slots;
+    private final int pairMask;
+
+    @Autowired
+    public StringPool(@Value("${trino.ingestion.string-pool-size:4096}") int size) {
+        // Rounded up to a power of two; 0 disables pooling
+        this.slots = new String[size > 0 ? Math.max(2, Integer.highestOneBit(size - 1) << 1) : 0];
+        this.pairMask = slots.length / 2 - 1;
+    }
+
+    public String intern(String value) {
+        if (value == null || slots.length == 0 || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        int first = slot(value.hashCode());
+        String pooled = slots[first];
+        if (value.equals(pooled)) {
+            return pooled;
+        }
+        String second = slots[first + 1];
+        if (value.equals(second)) {
+            slots[first + 1] = pooled;
+            slots[first] = second;
+            return second;
+        }
+        slots[first + 1] = pooled;
+        slots[first] = value;
+        return value;
+    }
+
+    /**
+     * The pooled string equal to {@code chars[offset, offset + length)}, creating it only if
+     * it isn't pooled.
+     */
+    public String intern(char[] chars, int offset, int length) {
+        if (slots.length == 0 || length > MAX_LENGTH) {
+            return new String(chars, offset, length);
+        }
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int first = slot(hash);
+        String pooled = slots[first];
+        if (matches(pooled, chars, offset, length)) {
+            return pooled;
+        }
+        String second = slots[first + 1];
+        if (matches(second, chars, offset, length)) {
+            slots[first + 1] = pooled;
+            slots[first] = second;
+            return second;
+        }
+        String value = new String(chars, offset, length);
+        slots[first + 1] = pooled;
+        slots[first] = value;
+        return value;
+    }
+
+    /**
+     * Replaces the pooled fields of an event decoded some other way (event log replay,
+     * state snapshots) with their canonical instances.
+     */
+    public QueryEvent intern(QueryEvent event) {
+        event.setEventType(intern(event.getEventType()));
+        event.setState(intern(event.getState()));
+        event.setUser(intern(event.getUser()));
+        event.setCatalog(intern(event.getCatalog()));
+        event.setSchema(intern(event.getSchema()));
+        event.setTableName(intern(event.getTableName()));
+        event.setCatalogs(internAll(event.getCatalogs()));
+        event.setSchemas(internAll(event.getSchemas()));
+        event.setTables(internAll(event.getTables()));
+        if (event.getInputTables() != null) {
+            for (QueryInput input : event.getInputTables()) {
+                input.setCatalogName(intern(input.getCatalogName()));
+                input.setConnectorName(intern(input.getConnectorName()));
+                input.setSchema(intern(input.getSchema()));
+                input.setTable(intern(input.getTable()));
+                if (input.getColumns() != null) {
+                    for (QueryInput.Column column : input.getColumns()) {
+                        column.setName(intern(column.getName()));
+                        column.setType(intern(column.getType()));
+                    }
+                }
+            }
+        }
+        return event;
+    }
+
+    private List<String> internAll(List<String> values) {
+        return values != null ? values.stream().map(this::intern).toList() : null;
+    }
+
+    private int slot(int hash) {
+        return ((hash ^ (hash >>> 16)) & pairMask) << 1;
+    }
+
+    private static boolean matches(String pooled, char[] chars, int offset, int length) {
+        if (pooled == null || pooled.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (pooled.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,54 +1,157 @@
 package com.trinofed.parser.consumer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.trinofed.parser.model.QueryEvent;
-import com.trinofed.parser.model.TrinoEventWrapper;
 import com.trinofed.parser.service.QueryEventService;
+import com.trinofed.parser.storage.EventLog;
+import com.trinofed.parser.storage.LoggedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 @Component
-public class TrinoEventConsumer {
+public class TrinoEventConsumer implements ConsumerSeekAware {
 
-    private final ObjectMapper objectMapper;
+    private final TrinoEventDecoder eventDecoder;
     private final QueryEventService queryEventService;
+    private final EventLog eventLog;
+    private final Timer decodeTimer;
+    private final Counter events;
+    private final Counter invalidJson;
+    private final Counter missingMetadata;
+    private final Counter unreadable;
 
     @Autowired
-    public TrinoEventConsumer(ObjectMapper objectMapper, QueryEventService queryEventService) {
-        this.objectMapper = objectMapper;
+    public TrinoEventConsumer(TrinoEventDecoder eventDecoder, QueryEventService queryEventService,
+                              EventLog eventLog, MeterRegistry meterRegistry) {
+        this.eventDecoder = eventDecoder;
         this.queryEventService = queryEventService;
+        this.eventLog = eventLog;
+        this.decodeTimer = QueryEventService.stageTimer(meterRegistry, "decode");
+        this.events = Counter.builder("trino.ingestion.events")
+                .description("Query events decoded from Kafka")
+                .register(meterRegistry);
+        this.invalidJson = parseFailures(meterRegistry, "invalid_json");
+        this.missingMetadata = parseFailures(meterRegistry, "missing_metadata");
+        this.unreadable = parseFailures(meterRegistry, "unreadable");
+    }
+
+    private static Counter parseFailures(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("trino.ingestion.parse-failures")
+                .description("Kafka messages that did not decode to a query event")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resume each partition right after the last record in the event log, which has
+     * already been replayed into memory at startup.
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        for (TopicPartition partition : assignments.keySet()) {
+            Long offset = eventLog.nextOffset(partition);
+            if (offset != null) {
+                log.info("Resuming {} at offset {} from the event log", partition, offset);
+                callback.seek(partition.topic(), partition.partition(), offset);
+            }
+        }
     }
 
-    @KafkaListener(topics = "${trino.kafka.topic}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consume(String message) {
+    @KafkaListener(topics = "${trino.kafka.topic}", groupId = "${spring.kafka.consumer.group-id}",
+            autoStartup = "#{!${trino.kafka.batch.enabled:false}}")
+    public void consume(ConsumerRecord<String, byte[]> record) {
         try {
-            log.debug("Received Kafka message: {}", message);
+            QueryEvent event = decode(record.value());
+
+            if (event == null) {
+                return;
+            }
+
+            eventLog.appendAndApply(List.of(new LoggedEvent(record.topic(), record.partition(), record.offset(), event)),
+                    () -> queryEventService.processEvent(event));
 
-            // Parse the nested Trino event structure
-            TrinoEventWrapper wrapper = objectMapper.readValue(message, TrinoEventWrapper.class);
+        } catch (Exception e) {
+            log.error("Error processing event", e);
+        }
+    }
 
-            // Convert to QueryEvent for processing
-            QueryEvent event = wrapper.toQueryEvent();
+    /**
+     * Batch mode: decode everything from one poll and let the service rebuild and broadcast
+     * each touched query once, instead of once per record.
+     */
+    @KafkaListener(topics = "${trino.kafka.topic}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${trino.kafka.batch.enabled:false}")
+    public void consumeBatch(List<ConsumerRecord<String, byte[]>> records) {
+        log.debug("Received batch of {} Kafka records", records.size());
+
+        List<QueryEvent> events = new ArrayList<>(records.size());
+        List<LoggedEvent> logged = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            QueryEvent event = decode(record.value());
+            if (event != null) {
+                events.add(event);
+                logged.add(new LoggedEvent(record.topic(), record.partition(), record.offset(), event));
+            }
+        }
+
+        try {
+            eventLog.appendAndApply(logged, () -> queryEventService.processEvents(events));
+        } catch (Exception e) {
+            log.error("Error processing batch of {} events", events.size(), e);
+        }
+    }
+
+    private QueryEvent decode(byte[] message) {
+        if (message == null) {
+            return null;
+        }
+        try {
+            // Stream the nested Trino event structure straight into a QueryEvent
+            long start = System.nanoTime();
+            QueryEvent event = eventDecoder.decode(message);
+            decodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
             if (event == null) {
+                missingMetadata.increment();
                 log.warn("Failed to convert Trino event to QueryEvent - missing metadata");
-                return;
+                return null;
             }
+            events.increment();
 
-            log.info("Parsed query event: queryId={}, eventType={}, state={}, query={}",
-                    event.getQueryId(), event.getEventType(), event.getState(),
-                    event.getQuery() != null ? event.getQuery().substring(0, Math.min(50, event.getQuery().length())) : "null");
+            // Per-event detail; the ingestion meters carry the rates
+            if (log.isDebugEnabled()) {
+                log.debug("Parsed query event: queryId={}, eventType={}, state={}, query={}",
+                        event.getQueryId(), event.getEventType(), event.getState(),
+                        event.getQuery() != null ? event.getQuery().substring(0, Math.min(50, event.getQuery().length())) : "null");
+            }
 
-            queryEventService.processEvent(event);
+            return event;
 
         } catch (JsonProcessingException e) {
-            log.error("Failed to parse Kafka message: {}", message, e);
-        } catch (Exception e) {
-            log.error("Error processing event", e);
+            invalidJson.increment();
+            log.error("Failed to parse Kafka message: {}", new String(message, StandardCharsets.UTF_8), e);
+            return null;
+        } catch (IOException e) {
+            unreadable.increment();
+            log.error("Failed to read Kafka message", e);
+            return null;
         }
     }
 }
@@ -0,0 +1,342 @@
+package com.trinofed.parser.consumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryInput;
+import com.trinofed.parser.model.TrinoEventWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass decoder for Trino Kafka event listener messages.
+ *
+ * Produces the same {@link QueryEvent} as reading a {@link TrinoEventWrapper} and calling
+ * {@link TrinoEventWrapper#toQueryEvent()}, but walks the raw bytes once with a streaming
+ * {@link JsonParser}: no intermediate POJO tree is built and every field the backend does
+ * not use (connector metrics, client info, output metadata, ...) is skipped unread.
+ * The wrapper's {@code ioMetadata} object is not reproduced; inputs are only exposed as
+ * {@link QueryEvent#getInputTables()}. Names, types, users and states come from a
+ * {@link StringPool}, so retained events share them.
+ */
+@Component
+public class TrinoEventDecoder {
+
+    private final JsonFactory jsonFactory;
+    private final StringPool stringPool;
+
+    public TrinoEventDecoder(ObjectMapper objectMapper) {
+        this(objectMapper, new StringPool(StringPool.DEFAULT_SIZE));
+    }
+
+    @Autowired
+    public TrinoEventDecoder(ObjectMapper objectMapper, StringPool stringPool) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.stringPool = stringPool;
+    }
+
+    /**
+     * @return the decoded event, or null when the message has no eventPayload.metadata
+     */
+    public QueryEvent decode(byte[] message) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            EventFields fields = null;
+            String name;
+            while ((name = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                if ("eventPayload".equals(name) && token == JsonToken.START_OBJECT) {
+                    fields = readPayload(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            return fields != null && fields.hasMetadata ? fields.toQueryEvent() : null;
+        }
+    }
+
+    private EventFields readPayload(JsonParser parser) throws IOException {
+        EventFields fields = new EventFields();
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "metadata" -> readMetadata(parser, fields);
+                case "context" -> readContext(parser, fields);
+                case "statistics" -> readStatistics(parser, fields);
+                case "ioMetadata" -> readIoMetadata(parser, fields);
+                case "createTime" -> fields.createTime = readString(parser);
+                case "endTime" -> fields.endTime = readString(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return fields;
+    }
+
+    private void readMetadata(JsonParser parser, EventFields fields) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            parser.skipChildren();
+            return;
+        }
+        fields.hasMetadata = true;
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (name) {
+                case "queryId" -> fields.queryId = readString(parser);
+                case "query" -> fields.query = readString(parser);
+                case "queryState" -> fields.queryState = readPooled(parser);
+                case "plan" -> fields.plan = readString(parser);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readContext(JsonParser parser, EventFields fields) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            parser.skipChildren();
+            return;
+        }
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            if ("user".equals(name)) {
+                fields.user = readPooled(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readStatistics(JsonParser parser, EventFields fields) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            parser.skipChildren();
+            return;
+        }
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            switch (name) {
+                case "cpuTime" -> fields.cpuTimeMs = TrinoEventWrapper.parseDuration(readString(parser));
+                case "wallTime" -> fields.wallTimeMs = TrinoEventWrapper.parseDuration(readString(parser));
+                case "queuedTime" -> fields.queuedTimeMs = TrinoEventWrapper.parseDuration(readString(parser));
+                case "peakMemoryBytes" -> fields.peakMemoryBytes = readLong(parser);
+                case "totalBytes" -> fields.totalBytes = readLong(parser);
+                case "totalRows" -> fields.totalRows = readLong(parser);
+                case "completedSplits" -> {
+                    Long splits = readLong(parser);
+                    fields.completedSplits = splits != null ? splits.intValue() : null;
+                }
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readIoMetadata(JsonParser parser, EventFields fields) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            parser.skipChildren();
+            return;
+        }
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            if ("inputs".equals(name) && token == JsonToken.START_ARRAY) {
+                fields.inputs = new ArrayList<>();
+                JsonToken element;
+                while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (element == JsonToken.START_OBJECT) {
+                        fields.inputs.add(readInput(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private QueryInput readInput(JsonParser parser) throws IOException {
+        QueryInput input = new QueryInput();
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            switch (name) {
+                case "catalogName" -> input.setCatalogName(readPooled(parser));
+                case "connectorName" -> input.setConnectorName(readPooled(parser));
+                case "schema" -> input.setSchema(readPooled(parser));
+                case "table" -> input.setTable(readPooled(parser));
+                case "physicalInputBytes" -> input.setPhysicalInputBytes(readLong(parser));
+                case "physicalInputRows" -> input.setPhysicalInputRows(readLong(parser));
+                case "columns" -> {
+                    if (token == JsonToken.START_ARRAY) {
+                        input.setColumns(readColumns(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return input;
+    }
+
+    private List<QueryInput.Column> readColumns(JsonParser parser) throws IOException {
+        List<QueryInput.Column> columns = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            QueryInput.Column column = new QueryInput.Column();
+            String name;
+            while ((name = parser.nextFieldName()) != null) {
+                parser.nextToken();
+                switch (name) {
+                    case "name" -> column.setName(readPooled(parser));
+                    case "type" -> column.setType(readPooled(parser));
+                    default -> parser.skipChildren();
+                }
+            }
+            columns.add(column);
+        }
+        return List.copyOf(columns);
+    }
+
+    private String readString(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsString();
+    }
+
+    // Looked up from the parser's buffer: a pooled value is not copied out of it
+    private String readPooled(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            return stringPool.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        return stringPool.intern(readString(parser));
+    }
+
+    private Long readLong(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT:
+                return parser.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return (long) parser.getDoubleValue();
+            case VALUE_STRING:
+                try {
+                    return Long.parseLong(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            default:
+                parser.skipChildren();
+                return null;
+        }
+    }
+
+    /**
+     * Flat holder for the handful of fields we keep while streaming through one message.
+     */
+    private static final class EventFields {
+        boolean hasMetadata;
+        String queryId;
+        String query;
+        String queryState;
+        String plan;
+        String user;
+        String createTime;
+        String endTime;
+        Long cpuTimeMs;
+        Long wallTimeMs;
+        Long queuedTimeMs;
+        Long peakMemoryBytes;
+        Long totalBytes;
+        Long totalRows;
+        Integer completedSplits;
+        List<QueryInput> inputs;
+
+        QueryEvent toQueryEvent() {
+            Instant timestamp = Instant.now();
+            if (createTime != null && !createTime.isEmpty()) {
+                try {
+                    timestamp = Instant.parse(createTime);
+                } catch (Exception e) {
+                    // Use current time if parsing fails
+                }
+            }
+
+            String primaryCatalog = null;
+            String primarySchema = null;
+            String primaryTable = null;
+            List<String> catalogs = new ArrayList<>();
+            List<String> schemas = new ArrayList<>();
+            List<String> tables = new ArrayList<>();
+            if (inputs != null) {
+                for (QueryInput input : inputs) {
+                    if (input.getCatalogName() != null) {
+                        catalogs.add(input.getCatalogName());
+                        if (primaryCatalog == null) {
+                            primaryCatalog = input.getCatalogName();
+                        }
+                    }
+                    if (input.getSchema() != null) {
+                        schemas.add(input.getSchema());
+                        if (primarySchema == null) {
+                            primarySchema = input.getSchema();
+                        }
+                    }
+                    if (input.getTable() != null) {
+                        tables.add(input.getTable());
+                        if (primaryTable == null) {
+                            primaryTable = input.getTable();
+                        }
+                    }
+                }
+            }
+
+            return QueryEvent.builder()
+                    .queryId(queryId)
+                    .query(query)
+                    .state(queryState)
+                    .user(user)
+                    .timestamp(timestamp)
+                    .createTime(createTime)
+                    .endTime(endTime)
+                    .cpuTimeMs(cpuTimeMs)
+                    .wallTimeMs(wallTimeMs)
+                    .queuedTimeMs(queuedTimeMs)
+                    .peakMemoryBytes(peakMemoryBytes)
+                    .totalBytes(totalBytes)
+                    .totalRows(totalRows)
+                    .completedSplits(completedSplits)
+                    .plan(plan)
+                    .eventType(TrinoEventWrapper.determineEventType(queryState))
+                    .catalog(primaryCatalog)
+                    .schema(primarySchema)
+                    .tableName(primaryTable)
+                    .catalogs(List.copyOf(catalogs))
+                    .schemas(List.copyOf(schemas))
+                    .tables(List.copyOf(tables))
+                    .inputTables(inputs != null ? List.copyOf(inputs) : List.of())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.trinofed.parser.controller;
+
+import com.trinofed.parser.model.ActivityStats;
+import com.trinofed.parser.service.SourceActivityService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Rolling load per catalog and table. {@code minutes} is how far back to look, up to the
+ * retained window (24 hours by default).
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/activity")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ActivityController {
+
+    private final SourceActivityService sourceActivityService;
+
+    @Autowired
+    public ActivityController(SourceActivityService sourceActivityService) {
+        this.sourceActivityService = sourceActivityService;
+    }
+
+    @GetMapping("/catalogs")
+    public ResponseEntity<List<ActivityStats>> getCatalogs(@RequestParam(defaultValue = "15") int minutes) {
+        Duration window = window(minutes);
+        if (window == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(sourceActivityService.getCatalogActivity(window));
+    }
+
+    @GetMapping("/catalogs/{catalog}")
+    public ResponseEntity<ActivityStats> getCatalog(@PathVariable String catalog,
+                                                    @RequestParam(defaultValue = "15") int minutes,
+                                                    @RequestParam(defaultValue = "false") boolean series) {
+        Duration window = window(minutes);
+        if (window == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        ActivityStats stats = sourceActivityService.getCatalogActivity(catalog, window, series);
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/tables")
+    public ResponseEntity<List<ActivityStats>> getTables(@RequestParam(defaultValue = "15") int minutes,
+                                                         @RequestParam(required = false) String catalog) {
+        Duration window = window(minutes);
+        if (window == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(sourceActivityService.getTableActivity(window, catalog));
+    }
+
+    /**
+     * One table by its qualified name, e.g. {@code postgresql.public.orders}.
+     */
+    @GetMapping("/tables/{table}")
+    public ResponseEntity<ActivityStats> getTable(@PathVariable String table,
+                                                  @RequestParam(defaultValue = "15") int minutes,
+                                                  @RequestParam(defaultValue = "false") boolean series) {
+        Duration window = window(minutes);
+        if (window == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        ActivityStats stats = sourceActivityService.getTableActivity(table, window, series);
+        return stats != null ? ResponseEntity.ok(stats) : ResponseEntity.notFound().build();
+    }
+
+    // Null when out of range
+    private Duration window(int minutes) {
+        Duration window = Duration.ofMinutes(minutes);
+        if (minutes <= 0 || window.compareTo(sourceActivityService.getRetainedWindow()) > 0) {
+            log.debug("Rejected activity window of {} minutes", minutes);
+            return null;
+        }
+        return window;
+    }
+}
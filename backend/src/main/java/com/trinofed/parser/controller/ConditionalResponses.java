@@ -0,0 +1,87 @@
+package com.trinofed.parser.controller;
+
+import com.trinofed.parser.service.ResponseCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+/**
+ * Answers GETs from {@link ResponseCache}: 304 when {@code If-None-Match} names the current
+ * version, otherwise the stored JSON, gzipped when the client accepts it. Clients are told
+ * to revalidate on every use, so a poll of an unchanged entity costs a header comparison.
+ */
+final class ConditionalResponses {
+
+    private ConditionalResponses() {
+    }
+
+    static ResponseEntity<byte[]> respond(ResponseCache cache, String key, long version,
+                                          String ifNoneMatch, String acceptEncoding, Supplier<?> body) {
+        return respond(cache, key, version, ifNoneMatch, acceptEncoding, new HttpHeaders(), body);
+    }
+
+    /**
+     * As above, with {@code headers} added to both the 200 and the 304.
+     */
+    static ResponseEntity<byte[]> respond(ResponseCache cache, String key, long version,
+                                          String ifNoneMatch, String acceptEncoding, HttpHeaders headers,
+                                          Supplier<?> body) {
+        String etag = cache.etag(version);
+        if (matches(ifNoneMatch, etag)) {
+            cache.recordNotModified();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .headers(headers)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        ResponseCache.Body cached = cache.get(key, version, body);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .headers(headers)
+                .eTag(cached.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (cached.gzip() != null && acceptsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(cached.gzip());
+        }
+        return response.body(cached.json());
+    }
+
+    // Weak comparison, as If-None-Match requires
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = opaqueTag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -1,10 +1,13 @@
 package com.trinofed.parser.controller;
 
+import com.trinofed.parser.model.CatalogSnapshot;
 import com.trinofed.parser.model.Database;
 import com.trinofed.parser.model.Database.Schema;
 import com.trinofed.parser.service.DatabaseCatalogService;
+import com.trinofed.parser.service.ResponseCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,56 +18,96 @@ import java.util.HashMap;
 @Slf4j
 @RestController
 @RequestMapping("/api/databases")
-@CrossOrigin(origins = "http://localhost:5173")
+@CrossOrigin(origins = "http://localhost:5173", exposedHeaders = DatabaseController.CATALOG_VERSION_HEADER)
 public class DatabaseController {
 
+    static final String CATALOG_VERSION_HEADER = "X-Catalog-Version";
+
     private final DatabaseCatalogService databaseCatalogService;
+    private final ResponseCache responseCache;
 
     @Autowired
-    public DatabaseController(DatabaseCatalogService databaseCatalogService) {
+    public DatabaseController(DatabaseCatalogService databaseCatalogService, ResponseCache responseCache) {
         this.databaseCatalogService = databaseCatalogService;
+        this.responseCache = responseCache;
     }
 
+    /**
+     * The catalogs as a list of {@link Database}, without system catalogs. The ETag changes
+     * with the catalog version, so pollers should revalidate with {@code If-None-Match}.
+     */
     @GetMapping
-    public ResponseEntity<List<Database>> getAllDatabases() {
-        log.info("Fetching all databases");
+    public ResponseEntity<byte[]> getAllDatabases(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.debug("Fetching all databases");
         try {
-            List<Database> databases = databaseCatalogService.getAllDatabases();
-            log.info("Returning {} databases", databases.size());
-            return ResponseEntity.ok(databases);
+            CatalogSnapshot snapshot = databaseCatalogService.getSnapshot();
+            return respondWithDatabases(snapshot, ifNoneMatch, acceptEncoding);
         } catch (Exception e) {
             log.error("Error fetching databases", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    /**
+     * The current catalog version and when it was published; the version changes whenever
+     * the catalog data does.
+     */
+    @GetMapping("/version")
+    public ResponseEntity<Map<String, Object>> getCatalogVersion() {
+        CatalogSnapshot snapshot = databaseCatalogService.getSnapshot();
+        Map<String, Object> version = new HashMap<>();
+        version.put("version", snapshot.getVersion());
+        version.put("publishedAt", snapshot.getPublishedAt());
+        version.put("catalogs", snapshot.getDatabases().size());
+        return ResponseEntity.ok(version);
+    }
+
     @GetMapping("/immediate")
-    public ResponseEntity<List<Database>> getDatabasesImmediate() {
-        log.info("Fetching databases with immediate refresh");
+    public ResponseEntity<byte[]> getDatabasesImmediate(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.debug("Fetching databases with immediate refresh");
         try {
-            // Force refresh and return immediately
+            // Publish pending changes first; the response is the same as the list's at that version
             databaseCatalogService.invalidateCache();
-            List<Database> databases = databaseCatalogService.getAllDatabases();
-            log.info("Returning {} databases (immediate)", databases.size());
-            return ResponseEntity.ok(databases);
+            return respondWithDatabases(databaseCatalogService.getSnapshot(), ifNoneMatch, acceptEncoding);
         } catch (Exception e) {
             log.error("Error fetching databases immediately", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    private ResponseEntity<byte[]> respondWithDatabases(CatalogSnapshot snapshot, String ifNoneMatch,
+                                                        String acceptEncoding) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(CATALOG_VERSION_HEADER, String.valueOf(snapshot.getVersion()));
+        return ConditionalResponses.respond(responseCache, ResponseCache.DATABASES_KEY, snapshot.getVersion(),
+                ifNoneMatch, acceptEncoding, headers, () -> {
+                    List<Database> databases = databaseCatalogService.getAllDatabases(snapshot);
+                    log.debug("Serialized {} databases at catalog version {}", databases.size(), snapshot.getVersion());
+                    return databases;
+                });
+    }
+
+    /**
+     * One catalog. Its ETag only changes when that catalog does.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Database> getDatabaseById(@PathVariable String id) {
-        log.info("Fetching database with id: {}", id);
+    public ResponseEntity<byte[]> getDatabaseById(@PathVariable String id,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.debug("Fetching database with id: {}", id);
         try {
-            Database database = databaseCatalogService.getDatabaseById(id);
+            CatalogSnapshot snapshot = databaseCatalogService.getSnapshot();
+            Database database = snapshot.getDatabase(id);
             
             if (database == null) {
                 log.warn("Database with id {} not found", id);
                 return ResponseEntity.notFound().build();
             }
             
-            return ResponseEntity.ok(database);
+            return ConditionalResponses.respond(responseCache, ResponseCache.databaseKey(id),
+                    snapshot.getDatabaseVersion(id), ifNoneMatch, acceptEncoding, () -> database);
         } catch (Exception e) {
             log.error("Error fetching database with id: {}", id, e);
             return ResponseEntity.internalServerError().build();
@@ -73,7 +116,7 @@ public class DatabaseController {
 
     @GetMapping("/{id}/schemas")
     public ResponseEntity<List<Schema>> getSchemas(@PathVariable String id) {
-        log.info("Fetching schemas for database: {}", id);
+        log.debug("Fetching schemas for database: {}", id);
         try {
             Database database = databaseCatalogService.getDatabaseById(id);
             
@@ -82,7 +125,7 @@ public class DatabaseController {
                 return ResponseEntity.notFound().build();
             }
             
-            List<Schema> schemas = database.getSchemas();
+            List<Schema> schemas = database.getSchemas().values();
             return ResponseEntity.ok(schemas);
         } catch (Exception e) {
             log.error("Error fetching schemas for database: {}", id, e);
@@ -0,0 +1,53 @@
+package com.trinofed.parser.controller;
+
+import com.trinofed.parser.model.FingerprintSort;
+import com.trinofed.parser.model.FingerprintStats;
+import com.trinofed.parser.service.FingerprintAggregator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/fingerprints")
+@CrossOrigin(origins = "http://localhost:5173")
+public class FingerprintController {
+
+    private static final int MAX_LIMIT = 500;
+
+    private final FingerprintAggregator fingerprintAggregator;
+
+    @Autowired
+    public FingerprintController(FingerprintAggregator fingerprintAggregator) {
+        this.fingerprintAggregator = fingerprintAggregator;
+    }
+
+    /**
+     * The most expensive query shapes. {@code sort} is one of totalWall, p95Wall, p99Wall,
+     * totalCpu, peakMemory or count; the queries of a fingerprint are listed by
+     * {@code /api/queries?fingerprint=}.
+     */
+    @GetMapping
+    public ResponseEntity<List<FingerprintStats>> getTopFingerprints(@RequestParam(defaultValue = "totalWall") String sort,
+                                                                     @RequestParam(defaultValue = "20") int limit) {
+        try {
+            FingerprintSort order = FingerprintSort.fromParam(sort);
+            return ResponseEntity.ok(fingerprintAggregator.top(order, Math.min(limit, MAX_LIMIT)));
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected fingerprint request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{fingerprint}")
+    public ResponseEntity<FingerprintStats> getFingerprint(@PathVariable String fingerprint) {
+        FingerprintStats stats = fingerprintAggregator.get(fingerprint);
+        if (stats == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -1,13 +1,29 @@
 package com.trinofed.parser.controller;
 
+import com.trinofed.parser.model.QueryFilter;
+import com.trinofed.parser.model.QueryIndexField;
+import com.trinofed.parser.model.QueryIndexMatch;
+import com.trinofed.parser.model.QueryPage;
+import com.trinofed.parser.model.QuerySearchResult;
+import com.trinofed.parser.model.QuerySort;
+import com.trinofed.parser.model.QueryStatsGroup;
 import com.trinofed.parser.model.QueryTree;
 import com.trinofed.parser.service.QueryEventService;
+import com.trinofed.parser.service.ResponseCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
 
 @Slf4j
 @RestController
@@ -16,34 +32,203 @@ import java.util.List;
 public class QueryController {
 
     private final QueryEventService queryEventService;
+    private final ResponseCache responseCache;
 
     @Autowired
-    public QueryController(QueryEventService queryEventService) {
+    public QueryController(QueryEventService queryEventService, ResponseCache responseCache) {
         this.queryEventService = queryEventService;
+        this.responseCache = responseCache;
     }
 
+    /**
+     * Query summaries, one page at a time; the full tree is at {@code /{queryId}}. Time
+     * parameters are ISO-8601 instants, {@code minExecutionTime} is in milliseconds and
+     * {@code sort} is one of startTime, duration, cpu or peakMemory. Index parameters can be
+     * repeated to match any of the values.
+     */
     @GetMapping
-    public ResponseEntity<List<QueryTree>> getAllQueries() {
-        log.info("Fetching all query trees");
-        List<QueryTree> trees = queryEventService.getAllQueryTrees();
-        return ResponseEntity.ok(trees);
+    public ResponseEntity<QueryPage> getQueries(@RequestParam(required = false) Instant from,
+                                                @RequestParam(required = false) Instant to,
+                                                @RequestParam(name = "state", required = false) List<String> states,
+                                                @RequestParam(name = "user", required = false) List<String> users,
+                                                @RequestParam(name = "catalog", required = false) List<String> catalogs,
+                                                @RequestParam(name = "schema", required = false) List<String> schemas,
+                                                @RequestParam(name = "table", required = false) List<String> tables,
+                                                @RequestParam(name = "fingerprint", required = false) List<String> fingerprints,
+                                                @RequestParam(required = false) Long minExecutionTime,
+                                                @RequestParam(defaultValue = "startTime") String sort,
+                                                @RequestParam(defaultValue = "desc") String order,
+                                                @RequestParam(defaultValue = "50") int limit,
+                                                @RequestParam(required = false) String cursor) {
+        log.debug("Fetching query page: sort={} order={} limit={} cursor={}", sort, order, limit, cursor);
+        try {
+            QueryFilter filter = QueryFilter.builder()
+                    .from(from)
+                    .to(to)
+                    .states(states)
+                    .users(users)
+                    .catalogs(catalogs)
+                    .schemas(schemas)
+                    .tables(tables)
+                    .fingerprints(fingerprints)
+                    .minExecutionTime(minExecutionTime)
+                    .sort(QuerySort.fromParam(sort))
+                    .descending(!"asc".equalsIgnoreCase(order))
+                    .limit(limit)
+                    .cursor(cursor)
+                    .build();
+            return ResponseEntity.ok(queryEventService.getQueryPage(filter));
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected query page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Queries whose SQL text matches every term of {@code q}, best match first. Terms match
+     * whole identifiers, or parts of them from three characters on ({@code order} finds
+     * {@code orders}). Takes the same filters as the query list.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<QuerySearchResult> searchQueries(@RequestParam String q,
+                                                           @RequestParam(required = false) Instant from,
+                                                           @RequestParam(required = false) Instant to,
+                                                           @RequestParam(name = "state", required = false) List<String> states,
+                                                           @RequestParam(name = "user", required = false) List<String> users,
+                                                           @RequestParam(name = "catalog", required = false) List<String> catalogs,
+                                                           @RequestParam(name = "schema", required = false) List<String> schemas,
+                                                           @RequestParam(name = "table", required = false) List<String> tables,
+                                                           @RequestParam(name = "fingerprint", required = false) List<String> fingerprints,
+                                                           @RequestParam(required = false) Long minExecutionTime,
+                                                           @RequestParam(defaultValue = "50") int limit,
+                                                           @RequestParam(required = false) String cursor) {
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            QueryFilter filter = QueryFilter.builder()
+                    .from(from)
+                    .to(to)
+                    .states(states)
+                    .users(users)
+                    .catalogs(catalogs)
+                    .schemas(schemas)
+                    .tables(tables)
+                    .fingerprints(fingerprints)
+                    .minExecutionTime(minExecutionTime)
+                    .limit(limit)
+                    .cursor(cursor)
+                    .build();
+            return ResponseEntity.ok(queryEventService.searchQueries(q, filter));
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected query search request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
 
+    /**
+     * Ids of the queries matching all given index fields, each field matching any of its
+     * values: {@code ?catalog=postgresql&state=FAILED&user=etl}.
+     */
+    @GetMapping("/index/match")
+    public ResponseEntity<QueryIndexMatch> matchQueries(@RequestParam MultiValueMap<String, String> params) {
+        try {
+            Map<QueryIndexField, List<String>> criteria = new EnumMap<>(QueryIndexField.class);
+            int limit = 1000;
+            for (Map.Entry<String, List<String>> param : params.entrySet()) {
+                if ("limit".equals(param.getKey())) {
+                    limit = Math.max(0, Integer.parseInt(param.getValue().get(0)));
+                } else {
+                    criteria.put(QueryIndexField.fromParam(param.getKey()), param.getValue());
+                }
+            }
+            return ResponseEntity.ok(queryEventService.matchQueries(criteria, limit));
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected index match request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Every indexed value of a field (catalog, schema, table, user, state or fingerprint) with
+     * its number of queries.
+     */
+    @GetMapping("/index/{field}")
+    public ResponseEntity<Map<String, Integer>> getIndexCounts(@PathVariable String field) {
+        try {
+            return ResponseEntity.ok(queryEventService.getIndexCounts(QueryIndexField.fromParam(field)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Count, sum, min, max and mean of each query statistic over the retained queries,
+     * grouped by {@code catalog}, {@code user} or {@code state}, or in one group when
+     * {@code groupBy} is left out. Takes the list's time range, state, user and catalog filters.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<QueryStatsGroup>> getQueryStats(@RequestParam(required = false) String groupBy,
+                                                               @RequestParam(required = false) Instant from,
+                                                               @RequestParam(required = false) Instant to,
+                                                               @RequestParam(name = "state", required = false) List<String> states,
+                                                               @RequestParam(name = "user", required = false) List<String> users,
+                                                               @RequestParam(name = "catalog", required = false) List<String> catalogs) {
+        try {
+            QueryFilter filter = QueryFilter.builder()
+                    .from(from)
+                    .to(to)
+                    .states(states)
+                    .users(users)
+                    .catalogs(catalogs)
+                    .build();
+            QueryIndexField field = groupBy != null ? QueryIndexField.fromParam(groupBy) : null;
+            return ResponseEntity.ok(queryEventService.getQueryStats(field, filter));
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected query stats request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * The query's full tree, as a {@link QueryTree}. Revalidate with {@code If-None-Match}:
+     * the ETag changes with the tree's revision, so it also changes when the query was
+     * evicted and has come back.
+     */
     @GetMapping("/{queryId}")
-    public ResponseEntity<QueryTree> getQueryById(@PathVariable String queryId) {
-        log.info("Fetching query tree for queryId: {}", queryId);
-        QueryTree tree = queryEventService.getQueryTree(queryId);
+    public ResponseEntity<byte[]> getQueryById(@PathVariable String queryId,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.debug("Fetching query tree for queryId: {}", queryId);
+        Long revision = queryEventService.getQueryRevision(queryId);
+        if (revision == null) {
+            return ResponseEntity.notFound().build();
+        }
 
-        if (tree == null) {
+        // The tree is only built on a cache miss; a revalidation compares the revision alone.
+        // A tree built later may be newer than the revision, never older.
+        try {
+            return ConditionalResponses.respond(responseCache, ResponseCache.queryKey(queryId), revision,
+                    ifNoneMatch, acceptEncoding,
+                    () -> Optional.ofNullable(queryEventService.getQueryTree(queryId)).orElseThrow());
+        } catch (NoSuchElementException e) {
+            // Evicted since the revision was read
             return ResponseEntity.notFound().build();
         }
+    }
 
-        return ResponseEntity.ok(tree);
+    /**
+     * Plan text of the query's latest event that carries one; not included in WebSocket deltas.
+     */
+    @GetMapping(value = "/{queryId}/plan", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> getQueryPlan(@PathVariable String queryId) {
+        String plan = queryEventService.getQueryPlan(queryId);
+        return plan != null ? ResponseEntity.ok(plan) : ResponseEntity.notFound().build();
     }
 
     @GetMapping("/ids")
     public ResponseEntity<List<String>> getAllQueryIds() {
-        log.info("Fetching all query IDs");
+        log.debug("Fetching all query IDs");
         List<String> queryIds = queryEventService.getAllQueryIds();
         return ResponseEntity.ok(queryIds);
     }
@@ -0,0 +1,41 @@
+package com.trinofed.parser.controller;
+
+import com.trinofed.parser.model.QueryTree;
+import com.trinofed.parser.service.QueryEventService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.List;
+
+/**
+ * Full snapshots for WebSocket clients. A client subscribes here once to get the current
+ * tree(s), with their versions, and then applies the deltas from
+ * {@link QueryEventService#QUERY_UPDATES_TOPIC}. When a delta's {@code baseVersion} does not
+ * match its copy, it subscribes again (or uses {@code GET /api/queries/{queryId}}) to resync.
+ */
+@Slf4j
+@Controller
+public class QueryStreamController {
+
+    private final QueryEventService queryEventService;
+
+    @Autowired
+    public QueryStreamController(QueryEventService queryEventService) {
+        this.queryEventService = queryEventService;
+    }
+
+    @SubscribeMapping("/queries")
+    public List<QueryTree> subscribeAllQueries() {
+        log.debug("Sending snapshot of all query trees");
+        return queryEventService.getAllQueryTrees();
+    }
+
+    @SubscribeMapping("/queries/{queryId}")
+    public QueryTree subscribeQuery(@DestinationVariable String queryId) {
+        log.debug("Sending snapshot for queryId: {}", queryId);
+        return queryEventService.getQueryTree(queryId);
+    }
+}
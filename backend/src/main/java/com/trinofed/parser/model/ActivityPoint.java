@@ -0,0 +1,37 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One bucket of an {@link ActivityStats} series.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityPoint {
+
+    @JsonProperty("start")
+    private Instant start;
+
+    @JsonProperty("queries")
+    private long queries;
+
+    @JsonProperty("failedQueries")
+    private long failedQueries;
+
+    @JsonProperty("bytesRead")
+    private long bytesRead;
+
+    @JsonProperty("rowsRead")
+    private long rowsRead;
+
+    @JsonProperty("meanLatencyMs")
+    private double meanLatencyMs;
+}
@@ -0,0 +1,51 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Load on one catalog or table over a recent time range: queries completed in it that read
+ * from the source, what they read and how long they took. The range is rounded out to whole
+ * buckets. {@code series} has one point per bucket when requested.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ActivityStats {
+
+    @JsonProperty("key")
+    private String key;
+
+    @JsonProperty("from")
+    private Instant from;
+
+    @JsonProperty("to")
+    private Instant to;
+
+    @JsonProperty("queries")
+    private long queries;
+
+    @JsonProperty("failedQueries")
+    private long failedQueries;
+
+    @JsonProperty("bytesRead")
+    private long bytesRead;
+
+    @JsonProperty("rowsRead")
+    private long rowsRead;
+
+    @JsonProperty("latencyMs")
+    private Distribution latencyMs;
+
+    @JsonProperty("series")
+    private List<ActivityPoint> series;
+}
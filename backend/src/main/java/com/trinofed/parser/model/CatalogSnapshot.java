@@ -0,0 +1,43 @@
+package com.trinofed.parser.model;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A published, read-only copy of the discovered catalogs. Each publish that includes a
+ * change gets the next version, so two snapshots with the same version hold the same data.
+ *
+ * The databases and everything under them are copies made for the snapshot. They must not
+ * be modified: unchanged schemas and tables are shared with later snapshots.
+ */
+@Value
+public class CatalogSnapshot {
+
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, null, List.of(), Map.of(), Map.of());
+
+    long version;
+    Instant publishedAt;
+
+    // In the order the catalogs were discovered
+    List<Database> databases;
+    Map<String, Database> databasesById;
+
+    // Version of the snapshot each catalog last changed in
+    Map<String, Long> databaseVersions;
+
+    public Database getDatabase(String id) {
+        return id != null ? databasesById.get(id) : null;
+    }
+
+    /**
+     * The version at which the catalog last changed, or 0 if it isn't in the snapshot. Two
+     * snapshots with the same version for a catalog hold the same copy of it.
+     */
+    public long getDatabaseVersion(String id) {
+        Long version = id != null ? databaseVersions.get(id) : null;
+        return version != null ? version : 0;
+    }
+}
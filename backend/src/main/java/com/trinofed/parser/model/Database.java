@@ -7,10 +7,14 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
+/**
+ * A catalog discovered from query events. Schemas, tables, columns, collections and fields
+ * are kept in {@link NameIndex}es: looked up by name in constant time, listed in the order
+ * they were discovered. Each catalog, schema, collection and table counts the distinct
+ * queries that used it in a {@link QueryCounter}.
+ */
 @Data
 @Builder
 @NoArgsConstructor
@@ -37,11 +41,11 @@ public class Database {
 
     @JsonProperty("schemas")
     @Builder.Default
-    private List<Schema> schemas = new ArrayList<>();
+    private NameIndex<Schema> schemas = new NameIndex<>();
 
     @JsonProperty("collections")
     @Builder.Default
-    private List<Collection> collections = new ArrayList<>();
+    private NameIndex<Collection> collections = new NameIndex<>();
 
     @JsonProperty("metadata")
     private Map<String, Object> metadata;
@@ -54,20 +58,20 @@ public class Database {
 
     @JsonProperty("totalQueries")
     @Builder.Default
-    private Integer totalQueries = 0;
+    private QueryCounter totalQueries = new QueryCounter();
 
     @Data
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor
-    public static class Schema {
+    public static class Schema implements NameIndex.Named {
 
         @JsonProperty("name")
         private String name;
 
         @JsonProperty("tables")
         @Builder.Default
-        private List<Table> tables = new ArrayList<>();
+        private NameIndex<Table> tables = new NameIndex<>();
 
         @JsonProperty("metadata")
         private Map<String, Object> metadata;
@@ -80,14 +84,14 @@ public class Database {
 
         @JsonProperty("totalQueries")
         @Builder.Default
-        private Integer totalQueries = 0;
+        private QueryCounter totalQueries = new QueryCounter();
     }
 
     @Data
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor
-    public static class Collection {
+    public static class Collection implements NameIndex.Named {
 
         @JsonProperty("name")
         private String name;
@@ -100,7 +104,7 @@ public class Database {
 
         @JsonProperty("fields")
         @Builder.Default
-        private List<Field> fields = new ArrayList<>();
+        private NameIndex<Field> fields = new NameIndex<>();
 
         @JsonProperty("metadata")
         private Map<String, Object> metadata;
@@ -113,21 +117,21 @@ public class Database {
 
         @JsonProperty("totalQueries")
         @Builder.Default
-        private Integer totalQueries = 0;
+        private QueryCounter totalQueries = new QueryCounter();
     }
 
     @Data
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor
-    public static class Table {
+    public static class Table implements NameIndex.Named {
 
         @JsonProperty("name")
         private String name;
 
         @JsonProperty("columns")
         @Builder.Default
-        private List<Column> columns = new ArrayList<>();
+        private NameIndex<Column> columns = new NameIndex<>();
 
         @JsonProperty("rowCount")
         private Long rowCount;
@@ -146,14 +150,14 @@ public class Database {
 
         @JsonProperty("totalQueries")
         @Builder.Default
-        private Integer totalQueries = 0;
+        private QueryCounter totalQueries = new QueryCounter();
     }
 
     @Data
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor
-    public static class Column {
+    public static class Column implements NameIndex.Named {
 
         @JsonProperty("name")
         private String name;
@@ -175,7 +179,7 @@ public class Database {
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor
-    public static class Field {
+    public static class Field implements NameIndex.Named {
 
         @JsonProperty("name")
         private String name;
@@ -0,0 +1,36 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Percentiles of one metric over the queries that reported it. Percentiles come from a
+ * histogram with two significant digits, so they are within 1% of the exact value.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Distribution {
+
+    @JsonProperty("count")
+    private long count;
+
+    @JsonProperty("p50")
+    private long p50;
+
+    @JsonProperty("p95")
+    private long p95;
+
+    @JsonProperty("p99")
+    private long p99;
+
+    @JsonProperty("max")
+    private long max;
+
+    @JsonProperty("mean")
+    private double mean;
+}
@@ -0,0 +1,33 @@
+package com.trinofed.parser.model;
+
+import java.util.Arrays;
+
+/**
+ * Orders accepted by {@code /api/fingerprints}, by their request parameter value. All sort
+ * the most expensive first.
+ */
+public enum FingerprintSort {
+    TOTAL_WALL("totalWall"),
+    P95_WALL("p95Wall"),
+    P99_WALL("p99Wall"),
+    TOTAL_CPU("totalCpu"),
+    PEAK_MEMORY("peakMemory"),
+    COUNT("count");
+
+    private final String param;
+
+    FingerprintSort(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public static FingerprintSort fromParam(String param) {
+        return Arrays.stream(values())
+                .filter(sort -> sort.param.equalsIgnoreCase(param))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown sort: " + param));
+    }
+}
@@ -0,0 +1,59 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Aggregates over the completed queries sharing one SQL fingerprint, i.e. the same statement
+ * with different literals. Times are in milliseconds, memory in bytes.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FingerprintStats {
+
+    @JsonProperty("fingerprint")
+    private String fingerprint;
+
+    @JsonProperty("normalizedQuery")
+    private String normalizedQuery;
+
+    @JsonProperty("sampleQueryId")
+    private String sampleQueryId;
+
+    @JsonProperty("count")
+    private long count;
+
+    @JsonProperty("failedCount")
+    private long failedCount;
+
+    @JsonProperty("firstSeen")
+    private Instant firstSeen;
+
+    @JsonProperty("lastSeen")
+    private Instant lastSeen;
+
+    @JsonProperty("totalWallTimeMs")
+    private long totalWallTimeMs;
+
+    @JsonProperty("totalCpuTimeMs")
+    private long totalCpuTimeMs;
+
+    @JsonProperty("wallTimeMs")
+    private Distribution wallTimeMs;
+
+    @JsonProperty("cpuTimeMs")
+    private Distribution cpuTimeMs;
+
+    @JsonProperty("queuedTimeMs")
+    private Distribution queuedTimeMs;
+
+    @JsonProperty("peakMemoryBytes")
+    private Distribution peakMemoryBytes;
+}
@@ -0,0 +1,32 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Exact count, sum, min, max and mean of one metric over the queries that reported it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricStats {
+
+    @JsonProperty("count")
+    private long count;
+
+    @JsonProperty("sum")
+    private long sum;
+
+    @JsonProperty("min")
+    private long min;
+
+    @JsonProperty("max")
+    private long max;
+
+    @JsonProperty("mean")
+    private double mean;
+}
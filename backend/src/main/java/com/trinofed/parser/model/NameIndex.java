@@ -0,0 +1,100 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Children of a catalog node (schemas, tables, columns, ...) keyed by name, in the order
+ * they were first added. Lookups and upserts are hash lookups and safe from any thread;
+ * readers iterating {@link #values()} see a consistent prefix of the insertion order while
+ * writers add.
+ *
+ * Serialized as the JSON array of its values, so the API and snapshot formats are those of
+ * a plain list. Children can't be removed; an element without a name is not kept.
+ */
+public final class NameIndex<T extends NameIndex.Named> {
+
+    public interface Named {
+        String getName();
+    }
+
+    private final Map<String, T> byName = new ConcurrentHashMap<>();
+    private final Queue<T> ordered = new ConcurrentLinkedQueue<>();
+
+    public NameIndex() {
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public NameIndex(List<T> values) {
+        if (values != null) {
+            for (T value : values) {
+                if (value != null && value.getName() != null) {
+                    computeIfAbsent(value.getName(), name -> value);
+                }
+            }
+        }
+    }
+
+    public T get(String name) {
+        return name != null ? byName.get(name) : null;
+    }
+
+    public boolean contains(String name) {
+        return name != null && byName.containsKey(name);
+    }
+
+    /**
+     * The child with this name, created by {@code factory} if there is none yet. The factory
+     * runs at most once per name.
+     */
+    public T computeIfAbsent(String name, Function<String, T> factory) {
+        T existing = byName.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        return byName.computeIfAbsent(name, key -> {
+            T created = factory.apply(key);
+            ordered.add(created);
+            return created;
+        });
+    }
+
+    /**
+     * The children in insertion order, as a copy.
+     */
+    @JsonValue
+    public List<T> values() {
+        return new ArrayList<>(ordered);
+    }
+
+    public int size() {
+        return byName.size();
+    }
+
+    public boolean isEmpty() {
+        return byName.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof NameIndex<?> index && values().equals(index.values());
+    }
+
+    @Override
+    public int hashCode() {
+        return values().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return values().toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The number of distinct queries that used a catalog node. A query is identified by its
+ * ordinal in the query index; the ordinals already counted are bits in fixed-size pages of
+ * {@value #PAGE_SIZE} ordinals, so the many events of one query count it once.
+ *
+ * Nothing locks: a bit is set with a compare-and-set on its word, a missing page is
+ * published with {@code putIfAbsent} and the count is a {@link LongAdder}. Ordinals are
+ * handed out in increasing order and pages below the lowest one still in use are dropped
+ * with {@link #forgetBelow(int)}: the ordinals in use are the retained queries' and those
+ * of recently evicted ones, which a late event may bring back under the same ordinal. A
+ * node holds one page of 128 bytes per {@value #PAGE_SIZE} ordinals of that span at most.
+ *
+ * Serialized as the plain count. A counter read back counts on from there with no ordinals
+ * seen; the queries restored with it are marked again with {@link #markSeen(int)}.
+ */
+public final class QueryCounter {
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private final LongAdder count = new LongAdder();
+    private final Map<Integer, AtomicLongArray> pages = new ConcurrentHashMap<>();
+
+    public QueryCounter() {
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public QueryCounter(long count) {
+        this.count.add(count);
+    }
+
+    /**
+     * Counts the query unless it was counted before; true if it is new.
+     */
+    public boolean record(int queryOrdinal) {
+        if (!markSeen(queryOrdinal)) {
+            return false;
+        }
+        count.increment();
+        return true;
+    }
+
+    /**
+     * Marks the query as counted without counting it; true if it wasn't marked before.
+     */
+    public boolean markSeen(int queryOrdinal) {
+        AtomicLongArray page = pages.get(queryOrdinal >>> PAGE_SHIFT);
+        if (page == null) {
+            AtomicLongArray created = new AtomicLongArray(PAGE_SIZE / Long.SIZE);
+            page = pages.putIfAbsent(queryOrdinal >>> PAGE_SHIFT, created);
+            if (page == null) {
+                page = created;
+            }
+        }
+        int word = (queryOrdinal & (PAGE_SIZE - 1)) >>> 6;
+        long bit = 1L << (queryOrdinal & 63);
+        long current;
+        do {
+            current = page.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+        } while (!page.compareAndSet(word, current, current | bit));
+        return true;
+    }
+
+    @JsonValue
+    public long get() {
+        return count.sum();
+    }
+
+    /**
+     * Drops the pages that hold only ordinals below {@code ordinal}; the count is unchanged.
+     */
+    public void forgetBelow(int ordinal) {
+        pages.keySet().removeIf(page -> page < ordinal >>> PAGE_SHIFT);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof QueryCounter counter && get() == counter.get();
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(get());
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(get());
+    }
+}
@@ -1,19 +1,34 @@
 package com.trinofed.parser.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.Instant;
 import java.util.Map;
 
+/**
+ * A Trino query event as decoded from Kafka.
+ *
+ * Once the event is retained its plan is held as a shared {@link TextBlob}: {@link #getPlan()}
+ * decodes it, so nothing else reads the plan through the getter: {@code toString}, equals
+ * and hashCode use the fields, and only a plan not yet stored is serialized. The event log
+ * writes events as they arrive; clients read a retained query's plan from its own endpoint
+ * rather than with every tree.
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@ToString(doNotUseGetters = true)
+@EqualsAndHashCode(doNotUseGetters = true)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class QueryEvent {
 
@@ -99,8 +114,14 @@ public class QueryEvent {
     private Integer completedSplits;
 
     @JsonProperty("plan")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String plan;
 
+    // Where the plan is kept once the event is retained: compressed, and shared with every
+    // event carrying the same plan (see TextStore)
+    @JsonIgnore
+    private TextBlob storedPlan;
+
     @JsonProperty("errorCode")
     private String errorCode;
 
@@ -116,6 +137,37 @@ public class QueryEvent {
     @JsonProperty("inputs")
     private Map<String, Object> inputs;
 
+    @JsonProperty("inputTables")
+    private java.util.List<QueryInput> inputTables;
+
     @JsonProperty("metadata")
     private Map<String, Object> metadata;
+
+    /**
+     * The plan text; decompressed on each call once the plan has been stored.
+     */
+    @JsonIgnore
+    public String getPlan() {
+        return storedPlan != null ? storedPlan.text() : plan;
+    }
+
+    /**
+     * Whether the event carries a plan, without decompressing a stored one.
+     */
+    public boolean hasPlan() {
+        return storedPlan != null || plan != null;
+    }
+
+    public void setPlan(String plan) {
+        this.plan = plan;
+        this.storedPlan = null;
+    }
+
+    /**
+     * Replaces the plan text with its stored form.
+     */
+    public void storePlan(TextBlob blob) {
+        this.storedPlan = blob;
+        this.plan = null;
+    }
 }
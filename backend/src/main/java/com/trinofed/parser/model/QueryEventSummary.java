@@ -0,0 +1,100 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * An event as sent in a {@link QueryTreeDelta}: its type, time and metrics, without the
+ * plan or SQL text. The operators the plan describes are already in the delta's nodes and
+ * the SQL in its header; {@code hasPlan} tells a client the plan text can be fetched from
+ * {@code /api/queries/{queryId}/plan}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryEventSummary {
+
+    @JsonProperty("eventType")
+    private String eventType;
+
+    @JsonProperty("timestamp")
+    private Instant timestamp;
+
+    @JsonProperty("state")
+    private String state;
+
+    @JsonProperty("catalog")
+    private String catalog;
+
+    @JsonProperty("schema")
+    private String schema;
+
+    @JsonProperty("tableName")
+    private String tableName;
+
+    @JsonProperty("executionTime")
+    private Long executionTime;
+
+    @JsonProperty("cpuTimeMs")
+    private Long cpuTimeMs;
+
+    @JsonProperty("wallTimeMs")
+    private Long wallTimeMs;
+
+    @JsonProperty("queuedTimeMs")
+    private Long queuedTimeMs;
+
+    @JsonProperty("peakMemoryBytes")
+    private Long peakMemoryBytes;
+
+    @JsonProperty("totalBytes")
+    private Long totalBytes;
+
+    @JsonProperty("totalRows")
+    private Long totalRows;
+
+    @JsonProperty("completedSplits")
+    private Integer completedSplits;
+
+    @JsonProperty("errorCode")
+    private String errorCode;
+
+    @JsonProperty("errorMessage")
+    private String errorMessage;
+
+    @JsonProperty("hasPlan")
+    private boolean hasPlan;
+
+    /**
+     * The event's summary; does not decompress a stored plan.
+     */
+    public static QueryEventSummary of(QueryEvent event) {
+        return QueryEventSummary.builder()
+                .eventType(event.getEventType())
+                .timestamp(event.getTimestamp())
+                .state(event.getState())
+                .catalog(event.getCatalog())
+                .schema(event.getSchema())
+                .tableName(event.getTableName())
+                .executionTime(event.getExecutionTime())
+                .cpuTimeMs(event.getCpuTimeMs() != null ? event.getCpuTimeMs() : event.getCpuTime())
+                .wallTimeMs(event.getWallTimeMs() != null ? event.getWallTimeMs() : event.getWallTime())
+                .queuedTimeMs(event.getQueuedTimeMs() != null ? event.getQueuedTimeMs() : event.getQueuedTime())
+                .peakMemoryBytes(event.getPeakMemoryBytes())
+                .totalBytes(event.getTotalBytes())
+                .totalRows(event.getTotalRows())
+                .completedSplits(event.getCompletedSplits())
+                .errorCode(event.getErrorCode())
+                .errorMessage(event.getErrorMessage())
+                .hasPlan(event.hasPlan())
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.trinofed.parser.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Criteria for a page of {@code /api/queries}. Null or empty fields don't filter. The time
+ * range applies to the query's start time, {@code from} inclusive and {@code to} exclusive.
+ * Index fields match any of their values and all given fields must match, so
+ * {@code catalogs=[a, b], states=[FAILED]} is "(catalog a OR b) AND state FAILED". Schemas and
+ * tables are qualified ({@code catalog.schema}, {@code catalog.schema.table}).
+ */
+@Data
+@Builder
+public class QueryFilter {
+
+    private Instant from;
+
+    private Instant to;
+
+    @Builder.Default
+    private List<String> states = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> users = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> catalogs = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> schemas = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> tables = new ArrayList<>();
+
+    @Builder.Default
+    private List<String> fingerprints = new ArrayList<>();
+
+    private Long minExecutionTime;
+
+    @Builder.Default
+    private QuerySort sort = QuerySort.START_TIME;
+
+    @Builder.Default
+    private boolean descending = true;
+
+    @Builder.Default
+    private int limit = 50;
+
+    private String cursor;
+
+    /**
+     * The index criteria of this filter, leaving out fields with no values.
+     */
+    public Map<QueryIndexField, List<String>> indexCriteria() {
+        Map<QueryIndexField, List<String>> criteria = new EnumMap<>(QueryIndexField.class);
+        putIfPresent(criteria, QueryIndexField.CATALOG, catalogs);
+        putIfPresent(criteria, QueryIndexField.SCHEMA, schemas);
+        putIfPresent(criteria, QueryIndexField.TABLE, tables);
+        putIfPresent(criteria, QueryIndexField.USER, users);
+        putIfPresent(criteria, QueryIndexField.STATE, states);
+        putIfPresent(criteria, QueryIndexField.FINGERPRINT, fingerprints);
+        return criteria;
+    }
+
+    private static void putIfPresent(Map<QueryIndexField, List<String>> criteria, QueryIndexField field,
+                                     List<String> values) {
+        if (values != null && !values.isEmpty()) {
+            criteria.put(field, values);
+        }
+    }
+}
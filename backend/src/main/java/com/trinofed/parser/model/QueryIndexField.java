@@ -0,0 +1,34 @@
+package com.trinofed.parser.model;
+
+import java.util.Arrays;
+
+/**
+ * Fields queries are indexed by, by their request parameter value. Catalog, schema and
+ * table collect every value a query's events mention; user and state hold the latest.
+ * Fingerprint is the hash of the query's normalized SQL.
+ */
+public enum QueryIndexField {
+    CATALOG("catalog"),
+    SCHEMA("schema"),
+    TABLE("table"),
+    USER("user"),
+    STATE("state"),
+    FINGERPRINT("fingerprint");
+
+    private final String param;
+
+    QueryIndexField(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public static QueryIndexField fromParam(String param) {
+        return Arrays.stream(values())
+                .filter(field -> field.param.equalsIgnoreCase(param))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown index field: " + param));
+    }
+}
@@ -0,0 +1,27 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of an index lookup: how many queries match and (up to the requested limit) their ids.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryIndexMatch {
+
+    @JsonProperty("count")
+    private long count;
+
+    @JsonProperty("queryIds")
+    @Builder.Default
+    private List<String> queryIds = new ArrayList<>();
+}
@@ -0,0 +1,56 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One table read by a query, taken from the ioMetadata inputs of a Trino event.
+ * Typed replacement for the nested maps previously carried in {@link QueryEvent#getInputs()}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class QueryInput {
+
+    @JsonProperty("catalogName")
+    private String catalogName;
+
+    @JsonProperty("connectorName")
+    private String connectorName;
+
+    @JsonProperty("schema")
+    private String schema;
+
+    @JsonProperty("table")
+    private String table;
+
+    @JsonProperty("columns")
+    private List<Column> columns;
+
+    @JsonProperty("physicalInputBytes")
+    private Long physicalInputBytes;
+
+    @JsonProperty("physicalInputRows")
+    private Long physicalInputRows;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Column {
+
+        @JsonProperty("name")
+        private String name;
+
+        @JsonProperty("type")
+        private String type;
+    }
+}
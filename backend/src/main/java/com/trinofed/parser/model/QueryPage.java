@@ -0,0 +1,28 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of {@code /api/queries}. Pass {@code nextCursor} back as {@code cursor} with the
+ * same filters and sort to get the next page; it is null on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryPage {
+
+    @JsonProperty("items")
+    @Builder.Default
+    private List<QuerySummary> items = new ArrayList<>();
+
+    @JsonProperty("nextCursor")
+    private String nextCursor;
+}
@@ -0,0 +1,129 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A Trino distributed plan as parsed from the text in {@link QueryEvent#getPlan()}: the plan
+ * fragments, each with its tree of operators. Remote sources name the fragments they read
+ * from, which links the fragment trees into one.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryPlan {
+
+    @JsonProperty("fragments")
+    @Builder.Default
+    private List<Fragment> fragments = new ArrayList<>();
+
+    public Fragment getFragment(int id) {
+        for (Fragment fragment : fragments) {
+            if (fragment.getId() == id) {
+                return fragment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Every distinct table scanned anywhere in the plan, in plan order.
+     */
+    public Set<TableHandle> tables() {
+        Set<TableHandle> tables = new LinkedHashSet<>();
+        Deque<Operator> pending = new ArrayDeque<>();
+        for (int i = fragments.size() - 1; i >= 0; i--) {
+            if (fragments.get(i).getRoot() != null) {
+                pending.push(fragments.get(i).getRoot());
+            }
+        }
+        while (!pending.isEmpty()) {
+            Operator operator = pending.pop();
+            if (operator.getTable() != null) {
+                tables.add(operator.getTable());
+            }
+            for (int i = operator.getChildren().size() - 1; i >= 0; i--) {
+                pending.push(operator.getChildren().get(i));
+            }
+        }
+        return tables;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Fragment {
+
+        @JsonProperty("id")
+        private int id;
+
+        @JsonProperty("partitioning")
+        private String partitioning;
+
+        @JsonProperty("root")
+        private Operator root;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operator {
+
+        @JsonProperty("name")
+        private String name;
+
+        // The bracketed arguments, shortened for very long predicates
+        @JsonProperty("arguments")
+        private String arguments;
+
+        @JsonProperty("table")
+        private TableHandle table;
+
+        @JsonProperty("sourceFragmentIds")
+        @Builder.Default
+        private List<Integer> sourceFragmentIds = new ArrayList<>();
+
+        @JsonProperty("outputRows")
+        private Long outputRows;
+
+        @JsonProperty("outputBytes")
+        private Long outputBytes;
+
+        @JsonProperty("children")
+        @Builder.Default
+        private List<Operator> children = new ArrayList<>();
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TableHandle {
+
+        @JsonProperty("catalog")
+        private String catalog;
+
+        @JsonProperty("schema")
+        private String schema;
+
+        @JsonProperty("table")
+        private String table;
+
+        public String qualifiedName() {
+            return catalog + (schema != null ? "." + schema : "") + (table != null ? "." + table : "");
+        }
+    }
+}
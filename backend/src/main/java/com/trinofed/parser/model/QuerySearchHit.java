@@ -0,0 +1,20 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuerySearchHit {
+
+    @JsonProperty("summary")
+    private QuerySummary summary;
+
+    @JsonProperty("score")
+    private double score;
+}
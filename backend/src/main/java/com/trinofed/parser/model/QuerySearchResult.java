@@ -0,0 +1,32 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of {@code /api/queries/search}, best match first. {@code total} counts every
+ * match of the search and filters; pass {@code nextCursor} back as {@code cursor} for the
+ * next page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuerySearchResult {
+
+    @JsonProperty("items")
+    @Builder.Default
+    private List<QuerySearchHit> items = new ArrayList<>();
+
+    @JsonProperty("total")
+    private int total;
+
+    @JsonProperty("nextCursor")
+    private String nextCursor;
+}
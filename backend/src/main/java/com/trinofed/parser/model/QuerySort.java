@@ -0,0 +1,30 @@
+package com.trinofed.parser.model;
+
+import java.util.Arrays;
+
+/**
+ * Orders accepted by {@code /api/queries}, by their request parameter value.
+ */
+public enum QuerySort {
+    START_TIME("startTime"),
+    DURATION("duration"),
+    CPU("cpu"),
+    PEAK_MEMORY("peakMemory");
+
+    private final String param;
+
+    QuerySort(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public static QuerySort fromParam(String param) {
+        return Arrays.stream(values())
+                .filter(sort -> sort.param.equalsIgnoreCase(param))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown sort: " + param));
+    }
+}
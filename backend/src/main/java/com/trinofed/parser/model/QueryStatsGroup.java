@@ -0,0 +1,31 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Statistics of the retained queries sharing one catalog, user or state ({@code key} is
+ * null for queries without one, and for the single group of an ungrouped request). Metrics
+ * are keyed by name: {@code cpuTimeMs}, {@code wallTimeMs}, {@code queuedTimeMs},
+ * {@code peakMemoryBytes}, {@code totalBytes}, {@code totalRows} and {@code completedSplits}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryStatsGroup {
+
+    @JsonProperty("key")
+    private String key;
+
+    @JsonProperty("queries")
+    private long queries;
+
+    @JsonProperty("metrics")
+    private Map<String, MetricStats> metrics;
+}
@@ -0,0 +1,59 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * The list view of a query: its header fields and headline metrics, without the node tree
+ * or events. The full tree is fetched by id.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuerySummary {
+
+    @JsonProperty("queryId")
+    private String queryId;
+
+    @JsonProperty("version")
+    private long version;
+
+    @JsonProperty("query")
+    private String query;
+
+    @JsonProperty("fingerprint")
+    private String fingerprint;
+
+    @JsonProperty("user")
+    private String user;
+
+    @JsonProperty("state")
+    private String state;
+
+    @JsonProperty("startTime")
+    private Instant startTime;
+
+    @JsonProperty("endTime")
+    private Instant endTime;
+
+    @JsonProperty("totalExecutionTime")
+    private Long totalExecutionTime;
+
+    @JsonProperty("cpuTimeMs")
+    private Long cpuTimeMs;
+
+    @JsonProperty("peakMemoryBytes")
+    private Long peakMemoryBytes;
+
+    @JsonProperty("errorMessage")
+    private String errorMessage;
+
+    @JsonProperty("eventCount")
+    private int eventCount;
+}
@@ -1,5 +1,6 @@
 package com.trinofed.parser.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -19,6 +20,13 @@ public class QueryTree {
     @JsonProperty("queryId")
     private String queryId;
 
+    @JsonProperty("version")
+    private long version;
+
+    // Never repeated for the query id, even across evictions; what responses are tagged with
+    @JsonIgnore
+    private long revision;
+
     @JsonProperty("query")
     private String query;
 
@@ -0,0 +1,71 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Patch that moves a client's copy of a {@link QueryTree} from {@code baseVersion} to
+ * {@code version}. Header fields are only present when they changed, {@code nodes} holds
+ * the nodes that were added or replaced (addressed by their stable id, with their operator
+ * subtree), and {@code events} summarizes only the events received since {@code baseVersion}
+ * (see {@link QueryEventSummary}; plan and SQL text are left out).
+ *
+ * A client whose version is not {@code baseVersion} has missed a patch and should fetch
+ * a full snapshot again.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryTreeDelta {
+
+    @JsonProperty("queryId")
+    private String queryId;
+
+    @JsonProperty("baseVersion")
+    private long baseVersion;
+
+    @JsonProperty("version")
+    private long version;
+
+    @JsonProperty("query")
+    private String query;
+
+    @JsonProperty("user")
+    private String user;
+
+    @JsonProperty("state")
+    private String state;
+
+    @JsonProperty("startTime")
+    private Instant startTime;
+
+    @JsonProperty("endTime")
+    private Instant endTime;
+
+    @JsonProperty("totalExecutionTime")
+    private Long totalExecutionTime;
+
+    @JsonProperty("errorMessage")
+    private String errorMessage;
+
+    @JsonProperty("rootId")
+    private String rootId;
+
+    @JsonProperty("nodes")
+    @Builder.Default
+    private List<QueryTreeNode> nodes = new ArrayList<>();
+
+    @JsonProperty("events")
+    @Builder.Default
+    private List<QueryEventSummary> events = new ArrayList<>();
+}
@@ -0,0 +1,84 @@
+package com.trinofed.parser.model;
+
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A text held LZ4-compressed (or as plain UTF-8 when compressing didn't pay off), decoded
+ * only when {@link #text()} is called. Blobs are made by {@code TextStore}, which hands out
+ * one instance per distinct content. Compression is deterministic, so blobs are compared by
+ * their stored bytes without decoding them.
+ */
+public final class TextBlob {
+
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    private final byte[] data;
+    private final int length;
+    private final boolean compressed;
+
+    /**
+     * @param data     the text's UTF-8 bytes, LZ4-compressed if {@code compressed}
+     * @param length   length of the UTF-8 bytes
+     */
+    public TextBlob(byte[] data, int length, boolean compressed) {
+        this.data = data;
+        this.length = length;
+        this.compressed = compressed;
+    }
+
+    public String text() {
+        return new String(utf8(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The text's UTF-8 bytes; the stored array itself when it isn't compressed.
+     */
+    public byte[] utf8() {
+        return compressed ? DECOMPRESSOR.decompress(data, length) : data;
+    }
+
+    /**
+     * The stored bytes as they are, for writing the blob out. Not copied: must not be modified.
+     */
+    public byte[] data() {
+        return data;
+    }
+
+    public boolean compressed() {
+        return compressed;
+    }
+
+    /**
+     * Length of the text in UTF-8 bytes.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Heap held by the blob.
+     */
+    public long storedBytes() {
+        return 32 + data.length;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof TextBlob blob && length == blob.length
+                && compressed == blob.compressed && Arrays.equals(data, blob.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * length + Arrays.hashCode(data);
+    }
+
+    @Override
+    public String toString() {
+        return "TextBlob(" + length + " bytes, " + data.length + " stored)";
+    }
+}
@@ -275,32 +275,27 @@ public class TrinoEventWrapper {
             }
         }
 
-        // Build inputs metadata for processing
-        java.util.Map<String, Object> inputsMap = new java.util.HashMap<>();
+        // Typed copy of the inputs for database discovery
+        java.util.List<QueryInput> inputTables = new java.util.ArrayList<>();
         if (ioMeta != null && ioMeta.getInputs() != null) {
-            java.util.List<java.util.Map<String, Object>> inputsList = new java.util.ArrayList<>();
             for (InputMetadata input : ioMeta.getInputs()) {
-                java.util.Map<String, Object> inputMap = new java.util.HashMap<>();
-                inputMap.put("catalogName", input.getCatalogName());
-                inputMap.put("connectorName", input.getConnectorName());
-                inputMap.put("schema", input.getSchema());
-                inputMap.put("table", input.getTable());
-                
-                // Convert column objects to map format for processing
+                java.util.List<QueryInput.Column> columns = null;
                 if (input.getColumns() != null) {
-                    java.util.List<java.util.Map<String, Object>> columnsList = new java.util.ArrayList<>();
+                    columns = new java.util.ArrayList<>(input.getColumns().size());
                     for (ColumnInfo col : input.getColumns()) {
-                        java.util.Map<String, Object> colMap = new java.util.HashMap<>();
-                        colMap.put("name", col.getName());
-                        colMap.put("type", col.getType());
-                        columnsList.add(colMap);
+                        columns.add(new QueryInput.Column(col.getName(), col.getType()));
                     }
-                    inputMap.put("columns", columnsList);
                 }
-                
-                inputsList.add(inputMap);
+                inputTables.add(QueryInput.builder()
+                        .catalogName(input.getCatalogName())
+                        .connectorName(input.getConnectorName())
+                        .schema(input.getSchema())
+                        .table(input.getTable())
+                        .columns(columns)
+                        .physicalInputBytes(input.getPhysicalInputBytes())
+                        .physicalInputRows(input.getPhysicalInputRows())
+                        .build());
             }
-            inputsMap.put("inputs", inputsList);
         }
 
         return QueryEvent.builder()
@@ -326,7 +321,7 @@ public class TrinoEventWrapper {
                 .catalogs(catalogs)
                 .schemas(schemas)
                 .tables(tables)
-                .inputs(inputsMap)
+                .inputTables(inputTables)
                 .ioMetadata(ioMeta)
                 .build();
     }
@@ -334,7 +329,7 @@ public class TrinoEventWrapper {
     /**
      * Parse duration string like "1.23s" or "123.45ms" to milliseconds
      */
-    private Long parseDuration(String duration) {
+    public static Long parseDuration(String duration) {
         if (duration == null || duration.isEmpty()) {
             return null;
         }
@@ -355,7 +350,7 @@ public class TrinoEventWrapper {
     /**
      * Determine event type from query state
      */
-    private String determineEventType(String queryState) {
+    public static String determineEventType(String queryState) {
         if (queryState == null) {
             return "UNKNOWN";
         }
@@ -0,0 +1,169 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.CatalogSnapshot;
+import com.trinofed.parser.model.Database;
+import com.trinofed.parser.model.Database.Schema;
+import com.trinofed.parser.model.Database.Table;
+import com.trinofed.parser.model.QueryCounter;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds each {@link CatalogSnapshot} from the previous one and the live catalogs of
+ * {@link DatabaseService}: only the catalogs, schemas, tables and collections named by a
+ * {@link Change} are copied; everything else is the previous snapshot's copy, reused.
+ *
+ * Columns and fields are never modified once added, so copied tables and collections share
+ * them with the live model. A catalog that was replaced by a different object (added over
+ * or restored) is copied in full.
+ */
+final class CatalogPublisher {
+
+    /**
+     * A catalog node that changed: a catalog ({@code schema} and {@code table} null), a
+     * schema ({@code table} null), a table, or a Mongo collection ({@code schema} null,
+     * {@code table} the collection). Marked after the change is made, so a publish that
+     * sees the mark also sees the change.
+     */
+    record Change(String database, String schema, String table) {
+    }
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+
+    // Live catalog each published copy was made from
+    private final Map<String, Database> sources = new HashMap<>();
+
+    CatalogSnapshot current() {
+        return snapshot;
+    }
+
+    synchronized CatalogSnapshot publish(Collection<Change> changes, Map<String, Database> live) {
+        if (changes.isEmpty()) {
+            return snapshot;
+        }
+        Map<String, Set<Change>> changesByDatabase = new LinkedHashMap<>();
+        for (Change change : changes) {
+            changesByDatabase.computeIfAbsent(change.database(), id -> new HashSet<>()).add(change);
+        }
+
+        CatalogSnapshot previous = snapshot;
+        long version = previous.getVersion() + 1;
+        Map<String, Database> next = new LinkedHashMap<>(previous.getDatabasesById());
+        Map<String, Long> versions = new HashMap<>(previous.getDatabaseVersions());
+        changesByDatabase.forEach((id, databaseChanges) -> {
+            Database source = live.get(id);
+            if (source == null) {
+                next.remove(id);
+                versions.remove(id);
+                sources.remove(id);
+                return;
+            }
+            Database prior = sources.get(id) == source ? previous.getDatabase(id) : null;
+            next.put(id, copyDatabase(source, prior, databaseChanges));
+            versions.put(id, version);
+            sources.put(id, source);
+        });
+
+        CatalogSnapshot published = new CatalogSnapshot(version, Instant.now(), List.copyOf(next.values()),
+                Collections.unmodifiableMap(next), Collections.unmodifiableMap(versions));
+        snapshot = published;
+        return published;
+    }
+
+    private static Database copyDatabase(Database source, Database prior, Set<Change> changes) {
+        Database copy = Database.builder()
+                .id(source.getId())
+                .name(source.getName())
+                .type(source.getType())
+                .host(source.getHost())
+                .port(source.getPort())
+                .status(source.getStatus())
+                .metadata(copyOf(source.getMetadata()))
+                .firstSeen(source.getFirstSeen())
+                .lastSeen(source.getLastSeen())
+                .totalQueries(new QueryCounter(source.getTotalQueries().get()))
+                .build();
+
+        for (Database.Collection collection : source.getCollections().values()) {
+            Database.Collection previous = prior != null ? prior.getCollections().get(collection.getName()) : null;
+            boolean changed = previous == null
+                    || changes.contains(new Change(source.getId(), null, collection.getName()));
+            copy.getCollections().computeIfAbsent(collection.getName(),
+                    name -> changed ? copyCollection(collection) : previous);
+        }
+        Set<String> changedSchemas = new HashSet<>();
+        for (Change change : changes) {
+            if (change.schema() != null) {
+                changedSchemas.add(change.schema());
+            }
+        }
+        for (Schema schema : source.getSchemas().values()) {
+            Schema previous = prior != null ? prior.getSchemas().get(schema.getName()) : null;
+            boolean changed = previous == null || changedSchemas.contains(schema.getName());
+            copy.getSchemas().computeIfAbsent(schema.getName(),
+                    name -> changed ? copySchema(source.getId(), schema, previous, changes) : previous);
+        }
+        return copy;
+    }
+
+    private static Schema copySchema(String databaseId, Schema source, Schema prior, Set<Change> changes) {
+        Schema copy = Schema.builder()
+                .name(source.getName())
+                .metadata(copyOf(source.getMetadata()))
+                .firstSeen(source.getFirstSeen())
+                .lastSeen(source.getLastSeen())
+                .totalQueries(new QueryCounter(source.getTotalQueries().get()))
+                .build();
+        for (Table table : source.getTables().values()) {
+            Table previous = prior != null ? prior.getTables().get(table.getName()) : null;
+            boolean changed = previous == null
+                    || changes.contains(new Change(databaseId, source.getName(), table.getName()));
+            copy.getTables().computeIfAbsent(table.getName(), name -> changed ? copyTable(table) : previous);
+        }
+        return copy;
+    }
+
+    private static Table copyTable(Table source) {
+        Table copy = Table.builder()
+                .name(source.getName())
+                .rowCount(source.getRowCount())
+                .sizeBytes(source.getSizeBytes())
+                .metadata(copyOf(source.getMetadata()))
+                .firstSeen(source.getFirstSeen())
+                .lastSeen(source.getLastSeen())
+                .totalQueries(new QueryCounter(source.getTotalQueries().get()))
+                .build();
+        for (Database.Column column : source.getColumns().values()) {
+            copy.getColumns().computeIfAbsent(column.getName(), name -> column);
+        }
+        return copy;
+    }
+
+    private static Database.Collection copyCollection(Database.Collection source) {
+        Database.Collection copy = Database.Collection.builder()
+                .name(source.getName())
+                .documentCount(source.getDocumentCount())
+                .sizeBytes(source.getSizeBytes())
+                .metadata(copyOf(source.getMetadata()))
+                .firstSeen(source.getFirstSeen())
+                .lastSeen(source.getLastSeen())
+                .totalQueries(new QueryCounter(source.getTotalQueries().get()))
+                .build();
+        for (Database.Field field : source.getFields().values()) {
+            copy.getFields().computeIfAbsent(field.getName(), name -> field);
+        }
+        return copy;
+    }
+
+    private static Map<String, Object> copyOf(Map<String, Object> metadata) {
+        return metadata != null ? Collections.unmodifiableMap(new LinkedHashMap<>(metadata)) : null;
+    }
+}
@@ -1,11 +1,16 @@
 package com.trinofed.parser.service;
 
+import com.trinofed.parser.model.CatalogSnapshot;
 import com.trinofed.parser.model.Database;
 import com.trinofed.parser.model.Database.Schema;
 import com.trinofed.parser.model.Database.Table;
 import com.trinofed.parser.model.Database.Column;
 import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryInput;
+import com.trinofed.parser.model.QueryPlan;
+import com.trinofed.parser.service.CatalogPublisher.Change;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -20,14 +25,84 @@ public class DatabaseService {
     private final Map<String, Database> databases = new ConcurrentHashMap<>();
     private final Map<String, Integer> queryCountsByDatabase = new ConcurrentHashMap<>();
 
-    public void processEvent(QueryEvent event) {
+    // Catalog nodes changed since the last publish, and the published read-only copy
+    private final Set<Change> changes = ConcurrentHashMap.newKeySet();
+    private final CatalogPublisher publisher = new CatalogPublisher();
+    private final ResponseCache responseCache;
+
+    @Autowired
+    public DatabaseService(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Registers the catalogs, schemas and tables the event names. {@code plan} is the event's
+     * parsed plan, or null; {@code queryOrdinal} identifies the query (see
+     * {@link QueryIndex#ordinal}) so that each node counts it once however many of its events
+     * name the node.
+     */
+    public void processEvent(QueryEvent event, QueryPlan plan, int queryOrdinal) {
         if (event == null || event.getQueryId() == null) {
             return;
         }
+        forEachInput(event, plan, (catalogName, schemaName, tableName, columns) ->
+                registerInput(catalogName, schemaName, tableName, columns, event.getTimestamp(), queryOrdinal));
+    }
+
+    /**
+     * Marks the query as already counted by the existing catalog nodes the event names,
+     * without counting it or changing the nodes. For events restored from a state snapshot:
+     * the restored counts include their queries, which get new ordinals in this process, so
+     * without this their next events would count them again.
+     */
+    public void markQuerySeen(QueryEvent event, QueryPlan plan, int queryOrdinal) {
+        if (event == null || event.getQueryId() == null) {
+            return;
+        }
+        forEachInput(event, plan, (catalogName, schemaName, tableName, columns) -> {
+            Database database = catalogName != null ? databases.get(catalogName) : null;
+            if (database == null) {
+                return;
+            }
+            database.getTotalQueries().markSeen(queryOrdinal);
+            if ("mongodb".equals(database.getType())) {
+                String collectionName = mongoCollectionName(schemaName, tableName);
+                Database.Collection collection = collectionName != null
+                        ? database.getCollections().get(collectionName) : null;
+                if (collection != null) {
+                    collection.getTotalQueries().markSeen(queryOrdinal);
+                }
+            } else if (schemaName != null) {
+                Schema schema = database.getSchemas().get(schemaName);
+                if (schema != null) {
+                    schema.getTotalQueries().markSeen(queryOrdinal);
+                    Table table = tableName != null ? schema.getTables().get(tableName) : null;
+                    if (table != null) {
+                        table.getTotalQueries().markSeen(queryOrdinal);
+                    }
+                }
+            }
+        });
+    }
+
+    // A catalog, schema and table an event names, with the columns it lists if any
+    @FunctionalInterface
+    private interface InputSink {
+        void accept(String catalogName, String schemaName, String tableName, List<QueryInput.Column> columns);
+    }
+
+    private void forEachInput(QueryEvent event, QueryPlan plan, InputSink sink) {
+        // Typed inputs produced by the event decoders
+        if (event.getInputTables() != null) {
+            for (QueryInput input : event.getInputTables()) {
+                sink.accept(firstNonNull(input.getCatalogName(), input.getConnectorName()),
+                        input.getSchema(), input.getTable(), input.getColumns());
+            }
+        }
 
         // Extract database information from inputs
         if (event.getInputs() != null) {
-            processInputs(event.getInputs(), event.getTimestamp());
+            processInputs(event.getInputs(), sink);
         }
 
         // Extract from io metadata
@@ -37,7 +112,7 @@ public class DatabaseService {
                 List<Map<String, Object>> inputs = (List<Map<String, Object>>) event.getMetadata().get("inputs");
                 if (inputs != null) {
                     for (Map<String, Object> input : inputs) {
-                        processInputMetadata(input, event.getTimestamp());
+                        processInputMetadata(input, sink);
                     }
                 }
             } catch (ClassCastException e) {
@@ -45,33 +120,27 @@ public class DatabaseService {
             }
         }
 
-        // Try to extract from Trino plan if available
-        if (event.getPlan() != null) {
-            extractDatabasesFromPlan(event.getPlan(), event.getTimestamp());
+        // Tables scanned by the plan
+        if (plan != null) {
+            for (QueryPlan.TableHandle table : plan.tables()) {
+                sink.accept(table.getCatalog(), table.getSchema(), table.getTable(), null);
+            }
         }
 
         // Extract from primary catalog/schema/table fields
         if (event.getCatalog() != null) {
-            Map<String, Object> syntheticInput = new HashMap<>();
-            syntheticInput.put("catalogName", event.getCatalog());
-            if (event.getSchema() != null) {
-                syntheticInput.put("schema", event.getSchema());
-            }
-            if (event.getTableName() != null) {
-                syntheticInput.put("table", event.getTableName());
-            }
-            processInputMetadata(syntheticInput, event.getTimestamp());
+            sink.accept(event.getCatalog(), event.getSchema(), event.getTableName(), null);
         }
     }
 
     @SuppressWarnings("unchecked")
-    private void processInputs(Map<String, Object> inputs, Instant timestamp) {
+    private void processInputs(Map<String, Object> inputs, InputSink sink) {
         try {
             if (inputs.containsKey("inputs") && inputs.get("inputs") instanceof List) {
                 List<Map<String, Object>> inputsList = (List<Map<String, Object>>) inputs.get("inputs");
 
                 for (Map<String, Object> input : inputsList) {
-                    processInputMetadata(input, timestamp);
+                    processInputMetadata(input, sink);
                 }
             }
         } catch (Exception e) {
@@ -79,12 +148,16 @@ public class DatabaseService {
         }
     }
 
-    private void processInputMetadata(Map<String, Object> input, Instant timestamp) {
-        try {
-            String catalogName = getStringValue(input, "catalogName", "connectorName");
-            String schemaName = getStringValue(input, "schema");
-            String tableName = getStringValue(input, "table");
+    private void processInputMetadata(Map<String, Object> input, InputSink sink) {
+        sink.accept(getStringValue(input, "catalogName", "connectorName"),
+                getStringValue(input, "schema"),
+                getStringValue(input, "table"),
+                toColumns(input.get("columns")));
+    }
 
+    private void registerInput(String catalogName, String schemaName, String tableName,
+                               List<QueryInput.Column> columns, Instant timestamp, int queryOrdinal) {
+        try {
             if (catalogName != null) {
                 String dbType = guessDbType(catalogName);
                 
@@ -95,21 +168,24 @@ public class DatabaseService {
                                 .type(dbType)
                                 .firstSeen(timestamp)
                                 .lastSeen(timestamp)
-                                .totalQueries(0)
                                 .status("ACTIVE")
                                 .build()
                 );
 
+                // Children are added through concurrent name indexes and counters are
+                // lock-free, so threads ingesting into the same catalog don't wait on each other
                 database.setLastSeen(timestamp);
-                database.setTotalQueries(database.getTotalQueries() + 1);
-                incrementQueryCount(catalogName);
+                if (database.getTotalQueries().record(queryOrdinal)) {
+                    incrementQueryCount(catalogName);
+                }
 
                 // Handle MongoDB differently - use collections instead of schemas/tables
                 if ("mongodb".equals(dbType)) {
-                    handleMongoDatabase(database, schemaName, tableName, input, timestamp);
+                    handleMongoDatabase(database, schemaName, tableName, columns, timestamp, queryOrdinal);
                 } else {
-                    handleRelationalDatabase(database, schemaName, tableName, input, timestamp);
+                    handleRelationalDatabase(database, schemaName, tableName, columns, timestamp, queryOrdinal);
                 }
+                changes.add(new Change(catalogName, null, null));
             }
         } catch (Exception e) {
             log.warn("Error processing input metadata: {}", e.getMessage());
@@ -117,49 +193,35 @@ public class DatabaseService {
     }
 
     private void handleMongoDatabase(Database database, String schemaName, String tableName, 
-                                   Map<String, Object> input, Instant timestamp) {
+                                   List<QueryInput.Column> columns, Instant timestamp, int queryOrdinal) {
         // For MongoDB in Trino:
         // - "schema" often represents the MongoDB database name (like "sample_db")
         // - "table" represents the collection name (like "products", "reviews")
         // We should ONLY create collections for MongoDB, never schemas
         
-        String collectionName = null;
-        
-        // Priority order for determining collection name:
-        // 1. tableName is the collection
-        // 2. If no tableName but schemaName exists and isn't a system db, use schemaName as collection
-        if (tableName != null && !tableName.isEmpty()) {
-            collectionName = tableName;
-        } else if (schemaName != null && !schemaName.isEmpty() && !isMongoSystemDatabase(schemaName)) {
-            collectionName = schemaName;
-        }
+        String collectionName = mongoCollectionName(schemaName, tableName);
         
         log.debug("MongoDB processing - schema: '{}', table: '{}', resolved collection: '{}'", 
                  schemaName, tableName, collectionName);
         
         if (collectionName != null) {
-            Database.Collection collection = database.getCollections().stream()
-                    .filter(c -> collectionName.equals(c.getName()))
-                    .findFirst()
-                    .orElseGet(() -> {
-                        Database.Collection newCollection = Database.Collection.builder()
-                                .name(collectionName)
-                                .firstSeen(timestamp)
-                                .lastSeen(timestamp)
-                                .totalQueries(0)
-                                .build();
-                        database.getCollections().add(newCollection);
-                        log.info("Created MongoDB collection: '{}' in database: '{}'", collectionName, database.getId());
-                        return newCollection;
-                    });
+            Database.Collection collection = database.getCollections().computeIfAbsent(collectionName, name -> {
+                log.info("Created MongoDB collection: '{}' in database: '{}'", name, database.getId());
+                return Database.Collection.builder()
+                        .name(name)
+                        .firstSeen(timestamp)
+                        .lastSeen(timestamp)
+                        .build();
+            });
 
             collection.setLastSeen(timestamp);
-            collection.setTotalQueries(collection.getTotalQueries() + 1);
+            collection.getTotalQueries().record(queryOrdinal);
 
             // Process MongoDB fields if available
-            if (input.containsKey("columns")) {
-                processMongoFields(collection, input.get("columns"));
+            if (columns != null) {
+                processMongoFields(collection, columns);
             }
+            changes.add(new Change(database.getId(), null, collectionName));
         }
         
         // IMPORTANT: For MongoDB, we do NOT create schemas at all
@@ -167,7 +229,7 @@ public class DatabaseService {
     }
 
     private void handleRelationalDatabase(Database database, String schemaName, String tableName, 
-                                        Map<String, Object> input, Instant timestamp) {
+                                        List<QueryInput.Column> columns, Instant timestamp, int queryOrdinal) {
         // For relational databases, maintain the schema -> table hierarchy
         // PostgreSQL will have schemas like "public", "information_schema", etc.
         
@@ -178,23 +240,18 @@ public class DatabaseService {
                 return;
             }
             
-            Schema schema = database.getSchemas().stream()
-                    .filter(s -> schemaName.equals(s.getName()))
-                    .findFirst()
-                    .orElseGet(() -> {
-                        Schema newSchema = Schema.builder()
-                                .name(schemaName)
-                                .firstSeen(timestamp)
-                                .lastSeen(timestamp)
-                                .totalQueries(0)
-                                .build();
-                        database.getSchemas().add(newSchema);
-                        log.info("Created schema: '{}' in database: '{}'", schemaName, database.getId());
-                        return newSchema;
-                    });
+            Schema schema = database.getSchemas().computeIfAbsent(schemaName, name -> {
+                log.info("Created schema: '{}' in database: '{}'", name, database.getId());
+                return Schema.builder()
+                        .name(name)
+                        .firstSeen(timestamp)
+                        .lastSeen(timestamp)
+                        .build();
+            });
 
             schema.setLastSeen(timestamp);
-            schema.setTotalQueries(schema.getTotalQueries() + 1);
+            schema.getTotalQueries().record(queryOrdinal);
+            changes.add(new Change(database.getId(), schemaName, null));
 
             if (tableName != null && !tableName.isEmpty()) {
                 // Skip system tables
@@ -203,33 +260,40 @@ public class DatabaseService {
                     return;
                 }
                 
-                Table table = schema.getTables().stream()
-                        .filter(t -> tableName.equals(t.getName()))
-                        .findFirst()
-                        .orElseGet(() -> {
-                            Table newTable = Table.builder()
-                                    .name(tableName)
-                                    .firstSeen(timestamp)
-                                    .lastSeen(timestamp)
-                                    .totalQueries(0)
-                                    .build();
-                            schema.getTables().add(newTable);
-                            log.info("Created table: '{}' in schema: '{}' in database: '{}'", 
-                                   tableName, schemaName, database.getId());
-                            return newTable;
-                        });
+                Table table = schema.getTables().computeIfAbsent(tableName, name -> {
+                    log.info("Created table: '{}' in schema: '{}' in database: '{}'",
+                            name, schemaName, database.getId());
+                    return Table.builder()
+                            .name(name)
+                            .firstSeen(timestamp)
+                            .lastSeen(timestamp)
+                            .build();
+                });
 
                 table.setLastSeen(timestamp);
-                table.setTotalQueries(table.getTotalQueries() + 1);
+                table.getTotalQueries().record(queryOrdinal);
 
                 // Process columns if available
-                if (input.containsKey("columns")) {
-                    processTableColumns(table, input.get("columns"));
+                if (columns != null) {
+                    processTableColumns(table, columns);
                 }
+                changes.add(new Change(database.getId(), schemaName, tableName));
             }
         }
     }
 
+    // Priority order for determining collection name:
+    // 1. tableName is the collection
+    // 2. If no tableName but schemaName exists and isn't a system db, use schemaName as collection
+    private String mongoCollectionName(String schemaName, String tableName) {
+        if (tableName != null && !tableName.isEmpty()) {
+            return tableName;
+        } else if (schemaName != null && !schemaName.isEmpty() && !isMongoSystemDatabase(schemaName)) {
+            return schemaName;
+        }
+        return null;
+    }
+
     private boolean isMongoSystemDatabase(String databaseName) {
         if (databaseName == null) return false;
         String lower = databaseName.toLowerCase();
@@ -259,114 +323,67 @@ public class DatabaseService {
                lower.startsWith("mysql_");
     }
 
-    private void processMongoFields(Database.Collection collection, Object fieldsObj) {
-        try {
-            if (fieldsObj instanceof List) {
-                List<?> fieldsList = (List<?>) fieldsObj;
-                for (Object fieldObj : fieldsList) {
-                    if (fieldObj instanceof Map) {
-                        Map<?, ?> fieldMap = (Map<?, ?>) fieldObj;
-                        String fieldName = fieldMap.get("name") != null ? fieldMap.get("name").toString() :
-                                fieldMap.get("column") != null ? fieldMap.get("column").toString() : null;
-                        String fieldType = fieldMap.get("type") != null ? fieldMap.get("type").toString() : null;
-
-                        if (fieldName != null && !collection.getFields().stream().anyMatch(f -> fieldName.equals(f.getName()))) {
-                            collection.getFields().add(Database.Field.builder()
-                                    .name(fieldName)
-                                    .type(fieldType)
-                                    .nested(isNestedType(fieldType))
-                                    .build());
-                        }
-                    }
-                }
+    private void processMongoFields(Database.Collection collection, List<QueryInput.Column> fields) {
+        for (QueryInput.Column field : fields) {
+            String fieldName = field.getName();
+            String fieldType = field.getType();
+
+            if (fieldName != null && !collection.getFields().contains(fieldName)) {
+                collection.getFields().computeIfAbsent(fieldName, name -> Database.Field.builder()
+                        .name(name)
+                        .type(fieldType)
+                        .nested(isNestedType(fieldType))
+                        .build());
+            }
+        }
+    }
+
+    private void processTableColumns(Table table, List<QueryInput.Column> columns) {
+        for (QueryInput.Column column : columns) {
+            String columnName = column.getName();
+            String columnType = column.getType();
+
+            if (columnName != null && !table.getColumns().contains(columnName)) {
+                table.getColumns().computeIfAbsent(columnName, name -> Column.builder()
+                        .name(name)
+                        .type(columnType)
+                        .build());
             }
-        } catch (Exception e) {
-            log.warn("Error processing MongoDB fields: {}", e.getMessage());
         }
     }
 
-    private void processTableColumns(Table table, Object columnsObj) {
+    /**
+     * Normalize the loosely typed "columns" value of a legacy input map: either a list of
+     * {name|column, type} maps or a single name-to-type map.
+     */
+    private List<QueryInput.Column> toColumns(Object columnsObj) {
         try {
             if (columnsObj instanceof List) {
                 List<?> columnsList = (List<?>) columnsObj;
+                List<QueryInput.Column> columns = new ArrayList<>(columnsList.size());
                 for (Object columnObj : columnsList) {
                     if (columnObj instanceof Map) {
                         Map<?, ?> columnMap = (Map<?, ?>) columnObj;
                         String columnName = columnMap.get("name") != null ? columnMap.get("name").toString() :
                                 columnMap.get("column") != null ? columnMap.get("column").toString() : null;
                         String columnType = columnMap.get("type") != null ? columnMap.get("type").toString() : null;
-
-                        if (columnName != null && !table.getColumns().stream().anyMatch(c -> columnName.equals(c.getName()))) {
-                            table.getColumns().add(Column.builder()
-                                    .name(columnName)
-                                    .type(columnType)
-                                    .build());
-                        }
+                        columns.add(new QueryInput.Column(columnName, columnType));
                     }
                 }
+                return columns;
             } else if (columnsObj instanceof Map) {
                 Map<?, ?> columnsMap = (Map<?, ?>) columnsObj;
-                for (Object key : columnsMap.keySet()) {
-                    String columnName = key.toString();
-                    Object value = columnsMap.get(key);
-                    String columnType = value != null ? value.toString() : null;
-
-                    if (!table.getColumns().stream().anyMatch(c -> columnName.equals(c.getName()))) {
-                        table.getColumns().add(Column.builder()
-                                .name(columnName)
-                                .type(columnType)
-                                .build());
-                    }
+                List<QueryInput.Column> columns = new ArrayList<>(columnsMap.size());
+                for (Map.Entry<?, ?> entry : columnsMap.entrySet()) {
+                    Object value = entry.getValue();
+                    columns.add(new QueryInput.Column(entry.getKey().toString(), value != null ? value.toString() : null));
                 }
+                return columns;
             }
         } catch (Exception e) {
             log.warn("Error processing table columns: {}", e.getMessage());
         }
-    }
-
-    private void extractDatabasesFromPlan(String plan, Instant timestamp) {
-        // Look for catalog.schema.table patterns in the plan
-        if (plan == null || plan.isEmpty()) {
-            return;
-        }
-
-        try {
-            // Simple pattern matching for common formats in Trino plans
-            // Format: catalog:schema.table or catalog.schema.table
-            String[] lines = plan.split("\n");
-            for (String line : lines) {
-                // Skip lines too short to contain catalog info
-                if (line.length() < 5) continue;
-
-                for (String pattern : Arrays.asList("FROM ", "JOIN ", "TABLE: ")) {
-                    int idx = line.indexOf(pattern);
-                    if (idx >= 0) {
-                        String afterPattern = line.substring(idx + pattern.length());
-                        // Look for catalog:schema.table pattern
-                        String[] parts = afterPattern.split("[:\\.]");
-                        if (parts.length >= 2) {
-                            String catalog = parts[0].trim();
-                            String schema = parts.length > 1 ? parts[1].trim() : null;
-                            String table = parts.length > 2 ? parts[2].trim() : null;
-
-                            // Create a simple input metadata map to reuse existing logic
-                            Map<String, Object> inputMeta = new HashMap<>();
-                            inputMeta.put("catalogName", catalog);
-                            if (schema != null) {
-                                inputMeta.put("schema", schema);
-                            }
-                            if (table != null) {
-                                inputMeta.put("table", table);
-                            }
-
-                            processInputMetadata(inputMeta, timestamp);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            log.warn("Error extracting database info from plan: {}", e.getMessage());
-        }
+        return null;
     }
 
     private String getStringValue(Map<String, Object> map, String... keys) {
@@ -378,6 +395,10 @@ public class DatabaseService {
         return null;
     }
 
+    private static String firstNonNull(String first, String second) {
+        return first != null ? first : second;
+    }
+
     private boolean isNestedType(String type) {
         if (type == null) return false;
         String lowerType = type.toLowerCase();
@@ -411,7 +432,7 @@ public class DatabaseService {
             if ("mongodb".equals(db.getType())) {
                 log.debug("MongoDB database: '{}' has {} collections, {} schemas", 
                          db.getId(), db.getCollections().size(), db.getSchemas().size());
-                db.getCollections().forEach(col -> 
+                db.getCollections().values().forEach(col -> 
                     log.debug("  Collection: '{}' with {} fields", col.getName(), col.getFields().size())
                 );
                 // MongoDB should have 0 schemas
@@ -421,7 +442,7 @@ public class DatabaseService {
             } else {
                 log.debug("Relational database: '{}' has {} schemas, {} collections", 
                          db.getId(), db.getSchemas().size(), db.getCollections().size());
-                db.getSchemas().forEach(schema -> 
+                db.getSchemas().values().forEach(schema -> 
                     log.debug("  Schema: '{}' with {} tables", schema.getName(), schema.getTables().size())
                 );
             }
@@ -439,7 +460,7 @@ public class DatabaseService {
         log.debug("Getting schemas for database: {}", databaseId);
         Database database = databases.get(databaseId);
         if (database != null && database.getSchemas() != null) {
-            return new ArrayList<>(database.getSchemas());
+            return database.getSchemas().values();
         }
         return new ArrayList<>();
     }
@@ -448,10 +469,7 @@ public class DatabaseService {
         log.debug("Getting schema {} in database {}", schemaName, databaseId);
         Database database = databases.get(databaseId);
         if (database != null && database.getSchemas() != null) {
-            return database.getSchemas().stream()
-                    .filter(schema -> schemaName.equals(schema.getName()))
-                    .findFirst()
-                    .orElse(null);
+            return database.getSchemas().get(schemaName);
         }
         return null;
     }
@@ -460,7 +478,7 @@ public class DatabaseService {
         log.debug("Getting tables for schema {} in database {}", schemaName, databaseId);
         Schema schema = getSchema(databaseId, schemaName);
         if (schema != null && schema.getTables() != null) {
-            return new ArrayList<>(schema.getTables());
+            return schema.getTables().values();
         }
         return new ArrayList<>();
     }
@@ -469,14 +487,32 @@ public class DatabaseService {
         log.debug("Getting table {} in schema {} in database {}", tableName, schemaName, databaseId);
         Schema schema = getSchema(databaseId, schemaName);
         if (schema != null && schema.getTables() != null) {
-            return schema.getTables().stream()
-                    .filter(table -> tableName.equals(table.getName()))
-                    .findFirst()
-                    .orElse(null);
+            return schema.getTables().get(tableName);
         }
         return null;
     }
 
+    /**
+     * Lets every node forget the query ordinals below {@code ordinal}: those of queries no
+     * longer retained, which won't be seen again under the same ordinal. Evicted queries a
+     * late event could still bring back keep theirs (see {@code QueryIndex}), so a query
+     * is not counted twice.
+     */
+    public void forgetQueriesBelow(int ordinal) {
+        for (Database database : databases.values()) {
+            database.getTotalQueries().forgetBelow(ordinal);
+            for (Database.Collection collection : database.getCollections().values()) {
+                collection.getTotalQueries().forgetBelow(ordinal);
+            }
+            for (Schema schema : database.getSchemas().values()) {
+                schema.getTotalQueries().forgetBelow(ordinal);
+                for (Table table : schema.getTables().values()) {
+                    table.getTotalQueries().forgetBelow(ordinal);
+                }
+            }
+        }
+    }
+
     public Map<String, Integer> getDatabaseQueryCounts() {
         log.debug("Getting database query counts");
         return new HashMap<>(queryCountsByDatabase);
@@ -489,6 +525,8 @@ public class DatabaseService {
     public void addDatabase(Database database) {
         if (database != null && database.getId() != null) {
             databases.put(database.getId(), database);
+            changes.add(new Change(database.getId(), null, null));
+            publishSnapshot();
             log.info("Added database: {}", database.getId());
         }
     }
@@ -496,9 +534,52 @@ public class DatabaseService {
     public void removeDatabase(String databaseId) {
         databases.remove(databaseId);
         queryCountsByDatabase.remove(databaseId);
+        changes.add(new Change(databaseId, null, null));
+        publishSnapshot();
         log.info("Removed database: {}", databaseId);
     }
 
+    /**
+     * Publishes a new {@link CatalogSnapshot} if anything changed since the last one, copying
+     * only the changed catalog nodes, and drops the cached responses of what changed. Called
+     * after each ingestion batch; returns the current snapshot either way.
+     */
+    public CatalogSnapshot publishSnapshot() {
+        List<Change> drained = new ArrayList<>();
+        for (Iterator<Change> it = changes.iterator(); it.hasNext(); ) {
+            drained.add(it.next());
+            it.remove();
+        }
+        CatalogSnapshot snapshot = publisher.publish(drained, databases);
+        if (!drained.isEmpty()) {
+            responseCache.invalidate(ResponseCache.DATABASES_KEY);
+            drained.forEach(change -> responseCache.invalidate(ResponseCache.databaseKey(change.database())));
+        }
+        return snapshot;
+    }
+
+    /**
+     * The last published snapshot; reading it takes no lock.
+     */
+    public CatalogSnapshot getSnapshot() {
+        return publisher.current();
+    }
+
+    /**
+     * Replaces the database hierarchy and query counts with ones loaded from a state snapshot.
+     */
+    public void restoreDatabases(List<Database> restored, Map<String, Integer> queryCounts) {
+        databases.keySet().forEach(id -> changes.add(new Change(id, null, null)));
+        databases.clear();
+        restored.forEach(database -> {
+            databases.put(database.getId(), database);
+            changes.add(new Change(database.getId(), null, null));
+        });
+        queryCountsByDatabase.clear();
+        queryCountsByDatabase.putAll(queryCounts);
+        publishSnapshot();
+    }
+
     public boolean databaseExists(String databaseId) {
         return databases.containsKey(databaseId);
     }
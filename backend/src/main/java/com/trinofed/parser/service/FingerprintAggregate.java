@@ -0,0 +1,125 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.Distribution;
+import com.trinofed.parser.model.FingerprintStats;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.IntCountsHistogram;
+
+import java.time.Instant;
+
+/**
+ * Running aggregates for one SQL fingerprint. Each metric goes into its own auto-resizing
+ * HdrHistogram with two significant digits, so recording is constant time and the
+ * histograms only grow to cover the largest value seen. Peak memory is recorded in KiB to
+ * keep that histogram as small as the time ones.
+ */
+final class FingerprintAggregate {
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final String fingerprint;
+    private final String normalizedQuery;
+    private final AbstractHistogram wallTimeMs = new IntCountsHistogram(SIGNIFICANT_DIGITS);
+    private final AbstractHistogram cpuTimeMs = new IntCountsHistogram(SIGNIFICANT_DIGITS);
+    private final AbstractHistogram queuedTimeMs = new IntCountsHistogram(SIGNIFICANT_DIGITS);
+    private final AbstractHistogram peakMemoryKiB = new IntCountsHistogram(SIGNIFICANT_DIGITS);
+
+    private long count;
+    private long failedCount;
+    private long totalWallTimeMs;
+    private long totalCpuTimeMs;
+    private Instant firstSeen;
+    private volatile Instant lastSeen;
+    private String sampleQueryId;
+
+    FingerprintAggregate(String fingerprint, String normalizedQuery) {
+        this.fingerprint = fingerprint;
+        this.normalizedQuery = normalizedQuery;
+    }
+
+    /**
+     * Adds one completed query. Metrics the query didn't report are left out of their
+     * distribution, so each distribution has its own count.
+     */
+    synchronized void record(String queryId, Instant completedAt, boolean failed,
+                             Long wallMs, Long cpuMs, Long queuedMs, Long peakMemoryBytes) {
+        count++;
+        if (failed) {
+            failedCount++;
+        }
+        if (firstSeen == null || completedAt.isBefore(firstSeen)) {
+            firstSeen = completedAt;
+        }
+        if (lastSeen == null || completedAt.isAfter(lastSeen)) {
+            lastSeen = completedAt;
+            sampleQueryId = queryId;
+        }
+        if (wallMs != null) {
+            totalWallTimeMs += Math.max(0, wallMs);
+            wallTimeMs.recordValue(Math.max(0, wallMs));
+        }
+        if (cpuMs != null) {
+            totalCpuTimeMs += Math.max(0, cpuMs);
+            cpuTimeMs.recordValue(Math.max(0, cpuMs));
+        }
+        if (queuedMs != null) {
+            queuedTimeMs.recordValue(Math.max(0, queuedMs));
+        }
+        if (peakMemoryBytes != null) {
+            peakMemoryKiB.recordValue(Math.max(0, peakMemoryBytes) >> 10);
+        }
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * When the latest query with this fingerprint completed; read without the lock.
+     */
+    Instant getLastSeen() {
+        return lastSeen;
+    }
+
+    synchronized long getCount() {
+        return count;
+    }
+
+    synchronized FingerprintStats stats() {
+        return FingerprintStats.builder()
+                .fingerprint(fingerprint)
+                .normalizedQuery(normalizedQuery)
+                .sampleQueryId(sampleQueryId)
+                .count(count)
+                .failedCount(failedCount)
+                .firstSeen(firstSeen)
+                .lastSeen(lastSeen)
+                .totalWallTimeMs(totalWallTimeMs)
+                .totalCpuTimeMs(totalCpuTimeMs)
+                .wallTimeMs(distribution(wallTimeMs, 1))
+                .cpuTimeMs(distribution(cpuTimeMs, 1))
+                .queuedTimeMs(distribution(queuedTimeMs, 1))
+                .peakMemoryBytes(distribution(peakMemoryKiB, 1024))
+                .build();
+    }
+
+    synchronized long bytes() {
+        return 256 + normalizedQuery.length()
+                + wallTimeMs.getEstimatedFootprintInBytes() + cpuTimeMs.getEstimatedFootprintInBytes()
+                + queuedTimeMs.getEstimatedFootprintInBytes() + peakMemoryKiB.getEstimatedFootprintInBytes();
+    }
+
+    private static Distribution distribution(AbstractHistogram histogram, long scale) {
+        if (histogram.getTotalCount() == 0) {
+            return Distribution.builder().build();
+        }
+        return Distribution.builder()
+                .count(histogram.getTotalCount())
+                .p50(histogram.getValueAtPercentile(50) * scale)
+                .p95(histogram.getValueAtPercentile(95) * scale)
+                .p99(histogram.getValueAtPercentile(99) * scale)
+                .max(histogram.getMaxValue() * scale)
+                .mean(histogram.getMean() * scale)
+                .build();
+    }
+}
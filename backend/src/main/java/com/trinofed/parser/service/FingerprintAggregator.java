@@ -0,0 +1,159 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.FingerprintSort;
+import com.trinofed.parser.model.FingerprintStats;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QuerySummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Latency and resource aggregates per SQL fingerprint (see {@link SqlFingerprinter}),
+ * updated once per completed query in constant time.
+ *
+ * Aggregates outlive the queries they were built from: evicting a query from memory doesn't
+ * remove it from its fingerprint's numbers. What is bounded is the number of fingerprints;
+ * past {@code max-fingerprints}, the least recently seen {@value #PRUNE_PERCENT}% are dropped.
+ * After a restart the aggregates cover the queries restored from the snapshot and event log.
+ */
+@Slf4j
+@Component
+public class FingerprintAggregator {
+
+    private static final int PRUNE_PERCENT = 10;
+
+    private final int maxFingerprints;
+    private final Map<String, FingerprintAggregate> aggregates = new ConcurrentHashMap<>();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+
+    @Autowired
+    public FingerprintAggregator(@Value("${trino.fingerprints.max-fingerprints:1000}") int maxFingerprints,
+                                 MeterRegistry meterRegistry) {
+        this.maxFingerprints = Math.max(1, maxFingerprints);
+        Gauge.builder("trino.fingerprints.count", aggregates, Map::size)
+                .description("SQL fingerprints with aggregates in memory")
+                .register(meterRegistry);
+        Gauge.builder("trino.fingerprints.bytes", this, FingerprintAggregator::bytes)
+                .description("Estimated heap held by the fingerprint aggregates")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds a completed query to its fingerprint's aggregates. The normalized text is only
+     * computed for a fingerprint not seen before. Wall time falls back to the execution
+     * time, and CPU time and peak memory to the highest any of the query's events reported.
+     *
+     * The aggregate is looked up and recorded into within one {@code compute}, so a
+     * concurrent {@link #prune()} either drops it before (and the sample starts a new one)
+     * or sees the sample and keeps it.
+     */
+    public void record(String fingerprint, Supplier<String> normalizedQuery, QuerySummary summary,
+                       QueryEvent completed, Instant completedAt) {
+        boolean failed = "FAILED".equals(summary.getState()) || completed.getErrorMessage() != null;
+        Long wallMs = first(completed.getWallTimeMs(), completed.getWallTime(), completed.getExecutionTime());
+        Long cpuMs = first(completed.getCpuTimeMs(), completed.getCpuTime(), summary.getCpuTimeMs());
+        Long queuedMs = first(completed.getQueuedTimeMs(), completed.getQueuedTime(), null);
+        Long peakMemoryBytes = first(completed.getPeakMemoryBytes(), summary.getPeakMemoryBytes(), null);
+
+        boolean[] created = {false};
+        aggregates.compute(fingerprint, (key, aggregate) -> {
+            if (aggregate == null) {
+                aggregate = new FingerprintAggregate(key, normalizedQuery.get());
+                created[0] = true;
+            }
+            aggregate.record(summary.getQueryId(), completedAt, failed, wallMs, cpuMs, queuedMs, peakMemoryBytes);
+            return aggregate;
+        });
+        if (created[0] && aggregates.size() > maxFingerprints) {
+            prune();
+        }
+    }
+
+    /**
+     * The {@code limit} most expensive fingerprints by the given measure.
+     */
+    public List<FingerprintStats> top(FingerprintSort sort, int limit) {
+        ToLongFunction<FingerprintStats> key = switch (sort) {
+            case TOTAL_WALL -> FingerprintStats::getTotalWallTimeMs;
+            case P95_WALL -> stats -> stats.getWallTimeMs().getP95();
+            case P99_WALL -> stats -> stats.getWallTimeMs().getP99();
+            case TOTAL_CPU -> FingerprintStats::getTotalCpuTimeMs;
+            case PEAK_MEMORY -> stats -> stats.getPeakMemoryBytes().getMax();
+            case COUNT -> FingerprintStats::getCount;
+        };
+        return aggregates.values().stream()
+                .map(FingerprintAggregate::stats)
+                .sorted(Comparator.comparingLong(key).reversed().thenComparing(FingerprintStats::getFingerprint))
+                .limit(Math.max(0, limit))
+                .toList();
+    }
+
+    public FingerprintStats get(String fingerprint) {
+        FingerprintAggregate aggregate = aggregates.get(fingerprint);
+        return aggregate != null ? aggregate.stats() : null;
+    }
+
+    public int size() {
+        return aggregates.size();
+    }
+
+    public long bytes() {
+        return aggregates.values().stream().mapToLong(FingerprintAggregate::bytes).sum();
+    }
+
+    // Drops the least recently seen fingerprints (ones just created have no last-seen yet and
+    // are kept); concurrent callers skip rather than wait
+    private void prune() {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int excess = aggregates.size() - maxFingerprints * (100 - PRUNE_PERCENT) / 100;
+            if (excess <= 0) {
+                return;
+            }
+            // Last-seen times are read once up front; they keep moving while this sorts. An
+            // aggregate that recorded a query since is no longer among the oldest and is kept
+            List<LastSeen> oldest = aggregates.values().stream()
+                    .map(aggregate -> new LastSeen(aggregate, aggregate.getLastSeen(), aggregate.getCount()))
+                    .sorted(Comparator.comparing(LastSeen::at, Comparator.nullsLast(Comparator.naturalOrder())))
+                    .limit(excess)
+                    .toList();
+            int dropped = 0;
+            for (LastSeen seen : oldest) {
+                boolean[] removed = {false};
+                aggregates.computeIfPresent(seen.aggregate().getFingerprint(), (key, aggregate) -> {
+                    removed[0] = aggregate == seen.aggregate() && aggregate.getCount() == seen.count();
+                    return removed[0] ? null : aggregate;
+                });
+                if (removed[0]) {
+                    dropped++;
+                }
+            }
+            log.debug("Dropped {} least recently seen fingerprints, {} kept", dropped, aggregates.size());
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    private record LastSeen(FingerprintAggregate aggregate, Instant at, long count) {
+    }
+
+    private static Long first(Long value, Long fallback, Long lastResort) {
+        return value != null ? value : fallback != null ? fallback : lastResort;
+    }
+}
@@ -0,0 +1,55 @@
+package com.trinofed.parser.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed set of single-threaded lanes. Work is routed by key (the queryId), so everything
+ * for one query runs in submission order on the same lane while different queries are
+ * spread across all lanes in parallel.
+ */
+public class KeyedLaneExecutor {
+
+    private final ExecutorService[] lanes;
+
+    public KeyedLaneExecutor(int laneCount, String threadNamePrefix) {
+        this.lanes = new ExecutorService[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            String threadName = threadNamePrefix + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    public int laneFor(String key) {
+        int h = key.hashCode();
+        return ((h ^ (h >>> 16)) & 0x7fffffff) % lanes.length;
+    }
+
+    public CompletableFuture<Void> submit(int lane, Runnable task) {
+        return CompletableFuture.runAsync(task, lanes[lane]);
+    }
+
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            try {
+                lane.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
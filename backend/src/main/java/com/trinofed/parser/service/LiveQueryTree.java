@@ -0,0 +1,560 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryEventSummary;
+import com.trinofed.parser.model.QueryIndexField;
+import com.trinofed.parser.model.QueryPlan;
+import com.trinofed.parser.model.QuerySummary;
+import com.trinofed.parser.model.QueryTree;
+import com.trinofed.parser.model.QueryTreeDelta;
+import com.trinofed.parser.model.QueryTreeNode;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The materialized tree of one query, updated as events arrive instead of being rebuilt
+ * from the whole event list.
+ *
+ * Events are kept sorted by timestamp (a late event is inserted at its position), and an
+ * event only touches the node it maps to. Nodes that may already be part of a published
+ * {@link QueryTree} are copied before they are changed, so a snapshot handed to a reader
+ * never changes underneath it.
+ *
+ * The tree also carries what retention needs: when the query completed, when it was last
+ * used, a rough estimate of its retained heap size and the index values it is posted
+ * under.
+ *
+ * Every applied event bumps the tree's version, which counts from 1 for each new tree, and
+ * its {@link #getRevision() revision}, which is never repeated for a query id. Changes since the last
+ * {@link #drainDelta()} are tracked so they can be sent as a {@link QueryTreeDelta}
+ * instead of the whole tree.
+ *
+ * {@link #apply(QueryEvent, QueryPlan)}, {@link #snapshot()}, {@link #summary()} and
+ * {@link #drainDelta()} must be called while holding the query's lock in
+ * {@link QueryEventService}; {@link #publishedSnapshot()} is safe from any thread, and
+ * {@link #appliedEvents()} from one that holds ingestion off.
+ */
+public class LiveQueryTree {
+
+    private final String queryId;
+    private final List<QueryEvent> events = new ArrayList<>();
+    // The same events in the order they were applied; see appliedEvents()
+    private QueryEvent[] applied = new QueryEvent[2];
+    private int appliedCount;
+    private final Map<String, QueryTreeNode> nodes = new HashMap<>();
+    private QueryTreeNode root;
+    private long version;
+    private volatile long revision;
+    private volatile QueryTree snapshot;
+
+    // Highest values reported by any event, for the list view
+    private Long cpuTimeMs;
+    private Long peakMemoryBytes;
+
+    // Hash of the normalized SQL, from the first event carrying query text (kept for its
+    // normalized form, which is only built when needed)
+    private String fingerprint;
+    private String fingerprintedQuery;
+
+    // Changes not yet drained into a delta
+    private long deltaBaseVersion;
+    private final Map<String, QueryTreeNode> changedNodes = new LinkedHashMap<>();
+    private final List<QueryEventSummary> newEvents = new ArrayList<>();
+    private Header sentHeader = Header.EMPTY;
+
+    // Retention bookkeeping, read without the query lock by QueryRetention
+    private volatile Instant completedAt;
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+    private volatile long estimatedBytes = BASE_BYTES;
+
+    // Index values this query is posted under, so changes and eviction can remove it from each
+    private final Map<QueryIndexField, Set<String>> indexKeys = new EnumMap<>(QueryIndexField.class);
+
+    // Process-wide, so revisions of a query id keep increasing across evictions
+    private static final AtomicLong REVISIONS = new AtomicLong();
+
+    private static final String PLAN_NODE_INFIX = "-plan-";
+    private static final long BASE_BYTES = 512;
+    private static final long NODE_BYTES = 160;
+    private static final long MAP_BYTES = 512;
+
+    public LiveQueryTree(String queryId) {
+        this.queryId = queryId;
+    }
+
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public int eventCount() {
+        return events.size();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Changes with every applied event, like the version, but is drawn from a process-wide
+     * sequence: a tree evicted and created again for the same query id never repeats a
+     * revision of the earlier one. Responses are cached and tagged by it. Safe from any thread.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Timestamp of the query's completed event, or null while it is still running.
+     */
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    public void touch() {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * The query's SQL fingerprint (see {@link SqlFingerprinter}), or null until an event
+     * with query text arrives.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * The normalized SQL the fingerprint is the hash of.
+     */
+    public String normalizedQuery() {
+        return fingerprintedQuery != null ? SqlFingerprinter.normalize(fingerprintedQuery) : null;
+    }
+
+    public Set<String> getIndexKeys(QueryIndexField field) {
+        return indexKeys.computeIfAbsent(field, f -> new HashSet<>());
+    }
+
+    public Map<QueryIndexField, Set<String>> getIndexKeys() {
+        return indexKeys;
+    }
+
+    /**
+     * Applies the event; {@code plan} is its parsed {@link QueryEvent#getPlan()}, or null.
+     */
+    public void apply(QueryEvent event, QueryPlan plan) {
+        events.add(insertionPoint(event.getTimestamp()), event);
+        if (appliedCount == applied.length) {
+            applied = Arrays.copyOf(applied, appliedCount * 2);
+        }
+        applied[appliedCount++] = event;
+        newEvents.add(QueryEventSummary.of(event));
+        version++;
+        revision = REVISIONS.incrementAndGet();
+
+        long bytes = estimatedBytes + estimateBytes(event);
+        cpuTimeMs = max(cpuTimeMs, event.getCpuTimeMs() != null ? event.getCpuTimeMs() : event.getCpuTime());
+        peakMemoryBytes = max(peakMemoryBytes, event.getPeakMemoryBytes());
+        if (fingerprint == null && event.getQuery() != null && !event.getQuery().isBlank()) {
+            fingerprint = SqlFingerprinter.fingerprint(event.getQuery()).hash();
+            fingerprintedQuery = event.getQuery();
+        }
+        if ("COMPLETED".equals(event.getEventType()) && completedAt == null) {
+            completedAt = event.getTimestamp() != null ? event.getTimestamp() : Instant.now();
+        }
+
+        String nodeId = generateNodeId(event);
+        QueryTreeNode node = nodes.get(nodeId);
+        if (node == null || event.getStageStats() != null || event.getOperatorStats() != null || plan != null) {
+            node = node == null ? createNode(nodeId, event) : node.toBuilder().build();
+
+            // Extract operator type and node type from stage stats
+            if (event.getStageStats() != null) {
+                node.setOperatorType(extractOperatorType(event.getStageStats()));
+                node.setNodeType("STAGE");
+            }
+
+            // Parse operator stats to build parent-child relationships; the latest stats for a
+            // node replace its operator children rather than adding to them
+            if (event.getOperatorStats() != null) {
+                node.setChildren(buildOperatorChildren(node, event.getOperatorStats()));
+            }
+
+            // The event's plan adds the operator tree, fragments stitched in at their remote sources
+            if (plan != null) {
+                String planId = nodeId + PLAN_NODE_INFIX;
+                List<QueryTreeNode> planNodes = buildPlanChildren(node, plan);
+                List<QueryTreeNode> children = new ArrayList<>(node.getChildren());
+                children.removeIf(child -> child.getId().startsWith(planId));
+                children.addAll(planNodes);
+                node.setChildren(children);
+                bytes += NODE_BYTES * countNodes(planNodes);
+            }
+
+            if (nodes.put(nodeId, node) == null) {
+                bytes += NODE_BYTES;
+            }
+            changedNodes.put(nodeId, node);
+        }
+
+        root = nodes.get(generateNodeId(events.get(0)));
+        snapshot = null;
+        estimatedBytes = bytes;
+        touch();
+    }
+
+    /**
+     * The current tree, built from the live state only if something changed since the
+     * last call. The node graph is shared with the live state, not copied.
+     */
+    public QueryTree snapshot() {
+        QueryTree current = snapshot;
+        if (current == null) {
+            current = buildSnapshot();
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * The list view of the query as of now. Header fields follow {@link #snapshot()}; CPU
+     * time and peak memory are the highest any event reported.
+     */
+    public QuerySummary summary() {
+        QueryEvent firstEvent = events.get(0);
+        QueryEvent latestEvent = events.get(events.size() - 1);
+        return QuerySummary.builder()
+                .queryId(queryId)
+                .version(version)
+                .query(latestEvent.getQuery())
+                .fingerprint(fingerprint)
+                .user(latestEvent.getUser())
+                .state(latestEvent.getState())
+                .startTime(firstEvent.getTimestamp())
+                .endTime(latestEvent.getTimestamp())
+                .totalExecutionTime(latestEvent.getExecutionTime())
+                .cpuTimeMs(cpuTimeMs)
+                .peakMemoryBytes(peakMemoryBytes)
+                .errorMessage(latestEvent.getErrorMessage())
+                .eventCount(events.size())
+                .build();
+    }
+
+    /**
+     * Everything that changed since the previous call, or null if nothing did. Only header
+     * fields whose value changed are set; a field that changed back to null is not reported.
+     */
+    public QueryTreeDelta drainDelta() {
+        if (version == deltaBaseVersion) {
+            return null;
+        }
+
+        Header header = currentHeader();
+        QueryTreeDelta delta = QueryTreeDelta.builder()
+                .queryId(queryId)
+                .baseVersion(deltaBaseVersion)
+                .version(version)
+                .query(changed(sentHeader.query(), header.query()))
+                .user(changed(sentHeader.user(), header.user()))
+                .state(changed(sentHeader.state(), header.state()))
+                .startTime(changed(sentHeader.startTime(), header.startTime()))
+                .endTime(changed(sentHeader.endTime(), header.endTime()))
+                .totalExecutionTime(changed(sentHeader.totalExecutionTime(), header.totalExecutionTime()))
+                .errorMessage(changed(sentHeader.errorMessage(), header.errorMessage()))
+                .rootId(changed(sentHeader.rootId(), header.rootId()))
+                .nodes(new ArrayList<>(changedNodes.values()))
+                .events(new ArrayList<>(newEvents))
+                .build();
+
+        sentHeader = header;
+        changedNodes.clear();
+        newEvents.clear();
+        deltaBaseVersion = version;
+        return delta;
+    }
+
+    /**
+     * The events applied so far, in the order they were applied, as a view later events
+     * don't change: they are only ever written past its end, and into a new array once the
+     * current one is full. Applying them in this order to a new tree rebuilds this one.
+     * Takes no copy, so it is cheap enough to call for every tree while ingestion is held off.
+     */
+    public List<QueryEvent> appliedEvents() {
+        return Collections.unmodifiableList(Arrays.asList(applied).subList(0, appliedCount));
+    }
+
+    /**
+     * The last snapshot built, or null if the tree changed since.
+     */
+    public QueryTree publishedSnapshot() {
+        return snapshot;
+    }
+
+    private QueryTree buildSnapshot() {
+        if (events.isEmpty()) {
+            return null;
+        }
+
+        // Find the latest event with complete information
+        QueryEvent latestEvent = events.get(events.size() - 1);
+
+        return QueryTree.builder()
+                .queryId(queryId)
+                .version(version)
+                .revision(revision)
+                .query(latestEvent.getQuery())
+                .user(latestEvent.getUser())
+                .state(latestEvent.getState())
+                .startTime(events.get(0).getTimestamp())
+                .endTime(latestEvent.getTimestamp())
+                .totalExecutionTime(latestEvent.getExecutionTime())
+                .errorMessage(latestEvent.getErrorMessage())
+                .root(root)
+                .events(Collections.unmodifiableList(new ArrayList<>(events)))
+                .build();
+    }
+
+    private Header currentHeader() {
+        QueryEvent firstEvent = events.get(0);
+        QueryEvent latestEvent = events.get(events.size() - 1);
+        return new Header(latestEvent.getQuery(), latestEvent.getUser(), latestEvent.getState(),
+                firstEvent.getTimestamp(), latestEvent.getTimestamp(), latestEvent.getExecutionTime(),
+                latestEvent.getErrorMessage(), root != null ? root.getId() : null);
+    }
+
+    /**
+     * Rough heap footprint of an event: a fixed cost for the object and its boxed fields,
+     * its strings, and a flat cost per free-form map. A stored plan counts with its
+     * compressed size for every event sharing it, so the estimate errs high.
+     */
+    static long estimateBytes(QueryEvent event) {
+        long bytes = 256;
+        bytes += event.getStoredPlan() != null ? event.getStoredPlan().storedBytes() : sizeOf(event.getPlan());
+        bytes += sizeOf(event.getQueryId()) + sizeOf(event.getQuery())
+                + sizeOf(event.getUser()) + sizeOf(event.getErrorMessage())
+                + sizeOf(event.getCatalog()) + sizeOf(event.getSchema()) + sizeOf(event.getTableName());
+        if (event.getInputTables() != null) {
+            for (var input : event.getInputTables()) {
+                bytes += 96 + sizeOf(input.getCatalogName()) + sizeOf(input.getSchema()) + sizeOf(input.getTable());
+                if (input.getColumns() != null) {
+                    for (var column : input.getColumns()) {
+                        bytes += 48 + sizeOf(column.getName()) + sizeOf(column.getType());
+                    }
+                }
+            }
+        }
+        for (Object map : new Object[]{event.getStageStats(), event.getOperatorStats(), event.getMetadata(),
+                event.getIoMetadata(), event.getInputs()}) {
+            if (map != null) {
+                bytes += MAP_BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(String s) {
+        return s == null ? 0 : 40 + s.length();
+    }
+
+    private static Long max(Long current, Long reported) {
+        if (reported == null) {
+            return current;
+        }
+        return current == null ? reported : Math.max(current, reported);
+    }
+
+    private static <T> T changed(T previous, T current) {
+        return Objects.equals(previous, current) ? null : current;
+    }
+
+    /**
+     * Index after the last event with a timestamp not later than the given one, so events
+     * with equal timestamps keep their arrival order. Events normally arrive in order, so
+     * the tail is checked before falling back to a binary search. An event without a
+     * timestamp sorts after every event that has one.
+     */
+    private int insertionPoint(Instant timestamp) {
+        int size = events.size();
+        if (timestamp == null || size == 0) {
+            return size;
+        }
+        Instant lastTimestamp = events.get(size - 1).getTimestamp();
+        if (lastTimestamp != null && !timestamp.isBefore(lastTimestamp)) {
+            return size;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Instant midTimestamp = events.get(mid).getTimestamp();
+            if (midTimestamp == null || timestamp.isBefore(midTimestamp)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private QueryTreeNode createNode(String nodeId, QueryEvent event) {
+        return QueryTreeNode.builder()
+                .id(nodeId)
+                .queryId(event.getQueryId())
+                .state(event.getState())
+                .executionTime(event.getExecutionTime())
+                .cpuTime(event.getCpuTime())
+                .wallTime(event.getWallTime())
+                .memoryBytes(event.getPeakMemoryBytes())
+                .inputRows(event.getTotalRows())
+                .inputBytes(event.getTotalBytes())
+                .errorMessage(event.getErrorMessage())
+                .sourceSystem(event.getCatalog())
+                .metadata(event.getMetadata())
+                .children(new ArrayList<>())
+                .build();
+    }
+
+    private String generateNodeId(QueryEvent event) {
+        // Generate unique node ID based on event properties
+        long millis = event.getTimestamp() != null ? event.getTimestamp().toEpochMilli() : 0L;
+        return event.getQueryId() + "-" + event.getEventType() + "-" + millis;
+    }
+
+    private String extractOperatorType(Map<String, Object> stageStats) {
+        // Extract operator type from stage stats
+        // This depends on the actual structure of Trino events
+        if (stageStats.containsKey("operatorType")) {
+            return stageStats.get("operatorType").toString();
+        }
+        return "UNKNOWN";
+    }
+
+    private List<QueryTreeNode> buildOperatorChildren(QueryTreeNode parent, Map<String, Object> operatorStats) {
+        // Build hierarchy from operator stats
+        // This is simplified - adapt based on actual Trino operator structure
+        // Child ids are derived from the parent id and position so they are the same every
+        // time the stats are applied, and deltas can address them
+
+        List<QueryTreeNode> childNodes = new ArrayList<>();
+        if (operatorStats.get("children") instanceof List<?> children) {
+            for (int i = 0; i < children.size(); i++) {
+                if (!(children.get(i) instanceof Map)) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> childStats = (Map<String, Object>) children.get(i);
+
+                QueryTreeNode childNode = QueryTreeNode.builder()
+                        .id(parent.getId() + "-op-" + i)
+                        .queryId(parent.getQueryId())
+                        .parentId(parent.getId())
+                        .operatorType(extractOperatorType(childStats))
+                        .nodeType("OPERATOR")
+                        .metadata(childStats)
+                        .build();
+
+                // Recursively process nested children
+                childNode.setChildren(buildOperatorChildren(childNode, childStats));
+                childNodes.add(childNode);
+            }
+        }
+        return childNodes;
+    }
+
+    private List<QueryTreeNode> buildPlanChildren(QueryTreeNode parent, QueryPlan plan) {
+        List<QueryTreeNode> childNodes = new ArrayList<>();
+        if (plan.getFragments().isEmpty()) {
+            return childNodes;
+        }
+        // Fragment 0 is the output; a fragment no remote source reads from is added alongside
+        String planId = parent.getId() + PLAN_NODE_INFIX;
+        Set<Integer> visited = new HashSet<>();
+        QueryPlan.Fragment output = plan.getFragment(0);
+        addFragment(childNodes, planId, parent, plan, output != null ? output : plan.getFragments().get(0), visited);
+        for (QueryPlan.Fragment fragment : plan.getFragments()) {
+            addFragment(childNodes, planId, parent, plan, fragment, visited);
+        }
+        return childNodes;
+    }
+
+    private static int countNodes(List<QueryTreeNode> nodes) {
+        int count = nodes.size();
+        for (QueryTreeNode node : nodes) {
+            count += countNodes(node.getChildren());
+        }
+        return count;
+    }
+
+    private void addFragment(List<QueryTreeNode> siblings, String planId, QueryTreeNode parent, QueryPlan plan,
+                             QueryPlan.Fragment fragment, Set<Integer> visited) {
+        if (fragment == null || fragment.getRoot() == null || !visited.add(fragment.getId())) {
+            return;
+        }
+        String idPrefix = planId + fragment.getId() + "-";
+        siblings.add(planNode(planId, idPrefix, new int[1], parent, plan, fragment, fragment.getRoot(), visited));
+    }
+
+    // Ids are the fragment and the operator's pre-order position in it, so parsing the same
+    // plan again gives the same ids
+    private QueryTreeNode planNode(String planId, String idPrefix, int[] position, QueryTreeNode parent,
+                                   QueryPlan plan, QueryPlan.Fragment fragment, QueryPlan.Operator operator,
+                                   Set<Integer> visited) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("fragment", fragment.getId());
+        if (fragment.getPartitioning() != null) {
+            metadata.put("partitioning", fragment.getPartitioning());
+        }
+        if (operator.getArguments() != null) {
+            metadata.put("arguments", operator.getArguments());
+        }
+        if (operator.getTable() != null) {
+            metadata.put("table", operator.getTable().qualifiedName());
+        }
+
+        QueryTreeNode node = QueryTreeNode.builder()
+                .id(idPrefix + position[0]++)
+                .queryId(parent.getQueryId())
+                .parentId(parent.getId())
+                .nodeType("OPERATOR")
+                .operatorType(operator.getName())
+                .sourceSystem(operator.getTable() != null ? operator.getTable().getCatalog() : null)
+                .outputRows(operator.getOutputRows())
+                .outputBytes(operator.getOutputBytes())
+                .metadata(metadata)
+                .build();
+
+        List<QueryTreeNode> children = new ArrayList<>();
+        for (QueryPlan.Operator child : operator.getChildren()) {
+            children.add(planNode(planId, idPrefix, position, node, plan, fragment, child, visited));
+        }
+        for (int sourceId : operator.getSourceFragmentIds()) {
+            addFragment(children, planId, node, plan, plan.getFragment(sourceId), visited);
+        }
+        node.setChildren(children);
+        return node;
+    }
+
+    private record Header(String query, String user, String state, Instant startTime, Instant endTime,
+                          Long totalExecutionTime, String errorMessage, String rootId) {
+
+        static final Header EMPTY = new Header(null, null, null, null, null, null, null, null);
+    }
+}
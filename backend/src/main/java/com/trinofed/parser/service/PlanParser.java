@@ -0,0 +1,365 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryPlan;
+import com.trinofed.parser.model.QueryPlan.Fragment;
+import com.trinofed.parser.model.QueryPlan.Operator;
+import com.trinofed.parser.model.QueryPlan.TableHandle;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Parses the text form of a Trino distributed plan into a {@link QueryPlan}, in one pass
+ * over the text and without regular expressions or splitting it into lines.
+ *
+ * The text is a list of {@code Fragment <id> [<partitioning>]} headers, each followed by its
+ * operator tree. An operator line is an operator name, optionally followed by bracketed
+ * arguments, and is introduced by a tree marker ({@code └─}, {@code ├─}, or {@code -} in
+ * older versions) except for the fragment's root. Its column gives its depth: the parent is
+ * the closest preceding operator at a smaller column. Other lines are details of the
+ * operator above them; of those only the {@code Output: <rows> rows (<size>)} statistic is
+ * kept. Table handles are taken from the {@code table = } argument (or the first argument of
+ * a scan in older versions), and remote sources record which fragments they read.
+ *
+ * Text that doesn't look like a plan gives a plan without fragments, not an error.
+ */
+public final class PlanParser {
+
+    static final int MAX_ARGUMENT_CHARS = 512;
+
+    private PlanParser() {
+    }
+
+    /**
+     * The parsed plan, or null for null or blank text.
+     */
+    public static QueryPlan parse(String plan) {
+        if (plan == null || plan.isBlank()) {
+            return null;
+        }
+        return new Parser(plan).run();
+    }
+
+    private static final class Parser {
+
+        private final String text;
+        private final QueryPlan plan = QueryPlan.builder().build();
+        private final Deque<Operator> open = new ArrayDeque<>();
+        private final Deque<Integer> openColumns = new ArrayDeque<>();
+        private Fragment fragment;
+        private Operator last;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        QueryPlan run() {
+            int length = text.length();
+            int start = 0;
+            while (start < length) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = length;
+                }
+                line(start, end > start && text.charAt(end - 1) == '\r' ? end - 1 : end);
+                start = end + 1;
+            }
+            return plan;
+        }
+
+        private void line(int start, int end) {
+            int position = start;
+            while (position < end && isIndent(text.charAt(position))) {
+                position++;
+            }
+            boolean marked = false;
+            if (position + 1 < end && (text.charAt(position) == '└' || text.charAt(position) == '├')
+                    && text.charAt(position + 1) == '─') {
+                position += 2;
+                marked = true;
+            } else if (position + 1 < end && text.charAt(position) == '-' && text.charAt(position + 1) == ' ') {
+                position += 2;
+                marked = true;
+            }
+            while (position < end && text.charAt(position) == ' ') {
+                position++;
+            }
+            if (position == end) {
+                return;
+            }
+
+            if (!marked && text.startsWith("Fragment ", position)) {
+                fragment(position + "Fragment ".length(), end);
+                return;
+            }
+            int nameEnd = operatorNameEnd(position, end, marked);
+            if (nameEnd > 0) {
+                operator(position - start, position, nameEnd, end);
+            } else if (last != null) {
+                detail(position, end);
+            }
+        }
+
+        private void fragment(int position, int end) {
+            int idEnd = position;
+            while (idEnd < end && Character.isDigit(text.charAt(idEnd))) {
+                idEnd++;
+            }
+            if (idEnd == position) {
+                return;
+            }
+            String partitioning = null;
+            int bracket = text.indexOf('[', idEnd);
+            if (bracket >= 0 && bracket < end) {
+                int close = text.indexOf(']', bracket);
+                partitioning = text.substring(bracket + 1, close >= 0 && close < end ? close : end);
+            }
+            fragment = Fragment.builder()
+                    .id(Integer.parseInt(text.substring(position, Math.min(idEnd, position + 9))))
+                    .partitioning(partitioning)
+                    .build();
+            plan.getFragments().add(fragment);
+            open.clear();
+            openColumns.clear();
+            last = null;
+        }
+
+        /**
+         * End of the operator name starting at {@code position}, or -1 if the line is not an
+         * operator. Without a tree marker the name must be followed by arguments or end the
+         * line, so detail lines like {@code Output layout: [...]} aren't taken for operators.
+         */
+        private int operatorNameEnd(int position, int end, boolean marked) {
+            if (!Character.isUpperCase(text.charAt(position))) {
+                return -1;
+            }
+            int nameEnd = position + 1;
+            while (nameEnd < end && Character.isLetterOrDigit(text.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            // Step kinds like Aggregate(FINAL) or Exchange(REMOTE) belong to the name
+            if (nameEnd < end && text.charAt(nameEnd) == '(') {
+                int close = text.indexOf(')', nameEnd);
+                if (close > 0 && close < end) {
+                    nameEnd = close + 1;
+                }
+            }
+            if (nameEnd == end || text.charAt(nameEnd) == '[') {
+                return nameEnd;
+            }
+            if (marked && (text.charAt(nameEnd) == ' ' || text.charAt(nameEnd) == '\t')) {
+                return nameEnd;
+            }
+            return -1;
+        }
+
+        private void operator(int column, int position, int nameEnd, int end) {
+            String arguments = null;
+            if (nameEnd < end && text.charAt(nameEnd) == '[') {
+                int close = matchingBracket(nameEnd, end);
+                arguments = text.substring(nameEnd + 1, close);
+            }
+
+            String name = text.substring(position, nameEnd);
+            Operator operator = Operator.builder()
+                    .name(name)
+                    .arguments(arguments == null || arguments.length() <= MAX_ARGUMENT_CHARS
+                            ? arguments : arguments.substring(0, MAX_ARGUMENT_CHARS) + "...")
+                    .build();
+            if (arguments != null) {
+                operator.setTable(tableHandle(name, arguments));
+                if (name.startsWith("Remote")) {
+                    sourceFragments(operator, arguments);
+                }
+            }
+
+            while (!openColumns.isEmpty() && openColumns.peek() >= column) {
+                open.pop();
+                openColumns.pop();
+            }
+            if (!open.isEmpty()) {
+                open.peek().getChildren().add(operator);
+            } else {
+                if (fragment == null) {
+                    // A plain EXPLAIN has no fragment headers
+                    fragment = Fragment.builder().id(0).build();
+                    plan.getFragments().add(fragment);
+                }
+                if (fragment.getRoot() == null) {
+                    fragment.setRoot(operator);
+                } else {
+                    fragment.getRoot().getChildren().add(operator);
+                }
+            }
+            open.push(operator);
+            openColumns.push(column);
+            last = operator;
+        }
+
+        // The statistics line reads "CPU: ..., Output: 5 rows (145B)"
+        private void detail(int position, int end) {
+            int output = text.indexOf("Output: ", position);
+            if (output < 0 || output >= end) {
+                return;
+            }
+            int cursor = output + "Output: ".length();
+            int numberEnd = numberEnd(cursor, end);
+            int rowsEnd = numberEnd < end && "KMB".indexOf(text.charAt(numberEnd)) >= 0 ? numberEnd + 1 : numberEnd;
+            if (numberEnd == cursor || !text.startsWith(" rows", rowsEnd)) {
+                return;
+            }
+            last.setOutputRows(scaled(cursor, numberEnd, end));
+            int size = rowsEnd + " rows".length();
+            if (size + 1 < end && text.charAt(size) == ' ' && text.charAt(size + 1) == '(') {
+                int sizeStart = size + 2;
+                int sizeEnd = numberEnd(sizeStart, end);
+                if (sizeEnd > sizeStart) {
+                    last.setOutputBytes(dataSize(sizeStart, sizeEnd, end));
+                }
+            }
+        }
+
+        // table = catalog:schema.table, or the first argument of a scan in older plans
+        private TableHandle tableHandle(String name, String arguments) {
+            int value = -1;
+            int at = arguments.indexOf("table = ");
+            while (at >= 0) {
+                if (at == 0 || arguments.charAt(at - 1) == ' ' || arguments.charAt(at - 1) == ',') {
+                    value = at + "table = ".length();
+                    break;
+                }
+                at = arguments.indexOf("table = ", at + 1);
+            }
+            if (value < 0) {
+                if (!name.contains("Scan")) {
+                    return null;
+                }
+                value = 0;
+            }
+            int valueEnd = value;
+            while (valueEnd < arguments.length() && arguments.charAt(valueEnd) != ','
+                    && arguments.charAt(valueEnd) != ' ') {
+                valueEnd++;
+            }
+            return parseTableHandle(arguments.substring(value, valueEnd));
+        }
+
+        // RemoteSource[sourceFragmentIds = [1, 2]] or RemoteSource[1,2]
+        private void sourceFragments(Operator operator, String arguments) {
+            int from = arguments.indexOf("sourceFragmentIds = [");
+            int position = from >= 0 ? from + "sourceFragmentIds = [".length() : 0;
+            int stop = arguments.indexOf(']', position);
+            if (stop < 0) {
+                stop = arguments.length();
+            }
+            int id = -1;
+            for (int i = position; i <= stop; i++) {
+                char c = i < stop ? arguments.charAt(i) : ',';
+                if (Character.isDigit(c)) {
+                    id = (id < 0 ? 0 : id * 10) + (c - '0');
+                    if (id > 1_000_000) {
+                        return;
+                    }
+                } else if (c == ',' || c == ' ') {
+                    if (id >= 0) {
+                        operator.getSourceFragmentIds().add(id);
+                    }
+                    id = -1;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private int matchingBracket(int open, int end) {
+            int depth = 0;
+            for (int i = open; i < end; i++) {
+                char c = text.charAt(i);
+                if (c == '[') {
+                    depth++;
+                } else if (c == ']' && --depth == 0) {
+                    return i;
+                }
+            }
+            return end;
+        }
+
+        private int numberEnd(int position, int end) {
+            int cursor = position;
+            while (cursor < end && (Character.isDigit(text.charAt(cursor)) || text.charAt(cursor) == '.')) {
+                cursor++;
+            }
+            return cursor;
+        }
+
+        // "5", "1.5K", "2M", "3B" rows
+        private long scaled(int start, int numberEnd, int end) {
+            double value = parseNumber(start, numberEnd);
+            char suffix = numberEnd < end ? text.charAt(numberEnd) : ' ';
+            return Math.round(value * switch (suffix) {
+                case 'K' -> 1e3;
+                case 'M' -> 1e6;
+                case 'B' -> 1e9;
+                default -> 1;
+            });
+        }
+
+        // "145B", "1.23kB", "4.50MB", "2GB", "1TB", "3PB"
+        private long dataSize(int start, int numberEnd, int end) {
+            double value = parseNumber(start, numberEnd);
+            char unit = numberEnd < end ? text.charAt(numberEnd) : 'B';
+            return Math.round(value * switch (unit) {
+                case 'k', 'K' -> 1024d;
+                case 'M' -> 1024d * 1024;
+                case 'G' -> 1024d * 1024 * 1024;
+                case 'T' -> 1024d * 1024 * 1024 * 1024;
+                case 'P' -> 1024d * 1024 * 1024 * 1024 * 1024;
+                default -> 1d;
+            });
+        }
+
+        private double parseNumber(int start, int end) {
+            try {
+                return Double.parseDouble(text.substring(start, end));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        private static boolean isIndent(char c) {
+            return c == ' ' || c == '\t' || c == '│' || c == '|';
+        }
+    }
+
+    /**
+     * A connector table handle as printed in plans: {@code catalog:schema.table} for most
+     * connectors, {@code catalog:schema:table} for some. Quotes are removed; anything without
+     * a catalog prefix gives null.
+     */
+    static TableHandle parseTableHandle(String handle) {
+        int colon = handle.indexOf(':');
+        if (colon <= 0 || colon == handle.length() - 1) {
+            return null;
+        }
+        String catalog = unquote(handle.substring(0, colon));
+        String rest = handle.substring(colon + 1);
+        int separator = rest.indexOf(':');
+        if (separator < 0) {
+            separator = rest.indexOf('.');
+        }
+        if (separator <= 0 || separator == rest.length() - 1) {
+            return TableHandle.builder().catalog(catalog).table(unquote(rest)).build();
+        }
+        return TableHandle.builder()
+                .catalog(catalog)
+                .schema(unquote(rest.substring(0, separator)))
+                .table(unquote(rest.substring(separator + 1)))
+                .build();
+    }
+
+    private static String unquote(String name) {
+        return name.length() >= 2 && name.charAt(0) == '"' && name.charAt(name.length() - 1) == '"'
+                ? name.substring(1, name.length() - 1)
+                : name;
+    }
+}
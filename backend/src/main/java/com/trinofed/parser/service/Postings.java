@@ -0,0 +1,137 @@
+package com.trinofed.parser.service;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Posting lists keyed by term: each term maps to a {@link RoaringBitmap} of query ordinals
+ * (see {@link QueryIndex#ordinal}).
+ *
+ * A bitmap is only read or written while holding its monitor, and an empty posting is
+ * removed inside the map's {@code compute} so an add can't land in a bitmap that is being
+ * dropped. Readers get copies, never the live bitmaps.
+ */
+final class Postings {
+
+    private final Map<String, RoaringBitmap> postings = new ConcurrentHashMap<>();
+
+    void add(String term, int ordinal) {
+        postings.compute(term, (key, bitmap) -> {
+            RoaringBitmap posting = bitmap != null ? bitmap : new RoaringBitmap();
+            synchronized (posting) {
+                posting.add(ordinal);
+            }
+            return posting;
+        });
+    }
+
+    void remove(String term, int ordinal) {
+        postings.computeIfPresent(term, (key, posting) -> {
+            synchronized (posting) {
+                posting.remove(ordinal);
+                return posting.isEmpty() ? null : posting;
+            }
+        });
+    }
+
+    /**
+     * A copy of the term's posting; empty if the term has none.
+     */
+    RoaringBitmap get(String term) {
+        RoaringBitmap posting = postings.get(term);
+        if (posting == null) {
+            return new RoaringBitmap();
+        }
+        synchronized (posting) {
+            return posting.clone();
+        }
+    }
+
+    /**
+     * The ordinals posted under any of the terms.
+     */
+    RoaringBitmap union(Collection<String> terms) {
+        RoaringBitmap union = new RoaringBitmap();
+        for (String term : terms) {
+            RoaringBitmap posting = postings.get(term);
+            if (posting != null) {
+                synchronized (posting) {
+                    union.or(posting);
+                }
+            }
+        }
+        return union;
+    }
+
+    /**
+     * The ordinals posted under every one of the terms; empty if any term has none.
+     */
+    RoaringBitmap intersection(Collection<String> terms) {
+        RoaringBitmap result = null;
+        for (String term : terms) {
+            RoaringBitmap posting = postings.get(term);
+            if (posting == null) {
+                return new RoaringBitmap();
+            }
+            synchronized (posting) {
+                if (result == null) {
+                    result = posting.clone();
+                } else {
+                    result.and(posting);
+                }
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result != null ? result : new RoaringBitmap();
+    }
+
+    int cardinality(String term) {
+        RoaringBitmap posting = postings.get(term);
+        if (posting == null) {
+            return 0;
+        }
+        synchronized (posting) {
+            return posting.getCardinality();
+        }
+    }
+
+    Set<String> terms() {
+        return postings.keySet();
+    }
+
+    int size() {
+        return postings.size();
+    }
+
+    /**
+     * Approximate bytes held by the bitmaps and their keys.
+     */
+    long bytes() {
+        long bytes = 0;
+        for (Map.Entry<String, RoaringBitmap> entry : postings.entrySet()) {
+            RoaringBitmap posting = entry.getValue();
+            synchronized (posting) {
+                bytes += posting.getLongSizeInBytes();
+            }
+            bytes += 64 + entry.getKey().length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Compacts runs of consecutive ordinals in every posting; worthwhile after bulk loads.
+     */
+    void optimize() {
+        for (RoaringBitmap posting : postings.values()) {
+            synchronized (posting) {
+                posting.runOptimize();
+            }
+        }
+    }
+}
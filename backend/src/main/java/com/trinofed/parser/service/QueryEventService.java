@@ -1,269 +1,636 @@
 package com.trinofed.parser.service;
 
 import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryFilter;
+import com.trinofed.parser.model.QueryIndexField;
+import com.trinofed.parser.model.QueryIndexMatch;
+import com.trinofed.parser.model.QueryPage;
+import com.trinofed.parser.model.QueryPlan;
+import com.trinofed.parser.model.QuerySearchResult;
+import com.trinofed.parser.model.QueryStatsGroup;
+import com.trinofed.parser.model.QuerySummary;
 import com.trinofed.parser.model.QueryTree;
 import com.trinofed.parser.model.QueryTreeNode;
+import com.trinofed.parser.model.TextBlob;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 public class QueryEventService {
 
-    private final Map<String, QueryTree> queryTrees = new ConcurrentHashMap<>();
-    private final Map<String, List<QueryEvent>> queryEvents = new ConcurrentHashMap<>();
-    private final Map<String, Set<String>> catalogQueries = new ConcurrentHashMap<>();
-    private final Map<String, Set<String>> schemaQueries = new ConcurrentHashMap<>();
-    private final Map<String, Set<String>> tableQueries = new ConcurrentHashMap<>();
-    private final SimpMessagingTemplate messagingTemplate;
+    /**
+     * Receives a {@link com.trinofed.parser.model.QueryTreeDelta} per update. Full trees are
+     * only sent on subscription (see {@code QueryStreamController}) or over REST.
+     */
+    public static final String QUERY_UPDATES_TOPIC = "/topic/query-updates";
+
+    private final Map<String, LiveQueryTree> queryTrees = new ConcurrentHashMap<>();
+    private final QueryIndex queryIndex = new QueryIndex();
+    private final QueryListIndex listIndex = new QueryListIndex();
+    private final QueryTextIndex textIndex = new QueryTextIndex();
+    private final QueryStatsStore statsStore = new QueryStatsStore();
+    private final QueryUpdateBroadcaster broadcaster;
     private final DatabaseService databaseService;
+    private final KeyedLaneExecutor ingestionLanes;
+    private final QueryRetention retention;
+    private final FingerprintAggregator fingerprints;
+    private final SourceActivityService sourceActivity;
+    private final ResponseCache responseCache;
+    private final TextStore textStore;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Timer searchTimer;
+    private final Timer planTimer;
+    private final Timer treeTimer;
+    private final Timer databaseTimer;
+
+    // Per-query state (the live trees) is only touched while holding the query's stripe,
+    // so different queries update in parallel and one query's events apply in order.
+    private final ReentrantLock[] queryLocks;
 
     @Autowired
-    public QueryEventService(SimpMessagingTemplate messagingTemplate, DatabaseService databaseService) {
-        this.messagingTemplate = messagingTemplate;
+    public QueryEventService(QueryUpdateBroadcaster broadcaster, DatabaseService databaseService,
+                             KeyedLaneExecutor ingestionLanes, QueryRetention retention,
+                             FingerprintAggregator fingerprints, SourceActivityService sourceActivity,
+                             ResponseCache responseCache, TextStore textStore, MeterRegistry meterRegistry,
+                             @Value("${trino.ingestion.lock-stripes:64}") int lockStripes) {
+        this.broadcaster = broadcaster;
         this.databaseService = databaseService;
+        this.ingestionLanes = ingestionLanes;
+        this.retention = retention;
+        this.fingerprints = fingerprints;
+        this.sourceActivity = sourceActivity;
+        this.responseCache = responseCache;
+        this.textStore = textStore;
+        this.queryLocks = new ReentrantLock[Integer.highestOneBit(Math.max(1, lockStripes - 1)) << 1];
+        for (int i = 0; i < queryLocks.length; i++) {
+            queryLocks[i] = new ReentrantLock();
+        }
+        meterRegistry.gauge("trino.retention.queries", queryTrees, Map::size);
+        Gauge.builder("trino.search.index.bytes", textIndex, QueryTextIndex::bytes)
+                .description("Estimated heap held by the query text index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("trino.search.index.terms", textIndex, QueryTextIndex::termCount)
+                .description("Distinct tokens in the query text index")
+                .register(meterRegistry);
+        Gauge.builder("trino.index.queries", queryIndex, QueryIndex::size)
+                .description("Queries with postings in the attribute index")
+                .register(meterRegistry);
+        Gauge.builder("trino.index.bitmap.bytes", queryIndex, QueryIndex::bitmapBytes)
+                .description("Approximate heap held by the attribute index bitmaps")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("trino.query-stats.bytes", statsStore, QueryStatsStore::bytes)
+                .description("Heap held by the columnar query statistics")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.searchTimer = Timer.builder("trino.search.latency")
+                .description("Time to answer a query text search")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.planTimer = stageTimer(meterRegistry, "plan");
+        this.treeTimer = stageTimer(meterRegistry, "tree");
+        this.databaseTimer = stageTimer(meterRegistry, "database");
+    }
+
+    /**
+     * Time spent in one ingestion stage, per event ({@code broadcast}: per delta sent),
+     * tagged by {@code stage}. Each stage's owner registers its timer once and records
+     * {@link System#nanoTime()} differences, so timing an event allocates nothing.
+     */
+    public static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("trino.ingestion.stage")
+                .description("Time spent in one ingestion stage")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     public void processEvent(QueryEvent event) {
         String queryId = event.getQueryId();
 
-        // Store event
-        queryEvents.computeIfAbsent(queryId, k -> new ArrayList<>()).add(event);
+        withQueryLock(queryId, () -> {
+            LiveQueryTree tree = storeEvent(event);
+
+            // Send what changed via WebSocket
+            broadcaster.publish(tree.drainDelta());
+
+            if (log.isDebugEnabled()) {
+                log.debug("Processed event for query: {}, catalog: {}, schema: {}, table: {}, total events: {}",
+                        queryId, event.getCatalog(), event.getSchema(), event.getTableName(),
+                        tree.eventCount());
+            }
+            return null;
+        });
+
+        databaseService.publishSnapshot();
+        evictIfOverLimit();
+    }
+
+    /**
+     * Bulk variant of {@link #processEvent(QueryEvent)} used by the batch Kafka listener.
+     * Events are grouped by query (keeping their arrival order) and every touched query
+     * is broadcast once, as a single delta covering all of its events in the batch.
+     * Queries are partitioned across the ingestion lanes by queryId, and this call returns
+     * once every lane has finished its share of the batch.
+     */
+    public void processEvents(Collection<QueryEvent> events) {
+        processEvents(events, true);
+    }
+
+    /**
+     * Applies events read back from the event log at startup like {@link #processEvents(Collection)},
+     * but only rebuilds state: nothing is broadcast, and the catalog snapshot is published
+     * once by {@link #finishReplay()} rather than after every batch.
+     */
+    public void replayEvents(Collection<QueryEvent> events) {
+        processEvents(events, false);
+    }
+
+    /**
+     * Ends a startup replay: publishes the rebuilt catalog and compacts the indexes.
+     */
+    public void finishReplay() {
+        queryIndex.optimize();
+        textIndex.optimize();
+        databaseService.publishSnapshot();
+    }
+
+    private void processEvents(Collection<QueryEvent> events, boolean live) {
+        Map<String, List<QueryEvent>> eventsByQuery = new LinkedHashMap<>();
+        for (QueryEvent event : events) {
+            if (event == null || event.getQueryId() == null) {
+                continue;
+            }
+            eventsByQuery.computeIfAbsent(event.getQueryId(), k -> new ArrayList<>()).add(event);
+        }
+
+        if (eventsByQuery.size() <= 1 || ingestionLanes.laneCount() == 1) {
+            eventsByQuery.forEach((queryId, batch) -> applyQueryBatch(queryId, batch, live));
+        } else {
+            List<List<String>> queriesByLane = new ArrayList<>(ingestionLanes.laneCount());
+            for (int i = 0; i < ingestionLanes.laneCount(); i++) {
+                queriesByLane.add(new ArrayList<>());
+            }
+            for (String queryId : eventsByQuery.keySet()) {
+                queriesByLane.get(ingestionLanes.laneFor(queryId)).add(queryId);
+            }
+
+            List<CompletableFuture<Void>> lanes = new ArrayList<>();
+            for (int lane = 0; lane < queriesByLane.size(); lane++) {
+                List<String> queryIds = queriesByLane.get(lane);
+                if (!queryIds.isEmpty()) {
+                    lanes.add(ingestionLanes.submit(lane, () ->
+                            queryIds.forEach(queryId -> applyQueryBatch(queryId, eventsByQuery.get(queryId), live))));
+                }
+            }
+            CompletableFuture.allOf(lanes.toArray(new CompletableFuture[0])).join();
+        }
+
+        log.debug("Processed batch of {} events across {} queries", events.size(), eventsByQuery.size());
+
+        // Catalog readers see the batch's changes together, once every lane is done
+        if (live) {
+            databaseService.publishSnapshot();
+        }
+        evictIfOverLimit();
+    }
+
+    // Replayed trees are not drained, like restored ones: their first live delta covers them whole
+    private void applyQueryBatch(String queryId, List<QueryEvent> batch, boolean live) {
+        try {
+            withQueryLock(queryId, () -> {
+                LiveQueryTree tree = null;
+                for (QueryEvent event : batch) {
+                    tree = storeEvent(event);
+                }
+                if (live) {
+                    broadcaster.publish(tree.drainDelta());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Error processing {} events for query: {}", batch.size(), queryId, e);
+        }
+    }
+
+    private <T> T withQueryLock(String queryId, Supplier<T> action) {
+        int h = queryId.hashCode();
+        ReentrantLock lock = queryLocks[(h ^ (h >>> 16)) & (queryLocks.length - 1)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private LiveQueryTree storeEvent(QueryEvent event) {
+        // Parsed once for both the tree and catalog discovery
+        long start = System.nanoTime();
+        QueryPlan plan = PlanParser.parse(event.getPlan());
+        long parsed = System.nanoTime();
+        planTimer.record(parsed - start, TimeUnit.NANOSECONDS);
+        LiveQueryTree tree = applyToTree(event, plan);
+        long applied = System.nanoTime();
+        treeTimer.record(applied - parsed, TimeUnit.NANOSECONDS);
 
         // Process database information IMMEDIATELY
-        databaseService.processEvent(event);
-        
-        // Invalidate catalog cache to ensure fresh data
+        databaseService.processEvent(event, plan, queryIndex.ordinal(event.getQueryId()));
+        databaseTimer.record(System.nanoTime() - applied, TimeUnit.NANOSECONDS);
+
         if (event.getCatalog() != null) {
-            // Force immediate database discovery
             log.debug("Processing new catalog discovery: {}", event.getCatalog());
         }
+        return tree;
+    }
 
-        // Track database metadata
+    private LiveQueryTree applyToTree(QueryEvent event, QueryPlan plan) {
+        String queryId = event.getQueryId();
+
+        // Retained with its plan compressed and its texts shared with identical ones
+        textStore.store(event);
+
+        // Apply the event to the query's live tree
+        LiveQueryTree tree = queryTrees.computeIfAbsent(queryId, LiveQueryTree::new);
+        long bytesBefore = tree.getEstimatedBytes();
+        boolean wasCompleted = tree.getCompletedAt() != null;
+        tree.apply(event, plan);
+        retention.addRetainedBytes(tree.getEstimatedBytes() - bytesBefore);
+        responseCache.invalidate(ResponseCache.queryKey(queryId));
+        QuerySummary summary = tree.summary();
+        listIndex.update(summary);
+
+        // Track database metadata; the tree remembers its keys so eviction can undo this
+        int ordinal = queryIndex.ordinal(queryId);
+        textIndex.index(ordinal, event.getQuery());
+        statsStore.record(ordinal, summary, event);
         if (event.getCatalog() != null) {
-            catalogQueries.computeIfAbsent(event.getCatalog(), k -> new HashSet<>()).add(queryId);
+            addToIndex(tree, QueryIndexField.CATALOG, event.getCatalog(), ordinal);
         }
         if (event.getSchema() != null) {
             String fullSchema = (event.getCatalog() != null ? event.getCatalog() + "." : "") + event.getSchema();
-            schemaQueries.computeIfAbsent(fullSchema, k -> new HashSet<>()).add(queryId);
+            addToIndex(tree, QueryIndexField.SCHEMA, fullSchema, ordinal);
         }
         if (event.getTableName() != null) {
             String fullTable = (event.getCatalog() != null ? event.getCatalog() + "." : "") + 
                              (event.getSchema() != null ? event.getSchema() + "." : "") + event.getTableName();
-            tableQueries.computeIfAbsent(fullTable, k -> new HashSet<>()).add(queryId);
+            addToIndex(tree, QueryIndexField.TABLE, fullTable, ordinal);
         }
-
-        // Build or update query tree
-        QueryTree tree = buildQueryTree(queryId);
-
-        // Send update via WebSocket
-        messagingTemplate.convertAndSend("/topic/query-updates", tree);
-
-        log.info("Processed event for query: {}, catalog: {}, schema: {}, table: {}, total events: {}",
-                queryId, event.getCatalog(), event.getSchema(), event.getTableName(), 
-                queryEvents.get(queryId).size());
+        replaceInIndex(tree, QueryIndexField.USER, summary.getUser(), ordinal);
+        replaceInIndex(tree, QueryIndexField.STATE, summary.getState(), ordinal);
+        replaceInIndex(tree, QueryIndexField.FINGERPRINT, summary.getFingerprint(), ordinal);
+
+        // A query counts towards its fingerprint and the sources it read once, when it completes
+        if (!wasCompleted && tree.getCompletedAt() != null) {
+            if (tree.getFingerprint() != null) {
+                fingerprints.record(tree.getFingerprint(), tree::normalizedQuery,
+                        summary, event, tree.getCompletedAt());
+            }
+            sourceActivity.recordCompleted(summary, event, tree.getCompletedAt(),
+                    tree.getIndexKeys(QueryIndexField.CATALOG), tree.getIndexKeys(QueryIndexField.TABLE));
+        }
+        return tree;
     }
 
-    private QueryTree buildQueryTree(String queryId) {
-        List<QueryEvent> events = queryEvents.get(queryId);
-
-        if (events == null || events.isEmpty()) {
-            return null;
+    private void addToIndex(LiveQueryTree tree, QueryIndexField field, String value, int ordinal) {
+        if (tree.getIndexKeys(field).add(value)) {
+            queryIndex.add(field, value, ordinal);
         }
+    }
 
-        // Sort events by timestamp
-        events.sort(Comparator.comparing(QueryEvent::getTimestamp));
+    // For single-valued fields: the query is posted under the latest value only
+    private void replaceInIndex(LiveQueryTree tree, QueryIndexField field, String value, int ordinal) {
+        Set<String> keys = tree.getIndexKeys(field);
+        if (value != null && keys.size() == 1 && keys.contains(value)) {
+            return;
+        }
+        keys.forEach(previous -> queryIndex.remove(field, previous, ordinal));
+        keys.clear();
+        if (value != null) {
+            keys.add(value);
+            queryIndex.add(field, value, ordinal);
+        }
+    }
 
-        // Find the latest event with complete information
-        QueryEvent latestEvent = events.get(events.size() - 1);
+    /**
+     * Every retained query's events in the order they were applied, for a state snapshot.
+     * Must be called while ingestion is held off ({@code EventLog.atConsistentPoint}): the
+     * lists are {@link LiveQueryTree#appliedEvents()} views, so this takes no query lock and
+     * copies no events, and the lists stay as they are once ingestion resumes.
+     */
+    public Map<String, List<QueryEvent>> exportQueryEvents() {
+        Map<String, List<QueryEvent>> exported = new LinkedHashMap<>();
+        for (LiveQueryTree tree : queryTrees.values()) {
+            exported.put(tree.getQueryId(), tree.appliedEvents());
+        }
+        return exported;
+    }
 
-        // Build tree structure from stage stats and operator stats
-        QueryTreeNode root = buildTreeFromEvents(events);
+    /**
+     * Rebuilds query trees and the secondary indexes from a state snapshot, spread over the
+     * ingestion lanes like a batch. Events carry their plans stored already and
+     * {@code parsedPlans} holds those plans parsed, keyed by the stored blob, so nothing is
+     * parsed again; a plan missing from it is parsed. Database metadata is restored
+     * separately, so events only mark their queries as counted by {@link DatabaseService}
+     * (with the ordinals they get here) and nothing is broadcast.
+     */
+    public void restoreQueryEvents(Map<String, List<QueryEvent>> queryEvents, Map<TextBlob, QueryPlan> parsedPlans) {
+        List<List<String>> queriesByLane = new ArrayList<>(ingestionLanes.laneCount());
+        for (int i = 0; i < ingestionLanes.laneCount(); i++) {
+            queriesByLane.add(new ArrayList<>());
+        }
+        for (String queryId : queryEvents.keySet()) {
+            queriesByLane.get(ingestionLanes.laneFor(queryId)).add(queryId);
+        }
 
-        return QueryTree.builder()
-                .queryId(queryId)
-                .query(latestEvent.getQuery())
-                .user(latestEvent.getUser())
-                .state(latestEvent.getState())
-                .startTime(events.get(0).getTimestamp())
-                .endTime(latestEvent.getTimestamp())
-                .totalExecutionTime(latestEvent.getExecutionTime())
-                .errorMessage(latestEvent.getErrorMessage())
-                .root(root)
-                .events(new ArrayList<>(events))
-                .build();
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int lane = 0; lane < queriesByLane.size(); lane++) {
+            List<String> queryIds = queriesByLane.get(lane);
+            if (!queryIds.isEmpty()) {
+                lanes.add(ingestionLanes.submit(lane, () -> queryIds.forEach(queryId -> withQueryLock(queryId, () -> {
+                    for (QueryEvent event : queryEvents.get(queryId)) {
+                        QueryPlan plan = parsedPlans.get(event.getStoredPlan());
+                        if (plan == null) {
+                            plan = PlanParser.parse(event.getPlan());
+                        }
+                        applyToTree(event, plan);
+                        databaseService.markQuerySeen(event, plan, queryIndex.ordinal(queryId));
+                    }
+                    return null;
+                }))));
+            }
+        }
+        CompletableFuture.allOf(lanes.toArray(new CompletableFuture[0])).join();
+        queryIndex.optimize();
+        textIndex.optimize();
+        evictIfOverLimit();
     }
 
-    private QueryTreeNode buildTreeFromEvents(List<QueryEvent> events) {
-        // Build a hierarchical tree from events
-        // This is a simplified version - you'll need to adapt based on actual Trino event structure
-
-        Map<String, QueryTreeNode> nodeMap = new HashMap<>();
-        QueryTreeNode root = null;
+    private void evictIfOverLimit() {
+        if (retention.isOverLimit(queryTrees.size())) {
+            enforceRetention();
+        }
+    }
 
-        for (QueryEvent event : events) {
-            String nodeId = generateNodeId(event);
-
-            QueryTreeNode node = nodeMap.computeIfAbsent(nodeId, k ->
-                    QueryTreeNode.builder()
-                            .id(nodeId)
-                            .queryId(event.getQueryId())
-                            .state(event.getState())
-                            .executionTime(event.getExecutionTime())
-                            .cpuTime(event.getCpuTime())
-                            .wallTime(event.getWallTime())
-                            .memoryBytes(event.getPeakMemoryBytes())
-                            .inputRows(event.getTotalRows())
-                            .inputBytes(event.getTotalBytes())
-                            .errorMessage(event.getErrorMessage())
-                            .sourceSystem(event.getCatalog())
-                            .metadata(event.getMetadata())
-                            .children(new ArrayList<>())
-                            .build()
-            );
-
-            // Extract operator type and node type from stage stats
-            if (event.getStageStats() != null) {
-                node.setOperatorType(extractOperatorType(event.getStageStats()));
-                node.setNodeType("STAGE");
+    /**
+     * Evicts the queries {@link QueryRetention} selects. Runs after ingestion when a count or
+     * byte limit is exceeded and periodically for the age limit. Must not be called while
+     * holding a query lock; if another thread is already evicting, this call does nothing.
+     */
+    @Scheduled(fixedDelayString = "${trino.retention.sweep-interval-ms:30000}")
+    public void enforceRetention() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            Map<String, String> victims = retention.selectEvictions(queryTrees.values(), Instant.now());
+            victims.forEach(this::evict);
+            if (!victims.isEmpty()) {
+                databaseService.forgetQueriesBelow(queryIndex.lowestReusableOrdinal());
+                log.info("Evicted {} queries, {} retained (~{} bytes)",
+                        victims.size(), queryTrees.size(), retention.getRetainedBytes());
             }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
 
-            // Parse operator stats to build parent-child relationships
-            if (event.getOperatorStats() != null) {
-                buildOperatorHierarchy(node, event.getOperatorStats(), nodeMap);
+    /**
+     * Removes a query and every index entry pointing at it, under the query's lock,
+     * so no reader or writer sees the query half-removed.
+     */
+    private void evict(String queryId, String reason) {
+        withQueryLock(queryId, () -> {
+            LiveQueryTree tree = queryTrees.remove(queryId);
+            if (tree == null) {
+                return null;
             }
-
-            if (root == null) {
-                root = node;
+            Integer ordinal = queryIndex.existingOrdinal(queryId);
+            if (ordinal != null) {
+                textIndex.remove(ordinal);
+                statsStore.remove(ordinal);
             }
-        }
+            queryIndex.release(queryId, tree.getIndexKeys());
+            listIndex.remove(queryId);
+            responseCache.invalidate(ResponseCache.queryKey(queryId));
+            retention.addRetainedBytes(-tree.getEstimatedBytes());
+            retention.recordEviction(reason);
+            log.debug("Evicted query {} ({})", queryId, reason);
+            return null;
+        });
+    }
 
-        return root;
+    /**
+     * Returns the query's current tree and marks it as used for retention.
+     */
+    public QueryTree getQueryTree(String queryId) {
+        LiveQueryTree tree = queryTrees.get(queryId);
+        if (tree == null) {
+            return null;
+        }
+        tree.touch();
+        return snapshotOf(tree);
     }
 
-    private String generateNodeId(QueryEvent event) {
-        // Generate unique node ID based on event properties
-        return event.getQueryId() + "-" + event.getEventType() + "-" + event.getTimestamp().toEpochMilli();
+    /**
+     * Returns the query's current {@link LiveQueryTree#getRevision() revision}, or null if it
+     * isn't retained, and marks it as used for retention. Builds nothing, so revalidating a
+     * cached tree costs no more than this.
+     */
+    public Long getQueryRevision(String queryId) {
+        LiveQueryTree tree = queryTrees.get(queryId);
+        if (tree == null) {
+            return null;
+        }
+        tree.touch();
+        return tree.getRevision();
     }
 
-    private String extractOperatorType(Map<String, Object> stageStats) {
-        // Extract operator type from stage stats
-        // This depends on the actual structure of Trino events
-        if (stageStats.containsKey("operatorType")) {
-            return stageStats.get("operatorType").toString();
+    /**
+     * Plan text of the query's latest event that has one, or null. Deltas leave plans out;
+     * clients fetch them here when they need the text.
+     */
+    public String getQueryPlan(String queryId) {
+        QueryTree tree = getQueryTree(queryId);
+        if (tree == null) {
+            return null;
         }
-        return "UNKNOWN";
-    }
-
-    private void buildOperatorHierarchy(QueryTreeNode parent, Map<String, Object> operatorStats,
-                                         Map<String, QueryTreeNode> nodeMap) {
-        // Build hierarchy from operator stats
-        // This is simplified - adapt based on actual Trino operator structure
-
-        if (operatorStats.containsKey("children")) {
-            Object childrenObj = operatorStats.get("children");
-            if (childrenObj instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> children = (List<Map<String, Object>>) childrenObj;
-
-                for (Map<String, Object> childStats : children) {
-                    String childId = parent.getId() + "-child-" + UUID.randomUUID();
-                    QueryTreeNode childNode = QueryTreeNode.builder()
-                            .id(childId)
-                            .queryId(parent.getQueryId())
-                            .parentId(parent.getId())
-                            .operatorType(extractOperatorType(childStats))
-                            .nodeType("OPERATOR")
-                            .metadata(childStats)
-                            .children(new ArrayList<>())
-                            .build();
-
-                    nodeMap.put(childId, childNode);
-                    parent.getChildren().add(childNode);
-
-                    // Recursively process nested children
-                    buildOperatorHierarchy(childNode, childStats, nodeMap);
-                }
+        List<QueryEvent> events = tree.getEvents();
+        for (int i = events.size() - 1; i >= 0; i--) {
+            if (events.get(i).hasPlan()) {
+                return events.get(i).getPlan();
             }
         }
+        return null;
     }
 
-    public QueryTree getQueryTree(String queryId) {
-        return buildQueryTree(queryId);
+    /**
+     * A lookup of the last published snapshot; the lock is only taken when the tree
+     * changed since it was last read. Bulk reads go through here directly so that
+     * listing every query doesn't count as using it.
+     */
+    private QueryTree snapshotOf(String queryId) {
+        LiveQueryTree tree = queryTrees.get(queryId);
+        return tree != null ? snapshotOf(tree) : null;
+    }
+
+    private QueryTree snapshotOf(LiveQueryTree tree) {
+        QueryTree snapshot = tree.publishedSnapshot();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        return withQueryLock(tree.getQueryId(), tree::snapshot);
     }
 
     public List<String> getAllQueryIds() {
-        return new ArrayList<>(queryEvents.keySet());
+        return new ArrayList<>(queryTrees.keySet());
     }
 
     public List<QueryTree> getAllQueryTrees() {
-        return queryEvents.keySet().stream()
-                .map(this::buildQueryTree)
+        return queryTrees.values().stream()
+                .map(this::snapshotOf)
                 .filter(Objects::nonNull)
                 .toList();
     }
 
+    /**
+     * One page of query summaries matching the filter, in the filter's order. Throws
+     * {@link IllegalArgumentException} for a cursor from a different sort or a malformed one.
+     */
+    public QueryPage getQueryPage(QueryFilter filter) {
+        return listIndex.page(filter, queryIndex.match(filter.indexCriteria()));
+    }
+
+    /**
+     * Queries whose SQL text matches every term of {@code text} and that pass the filter,
+     * best match first. The filter's sort is ignored.
+     */
+    public QuerySearchResult searchQueries(String text, QueryFilter filter) {
+        long start = System.nanoTime();
+        try {
+            Map<String, Double> scores = new HashMap<>();
+            textIndex.search(text).forEach((ordinal, score) -> {
+                String queryId = queryIndex.queryId(ordinal);
+                if (queryId != null) {
+                    scores.put(queryId, score);
+                }
+            });
+            return listIndex.searchPage(scores, filter, queryIndex.match(filter.indexCriteria()));
+        } finally {
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Ids of the queries matching every field in {@code criteria} (each field matching any
+     * of its values), up to {@code limit}, with the total number of matches.
+     */
+    public QueryIndexMatch matchQueries(Map<QueryIndexField, List<String>> criteria, int limit) {
+        QueryIndex.Match match = queryIndex.match(criteria);
+        if (match == null) {
+            return QueryIndexMatch.builder()
+                    .count(queryTrees.size())
+                    .queryIds(queryTrees.keySet().stream().limit(limit).toList())
+                    .build();
+        }
+        return QueryIndexMatch.builder().count(match.size()).queryIds(match.queryIds(limit)).build();
+    }
+
+    /**
+     * Every indexed value of the field with its number of queries.
+     */
+    public Map<String, Integer> getIndexCounts(QueryIndexField field) {
+        return queryIndex.counts(field);
+    }
+
+    /**
+     * CPU, memory, time and I/O statistics of the retained queries matching the filter's time
+     * range, states, users and catalogs, grouped by catalog, user or state (or not grouped
+     * when {@code groupBy} is null). Computed by scanning {@link QueryStatsStore}.
+     */
+    public List<QueryStatsGroup> getQueryStats(QueryIndexField groupBy, QueryFilter filter) {
+        return statsStore.aggregate(groupBy, filter);
+    }
+
     public List<String> getAllCatalogs() {
-        return new ArrayList<>(catalogQueries.keySet());
+        return queryIndex.values(QueryIndexField.CATALOG);
     }
 
     public List<String> getAllSchemas() {
-        return new ArrayList<>(schemaQueries.keySet());
+        return queryIndex.values(QueryIndexField.SCHEMA);
     }
 
     public List<String> getAllTables() {
-        return new ArrayList<>(tableQueries.keySet());
+        return queryIndex.values(QueryIndexField.TABLE);
     }
 
     public List<QueryTree> getQueriesByCatalog(String catalog) {
-        Set<String> queryIds = catalogQueries.get(catalog);
-        if (queryIds == null) {
-            return new ArrayList<>();
-        }
-        return queryIds.stream()
-                .map(this::buildQueryTree)
+        return queryIdsMatching(QueryIndexField.CATALOG, catalog).stream()
+                .map(this::snapshotOf)
                 .filter(Objects::nonNull)
                 .toList();
     }
 
     public List<QueryTree> getQueriesBySchema(String schema) {
-        Set<String> queryIds = schemaQueries.get(schema);
-        if (queryIds == null) {
-            return new ArrayList<>();
-        }
-        return queryIds.stream()
-                .map(this::buildQueryTree)
+        return queryIdsMatching(QueryIndexField.SCHEMA, schema).stream()
+                .map(this::snapshotOf)
                 .filter(Objects::nonNull)
                 .toList();
     }
 
     public List<QueryTree> getQueriesByTable(String table) {
-        Set<String> queryIds = tableQueries.get(table);
-        if (queryIds == null) {
-            return new ArrayList<>();
-        }
-        return queryIds.stream()
-                .map(this::buildQueryTree)
+        return queryIdsMatching(QueryIndexField.TABLE, table).stream()
+                .map(this::snapshotOf)
                 .filter(Objects::nonNull)
                 .toList();
     }
 
+    private List<String> queryIdsMatching(QueryIndexField field, String value) {
+        return queryIndex.match(Map.of(field, List.of(value))).queryIds(Integer.MAX_VALUE);
+    }
+
     public Map<String, Object> getDatabaseSummary() {
         Map<String, Object> summary = new HashMap<>();
         summary.put("catalogs", getAllCatalogs());
         summary.put("schemas", getAllSchemas());
         summary.put("tables", getAllTables());
-        summary.put("totalQueries", queryEvents.size());
+        summary.put("totalQueries", queryTrees.size());
         
-        Map<String, Integer> catalogCounts = new HashMap<>();
-        catalogQueries.forEach((catalog, queries) -> catalogCounts.put(catalog, queries.size()));
-        summary.put("catalogQueryCounts", catalogCounts);
+        summary.put("catalogQueryCounts", queryIndex.counts(QueryIndexField.CATALOG));
+
+        Map<String, Object> index = new HashMap<>();
+        index.put("indexedQueries", queryIndex.size());
+        index.put("bitmapBytes", queryIndex.bitmapBytes());
+        index.put("textDocuments", textIndex.documentCount());
+        index.put("textTerms", textIndex.termCount());
+        index.put("textBytes", textIndex.bytes());
+        index.put("fingerprints", fingerprints.size());
+        index.put("fingerprintBytes", fingerprints.bytes());
+        index.put("statsChunks", statsStore.chunkCount());
+        index.put("statsBytes", statsStore.bytes());
+        summary.put("index", index);
+
+        Map<String, Object> retained = new HashMap<>();
+        retained.put("queries", queryTrees.size());
+        retained.put("estimatedBytes", retention.getRetainedBytes());
+        retained.put("evictions", retention.getEvictionCounts());
+        summary.put("retention", retained);
         
         return summary;
     }
@@ -0,0 +1,230 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryIndexField;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inverted indexes over the retained queries, one per {@link QueryIndexField}. Each query
+ * gets an int ordinal when it is first indexed and every (field, value) posting is a
+ * {@link RoaringBitmap} of ordinals, so a lookup like "catalog=postgresql AND state=FAILED
+ * AND user=etl" is a couple of bitmap ORs and ANDs, not a walk over id sets.
+ *
+ * Ordinals are handed out in increasing order and never to a different query, so a bitmap
+ * taken by a reader never points at another query than the one it was built from. Evicted
+ * ordinals simply empty out their bitmap containers, which Roaring then drops. The ordinals
+ * of the last {@value #REMEMBERED_RELEASES} released queries are remembered: a late event
+ * that brings one back gets its old ordinal, so per-ordinal dedup elsewhere (the catalog's
+ * query counts) still sees it as the same query.
+ *
+ * Postings are changed under the query's lock in {@link QueryEventService}. The ordinals
+ * are shared with {@link QueryTextIndex}.
+ */
+final class QueryIndex {
+
+    static final int REMEMBERED_RELEASES = 10_000;
+
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    // Sorted, so the lowest live ordinal is its first key
+    private final ConcurrentNavigableMap<Integer, String> queryIds = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextOrdinal = new AtomicInteger();
+    private final Map<QueryIndexField, Postings> postings = new EnumMap<>(QueryIndexField.class);
+    // Released queries' ordinals, oldest release first; guarded by itself
+    private final Map<String, Integer> released = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > REMEMBERED_RELEASES;
+        }
+    };
+
+    QueryIndex() {
+        for (QueryIndexField field : QueryIndexField.values()) {
+            postings.put(field, new Postings());
+        }
+    }
+
+    /**
+     * The query's ordinal, assigning one if it has none: the one it had if it was released
+     * recently, the next one otherwise. Called under the query's lock.
+     */
+    int ordinal(String queryId) {
+        Integer ordinal = ordinals.get(queryId);
+        if (ordinal == null) {
+            synchronized (released) {
+                ordinal = released.remove(queryId);
+            }
+            if (ordinal == null) {
+                ordinal = nextOrdinal.getAndIncrement();
+            }
+            queryIds.put(ordinal, queryId);
+            ordinals.put(queryId, ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * The query's ordinal, or null if it isn't indexed.
+     */
+    Integer existingOrdinal(String queryId) {
+        return ordinals.get(queryId);
+    }
+
+    /**
+     * The smallest ordinal of an indexed query, or the next one to hand out if there is none.
+     */
+    int lowestOrdinal() {
+        int upper = nextOrdinal.get();
+        Map.Entry<Integer, String> lowest = queryIds.firstEntry();
+        return lowest != null ? lowest.getKey() : upper;
+    }
+
+    /**
+     * The smallest ordinal that is indexed or could be again: every ordinal below it belongs
+     * to a query that is gone and won't come back under it.
+     */
+    int lowestReusableOrdinal() {
+        int lowest = lowestOrdinal();
+        synchronized (released) {
+            for (int ordinal : released.values()) {
+                lowest = Math.min(lowest, ordinal);
+            }
+        }
+        return lowest;
+    }
+
+    String queryId(int ordinal) {
+        return queryIds.get(ordinal);
+    }
+
+    void add(QueryIndexField field, String value, int ordinal) {
+        postings.get(field).add(value, ordinal);
+    }
+
+    void remove(QueryIndexField field, String value, int ordinal) {
+        postings.get(field).remove(value, ordinal);
+    }
+
+    /**
+     * Removes the query from the given postings and unindexes its ordinal, remembering it
+     * for the query id.
+     */
+    void release(String queryId, Map<QueryIndexField, ? extends Collection<String>> keys) {
+        Integer ordinal = ordinals.get(queryId);
+        if (ordinal == null) {
+            return;
+        }
+        keys.forEach((field, values) -> values.forEach(value -> remove(field, value, ordinal)));
+        ordinals.remove(queryId);
+        queryIds.remove(ordinal);
+        synchronized (released) {
+            released.put(queryId, ordinal);
+        }
+    }
+
+    /**
+     * Queries matching every field in {@code criteria}, each field matching any of its values,
+     * or null when there are no criteria (everything matches).
+     */
+    Match match(Map<QueryIndexField, ? extends Collection<String>> criteria) {
+        RoaringBitmap result = null;
+        for (Map.Entry<QueryIndexField, ? extends Collection<String>> criterion : criteria.entrySet()) {
+            RoaringBitmap union = postings.get(criterion.getKey()).union(criterion.getValue());
+            if (result == null) {
+                result = union;
+            } else {
+                result.and(union);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result != null ? new Match(result) : null;
+    }
+
+    /**
+     * Every indexed value of the field with the number of queries it has.
+     */
+    Map<String, Integer> counts(QueryIndexField field) {
+        Postings values = postings.get(field);
+        Map<String, Integer> counts = new HashMap<>();
+        for (String value : values.terms()) {
+            int count = values.cardinality(value);
+            if (count > 0) {
+                counts.put(value, count);
+            }
+        }
+        return counts;
+    }
+
+    List<String> values(QueryIndexField field) {
+        return new ArrayList<>(postings.get(field).terms());
+    }
+
+    int size() {
+        return ordinals.size();
+    }
+
+    /**
+     * Approximate bytes held by all postings.
+     */
+    long bitmapBytes() {
+        return postings.values().stream().mapToLong(Postings::bytes).sum();
+    }
+
+    /**
+     * Compacts runs of consecutive ordinals in every posting; worthwhile after bulk loads.
+     */
+    void optimize() {
+        postings.values().forEach(Postings::optimize);
+    }
+
+    /**
+     * A private copy of the matching ordinals, resolved to query ids on demand. Ids of
+     * queries evicted since the match was taken are skipped.
+     */
+    final class Match {
+
+        private final RoaringBitmap matching;
+
+        private Match(RoaringBitmap matching) {
+            this.matching = matching;
+        }
+
+        int size() {
+            return matching.getCardinality();
+        }
+
+        boolean contains(String queryId) {
+            Integer ordinal = ordinals.get(queryId);
+            return ordinal != null && matching.contains(ordinal);
+        }
+
+        boolean contains(int ordinal) {
+            return matching.contains(ordinal);
+        }
+
+        List<String> queryIds(int limit) {
+            List<String> ids = new ArrayList<>(Math.min(limit, size()));
+            PeekableIntIterator iterator = matching.getIntIterator();
+            while (iterator.hasNext() && ids.size() < limit) {
+                String queryId = queryIds.get(iterator.next());
+                if (queryId != null) {
+                    ids.add(queryId);
+                }
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryFilter;
+import com.trinofed.parser.model.QueryPage;
+import com.trinofed.parser.model.QuerySearchHit;
+import com.trinofed.parser.model.QuerySearchResult;
+import com.trinofed.parser.model.QuerySort;
+import com.trinofed.parser.model.QuerySummary;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.ToLongFunction;
+
+/**
+ * Indexes behind the paginated query list: the latest {@link QuerySummary} of every retained
+ * query and one sorted set per {@link QuerySort}. Catalog, schema, table, user, state and
+ * fingerprint filters are resolved by {@link QueryIndex} beforehand.
+ *
+ * A page walks the sorted set for the requested order from the cursor on, skipping queries
+ * that fail the filters, and stops once it has a full page, so a page over a dense filter
+ * costs about its own size. When the index match is selective, only the matching summaries
+ * are sorted instead of walking past everything else.
+ *
+ * The cursor is the sort value and query id of the last item returned; ids break ties, so
+ * paging is stable while queries are added or change position.
+ *
+ * {@link #update} and {@link #remove} are called under the query's lock in
+ * {@link QueryEventService}; pages are read without locks. A query that moves while a page
+ * is being read can be missed by that page or appear on the next one as well.
+ */
+final class QueryListIndex {
+
+    static final int MAX_LIMIT = 500;
+
+    private static final String SEARCH_CURSOR = "score";
+
+    // Below 1 in this many retained queries, the index match is used to drive the page
+    private static final int SELECTIVE_RATIO = 16;
+
+    private final Map<String, QuerySummary> summaries = new ConcurrentHashMap<>();
+    private final Map<QuerySort, NavigableSet<QuerySummary>> sorted = new EnumMap<>(QuerySort.class);
+
+    QueryListIndex() {
+        for (QuerySort sort : QuerySort.values()) {
+            sorted.put(sort, new ConcurrentSkipListSet<>(order(sort)));
+        }
+    }
+
+    void update(QuerySummary summary) {
+        QuerySummary previous = summaries.put(summary.getQueryId(), summary);
+        if (previous != null) {
+            unindex(previous);
+        }
+        sorted.values().forEach(set -> set.add(summary));
+    }
+
+    void remove(String queryId) {
+        QuerySummary previous = summaries.remove(queryId);
+        if (previous != null) {
+            unindex(previous);
+        }
+    }
+
+    private void unindex(QuerySummary summary) {
+        sorted.values().forEach(set -> set.remove(summary));
+    }
+
+    /**
+     * One page of summaries. {@code match} holds the queries passing the index criteria, or
+     * is null if the filter has none.
+     */
+    QueryPage page(QueryFilter filter, QueryIndex.Match match) {
+        QuerySort sort = filter.getSort();
+        int limit = Math.max(1, Math.min(filter.getLimit(), MAX_LIMIT));
+
+        NavigableSet<QuerySummary> ordered;
+        if (match != null && (long) match.size() * SELECTIVE_RATIO < summaries.size()) {
+            ordered = sortCandidates(match.queryIds(Integer.MAX_VALUE), sort);
+        } else {
+            ordered = sorted.get(sort);
+            if (sort == QuerySort.START_TIME) {
+                ordered = startTimeRange(ordered, filter.getFrom(), filter.getTo());
+            }
+        }
+        if (filter.isDescending()) {
+            ordered = ordered.descendingSet();
+        }
+        if (filter.getCursor() != null) {
+            ordered = ordered.tailSet(decodeCursor(filter.getCursor(), sort), false);
+        }
+
+        List<QuerySummary> items = new ArrayList<>(limit);
+        boolean more = false;
+        for (QuerySummary summary : ordered) {
+            if (!matches(summary, filter, match)) {
+                continue;
+            }
+            if (items.size() == limit) {
+                more = true;
+                break;
+            }
+            items.add(summary);
+        }
+
+        String nextCursor = more ? encodeCursor(items.get(items.size() - 1), sort) : null;
+        return QueryPage.builder().items(items).nextCursor(nextCursor).build();
+    }
+
+    QuerySummary get(String queryId) {
+        return summaries.get(queryId);
+    }
+
+    /**
+     * One page of search hits, best score first (ties by query id), keeping only queries
+     * that pass the filter. Scores move as the index grows, so a cursor resumes after the
+     * last hit's score and id rather than at a fixed position.
+     */
+    QuerySearchResult searchPage(Map<String, Double> scores, QueryFilter filter, QueryIndex.Match match) {
+        int limit = Math.max(1, Math.min(filter.getLimit(), MAX_LIMIT));
+        List<QuerySearchHit> hits = new ArrayList<>();
+        scores.forEach((queryId, score) -> {
+            QuerySummary summary = summaries.get(queryId);
+            if (summary != null && matches(summary, filter, match)) {
+                hits.add(new QuerySearchHit(summary, score));
+            }
+        });
+        hits.sort(Comparator.comparingDouble(QuerySearchHit::getScore).reversed()
+                .thenComparing(hit -> hit.getSummary().getQueryId()));
+
+        int from = 0;
+        if (filter.getCursor() != null) {
+            String[] cursor = decode(filter.getCursor(), SEARCH_CURSOR);
+            double score;
+            try {
+                score = Double.longBitsToDouble(Long.parseLong(cursor[1]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+            while (from < hits.size() && (hits.get(from).getScore() > score
+                    || (hits.get(from).getScore() == score && hits.get(from).getSummary().getQueryId().compareTo(cursor[2]) <= 0))) {
+                from++;
+            }
+        }
+
+        List<QuerySearchHit> page = new ArrayList<>(hits.subList(from, Math.min(hits.size(), from + limit)));
+        String nextCursor = null;
+        if (from + limit < hits.size()) {
+            QuerySearchHit last = page.get(page.size() - 1);
+            nextCursor = encode(SEARCH_CURSOR, Double.doubleToLongBits(last.getScore()), last.getSummary().getQueryId());
+        }
+        return QuerySearchResult.builder().items(page).total(hits.size()).nextCursor(nextCursor).build();
+    }
+
+    private NavigableSet<QuerySummary> sortCandidates(Collection<String> queryIds, QuerySort sort) {
+        NavigableSet<QuerySummary> candidates = new TreeSet<>(order(sort));
+        for (String queryId : queryIds) {
+            QuerySummary summary = summaries.get(queryId);
+            if (summary != null) {
+                candidates.add(summary);
+            }
+        }
+        return candidates;
+    }
+
+    // The empty id sorts before every real one, so these bounds take in all queries at "from"
+    // and none at "to"
+    private static NavigableSet<QuerySummary> startTimeRange(NavigableSet<QuerySummary> set, Instant from, Instant to) {
+        if (from != null) {
+            set = set.tailSet(QuerySummary.builder().queryId("").startTime(from).build(), true);
+        }
+        if (to != null) {
+            set = set.headSet(QuerySummary.builder().queryId("").startTime(to).build(), false);
+        }
+        return set;
+    }
+
+    private static boolean matches(QuerySummary summary, QueryFilter filter, QueryIndex.Match match) {
+        long start = sortValue(QuerySort.START_TIME, summary);
+        if (filter.getFrom() != null && start < filter.getFrom().toEpochMilli()) {
+            return false;
+        }
+        if (filter.getTo() != null && start >= filter.getTo().toEpochMilli()) {
+            return false;
+        }
+        if (filter.getMinExecutionTime() != null && (summary.getTotalExecutionTime() == null
+                || summary.getTotalExecutionTime() < filter.getMinExecutionTime())) {
+            return false;
+        }
+        return match == null || match.contains(summary.getQueryId());
+    }
+
+    /**
+     * The value a summary is sorted by; a missing value sorts below every reported one.
+     */
+    static long sortValue(QuerySort sort, QuerySummary summary) {
+        return switch (sort) {
+            case START_TIME -> summary.getStartTime() != null ? summary.getStartTime().toEpochMilli() : Long.MIN_VALUE;
+            case DURATION -> orMin(summary.getTotalExecutionTime());
+            case CPU -> orMin(summary.getCpuTimeMs());
+            case PEAK_MEMORY -> orMin(summary.getPeakMemoryBytes());
+        };
+    }
+
+    private static long orMin(Long value) {
+        return value != null ? value : Long.MIN_VALUE;
+    }
+
+    private static Comparator<QuerySummary> order(QuerySort sort) {
+        ToLongFunction<QuerySummary> key = summary -> sortValue(sort, summary);
+        return Comparator.comparingLong(key).thenComparing(QuerySummary::getQueryId);
+    }
+
+    private static String encodeCursor(QuerySummary last, QuerySort sort) {
+        return encode(sort.getParam(), sortValue(sort, last), last.getQueryId());
+    }
+
+    // cursor: base64url("<sort>:<value>:<queryId>")
+    private static String encode(String sort, long value, String queryId) {
+        String raw = sort + ":" + value + ":" + queryId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor, String sort) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (parts.length != 3 || !parts[0].equals(sort)) {
+            throw new IllegalArgumentException("Cursor does not belong to sort " + sort);
+        }
+        return parts;
+    }
+
+    /**
+     * A probe summary positioned where the previous page ended.
+     */
+    private static QuerySummary decodeCursor(String cursor, QuerySort sort) {
+        String[] parts = decode(cursor, sort.getParam());
+        long value;
+        try {
+            value = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+
+        Long boxed = value == Long.MIN_VALUE ? null : value;
+        QuerySummary.QuerySummaryBuilder probe = QuerySummary.builder().queryId(parts[2]);
+        return switch (sort) {
+            case START_TIME -> probe.startTime(boxed != null ? Instant.ofEpochMilli(boxed) : null).build();
+            case DURATION -> probe.totalExecutionTime(boxed).build();
+            case CPU -> probe.cpuTimeMs(boxed).build();
+            case PEAK_MEMORY -> probe.peakMemoryBytes(boxed).build();
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package com.trinofed.parser.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits on the in-memory query state: a maximum number of queries, a maximum age after a
+ * query's completed event, and an approximate heap budget (from
+ * {@link LiveQueryTree#getEstimatedBytes()}). A limit of 0 disables it.
+ *
+ * This class only decides what to evict; {@link QueryEventService} removes the chosen
+ * queries together with their secondary index entries. When the count or byte limit is
+ * exceeded, completed queries go first, then running ones, each least recently used first
+ * (a completed query's last use is at least its completion), until the state is back under
+ * {@value #LOW_WATER_PERCENT}% of the limit so eviction isn't re-run on every event.
+ */
+@Slf4j
+@Component
+public class QueryRetention {
+
+    public static final String REASON_AGE = "age";
+    public static final String REASON_COUNT = "count";
+    public static final String REASON_BYTES = "bytes";
+
+    private static final int LOW_WATER_PERCENT = 90;
+
+    private static final Comparator<LiveQueryTree> EVICTION_ORDER = Comparator
+            .comparing((LiveQueryTree tree) -> tree.getCompletedAt() == null)
+            .thenComparingLong(LiveQueryTree::getLastAccessMillis);
+
+    private final int maxQueries;
+    private final Duration maxAge;
+    private final long maxBytes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final Map<String, Counter> evictions = new LinkedHashMap<>();
+
+    @Autowired
+    public QueryRetention(@Value("${trino.retention.max-queries:10000}") int maxQueries,
+                          @Value("${trino.retention.max-age:6h}") Duration maxAge,
+                          @Value("${trino.retention.max-bytes:512MB}") DataSize maxBytes,
+                          MeterRegistry meterRegistry) {
+        this.maxQueries = maxQueries;
+        this.maxAge = maxAge;
+        this.maxBytes = maxBytes.toBytes();
+        for (String reason : List.of(REASON_AGE, REASON_COUNT, REASON_BYTES)) {
+            evictions.put(reason, Counter.builder("trino.retention.evictions")
+                    .description("Queries evicted from memory")
+                    .tag("reason", reason)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("trino.retention.retained.bytes", retainedBytes, AtomicLong::get)
+                .description("Estimated heap retained by query state")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Query retention: max {} queries, max age {}, max {} bytes", maxQueries, maxAge, this.maxBytes);
+    }
+
+    public void addRetainedBytes(long delta) {
+        retainedBytes.addAndGet(delta);
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    public void recordEviction(String reason) {
+        evictions.get(reason).increment();
+    }
+
+    public Map<String, Long> getEvictionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        evictions.forEach((reason, counter) -> counts.put(reason, (long) counter.count()));
+        return counts;
+    }
+
+    /**
+     * Cheap check run after every ingest, before paying for {@link #selectEvictions}.
+     */
+    public boolean isOverLimit(int queryCount) {
+        return (maxQueries > 0 && queryCount > maxQueries)
+                || (maxBytes > 0 && retainedBytes.get() > maxBytes);
+    }
+
+    /**
+     * Picks the queries to evict, in eviction order, mapped to the limit that caused it.
+     */
+    public Map<String, String> selectEvictions(Collection<LiveQueryTree> trees, Instant now) {
+        Map<String, String> victims = new LinkedHashMap<>();
+        List<LiveQueryTree> remaining = new ArrayList<>(trees.size());
+
+        Instant cutoff = maxAge.isZero() || maxAge.isNegative() ? null : now.minus(maxAge);
+        for (LiveQueryTree tree : trees) {
+            Instant completedAt = tree.getCompletedAt();
+            if (cutoff != null && completedAt != null && completedAt.isBefore(cutoff)) {
+                victims.put(tree.getQueryId(), REASON_AGE);
+            } else {
+                remaining.add(tree);
+            }
+        }
+
+        int count = remaining.size();
+        long bytes = 0;
+        for (LiveQueryTree tree : remaining) {
+            bytes += tree.getEstimatedBytes();
+        }
+        long countTarget = maxQueries > 0 ? (long) maxQueries * LOW_WATER_PERCENT / 100 : Long.MAX_VALUE;
+        long bytesTarget = maxBytes > 0 ? maxBytes / 100 * LOW_WATER_PERCENT : Long.MAX_VALUE;
+        boolean overCount = maxQueries > 0 && count > maxQueries;
+        boolean overBytes = maxBytes > 0 && bytes > maxBytes;
+        if (!overCount && !overBytes) {
+            return victims;
+        }
+
+        remaining.sort(EVICTION_ORDER);
+        for (LiveQueryTree tree : remaining) {
+            boolean countDone = !overCount || count <= countTarget;
+            boolean bytesDone = !overBytes || bytes <= bytesTarget;
+            if (countDone && bytesDone) {
+                break;
+            }
+            victims.put(tree.getQueryId(), countDone ? REASON_BYTES : REASON_COUNT);
+            count--;
+            bytes -= tree.getEstimatedBytes();
+        }
+        return victims;
+    }
+}
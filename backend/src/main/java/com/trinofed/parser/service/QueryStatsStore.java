@@ -0,0 +1,422 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.MetricStats;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryFilter;
+import com.trinofed.parser.model.QueryIndexField;
+import com.trinofed.parser.model.QueryStatsGroup;
+import com.trinofed.parser.model.QuerySummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The numeric statistics of the retained queries, stored by column: one primitive array per
+ * statistic in chunks of {@value #CHUNK_SIZE} queries, a query's row being its
+ * {@link QueryIndex} ordinal. Catalog, user and state are dictionary-encoded into int
+ * columns. An aggregation reads a few contiguous arrays per chunk instead of following a
+ * pointer per query and per boxed value, and chunks are scanned in parallel.
+ *
+ * Rows are written under the query's lock in {@link QueryEventService} and scanned without
+ * locking. A query's row is visible once its presence bit is set; a scan running alongside
+ * an update may see some of that query's columns before the update and some after.
+ * Ordinals are not reused, so once every row of a chunk has been written and evicted the
+ * chunk is dropped.
+ */
+final class QueryStatsStore {
+
+    static final int CHUNK_SIZE = 4096;
+
+    private static final int CHUNK_BITS = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+
+    // Order of the columns in Chunk.metrics, then completedSplits
+    private static final String[] METRICS = {
+            "cpuTimeMs", "wallTimeMs", "queuedTimeMs", "peakMemoryBytes", "totalBytes", "totalRows",
+            "completedSplits"};
+    private static final int CPU_TIME = 0;
+    private static final int WALL_TIME = 1;
+    private static final int QUEUED_TIME = 2;
+    private static final int PEAK_MEMORY = 3;
+    private static final int TOTAL_BYTES = 4;
+    private static final int TOTAL_ROWS = 5;
+    private static final int COMPLETED_SPLITS = 6;
+
+    // A statistic the query hasn't reported
+    private static final long ABSENT = -1;
+
+    private static final long CHUNK_BYTES = (long) CHUNK_SIZE * (7 * Long.BYTES + 4 * Integer.BYTES) + CHUNK_SIZE / 8;
+
+    private final Map<Integer, Chunk> chunks = new ConcurrentHashMap<>();
+    private final Dictionary catalogs = new Dictionary();
+    private final Dictionary users = new Dictionary();
+    private final Dictionary states = new Dictionary();
+
+    /**
+     * Writes the query's row from its summary after an event. CPU time and peak memory are
+     * the summary's maxima; the other statistics and the catalog keep the latest reported
+     * value. Called under the query's lock.
+     */
+    void record(int ordinal, QuerySummary summary, QueryEvent event) {
+        Chunk chunk = chunks.computeIfAbsent(ordinal >>> CHUNK_BITS, index -> new Chunk());
+        int row = ordinal & (CHUNK_SIZE - 1);
+        boolean fresh = !chunk.isLive(row);
+
+        long[][] metrics = chunk.metrics;
+        put(metrics[CPU_TIME], row, summary.getCpuTimeMs(), fresh);
+        put(metrics[WALL_TIME], row, event.getWallTimeMs() != null ? event.getWallTimeMs() : event.getWallTime(), fresh);
+        put(metrics[QUEUED_TIME], row,
+                event.getQueuedTimeMs() != null ? event.getQueuedTimeMs() : event.getQueuedTime(), fresh);
+        put(metrics[PEAK_MEMORY], row, summary.getPeakMemoryBytes(), fresh);
+        put(metrics[TOTAL_BYTES], row, event.getTotalBytes(), fresh);
+        put(metrics[TOTAL_ROWS], row, event.getTotalRows(), fresh);
+        if (event.getCompletedSplits() != null) {
+            chunk.completedSplits[row] = event.getCompletedSplits();
+        } else if (fresh) {
+            chunk.completedSplits[row] = (int) ABSENT;
+        }
+
+        chunk.startMillis[row] = summary.getStartTime() != null ? summary.getStartTime().toEpochMilli() : ABSENT;
+        if (event.getCatalog() != null || fresh) {
+            chunk.catalogs[row] = catalogs.encode(event.getCatalog());
+        }
+        chunk.users[row] = users.encode(summary.getUser());
+        chunk.states[row] = states.encode(summary.getState());
+
+        if (fresh) {
+            chunk.setLive(row);
+        }
+    }
+
+    /**
+     * Drops the query's row. Called under the query's lock when it is evicted.
+     */
+    void remove(int ordinal) {
+        int index = ordinal >>> CHUNK_BITS;
+        Chunk chunk = chunks.get(index);
+        if (chunk != null && chunk.clearLive(ordinal & (CHUNK_SIZE - 1))) {
+            chunks.remove(index, chunk);
+        }
+    }
+
+    /**
+     * Statistics of the queries matching the filter's time range, states, users and catalogs,
+     * one group per value of {@code groupBy} (catalog, user or state), or a single group when
+     * it is null. Groups come most queries first.
+     */
+    List<QueryStatsGroup> aggregate(QueryIndexField groupBy, QueryFilter filter) {
+        Selection selection = new Selection(groupBy, filter);
+        Partial total = chunks.values().parallelStream()
+                .map(chunk -> scan(chunk, selection))
+                .reduce(Partial::merge)
+                .orElseGet(() -> new Partial(selection.groups));
+
+        Dictionary keys = selection.groupDictionary;
+        List<QueryStatsGroup> groups = new ArrayList<>();
+        for (int group = 0; group < selection.groups; group++) {
+            if (total.queries[group] == 0) {
+                continue;
+            }
+            Map<String, MetricStats> metrics = new LinkedHashMap<>();
+            for (int metric = 0; metric < METRICS.length; metric++) {
+                metrics.put(METRICS[metric], total.stats(metric, group));
+            }
+            groups.add(QueryStatsGroup.builder()
+                    .key(keys != null ? keys.decode(group) : null)
+                    .queries(total.queries[group])
+                    .metrics(metrics)
+                    .build());
+        }
+        groups.sort(Comparator.comparingLong(QueryStatsGroup::getQueries).reversed());
+        return groups;
+    }
+
+    int chunkCount() {
+        return chunks.size();
+    }
+
+    long bytes() {
+        return chunks.size() * CHUNK_BYTES;
+    }
+
+    private static Partial scan(Chunk chunk, Selection selection) {
+        Partial partial = new Partial(selection.groups);
+
+        // First pass over the filter columns: each live, matching row's group, -1 for the rest
+        int[] groupOfRow = new int[CHUNK_SIZE];
+        int[] groupColumn = selection.groupColumn(chunk);
+        for (int word = 0; word < CHUNK_SIZE / Long.SIZE; word++) {
+            long live = chunk.live.get(word);
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                int row = word * Long.SIZE + bit;
+                int group = -1;
+                if ((live & (1L << bit)) != 0 && selection.matches(chunk, row)) {
+                    group = groupColumn != null ? groupColumn[row] : 0;
+                    if (group < selection.groups) {
+                        partial.queries[group]++;
+                    } else {
+                        // Value first seen after the scan started
+                        group = -1;
+                    }
+                }
+                groupOfRow[row] = group;
+            }
+        }
+
+        // Then one tight loop per statistic
+        for (int metric = 0; metric < COMPLETED_SPLITS; metric++) {
+            long[] column = chunk.metrics[metric];
+            for (int row = 0; row < CHUNK_SIZE; row++) {
+                int group = groupOfRow[row];
+                long value = column[row];
+                if (group >= 0 && value != ABSENT) {
+                    partial.add(metric, group, value);
+                }
+            }
+        }
+        int[] splits = chunk.completedSplits;
+        for (int row = 0; row < CHUNK_SIZE; row++) {
+            int group = groupOfRow[row];
+            int value = splits[row];
+            if (group >= 0 && value != ABSENT) {
+                partial.add(COMPLETED_SPLITS, group, value);
+            }
+        }
+        return partial;
+    }
+
+    // Null when the filter doesn't restrict the column
+    private static boolean[] codes(Dictionary dictionary, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        boolean[] accepted = new boolean[dictionary.size()];
+        for (String value : values) {
+            int code = dictionary.lookup(value);
+            if (code > 0 && code < accepted.length) {
+                accepted[code] = true;
+            }
+        }
+        return accepted;
+    }
+
+    private static boolean accepts(boolean[] accepted, int code) {
+        return accepted == null || (code < accepted.length && accepted[code]);
+    }
+
+    private static void put(long[] column, int row, Long value, boolean fresh) {
+        if (value != null) {
+            column[row] = value;
+        } else if (fresh) {
+            column[row] = ABSENT;
+        }
+    }
+
+    private static final class Chunk {
+        final long[][] metrics = new long[COMPLETED_SPLITS][CHUNK_SIZE];
+        final int[] completedSplits = new int[CHUNK_SIZE];
+        final long[] startMillis = new long[CHUNK_SIZE];
+        final int[] catalogs = new int[CHUNK_SIZE];
+        final int[] users = new int[CHUNK_SIZE];
+        final int[] states = new int[CHUNK_SIZE];
+        final AtomicLongArray live = new AtomicLongArray(CHUNK_SIZE / Long.SIZE);
+        final AtomicInteger written = new AtomicInteger();
+        final AtomicInteger removed = new AtomicInteger();
+
+        boolean isLive(int row) {
+            return (live.get(row / Long.SIZE) & (1L << row)) != 0;
+        }
+
+        // Publishes the row to scans, which read the presence bits first
+        void setLive(int row) {
+            long mask = 1L << row;
+            live.getAndUpdate(row / Long.SIZE, bits -> bits | mask);
+            written.incrementAndGet();
+        }
+
+        /**
+         * Clears the row's presence bit; true when that leaves the chunk with every row
+         * written and removed.
+         */
+        boolean clearLive(int row) {
+            long mask = 1L << row;
+            if ((live.getAndUpdate(row / Long.SIZE, bits -> bits & ~mask) & mask) == 0) {
+                return false;
+            }
+            return removed.incrementAndGet() == CHUNK_SIZE && written.get() == CHUNK_SIZE;
+        }
+    }
+
+    /**
+     * Codes for the values of one column, 0 standing for null. Codes are never released:
+     * catalogs, users and states are few.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[16];
+        private volatile int size = 1;
+
+        int encode(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(value);
+            return code != null ? code : add(value);
+        }
+
+        private synchronized int add(String value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[size] = value;
+            values = current;
+            codes.put(value, size);
+            return size++;
+        }
+
+        /**
+         * The code of a value, or -1 if it was never encoded.
+         */
+        int lookup(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : -1;
+        }
+
+        String decode(int code) {
+            return values[code];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A request's filter and grouping, resolved to dictionary codes once before the scan.
+     */
+    private final class Selection {
+        final QueryIndexField groupBy;
+        final Dictionary groupDictionary;
+        final int groups;
+        final boolean ranged;
+        final long fromMillis;
+        final long toMillis;
+        final boolean[] catalogCodes;
+        final boolean[] userCodes;
+        final boolean[] stateCodes;
+
+        Selection(QueryIndexField groupBy, QueryFilter filter) {
+            this.groupBy = groupBy;
+            this.groupDictionary = groupBy == null ? null : dictionary(groupBy);
+            this.groups = groupDictionary != null ? groupDictionary.size() : 1;
+            this.ranged = filter.getFrom() != null || filter.getTo() != null;
+            this.fromMillis = filter.getFrom() != null ? filter.getFrom().toEpochMilli() : Long.MIN_VALUE;
+            this.toMillis = filter.getTo() != null ? filter.getTo().toEpochMilli() : Long.MAX_VALUE;
+            this.catalogCodes = codes(catalogs, filter.getCatalogs());
+            this.userCodes = codes(users, filter.getUsers());
+            this.stateCodes = codes(states, filter.getStates());
+        }
+
+        int[] groupColumn(Chunk chunk) {
+            if (groupBy == null) {
+                return null;
+            }
+            return switch (groupBy) {
+                case CATALOG -> chunk.catalogs;
+                case USER -> chunk.users;
+                default -> chunk.states;
+            };
+        }
+
+        boolean matches(Chunk chunk, int row) {
+            if (ranged) {
+                long start = chunk.startMillis[row];
+                if (start == ABSENT || start < fromMillis || start >= toMillis) {
+                    return false;
+                }
+            }
+            return accepts(catalogCodes, chunk.catalogs[row])
+                    && accepts(userCodes, chunk.users[row])
+                    && accepts(stateCodes, chunk.states[row]);
+        }
+
+        private Dictionary dictionary(QueryIndexField field) {
+            return switch (field) {
+                case CATALOG -> catalogs;
+                case USER -> users;
+                case STATE -> states;
+                default -> throw new IllegalArgumentException("Cannot group query statistics by " + field.getParam());
+            };
+        }
+    }
+
+    /**
+     * Per-group query counts and per-metric, per-group count, sum, min and max.
+     */
+    private static final class Partial {
+        final long[] queries;
+        final long[][] count;
+        final long[][] sum;
+        final long[][] min;
+        final long[][] max;
+
+        Partial(int groups) {
+            queries = new long[groups];
+            count = new long[METRICS.length][groups];
+            sum = new long[METRICS.length][groups];
+            min = new long[METRICS.length][groups];
+            max = new long[METRICS.length][groups];
+            for (long[] column : min) {
+                Arrays.fill(column, Long.MAX_VALUE);
+            }
+        }
+
+        void add(int metric, int group, long value) {
+            count[metric][group]++;
+            sum[metric][group] += value;
+            if (value < min[metric][group]) {
+                min[metric][group] = value;
+            }
+            if (value > max[metric][group]) {
+                max[metric][group] = value;
+            }
+        }
+
+        Partial merge(Partial other) {
+            for (int group = 0; group < queries.length; group++) {
+                queries[group] += other.queries[group];
+            }
+            for (int metric = 0; metric < METRICS.length; metric++) {
+                for (int group = 0; group < queries.length; group++) {
+                    count[metric][group] += other.count[metric][group];
+                    sum[metric][group] += other.sum[metric][group];
+                    min[metric][group] = Math.min(min[metric][group], other.min[metric][group]);
+                    max[metric][group] = Math.max(max[metric][group], other.max[metric][group]);
+                }
+            }
+            return this;
+        }
+
+        MetricStats stats(int metric, int group) {
+            long n = count[metric][group];
+            return MetricStats.builder()
+                    .count(n)
+                    .sum(sum[metric][group])
+                    .min(n > 0 ? min[metric][group] : 0)
+                    .max(n > 0 ? max[metric][group] : 0)
+                    .mean(n > 0 ? (double) sum[metric][group] / n : 0)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.trinofed.parser.service;
+
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full-text index over the SQL text of the retained queries, keyed by the ordinals of
+ * {@link QueryIndex}.
+ *
+ * The text is split into lower-cased identifier tokens ({@code sales.orders_2024} gives
+ * {@code sales} and {@code orders_2024}); each token has a posting and each of its trigrams
+ * has one too. A search term matches a query that has it as a token, or, for terms of at
+ * least three characters, as part of a token: the trigram postings narrow the candidates
+ * and the query's own tokens confirm them. Every term must match. Results are scored with
+ * BM25 over token frequencies, and substring matches count for half; a term is weighed by
+ * the number of queries it matches on its own, whatever the other terms.
+ *
+ * {@link #index} and {@link #remove} are called under the query's lock in
+ * {@link QueryEventService}. A query whose text changes keeps the tokens of every version
+ * it had. Only the first {@value #MAX_INDEXED_CHARS} characters are indexed, and tokens
+ * longer than {@value #MAX_TOKEN_LENGTH} (literals, blobs) are skipped.
+ */
+final class QueryTextIndex {
+
+    static final int MAX_INDEXED_CHARS = 64 * 1024;
+    static final int MAX_TOKEN_LENGTH = 64;
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int GRAM = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double SUBSTRING_WEIGHT = 0.5;
+
+    private final Postings tokens = new Postings();
+    private final Postings trigrams = new Postings();
+    private final Map<Integer, Document> documents = new ConcurrentHashMap<>();
+    private final AtomicLong totalLength = new AtomicLong();
+    private final AtomicLong documentBytes = new AtomicLong();
+
+    /**
+     * A query's indexed tokens, sorted, with their frequencies. {@code text} is the last
+     * text indexed (the event's own string), so repeats of it are skipped cheaply.
+     */
+    private record Document(String text, String[] terms, int[] frequencies, int length) {
+
+        int frequency(String term) {
+            int position = Arrays.binarySearch(terms, term);
+            return position >= 0 ? frequencies[position] : 0;
+        }
+
+        long estimatedBytes() {
+            long bytes = 64 + 8L * terms.length;
+            for (String term : terms) {
+                bytes += 48 + term.length();
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Adds the tokens of {@code text} to the query's document.
+     */
+    void index(int ordinal, String text) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        Document current = documents.get(ordinal);
+        if (current != null && current.text().equals(text)) {
+            return;
+        }
+
+        Map<String, Integer> frequencies = tokenize(text);
+        Set<String> previousGrams = new LinkedHashSet<>();
+        if (current != null) {
+            for (int i = 0; i < current.terms().length; i++) {
+                frequencies.merge(current.terms()[i], current.frequencies()[i], Math::max);
+                previousGrams.addAll(trigrams(current.terms()[i]));
+            }
+        }
+        if (frequencies.isEmpty()) {
+            return;
+        }
+
+        String[] terms = frequencies.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[] counts = new int[terms.length];
+        int length = 0;
+        for (int i = 0; i < terms.length; i++) {
+            counts[i] = frequencies.get(terms[i]);
+            length += counts[i];
+            if (current == null || current.frequency(terms[i]) == 0) {
+                tokens.add(terms[i], ordinal);
+                for (String gram : trigrams(terms[i])) {
+                    if (previousGrams.add(gram)) {
+                        trigrams.add(gram, ordinal);
+                    }
+                }
+            }
+        }
+
+        Document document = new Document(text, terms, counts, length);
+        documents.put(ordinal, document);
+        totalLength.addAndGet(length - (current != null ? current.length() : 0));
+        documentBytes.addAndGet(document.estimatedBytes() - (current != null ? current.estimatedBytes() : 0));
+    }
+
+    void remove(int ordinal) {
+        Document document = documents.remove(ordinal);
+        if (document == null) {
+            return;
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (String term : document.terms()) {
+            tokens.remove(term, ordinal);
+            grams.addAll(trigrams(term));
+        }
+        grams.forEach(gram -> trigrams.remove(gram, ordinal));
+        totalLength.addAndGet(-document.length());
+        documentBytes.addAndGet(-document.estimatedBytes());
+    }
+
+    /**
+     * Scores of the queries matching every term of {@code text}, by ordinal; empty if the
+     * text has no searchable terms.
+     */
+    Map<Integer, Double> search(String text) {
+        Set<String> terms = tokenize(text).keySet();
+        if (terms.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        // Each term's matches over the whole index first, so its weight depends on it alone
+        // and not on the terms intersected before it
+        Map<Integer, Document> matchedDocuments = new HashMap<>();
+        List<Map<Integer, Double>> termFrequencies = new ArrayList<>(terms.size());
+        RoaringBitmap matchedAll = null;
+        for (String term : terms) {
+            Map<Integer, Double> frequencies = frequencies(term, matchedDocuments);
+            if (frequencies.isEmpty()) {
+                return new HashMap<>();
+            }
+            RoaringBitmap matched = new RoaringBitmap();
+            frequencies.keySet().forEach(matched::add);
+            matchedAll = matchedAll == null ? matched : RoaringBitmap.and(matchedAll, matched);
+            termFrequencies.add(frequencies);
+        }
+
+        int documentCount = Math.max(1, documents.size());
+        double averageLength = Math.max(1.0, (double) totalLength.get() / documentCount);
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Map<Integer, Double> frequencies : termFrequencies) {
+            int matches = frequencies.size();
+            double idf = Math.log(1 + (documentCount - matches + 0.5) / (matches + 0.5));
+            PeekableIntIterator iterator = matchedAll.getIntIterator();
+            while (iterator.hasNext()) {
+                int ordinal = iterator.next();
+                double frequency = frequencies.get(ordinal);
+                double norm = K1 * (1 - B + B * matchedDocuments.get(ordinal).length() / averageLength);
+                scores.merge(ordinal, idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Frequency of the term in each query that has it, confirming substring candidates; the
+     * matched documents are collected into {@code matchedDocuments}.
+     */
+    private Map<Integer, Double> frequencies(String term, Map<Integer, Document> matchedDocuments) {
+        RoaringBitmap candidates = tokens.get(term);
+        if (term.length() >= GRAM) {
+            candidates.or(trigrams.intersection(trigrams(term)));
+        }
+        Map<Integer, Double> frequencies = new HashMap<>();
+        PeekableIntIterator iterator = candidates.getIntIterator();
+        while (iterator.hasNext()) {
+            int ordinal = iterator.next();
+            Document document = matchedDocuments.get(ordinal);
+            if (document == null) {
+                document = documents.get(ordinal);
+                if (document == null) {
+                    continue;
+                }
+            }
+            int exact = document.frequency(term);
+            double frequency = exact > 0 ? exact : SUBSTRING_WEIGHT * substringFrequency(document, term);
+            if (frequency > 0) {
+                matchedDocuments.putIfAbsent(ordinal, document);
+                frequencies.put(ordinal, frequency);
+            }
+        }
+        return frequencies;
+    }
+
+    int documentCount() {
+        return documents.size();
+    }
+
+    int termCount() {
+        return tokens.size();
+    }
+
+    /**
+     * Approximate heap held by the postings and the per-query token lists.
+     */
+    long bytes() {
+        return tokens.bytes() + trigrams.bytes() + documentBytes.get();
+    }
+
+    void optimize() {
+        tokens.optimize();
+        trigrams.optimize();
+    }
+
+    private static int substringFrequency(Document document, String term) {
+        int frequency = 0;
+        for (int i = 0; i < document.terms().length; i++) {
+            if (document.terms()[i].contains(term)) {
+                frequency += document.frequencies()[i];
+            }
+        }
+        return frequency;
+    }
+
+    /**
+     * Lower-cased identifier tokens of the text with their counts.
+     */
+    static Map<String, Integer> tokenize(String text) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = Math.min(text.length(), MAX_INDEXED_CHARS);
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                int tokenLength = i - start;
+                if (tokenLength >= MIN_TOKEN_LENGTH && tokenLength <= MAX_TOKEN_LENGTH) {
+                    frequencies.merge(text.substring(start, i).toLowerCase(Locale.ROOT), 1, Integer::sum);
+                }
+                start = -1;
+            }
+        }
+        return frequencies;
+    }
+
+    private static Set<String> trigrams(String term) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= term.length(); i++) {
+            grams.add(term.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,154 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryEventSummary;
+import com.trinofed.parser.model.QueryTreeDelta;
+import com.trinofed.parser.model.QueryTreeNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sits between {@link QueryEventService} and the broker. Deltas for the same query that
+ * arrive within the coalescing window are merged into one, so a query that changes state
+ * ten times in 50 ms is broadcast once with its latest state. Pending deltas are flushed by
+ * a single thread, which keeps each query's deltas in version order.
+ *
+ * With a window of 0 every delta is sent immediately.
+ */
+@Slf4j
+@Component
+public class QueryUpdateBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long coalesceWindowMs;
+    private final Map<String, QueryTreeDelta> pending = new ConcurrentHashMap<>();
+    // Serializing a delta and handing it to every subscribed session
+    private final Timer broadcastTimer;
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public QueryUpdateBroadcaster(SimpMessagingTemplate messagingTemplate,
+                                  @Value("${trino.websocket.coalesce-window-ms:100}") long coalesceWindowMs,
+                                  MeterRegistry meterRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.coalesceWindowMs = coalesceWindowMs;
+        this.broadcastTimer = QueryEventService.stageTimer(meterRegistry, "broadcast");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (coalesceWindowMs <= 0) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "query-update-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, coalesceWindowMs, coalesceWindowMs, TimeUnit.MILLISECONDS);
+        log.info("Coalescing query updates over {} ms", coalesceWindowMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) {
+                    log.warn("Query update flusher did not stop in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Queues a delta for broadcast. Callers publish a query's deltas in version order
+     * (under the query's lock), so merging keeps the client's base version intact.
+     */
+    public void publish(QueryTreeDelta delta) {
+        if (delta == null) {
+            return;
+        }
+        if (flusher == null) {
+            send(delta);
+            return;
+        }
+        pending.merge(delta.getQueryId(), delta, QueryUpdateBroadcaster::merge);
+    }
+
+    /**
+     * Sends every pending delta. Flushes never overlap, so a query's deltas go out once and
+     * in version order even when the final flush at shutdown races a scheduled one.
+     */
+    synchronized void flush() {
+        for (String queryId : pending.keySet()) {
+            QueryTreeDelta delta = pending.remove(queryId);
+            if (delta != null) {
+                send(delta);
+            }
+        }
+    }
+
+    private void send(QueryTreeDelta delta) {
+        long start = System.nanoTime();
+        try {
+            messagingTemplate.convertAndSend(QueryEventService.QUERY_UPDATES_TOPIC, delta);
+        } catch (Exception e) {
+            log.error("Error broadcasting update for query: {}", delta.getQueryId(), e);
+        } finally {
+            broadcastTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Combines two consecutive deltas: the earlier base version, the later version, the
+     * latest value of every header field, the latest copy of every node and all events.
+     */
+    static QueryTreeDelta merge(QueryTreeDelta earlier, QueryTreeDelta later) {
+        Map<String, QueryTreeNode> nodes = new LinkedHashMap<>();
+        earlier.getNodes().forEach(node -> nodes.put(node.getId(), node));
+        later.getNodes().forEach(node -> nodes.put(node.getId(), node));
+
+        List<QueryEventSummary> events = new ArrayList<>(earlier.getEvents().size() + later.getEvents().size());
+        events.addAll(earlier.getEvents());
+        events.addAll(later.getEvents());
+
+        return QueryTreeDelta.builder()
+                .queryId(later.getQueryId())
+                .baseVersion(earlier.getBaseVersion())
+                .version(later.getVersion())
+                .query(latest(earlier.getQuery(), later.getQuery()))
+                .user(latest(earlier.getUser(), later.getUser()))
+                .state(latest(earlier.getState(), later.getState()))
+                .startTime(latest(earlier.getStartTime(), later.getStartTime()))
+                .endTime(latest(earlier.getEndTime(), later.getEndTime()))
+                .totalExecutionTime(latest(earlier.getTotalExecutionTime(), later.getTotalExecutionTime()))
+                .errorMessage(latest(earlier.getErrorMessage(), later.getErrorMessage()))
+                .rootId(latest(earlier.getRootId(), later.getRootId()))
+                .nodes(new ArrayList<>(nodes.values()))
+                .events(events)
+                .build();
+    }
+
+    private static <T> T latest(T earlier, T later) {
+        return later != null ? later : earlier;
+    }
+}
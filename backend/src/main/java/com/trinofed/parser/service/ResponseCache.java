@@ -0,0 +1,210 @@
+package com.trinofed.parser.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized JSON for the responses the dashboard polls, keyed by entity (see
+ * {@link #queryKey}) and the entity's version. A poll at an unchanged version is answered
+ * from the stored bytes, or with a 304 when the client already has them: the ETag is derived
+ * from the version alone, so revalidating serializes nothing.
+ *
+ * Versions only move forward for a key (query trees use their revision, which keeps moving
+ * forward when a query is evicted and comes back), and ingestion
+ * {@link #invalidate invalidates} a key when its entity changes or goes away, so stale bytes
+ * don't wait for the next read to be replaced. ETags carry a per-process epoch since
+ * versions restart with the process. Bodies at or over {@code gzip-min-bytes} are also kept
+ * gzipped; past {@code max-bytes} the least recently read entries are dropped until the
+ * cache is back under {@value #LOW_WATER_PERCENT}% of it.
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    public static final String DATABASES_KEY = "databases";
+
+    private static final int LOW_WATER_PERCENT = 90;
+
+    /**
+     * A serialized response. {@code gzip} is null when the body was too small to compress.
+     */
+    public record Body(String etag, long version, byte[] json, byte[] gzip) {
+
+        long bytes() {
+            return json.length + (gzip != null ? gzip.length : 0);
+        }
+    }
+
+    private static final class Entry {
+        final Body body;
+        volatile long lastAccessMillis = System.currentTimeMillis();
+
+        Entry(Body body) {
+            this.body = body;
+        }
+    }
+
+    private record Candidate(String key, Entry entry, long lastAccessMillis) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final boolean gzip;
+    private final int gzipMinBytes;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notModified;
+
+    @Autowired
+    public ResponseCache(ObjectMapper objectMapper,
+                         @Value("${trino.response-cache.max-bytes:64MB}") DataSize maxBytes,
+                         @Value("${trino.response-cache.gzip:true}") boolean gzip,
+                         @Value("${trino.response-cache.gzip-min-bytes:1024}") int gzipMinBytes,
+                         MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes.toBytes();
+        this.gzip = gzip;
+        this.gzipMinBytes = gzipMinBytes;
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.notModified = requests(meterRegistry, "not_modified");
+        Gauge.builder("trino.response-cache.bytes", bytes, AtomicLong::get)
+                .description("Serialized response bytes held by the cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Response cache: max {} bytes, gzip {} (from {} bytes)", this.maxBytes, gzip, gzipMinBytes);
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("trino.response-cache.requests")
+                .description("Cached responses served, built or revalidated")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public static String databaseKey(String databaseId) {
+        return "database:" + databaseId;
+    }
+
+    public static String queryKey(String queryId) {
+        return "query:" + queryId;
+    }
+
+    /**
+     * The ETag of a key's response at {@code version}.
+     */
+    public String etag(long version) {
+        return "W/\"" + epoch + "-" + version + "\"";
+    }
+
+    /**
+     * The key's response at {@code version}, serializing {@code body} if it isn't cached.
+     * {@code body} must return the entity as of exactly that version.
+     */
+    public Body get(String key, long version, Supplier<?> body) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.body.version() == version) {
+            entry.lastAccessMillis = System.currentTimeMillis();
+            hits.increment();
+            return entry.body;
+        }
+        misses.increment();
+        Body serialized = serialize(version, body.get());
+        Entry fresh = new Entry(serialized);
+        entries.compute(key, (k, existing) -> {
+            if (existing != null && existing.body.version() > version) {
+                return existing;
+            }
+            bytes.addAndGet(serialized.bytes() - (existing != null ? existing.body.bytes() : 0));
+            return fresh;
+        });
+        if (bytes.get() > maxBytes) {
+            prune();
+        }
+        return serialized;
+    }
+
+    public void invalidate(String key) {
+        entries.computeIfPresent(key, (k, existing) -> {
+            bytes.addAndGet(-existing.body.bytes());
+            return null;
+        });
+    }
+
+    /**
+     * Counts a request answered with 304 from the ETag alone.
+     */
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    private Body serialize(long version, Object value) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] gzipped = gzip && json.length >= gzipMinBytes ? gzip(json) : null;
+        return new Body(etag(version), version, json, gzipped);
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private synchronized void prune() {
+        long target = maxBytes * LOW_WATER_PERCENT / 100;
+        if (bytes.get() <= target) {
+            return;
+        }
+        // Access times are read once: reads keep updating them while this sorts
+        List<Candidate> byAccess = new ArrayList<>(entries.size());
+        entries.forEach((key, entry) -> byAccess.add(new Candidate(key, entry, entry.lastAccessMillis)));
+        byAccess.sort(Comparator.comparingLong(Candidate::lastAccessMillis));
+        int dropped = 0;
+        for (Candidate candidate : byAccess) {
+            if (bytes.get() <= target) {
+                break;
+            }
+            if (entries.remove(candidate.key(), candidate.entry())) {
+                bytes.addAndGet(-candidate.entry().body.bytes());
+                dropped++;
+            }
+        }
+        log.debug("Dropped {} cached responses, {} bytes retained", dropped, bytes.get());
+    }
+}
@@ -0,0 +1,209 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.ActivityPoint;
+import com.trinofed.parser.model.ActivityStats;
+import com.trinofed.parser.model.Distribution;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A ring of fixed-width time buckets with query count, failures, bytes and rows read and a
+ * latency histogram per bucket. Every array is allocated up front: a bucket is reused by
+ * clearing it when time moves into the next period that maps to its slot, so recording
+ * never allocates.
+ *
+ * The latency histogram has one bucket per power of two milliseconds (the last one takes
+ * everything from about 4.6 hours up); percentiles are interpolated within a bucket.
+ *
+ * Records older than the ring covers are dropped. Recording and reading are synchronized
+ * on the window; both only touch the arrays.
+ */
+final class RollingWindow {
+
+    static final int LATENCY_BUCKETS = 25;
+
+    private final String key;
+    private final long bucketMillis;
+    private final int size;
+
+    // Period (time / bucketMillis) each slot currently holds; -1 when empty
+    private final long[] periods;
+    private final int[] queries;
+    private final int[] failed;
+    private final long[] bytes;
+    private final long[] rows;
+    private final long[] latencySum;
+    private final long[] latencyMax;
+    private final int[] latencyCount;
+    private final int[] latencies;
+
+    private volatile long lastRecordMillis;
+
+    RollingWindow(String key, long bucketMillis, int size) {
+        this.key = key;
+        this.bucketMillis = bucketMillis;
+        this.size = size;
+        this.periods = new long[size];
+        this.queries = new int[size];
+        this.failed = new int[size];
+        this.bytes = new long[size];
+        this.rows = new long[size];
+        this.latencySum = new long[size];
+        this.latencyMax = new long[size];
+        this.latencyCount = new int[size];
+        this.latencies = new int[size * LATENCY_BUCKETS];
+        Arrays.fill(periods, -1);
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Wall-clock time of the latest record, for choosing which window to drop when there
+     * are too many.
+     */
+    long getLastRecordMillis() {
+        return lastRecordMillis;
+    }
+
+    synchronized void record(long timeMillis, boolean queryFailed, long bytesRead, long rowsRead, Long latencyMs) {
+        long period = Math.floorDiv(timeMillis, bucketMillis);
+        int slot = (int) Math.floorMod(period, size);
+        if (periods[slot] != period) {
+            if (period < periods[slot]) {
+                return;
+            }
+            clear(slot);
+            periods[slot] = period;
+        }
+
+        queries[slot]++;
+        if (queryFailed) {
+            failed[slot]++;
+        }
+        bytes[slot] += Math.max(0, bytesRead);
+        rows[slot] += Math.max(0, rowsRead);
+        if (latencyMs != null) {
+            long latency = Math.max(0, latencyMs);
+            latencySum[slot] += latency;
+            latencyMax[slot] = Math.max(latencyMax[slot], latency);
+            latencyCount[slot]++;
+            latencies[slot * LATENCY_BUCKETS + latencyBucket(latency)]++;
+        }
+        lastRecordMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Totals over the buckets overlapping {@code [from, to)}, with a per-bucket series if
+     * asked for. Only as much history as the ring holds is available.
+     */
+    synchronized ActivityStats stats(Instant from, Instant to, boolean withSeries) {
+        long lastPeriod = Math.floorDiv(to.toEpochMilli() - 1, bucketMillis);
+        long firstPeriod = Math.max(Math.floorDiv(from.toEpochMilli(), bucketMillis), lastPeriod - size + 1);
+
+        long totalQueries = 0;
+        long totalFailed = 0;
+        long totalBytes = 0;
+        long totalRows = 0;
+        long totalLatency = 0;
+        long maxLatency = 0;
+        long latencySamples = 0;
+        long[] histogram = new long[LATENCY_BUCKETS];
+        List<ActivityPoint> series = withSeries ? new ArrayList<>() : null;
+
+        for (long period = firstPeriod; period <= lastPeriod; period++) {
+            int slot = (int) Math.floorMod(period, size);
+            boolean present = periods[slot] == period;
+            if (present) {
+                totalQueries += queries[slot];
+                totalFailed += failed[slot];
+                totalBytes += bytes[slot];
+                totalRows += rows[slot];
+                totalLatency += latencySum[slot];
+                maxLatency = Math.max(maxLatency, latencyMax[slot]);
+                latencySamples += latencyCount[slot];
+                for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                    histogram[i] += latencies[slot * LATENCY_BUCKETS + i];
+                }
+            }
+            if (series != null) {
+                series.add(ActivityPoint.builder()
+                        .start(Instant.ofEpochMilli(period * bucketMillis))
+                        .queries(present ? queries[slot] : 0)
+                        .failedQueries(present ? failed[slot] : 0)
+                        .bytesRead(present ? bytes[slot] : 0)
+                        .rowsRead(present ? rows[slot] : 0)
+                        .meanLatencyMs(present && latencyCount[slot] > 0
+                                ? (double) latencySum[slot] / latencyCount[slot] : 0)
+                        .build());
+            }
+        }
+
+        Distribution latency = latencySamples == 0 ? Distribution.builder().build() : Distribution.builder()
+                .count(latencySamples)
+                .p50(percentile(histogram, latencySamples, 50, maxLatency))
+                .p95(percentile(histogram, latencySamples, 95, maxLatency))
+                .p99(percentile(histogram, latencySamples, 99, maxLatency))
+                .max(maxLatency)
+                .mean((double) totalLatency / latencySamples)
+                .build();
+
+        return ActivityStats.builder()
+                .key(key)
+                .from(Instant.ofEpochMilli(firstPeriod * bucketMillis))
+                .to(Instant.ofEpochMilli((lastPeriod + 1) * bucketMillis))
+                .queries(totalQueries)
+                .failedQueries(totalFailed)
+                .bytesRead(totalBytes)
+                .rowsRead(totalRows)
+                .latencyMs(latency)
+                .series(series)
+                .build();
+    }
+
+    /**
+     * Approximate heap held by the arrays.
+     */
+    long bytes() {
+        return (long) size * (8 * 5 + 4 * 3 + 4 * LATENCY_BUCKETS) + 256;
+    }
+
+    private void clear(int slot) {
+        queries[slot] = 0;
+        failed[slot] = 0;
+        bytes[slot] = 0;
+        rows[slot] = 0;
+        latencySum[slot] = 0;
+        latencyMax[slot] = 0;
+        latencyCount[slot] = 0;
+        Arrays.fill(latencies, slot * LATENCY_BUCKETS, (slot + 1) * LATENCY_BUCKETS, 0);
+    }
+
+    // Bucket 0 holds 0 ms, bucket i holds [2^(i-1), 2^i) ms
+    static int latencyBucket(long latencyMs) {
+        return Math.min(64 - Long.numberOfLeadingZeros(latencyMs), LATENCY_BUCKETS - 1);
+    }
+
+    // The value at the percentile's rank, assuming values are spread evenly within a bucket
+    private static long percentile(long[] histogram, long count, double percentile, long max) {
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] == 0) {
+                continue;
+            }
+            if (seen + histogram[i] >= rank) {
+                long low = i == 0 ? 0 : 1L << (i - 1);
+                long high = i == LATENCY_BUCKETS - 1 ? max : (1L << i) - 1;
+                long value = low + Math.round((double) (high - low) * (rank - seen) / histogram[i]);
+                return Math.min(value, max);
+            }
+            seen += histogram[i];
+        }
+        return max;
+    }
+}
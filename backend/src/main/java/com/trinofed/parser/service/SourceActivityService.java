@@ -0,0 +1,213 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.ActivityStats;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryInput;
+import com.trinofed.parser.model.QuerySummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent load per federated source: a {@link RollingWindow} per catalog and per qualified
+ * table ({@code catalog.schema.table}), fed once per completed query with the catalogs and
+ * tables it read.
+ *
+ * Bytes and rows come from the per-table input stats of the completed event where Trino
+ * reports them; otherwise the query's totals are counted against every source it read.
+ * Windows are allocated in full when a source is first seen; past {@code max-tables}, the
+ * table window that was recorded into longest ago is dropped to make room.
+ */
+@Slf4j
+@Service
+public class SourceActivityService {
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final int maxTables;
+    private final Map<String, RollingWindow> catalogs = new ConcurrentHashMap<>();
+    private final Map<String, RollingWindow> tables = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SourceActivityService(@Value("${trino.activity.bucket:1m}") Duration bucket,
+                                 @Value("${trino.activity.buckets:1440}") int buckets,
+                                 @Value("${trino.activity.max-tables:256}") int maxTables,
+                                 MeterRegistry meterRegistry) {
+        this.bucketMillis = Math.max(1000, bucket.toMillis());
+        this.buckets = Math.max(1, buckets);
+        this.maxTables = Math.max(1, maxTables);
+        Gauge.builder("trino.activity.windows", this, service -> service.catalogs.size() + service.tables.size())
+                .description("Catalogs and tables with rolling activity windows")
+                .register(meterRegistry);
+        Gauge.builder("trino.activity.bytes", this, SourceActivityService::bytes)
+                .description("Heap held by the rolling activity windows")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("Source activity: {} buckets of {} ms per catalog and table, max {} tables",
+                this.buckets, bucketMillis, this.maxTables);
+    }
+
+    /**
+     * Counts a completed query against every catalog and table it read: the ones its events
+     * named plus the inputs listed on the completed event.
+     */
+    public void recordCompleted(QuerySummary summary, QueryEvent completed, Instant completedAt,
+                                Collection<String> catalogNames, Collection<String> tableNames) {
+        List<QueryInput> inputs = completed.getInputTables() != null ? completed.getInputTables() : List.of();
+        Set<String> readCatalogs = new HashSet<>(catalogNames);
+        Set<String> readTables = new HashSet<>(tableNames);
+        for (QueryInput input : inputs) {
+            String catalog = catalogOf(input);
+            if (catalog != null) {
+                readCatalogs.add(catalog);
+                if (input.getSchema() != null && input.getTable() != null) {
+                    readTables.add(catalog + "." + input.getSchema() + "." + input.getTable());
+                }
+            }
+        }
+
+        long time = completedAt.toEpochMilli();
+        boolean failed = "FAILED".equals(summary.getState()) || completed.getErrorMessage() != null;
+        Long latencyMs = completed.getWallTimeMs() != null ? completed.getWallTimeMs()
+                : completed.getWallTime() != null ? completed.getWallTime() : completed.getExecutionTime();
+        long queryBytes = completed.getTotalBytes() != null ? completed.getTotalBytes() : 0;
+        long queryRows = completed.getTotalRows() != null ? completed.getTotalRows() : 0;
+
+        for (String catalog : readCatalogs) {
+            catalogs.computeIfAbsent(catalog, this::newWindow).record(time, failed,
+                    read(inputs, catalog, null, true, queryBytes),
+                    read(inputs, catalog, null, false, queryRows),
+                    latencyMs);
+        }
+        for (String table : readTables) {
+            RollingWindow window = tables.get(table);
+            if (window == null) {
+                if (tables.size() >= maxTables) {
+                    dropOldestTable();
+                }
+                window = tables.computeIfAbsent(table, this::newWindow);
+            }
+            window.record(time, failed,
+                    read(inputs, null, table, true, queryBytes),
+                    read(inputs, null, table, false, queryRows),
+                    latencyMs);
+        }
+    }
+
+    /**
+     * The catalog's activity over the last {@code window}, or null if it has none recorded.
+     */
+    public ActivityStats getCatalogActivity(String catalog, Duration window, boolean withSeries) {
+        return stats(catalogs.get(catalog), window, withSeries);
+    }
+
+    /**
+     * The qualified table's activity over the last {@code window}, or null if it has none
+     * recorded.
+     */
+    public ActivityStats getTableActivity(String table, Duration window, boolean withSeries) {
+        return stats(tables.get(table), window, withSeries);
+    }
+
+    /**
+     * Every catalog's activity over the last {@code window}, busiest first.
+     */
+    public List<ActivityStats> getCatalogActivity(Duration window) {
+        return ranked(catalogs.values(), window, null);
+    }
+
+    /**
+     * Every table's activity over the last {@code window}, busiest first, optionally only the
+     * tables of one catalog.
+     */
+    public List<ActivityStats> getTableActivity(Duration window, String catalog) {
+        return ranked(tables.values(), window, catalog != null ? catalog + "." : null);
+    }
+
+    /**
+     * The longest window that can be asked for.
+     */
+    public Duration getRetainedWindow() {
+        return Duration.ofMillis(bucketMillis * buckets);
+    }
+
+    public long bytes() {
+        return catalogs.values().stream().mapToLong(RollingWindow::bytes).sum()
+                + tables.values().stream().mapToLong(RollingWindow::bytes).sum();
+    }
+
+    private RollingWindow newWindow(String key) {
+        return new RollingWindow(key, bucketMillis, buckets);
+    }
+
+    private ActivityStats stats(RollingWindow window, Duration length, boolean withSeries) {
+        if (window == null) {
+            return null;
+        }
+        Instant now = Instant.now();
+        return window.stats(now.minus(length), now, withSeries);
+    }
+
+    private List<ActivityStats> ranked(Collection<RollingWindow> windows, Duration length, String keyPrefix) {
+        Instant now = Instant.now();
+        return windows.stream()
+                .filter(window -> keyPrefix == null || window.getKey().startsWith(keyPrefix))
+                .map(window -> window.stats(now.minus(length), now, false))
+                .filter(stats -> stats.getQueries() > 0)
+                .sorted(Comparator.comparingLong(ActivityStats::getQueries).reversed()
+                        .thenComparing(ActivityStats::getKey))
+                .toList();
+    }
+
+    // Only one thread picks a table to drop at a time; a new table seen meanwhile may briefly
+    // take the count over the limit
+    private synchronized void dropOldestTable() {
+        if (tables.size() < maxTables) {
+            return;
+        }
+        tables.values().stream()
+                .min(Comparator.comparingLong(RollingWindow::getLastRecordMillis))
+                .ifPresent(oldest -> {
+                    tables.remove(oldest.getKey(), oldest);
+                    log.debug("Dropped activity window of table {}", oldest.getKey());
+                });
+    }
+
+    /**
+     * Bytes or rows read from a catalog or table: the sum of its inputs' reported physical
+     * input, or the query's total when none of its inputs reports one.
+     */
+    private static long read(List<QueryInput> inputs, String catalog, String table, boolean bytes, long queryTotal) {
+        long sum = 0;
+        boolean reported = false;
+        for (QueryInput input : inputs) {
+            String inputCatalog = catalogOf(input);
+            boolean matches = catalog != null
+                    ? catalog.equals(inputCatalog)
+                    : table.equals(inputCatalog + "." + input.getSchema() + "." + input.getTable());
+            Long value = bytes ? input.getPhysicalInputBytes() : input.getPhysicalInputRows();
+            if (matches && value != null) {
+                sum += value;
+                reported = true;
+            }
+        }
+        return reported ? sum : queryTotal;
+    }
+
+    private static String catalogOf(QueryInput input) {
+        return input.getCatalogName() != null ? input.getCatalogName() : input.getConnectorName();
+    }
+}
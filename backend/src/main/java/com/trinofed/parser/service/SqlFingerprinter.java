@@ -0,0 +1,248 @@
+package com.trinofed.parser.service;
+
+import java.util.Locale;
+
+/**
+ * Reduces SQL text to its shape so that runs of the same parameterized query share one
+ * fingerprint. In a single pass over the text it
+ * <ul>
+ *   <li>replaces string and numeric literals with {@code ?},</li>
+ *   <li>collapses {@code IN (?, ?, ...)} lists to {@code IN (?)} and repeated
+ *       {@code VALUES} rows to one,</li>
+ *   <li>drops comments, lower-cases keywords and unquoted identifiers (quoted identifiers are
+ *       kept as written) and re-spaces tokens canonically, so layout doesn't matter.</li>
+ * </ul>
+ * The fingerprint is the 64-bit FNV-1a hash of the normalized text, as 16 hex digits. Only
+ * the first {@value #MAX_INPUT_CHARS} characters are looked at.
+ */
+public final class SqlFingerprinter {
+
+    static final int MAX_INPUT_CHARS = 64 * 1024;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String OPERATOR_CHARS = "<>=!|:";
+
+    public record Fingerprint(String hash, String normalized) {
+    }
+
+    private SqlFingerprinter() {
+    }
+
+    public static Fingerprint fingerprint(String sql) {
+        String normalized = normalize(sql);
+        return new Fingerprint(hash(normalized), normalized);
+    }
+
+    public static String normalize(String sql) {
+        return new Normalizer(sql).run();
+    }
+
+    static String hash(String normalized) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return String.format("%016x", hash);
+    }
+
+    private static final class Normalizer {
+
+        private final String sql;
+        private final int length;
+        private final StringBuilder out;
+        private int position;
+        private String lastWord = "";
+
+        // IN list made only of literals so far
+        private boolean inList;
+
+        // VALUES rows: nesting depth, where the current row starts and the previous row
+        private boolean inValues;
+        private int valuesDepth;
+        private int rowStart = -1;
+        private String previousRow;
+
+        Normalizer(String sql) {
+            this.sql = sql;
+            this.length = Math.min(sql.length(), MAX_INPUT_CHARS);
+            this.out = new StringBuilder(Math.min(length, 4096));
+        }
+
+        String run() {
+            while (position < length) {
+                char c = sql.charAt(position);
+                char next = position + 1 < length ? sql.charAt(position + 1) : '\0';
+                if (Character.isWhitespace(c)) {
+                    position++;
+                } else if (c == '-' && next == '-') {
+                    skipLineComment();
+                } else if (c == '/' && next == '*') {
+                    skipBlockComment();
+                } else if (c == '\'') {
+                    skipQuoted('\'');
+                    literal();
+                } else if (c == '"' || c == '`') {
+                    int start = position;
+                    skipQuoted(c);
+                    word(sql.substring(start, position));
+                } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(next))) {
+                    skipNumber();
+                    literal();
+                } else if (Character.isLetter(c) || c == '_') {
+                    int start = position;
+                    while (position < length && isIdentifierPart(sql.charAt(position))) {
+                        position++;
+                    }
+                    word(sql.substring(start, position).toLowerCase(Locale.ROOT));
+                } else if (OPERATOR_CHARS.indexOf(c) >= 0 && OPERATOR_CHARS.indexOf(next) >= 0) {
+                    position += 2;
+                    punctuation(sql.substring(position - 2, position));
+                } else {
+                    position++;
+                    punctuation(String.valueOf(c));
+                }
+            }
+            return out.toString();
+        }
+
+        private void literal() {
+            // The space after a comma is only written with the next token
+            if (inList && endsWith("?,")) {
+                out.setLength(out.length() - 1);
+                return;
+            }
+            append("?");
+            lastWord = "";
+        }
+
+        private void word(String word) {
+            if (inValues && valuesDepth == 0) {
+                inValues = false;
+            }
+            inList = false;
+            append(word);
+            lastWord = word;
+            if (word.equals("values")) {
+                inValues = true;
+                valuesDepth = 0;
+                previousRow = null;
+            }
+        }
+
+        private void punctuation(String token) {
+            switch (token) {
+                case "(" -> {
+                    inList = lastWord.equals("in");
+                    if (inValues && valuesDepth++ == 0) {
+                        rowStart = out.length() + (needsSpaceBefore("(") ? 1 : 0);
+                    }
+                }
+                case ")" -> {
+                    if (inValues && valuesDepth > 0 && --valuesDepth == 0) {
+                        append(token);
+                        collapseRepeatedRow();
+                        lastWord = "";
+                        return;
+                    }
+                    inList = false;
+                }
+                case "," -> {
+                    if (inValues && valuesDepth == 0) {
+                        append(token);
+                        lastWord = "";
+                        return;
+                    }
+                }
+                default -> {
+                    inList = false;
+                    if (inValues && valuesDepth == 0) {
+                        inValues = false;
+                    }
+                }
+            }
+            append(token);
+            lastWord = "";
+        }
+
+        private void collapseRepeatedRow() {
+            String row = out.substring(rowStart);
+            if (row.equals(previousRow) && rowStart >= 2 && out.charAt(rowStart - 2) == ',') {
+                out.setLength(rowStart - 2);
+            } else {
+                previousRow = row;
+            }
+        }
+
+        // One space between tokens, except inside parentheses, around dots and before commas
+        private void append(String token) {
+            if (needsSpaceBefore(token)) {
+                out.append(' ');
+            }
+            out.append(token);
+        }
+
+        private boolean needsSpaceBefore(String token) {
+            if (out.isEmpty()) {
+                return false;
+            }
+            char previous = out.charAt(out.length() - 1);
+            return previous != '(' && previous != '.'
+                    && !token.equals(")") && !token.equals(",") && !token.equals(".") && !token.equals(";");
+        }
+
+        private boolean endsWith(String suffix) {
+            int start = out.length() - suffix.length();
+            return start >= 0 && out.indexOf(suffix, start) == start;
+        }
+
+        private void skipLineComment() {
+            while (position < length && sql.charAt(position) != '\n') {
+                position++;
+            }
+        }
+
+        private void skipBlockComment() {
+            int end = sql.indexOf("*/", position + 2);
+            position = end < 0 || end >= length ? length : end + 2;
+        }
+
+        // Doubled quotes inside are escapes
+        private void skipQuoted(char quote) {
+            position++;
+            while (position < length) {
+                if (sql.charAt(position) == quote) {
+                    if (position + 1 < length && sql.charAt(position + 1) == quote) {
+                        position += 2;
+                        continue;
+                    }
+                    position++;
+                    return;
+                }
+                position++;
+            }
+        }
+
+        private void skipNumber() {
+            if (sql.startsWith("0x", position) || sql.startsWith("0X", position)) {
+                position += 2;
+            }
+            while (position < length) {
+                char c = sql.charAt(position);
+                if ((c == 'e' || c == 'E') && position + 1 < length
+                        && (sql.charAt(position + 1) == '+' || sql.charAt(position + 1) == '-')) {
+                    position += 2;
+                } else if (Character.isLetterOrDigit(c) || c == '.' || c == '_') {
+                    position++;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.TextBlob;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed storage for the large texts of retained events. Plans are stored as
+ * LZ4-compressed {@link TextBlob}s, one per distinct plan however many events carry it, and
+ * only decoded when the event is serialized for a client. Query text is read on every
+ * ingestion (summaries, fingerprints, search), so it is deduplicated but kept as a String.
+ *
+ * Plans are keyed by two 64-bit xxHash digests of their UTF-8 bytes; query texts by their
+ * String hash, checked against the stored text. The store only holds its entries weakly:
+ * an entry goes away once no retained event references it, so eviction needs no
+ * reference counting.
+ */
+@Component
+public class TextStore {
+
+    private static final long SEED_HIGH = 0x6a09e667f3bcc909L;
+    private static final long SEED_LOW = 0xbb67ae8584caa73bL;
+
+    private record Key(long high, long low, int length) {
+    }
+
+    private static final class Entry<T> extends WeakReference<T> {
+        final Key key;
+        final long bytes;
+
+        Entry(T value, Key key, long bytes, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final XXHash64 hash = XXHashFactory.fastestInstance().hash64();
+    private final Map<Key, Entry<TextBlob>> plans = new ConcurrentHashMap<>();
+    private final Map<Key, Entry<String>> queries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    @Autowired
+    public TextStore(MeterRegistry meterRegistry) {
+        Gauge.builder("trino.text-store.plans", plans, Map::size)
+                .description("Distinct plans held by the text store")
+                .register(meterRegistry);
+        Gauge.builder("trino.text-store.queries", queries, Map::size)
+                .description("Distinct query texts held by the text store")
+                .register(meterRegistry);
+        Gauge.builder("trino.text-store.bytes", storedBytes, AtomicLong::get)
+                .description("Heap held by stored plans and query texts")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Moves the event's plan into the store and replaces its query text with the shared
+     * copy. Called once per event, before it is retained.
+     */
+    public void store(QueryEvent event) {
+        purgeCollected();
+        if (event.getQuery() != null) {
+            event.setQuery(shareQuery(event.getQuery()));
+        }
+        if (event.getStoredPlan() == null && event.getPlan() != null) {
+            event.storePlan(storePlan(event.getPlan()));
+        }
+    }
+
+    public TextBlob storePlan(String plan) {
+        byte[] utf8 = plan.getBytes(StandardCharsets.UTF_8);
+        return storePlan(keyOf(utf8), () -> compress(utf8));
+    }
+
+    /**
+     * The stored blob with the same text as one made elsewhere (read back from a state
+     * snapshot), which is stored as it is if there is none.
+     */
+    public TextBlob sharePlan(TextBlob blob) {
+        purgeCollected();
+        return storePlan(keyOf(blob.utf8()), () -> blob);
+    }
+
+    private TextBlob storePlan(Key key, Supplier<TextBlob> blobToStore) {
+        Entry<TextBlob> entry = plans.get(key);
+        TextBlob blob = entry != null ? entry.get() : null;
+        if (blob != null) {
+            return blob;
+        }
+
+        TextBlob created = blobToStore.get();
+        TextBlob[] stored = {created};
+        plans.compute(key, (k, existing) -> {
+            TextBlob current = existing != null ? existing.get() : null;
+            if (current != null) {
+                stored[0] = current;
+                return existing;
+            }
+            storedBytes.addAndGet(created.storedBytes() - (existing != null ? existing.bytes : 0));
+            return new Entry<>(created, key, created.storedBytes(), collected);
+        });
+        return stored[0];
+    }
+
+    public String shareQuery(String query) {
+        Key key = new Key(query.hashCode(), 0, query.length());
+        Entry<String> entry = queries.get(key);
+        String shared = entry != null ? entry.get() : null;
+        if (query.equals(shared)) {
+            return shared;
+        }
+
+        String[] stored = {query};
+        queries.compute(key, (k, existing) -> {
+            String current = existing != null ? existing.get() : null;
+            if (query.equals(current)) {
+                stored[0] = current;
+                return existing;
+            }
+            long bytes = 40 + 2L * query.length();
+            storedBytes.addAndGet(bytes - (existing != null ? existing.bytes : 0));
+            return new Entry<>(query, key, bytes, collected);
+        });
+        return stored[0];
+    }
+
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+
+    private TextBlob compress(byte[] utf8) {
+        byte[] out = new byte[compressor.maxCompressedLength(utf8.length)];
+        int size = compressor.compress(utf8, 0, utf8.length, out, 0, out.length);
+        if (size >= utf8.length) {
+            return new TextBlob(utf8, utf8.length, false);
+        }
+        return new TextBlob(Arrays.copyOf(out, size), utf8.length, true);
+    }
+
+    private Key keyOf(byte[] utf8) {
+        return new Key(hash.hash(utf8, 0, utf8.length, SEED_HIGH), hash.hash(utf8, 0, utf8.length, SEED_LOW),
+                utf8.length);
+    }
+
+    // Drops the entries whose text no retained event references any more
+    private void purgeCollected() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            Entry<?> entry = (Entry<?>) reference;
+            if (plans.remove(entry.key, entry) || queries.remove(entry.key, entry)) {
+                storedBytes.addAndGet(-entry.bytes);
+            }
+        }
+    }
+}
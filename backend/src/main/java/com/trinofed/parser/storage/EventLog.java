@@ -0,0 +1,327 @@
+package com.trinofed.parser.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.trinofed.parser.consumer.StringPool;
+import com.trinofed.parser.model.QueryEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Local append-only log of decoded {@link QueryEvent}s, so the in-memory state can be
+ * rebuilt after a restart without re-reading the Kafka topic (and without depending on its
+ * retention).
+ *
+ * The log is a directory of {@link LogSegment}s named by the sequence number of their first
+ * record; a new segment is started once the active one reaches {@code segment-bytes}. Each
+ * record stores the Kafka topic, partition and offset it came from next to the Smile-encoded
+ * event, so the log itself records which offsets it covers: after a replay,
+ * {@link #nextOffset(TopicPartition)} is where the consumer resumes.
+ *
+ * Segments are deleted once the snapshots kept by {@link StateSnapshotter} cover them
+ * ({@link #deleteSegmentsBefore}), so the log only holds what a restart may replay.
+ *
+ * Appends are serialized; with {@code fsync} enabled every appended batch is forced to disk
+ * before the events are applied. Ingestion goes through {@link #appendAndApply}, so
+ * {@link #atConsistentPoint} can briefly hold it off to capture in-memory state that matches
+ * exactly the records before {@link #nextSequence()}.
+ */
+@Slf4j
+@Component
+public class EventLog {
+
+    private static final String LOG_SUFFIX = ".log";
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int indexIntervalBytes;
+    private final boolean fsync;
+    private final ObjectMapper smileMapper;
+    private final StringPool stringPool;
+
+    private final List<LogSegment> segments = new ArrayList<>();
+    private final Map<TopicPartition, Long> nextOffsets = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock ingestionLock = new ReentrantReadWriteLock();
+
+    public EventLog(boolean enabled, String directory, DataSize segmentBytes, int indexIntervalBytes, boolean fsync) {
+        this(enabled, directory, segmentBytes, indexIntervalBytes, fsync, new StringPool(StringPool.DEFAULT_SIZE));
+    }
+
+    @Autowired
+    public EventLog(@Value("${trino.storage.enabled:false}") boolean enabled,
+                    @Value("${trino.storage.dir:data/event-log}") String directory,
+                    @Value("${trino.storage.segment-bytes:64MB}") DataSize segmentBytes,
+                    @Value("${trino.storage.index-interval-bytes:4096}") int indexIntervalBytes,
+                    @Value("${trino.storage.fsync:true}") boolean fsync,
+                    StringPool stringPool) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = Math.min(segmentBytes.toBytes(), MAX_SEGMENT_BYTES);
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.fsync = fsync;
+        this.stringPool = stringPool;
+        this.smileMapper = new ObjectMapper(new SmileFactory());
+        this.smileMapper.registerModule(new JavaTimeModule());
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+
+        List<Long> baseSequences;
+        try (Stream<Path> files = Files.list(directory)) {
+            baseSequences = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(LOG_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+
+        for (int i = 0; i < baseSequences.size() - 1; i++) {
+            segments.add(LogSegment.openSealed(directory, baseSequences.get(i), baseSequences.get(i + 1),
+                    indexIntervalBytes));
+        }
+        long activeBase = baseSequences.isEmpty() ? 0 : baseSequences.get(baseSequences.size() - 1);
+        segments.add(LogSegment.openActive(directory, activeBase, indexIntervalBytes));
+
+        log.info("Opened event log in {}: {} segments, {} records", directory.toAbsolutePath(),
+                segments.size(), nextSequence());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (LogSegment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sequence number the next appended record will get; also the number of records written.
+     */
+    public synchronized long nextSequence() {
+        return segments.isEmpty() ? 0 : active().getNextSequence();
+    }
+
+    /**
+     * Sequence number of the oldest record still in the log; older segments were deleted
+     * once a snapshot covered them.
+     */
+    public synchronized long firstSequence() {
+        return segments.isEmpty() ? 0 : segments.get(0).getBaseSequence();
+    }
+
+    /**
+     * Deletes the sealed segments holding only records before {@code sequence}, i.e. that
+     * every retained snapshot already covers. The active segment is always kept. Returns
+     * the number of segments deleted.
+     */
+    public synchronized int deleteSegmentsBefore(long sequence) throws IOException {
+        int deleted = 0;
+        while (segments.size() > 1 && segments.get(0).getNextSequence() <= sequence) {
+            LogSegment segment = segments.remove(0);
+            segment.delete();
+            deleted++;
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} event log segments before sequence {}; the log now starts at {}",
+                    deleted, sequence, firstSequence());
+        }
+        return deleted;
+    }
+
+    /**
+     * Kafka offset to resume the partition from, or null if the log has nothing for it.
+     */
+    public Long nextOffset(TopicPartition partition) {
+        return nextOffsets.get(partition);
+    }
+
+    public Map<TopicPartition, Long> nextOffsets() {
+        return Map.copyOf(nextOffsets);
+    }
+
+    /**
+     * Seeds the resume offsets from a state snapshot before the log tail is replayed.
+     */
+    public void restoreOffsets(Map<TopicPartition, Long> offsets) {
+        offsets.forEach((partition, offset) -> nextOffsets.merge(partition, offset, Math::max));
+    }
+
+    /**
+     * Appends the entries and then applies them, as one step with respect to
+     * {@link #atConsistentPoint}. A failed append is logged and the events are still applied,
+     * so live views keep working; they are just not replayed after a restart.
+     */
+    public void appendAndApply(Collection<LoggedEvent> entries, Runnable apply) {
+        ingestionLock.readLock().lock();
+        try {
+            try {
+                append(entries);
+            } catch (IOException e) {
+                log.error("Failed to append {} events to the event log", entries.size(), e);
+            }
+            apply.run();
+        } finally {
+            ingestionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs {@code capture} while no batch is being appended or applied, passing the sequence
+     * and Kafka offsets that the in-memory state corresponds to. Keep the capture cheap: it
+     * holds up ingestion for its duration.
+     */
+    public <T> T atConsistentPoint(BiFunction<Long, Map<TopicPartition, Long>, T> capture) {
+        ingestionLock.writeLock().lock();
+        try {
+            return capture.apply(nextSequence(), nextOffsets());
+        } finally {
+            ingestionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a batch of events and, with {@code fsync}, forces it to disk before returning.
+     */
+    public synchronized void append(Collection<LoggedEvent> entries) throws IOException {
+        if (!enabled || entries.isEmpty()) {
+            return;
+        }
+
+        List<ByteBuffer> pending = new ArrayList<>(entries.size());
+        long pendingBytes = 0;
+        for (LoggedEvent entry : entries) {
+            ByteBuffer record = encode(entry);
+            LogSegment active = active();
+            if (active.getRecordCount() + pending.size() > 0
+                    && active.getSize() + pendingBytes + record.remaining() > segmentBytes) {
+                active.append(pending);
+                pending.clear();
+                pendingBytes = 0;
+                roll();
+            }
+            pending.add(record);
+            pendingBytes += record.remaining();
+        }
+        active().append(pending);
+        if (fsync) {
+            active().force();
+        }
+
+        for (LoggedEvent entry : entries) {
+            recordOffset(entry);
+        }
+    }
+
+    /**
+     * Reads every record from {@code fromSequence} on, in order, handing them to the sink in
+     * batches of up to {@code batchSize}. The offsets of replayed records are recorded so the
+     * consumer resumes after them. Returns the number of records replayed.
+     */
+    public synchronized long replay(long fromSequence, int batchSize, Consumer<List<LoggedEvent>> sink)
+            throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        List<LoggedEvent> batch = new ArrayList<>(batchSize);
+        long[] replayed = {0};
+        for (LogSegment segment : segments) {
+            segment.read(fromSequence, (sequence, body) -> {
+                LoggedEvent entry = decode(body);
+                recordOffset(entry);
+                batch.add(entry);
+                replayed[0]++;
+                if (batch.size() >= batchSize) {
+                    sink.accept(new ArrayList<>(batch));
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+        return replayed[0];
+    }
+
+    private LogSegment active() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private void roll() throws IOException {
+        LogSegment previous = active();
+        if (fsync) {
+            previous.force();
+        }
+        segments.add(LogSegment.openActive(directory, previous.getNextSequence(), indexIntervalBytes));
+        log.info("Rolled event log to segment {}", LogSegment.fileName(previous.getNextSequence(), LOG_SUFFIX));
+    }
+
+    private void recordOffset(LoggedEvent entry) {
+        nextOffsets.merge(new TopicPartition(entry.getTopic(), entry.getPartition()), entry.getOffset() + 1, Math::max);
+    }
+
+    // body: int partition | long offset | short topicLength | topic | Smile-encoded QueryEvent
+    private ByteBuffer encode(LoggedEvent entry) throws IOException {
+        byte[] topic = entry.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = smileMapper.writeValueAsBytes(entry.getEvent());
+        int bodyLength = 4 + 8 + 2 + topic.length + payload.length;
+
+        ByteBuffer record = ByteBuffer.allocate(LogSegment.HEADER_BYTES + bodyLength);
+        record.putInt(bodyLength).putInt(0)
+                .putInt(entry.getPartition())
+                .putLong(entry.getOffset())
+                .putShort((short) topic.length)
+                .put(topic)
+                .put(payload);
+
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), LogSegment.HEADER_BYTES, bodyLength);
+        record.putInt(4, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private LoggedEvent decode(ByteBuffer body) throws IOException {
+        int partition = body.getInt();
+        long offset = body.getLong();
+        byte[] topic = new byte[body.getShort()];
+        body.get(topic);
+        byte[] payload = new byte[body.remaining()];
+        body.get(payload);
+        QueryEvent event = stringPool.intern(smileMapper.readValue(payload, QueryEvent.class));
+        return new LoggedEvent(new String(topic, StandardCharsets.UTF_8), partition, offset, event);
+    }
+}
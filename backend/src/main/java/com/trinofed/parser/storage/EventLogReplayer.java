@@ -0,0 +1,85 @@
+package com.trinofed.parser.storage;
+
+import com.trinofed.parser.service.QueryEventService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Rebuilds {@link QueryEventService} (and through it {@code DatabaseService}) at startup: the
+ * newest {@link StateSnapshot} is restored first, then only the {@link EventLog} records
+ * written after it are replayed. Runs in an earlier lifecycle phase than the Kafka listener
+ * containers, so consumption only starts once the replay is done and the consumer can
+ * resume from the offsets the log recorded. Replayed events only rebuild state: nothing is
+ * sent to WebSocket subscribers for them.
+ */
+@Slf4j
+@Component
+public class EventLogReplayer implements SmartLifecycle {
+
+    // Kafka listener containers start in phase Integer.MAX_VALUE - 100
+    private static final int PHASE = Integer.MAX_VALUE - 1000;
+    private static final int BATCH_SIZE = 1000;
+
+    private final EventLog eventLog;
+    private final QueryEventService queryEventService;
+    private final StateSnapshotter snapshotter;
+    private volatile boolean running;
+
+    @Autowired
+    public EventLogReplayer(EventLog eventLog, QueryEventService queryEventService, StateSnapshotter snapshotter) {
+        this.eventLog = eventLog;
+        this.queryEventService = queryEventService;
+        this.snapshotter = snapshotter;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!eventLog.isEnabled()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long fromSequence = snapshotter.loadLatest().map(snapshot -> {
+            snapshotter.restore(snapshot);
+            return snapshot.getSequence();
+        }).orElse(0L);
+        long restoredMs = (System.nanoTime() - start) / 1_000_000;
+        if (fromSequence < eventLog.firstSequence()) {
+            log.warn("No usable snapshot covers the deleted event log before sequence {}; only later events are replayed",
+                    eventLog.firstSequence());
+        }
+
+        try {
+            long replayed = eventLog.replay(fromSequence, BATCH_SIZE, batch -> queryEventService.replayEvents(
+                    batch.stream().map(LoggedEvent::getEvent).toList()));
+            queryEventService.finishReplay();
+            log.info("Restored snapshot in {} ms, replayed {} events from sequence {} in {} ms; resuming Kafka at {}",
+                    restoredMs, replayed, fromSequence, (System.nanoTime() - start) / 1_000_000 - restoredMs,
+                    eventLog.nextOffsets());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay the event log", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
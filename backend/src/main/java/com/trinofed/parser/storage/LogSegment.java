@@ -0,0 +1,281 @@
+package com.trinofed.parser.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of the {@link EventLog}: {@code <baseSequence>.log} holds the records and
+ * {@code <baseSequence>.index} a sparse index of (record number in segment, file position)
+ * pairs, one every {@code indexIntervalBytes}, so a read can start near any sequence.
+ *
+ * Record layout: {@code int bodyLength | int crc32c(body) | body}. Appends go through the
+ * {@link FileChannel}; reads map the file.
+ */
+@Slf4j
+final class LogSegment implements Closeable {
+
+    static final int HEADER_BYTES = 8;
+
+    private static final int INDEX_ENTRY_BYTES = 8;
+
+    interface RecordVisitor {
+        void visit(long sequence, ByteBuffer body) throws IOException;
+    }
+
+    private final long baseSequence;
+    private final Path logPath;
+    private final Path indexPath;
+    private final FileChannel logChannel;
+    private final FileChannel indexChannel;
+    private final int indexIntervalBytes;
+
+    private long size;
+    private int recordCount;
+    private long bytesSinceIndexEntry;
+    private int[] indexRecords = new int[64];
+    private int[] indexPositions = new int[64];
+    private int indexEntries;
+
+    private LogSegment(long baseSequence, Path directory, int indexIntervalBytes) throws IOException {
+        this.baseSequence = baseSequence;
+        this.logPath = directory.resolve(fileName(baseSequence, ".log"));
+        this.logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexPath = directory.resolve(fileName(baseSequence, ".index"));
+        this.indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexIntervalBytes = indexIntervalBytes;
+    }
+
+    static String fileName(long baseSequence, String suffix) {
+        return String.format("%020d%s", baseSequence, suffix);
+    }
+
+    /**
+     * Opens a sealed segment: its record count is known from the next segment's base
+     * sequence and its index is trusted as written.
+     */
+    static LogSegment openSealed(Path directory, long baseSequence, long nextBaseSequence,
+                                 int indexIntervalBytes) throws IOException {
+        LogSegment segment = new LogSegment(baseSequence, directory, indexIntervalBytes);
+        segment.size = segment.logChannel.size();
+        segment.recordCount = (int) (nextBaseSequence - baseSequence);
+        segment.loadIndex();
+        return segment;
+    }
+
+    /**
+     * Opens the segment being appended to. Every record is checked, anything after the first
+     * incomplete or corrupt record (a write cut short by a crash) is truncated, and the index
+     * is rebuilt.
+     */
+    static LogSegment openActive(Path directory, long baseSequence, int indexIntervalBytes) throws IOException {
+        LogSegment segment = new LogSegment(baseSequence, directory, indexIntervalBytes);
+        segment.recover();
+        return segment;
+    }
+
+    long getBaseSequence() {
+        return baseSequence;
+    }
+
+    long getNextSequence() {
+        return baseSequence + recordCount;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Appends complete records (header included) with one gathering write. The record count
+     * and index only advance once the write succeeded; a failed write is truncated away so
+     * the file, its index and {@link #getNextSequence()} stay in step.
+     */
+    void append(List<ByteBuffer> records) throws IOException {
+        long position = size;
+        long sinceIndexEntry = bytesSinceIndexEntry;
+        int[] newIndexRecords = new int[records.size()];
+        int[] newIndexPositions = new int[records.size()];
+        int newIndexEntries = 0;
+        for (int i = 0; i < records.size(); i++) {
+            if (sinceIndexEntry >= indexIntervalBytes || recordCount + i == 0) {
+                newIndexRecords[newIndexEntries] = recordCount + i;
+                newIndexPositions[newIndexEntries] = (int) position;
+                newIndexEntries++;
+                sinceIndexEntry = 0;
+            }
+            int length = records.get(i).remaining();
+            position += length;
+            sinceIndexEntry += length;
+        }
+
+        ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+        try {
+            logChannel.position(size);
+            long remaining = position - size;
+            while (remaining > 0) {
+                remaining -= logChannel.write(buffers);
+            }
+        } catch (IOException e) {
+            truncateAfterFailedWrite(e);
+            throw e;
+        }
+
+        size = position;
+        recordCount += records.size();
+        bytesSinceIndexEntry = sinceIndexEntry;
+        for (int i = 0; i < newIndexEntries; i++) {
+            addIndexEntry(newIndexRecords[i], newIndexPositions[i], true);
+        }
+    }
+
+    void force() throws IOException {
+        logChannel.force(false);
+        indexChannel.force(false);
+    }
+
+    /**
+     * Visits every record from {@code fromSequence} (or the start of the segment) to the end.
+     */
+    void read(long fromSequence, RecordVisitor visitor) throws IOException {
+        if (size == 0 || fromSequence >= getNextSequence()) {
+            return;
+        }
+        int target = (int) Math.max(0, fromSequence - baseSequence);
+        int entry = floorIndexEntry(target);
+        int record = entry >= 0 ? indexRecords[entry] : 0;
+        int position = entry >= 0 ? indexPositions[entry] : 0;
+
+        MappedByteBuffer buffer = logChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        while (position + HEADER_BYTES <= size && record < recordCount) {
+            int length = buffer.getInt(position);
+            ByteBuffer body = buffer.slice(position + HEADER_BYTES, length);
+            if (record >= target) {
+                visitor.visit(baseSequence + record, body);
+            }
+            position += HEADER_BYTES + length;
+            record++;
+        }
+    }
+
+    private void truncateAfterFailedWrite(IOException cause) {
+        try {
+            logChannel.truncate(size);
+        } catch (IOException e) {
+            // Reopening recovers the segment: records past the last valid one are cut off
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Closes the segment and deletes its files.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(logPath);
+        Files.deleteIfExists(indexPath);
+    }
+
+    private void recover() throws IOException {
+        long fileSize = logChannel.size();
+        indexEntries = 0;
+        indexChannel.truncate(0);
+
+        if (fileSize > 0) {
+            MappedByteBuffer buffer = logChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            CRC32C crc = new CRC32C();
+            long position = 0;
+            while (position + HEADER_BYTES <= fileSize) {
+                int length = buffer.getInt((int) position);
+                if (length <= 0 || position + HEADER_BYTES + length > fileSize) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.slice((int) position + HEADER_BYTES, length));
+                if ((int) crc.getValue() != buffer.getInt((int) position + 4)) {
+                    break;
+                }
+                if (bytesSinceIndexEntry >= indexIntervalBytes || recordCount == 0) {
+                    addIndexEntry(recordCount, (int) position, false);
+                    bytesSinceIndexEntry = 0;
+                }
+                position += HEADER_BYTES + length;
+                bytesSinceIndexEntry += HEADER_BYTES + length;
+                recordCount++;
+            }
+            size = position;
+        }
+
+        if (size < fileSize) {
+            log.warn("Truncating {} from {} to {} bytes after an incomplete or corrupt record",
+                    logPath, fileSize, size);
+            logChannel.truncate(size);
+        }
+        writeIndex();
+    }
+
+    private void loadIndex() throws IOException {
+        int entries = (int) (indexChannel.size() / INDEX_ENTRY_BYTES);
+        ByteBuffer buffer = ByteBuffer.allocate(entries * INDEX_ENTRY_BYTES);
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            int read = indexChannel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        buffer.flip();
+        for (int i = 0; i < entries; i++) {
+            addIndexEntry(buffer.getInt(), buffer.getInt(), false);
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(indexEntries * INDEX_ENTRY_BYTES);
+        for (int i = 0; i < indexEntries; i++) {
+            buffer.putInt(indexRecords[i]).putInt(indexPositions[i]);
+        }
+        buffer.flip();
+        indexChannel.write(buffer, 0);
+    }
+
+    private void addIndexEntry(int record, int position, boolean persist) throws IOException {
+        if (indexEntries == indexRecords.length) {
+            indexRecords = Arrays.copyOf(indexRecords, indexEntries * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexEntries * 2);
+        }
+        indexRecords[indexEntries] = record;
+        indexPositions[indexEntries] = position;
+        indexEntries++;
+        if (persist) {
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES).putInt(record).putInt(position).flip();
+            indexChannel.write(entry, (long) (indexEntries - 1) * INDEX_ENTRY_BYTES);
+        }
+    }
+
+    private int floorIndexEntry(int record) {
+        int position = Arrays.binarySearch(indexRecords, 0, indexEntries, record);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    @Override
+    public void close() throws IOException {
+        logChannel.close();
+        indexChannel.close();
+    }
+}
@@ -0,0 +1,15 @@
+package com.trinofed.parser.storage;
+
+import com.trinofed.parser.model.QueryEvent;
+import lombok.Value;
+
+/**
+ * A decoded event as stored in the {@link EventLog}, with the Kafka position it was read from.
+ */
+@Value
+public class LoggedEvent {
+    String topic;
+    int partition;
+    long offset;
+    QueryEvent event;
+}
@@ -0,0 +1,115 @@
+package com.trinofed.parser.storage;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.trinofed.parser.model.Database;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryPlan;
+import com.trinofed.parser.model.TextBlob;
+import com.trinofed.parser.service.PlanParser;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything held in memory as of event log sequence {@code sequence}: the retained queries'
+ * events (trees and secondary indexes are rebuilt from them), the database hierarchy and the
+ * Kafka offsets to resume from. Startup loads it and replays only the log records after it.
+ *
+ * Plans are kept once per distinct plan, as the compressed bytes held in memory and parsed,
+ * so restoring neither decompresses them for the events nor parses them again.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StateSnapshot {
+
+    public static final int FORMAT_VERSION = 2;
+
+    private int formatVersion;
+
+    private long sequence;
+
+    private Instant createdAt;
+
+    @Builder.Default
+    private List<PartitionOffset> offsets = new ArrayList<>();
+
+    @Builder.Default
+    private List<StoredPlan> plans = new ArrayList<>();
+
+    @Builder.Default
+    private Map<String, StoredQuery> queries = new LinkedHashMap<>();
+
+    @Builder.Default
+    private List<Database> databases = new ArrayList<>();
+
+    @Builder.Default
+    private Map<String, Integer> databaseQueryCounts = new LinkedHashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PartitionOffset {
+        private String topic;
+        private int partition;
+        private long offset;
+    }
+
+    /**
+     * A query's events in the order they were applied, without their plans: {@code planIds}
+     * holds the position in {@link #getPlans()} of each event's plan, or -1.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StoredQuery {
+        private List<QueryEvent> events;
+        private int[] planIds;
+    }
+
+    /**
+     * A plan's {@link TextBlob} bytes and the plan parsed from them. One made from a blob
+     * parses it as it is encoded, so writing a snapshot holds one parsed plan at a time.
+     */
+    @Data
+    @NoArgsConstructor
+    public static class StoredPlan {
+        private byte[] data;
+        private int length;
+        private boolean compressed;
+        private QueryPlan parsed;
+
+        @JsonIgnore
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        private TextBlob blob;
+
+        public static StoredPlan of(TextBlob blob) {
+            StoredPlan plan = new StoredPlan();
+            plan.data = blob.data();
+            plan.length = blob.length();
+            plan.compressed = blob.compressed();
+            plan.blob = blob;
+            return plan;
+        }
+
+        public QueryPlan getParsed() {
+            return parsed != null || blob == null ? parsed : PlanParser.parse(blob.text());
+        }
+
+        public TextBlob toBlob() {
+            return blob != null ? blob : new TextBlob(data, length, compressed);
+        }
+    }
+}
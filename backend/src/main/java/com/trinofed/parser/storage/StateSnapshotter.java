@@ -0,0 +1,304 @@
+package com.trinofed.parser.storage;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.trinofed.parser.consumer.StringPool;
+import com.trinofed.parser.model.CatalogSnapshot;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryPlan;
+import com.trinofed.parser.model.TextBlob;
+import com.trinofed.parser.service.DatabaseService;
+import com.trinofed.parser.service.LiveQueryTree;
+import com.trinofed.parser.service.QueryEventService;
+import com.trinofed.parser.service.TextStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Periodically writes a {@link StateSnapshot} so startup can load it and replay only the
+ * event log tail instead of the whole log.
+ *
+ * Ingestion is only held off ({@link EventLog#atConsistentPoint}) while the state is captured,
+ * and capturing copies nothing large: the database hierarchy is the published
+ * {@link CatalogSnapshot} and each query's events are an append-only view of its tree (see
+ * {@link LiveQueryTree#appliedEvents()}). Plans are collected, parsed, encoded and written
+ * afterwards on the scheduler thread.
+ * Files are written to a temporary name, forced and atomically renamed, and the newest
+ * {@code snapshots-retained} are kept. Event log segments older than the oldest kept
+ * snapshot are deleted.
+ */
+@Slf4j
+@Component
+public class StateSnapshotter {
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".smile";
+
+    private final EventLog eventLog;
+    private final QueryEventService queryEventService;
+    private final DatabaseService databaseService;
+    private final StringPool stringPool;
+    private final TextStore textStore;
+    private final Path directory;
+    private final int retained;
+    private final ObjectMapper smileMapper;
+    private long lastSnapshotSequence = -1;
+
+    @Autowired
+    public StateSnapshotter(EventLog eventLog, QueryEventService queryEventService, DatabaseService databaseService,
+                            StringPool stringPool, TextStore textStore,
+                            @Value("${trino.storage.snapshot-dir:data/snapshots}") String directory,
+                            @Value("${trino.storage.snapshots-retained:2}") int retained) {
+        this.eventLog = eventLog;
+        this.queryEventService = queryEventService;
+        this.databaseService = databaseService;
+        this.stringPool = stringPool;
+        this.textStore = textStore;
+        this.directory = Paths.get(directory);
+        this.retained = Math.max(1, retained);
+        // The snapshot file's channel is still forced after writing, so the generator must not close it
+        this.smileMapper = new ObjectMapper(new SmileFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        this.smileMapper.registerModule(new JavaTimeModule());
+    }
+
+    // What is taken while ingestion is held off
+    private record Capture(StateSnapshot snapshot, Map<String, List<QueryEvent>> queries) {
+    }
+
+    @Scheduled(fixedDelayString = "${trino.storage.snapshot-interval-ms:300000}",
+            initialDelayString = "${trino.storage.snapshot-interval-ms:300000}")
+    public void scheduledSnapshot() {
+        try {
+            writeSnapshot();
+        } catch (Exception e) {
+            log.error("Failed to write state snapshot", e);
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        scheduledSnapshot();
+    }
+
+    /**
+     * Writes a snapshot unless nothing was appended since the last one. Returns the file, if any.
+     */
+    public synchronized Optional<Path> writeSnapshot() throws IOException {
+        if (!eventLog.isEnabled() || eventLog.nextSequence() == lastSnapshotSequence) {
+            return Optional.empty();
+        }
+
+        long captureStart = System.nanoTime();
+        Capture capture = eventLog.atConsistentPoint((sequence, offsets) -> new Capture(StateSnapshot.builder()
+                .formatVersion(StateSnapshot.FORMAT_VERSION)
+                .sequence(sequence)
+                .createdAt(Instant.now())
+                .offsets(offsets.entrySet().stream()
+                        .map(e -> new StateSnapshot.PartitionOffset(e.getKey().topic(), e.getKey().partition(), e.getValue()))
+                        .toList())
+                // Already published after the last batch unless replay is still running
+                .databases(databaseService.publishSnapshot().getDatabases())
+                .databaseQueryCounts(databaseService.getDatabaseQueryCounts())
+                .build(), queryEventService.exportQueryEvents()));
+        long captureMs = (System.nanoTime() - captureStart) / 1_000_000;
+        StateSnapshot snapshot = capture.snapshot();
+        addQueries(snapshot, capture.queries());
+
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, snapshot.getSequence(), SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            smileMapper.writeValue(out, snapshot);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        lastSnapshotSequence = snapshot.getSequence();
+
+        log.info("Wrote snapshot {} at sequence {}: {} queries, {} plans, {} databases, {} bytes in {} ms "
+                        + "(ingestion held {} ms)",
+                target.getFileName(), snapshot.getSequence(), snapshot.getQueries().size(),
+                snapshot.getPlans().size(), snapshot.getDatabases().size(), Files.size(target),
+                (System.nanoTime() - captureStart) / 1_000_000, captureMs);
+
+        deleteOldSnapshots();
+        deleteCoveredSegments();
+        return Optional.of(target);
+    }
+
+    // Each distinct plan goes into the snapshot once, however many events share its blob
+    private static void addQueries(StateSnapshot snapshot, Map<String, List<QueryEvent>> queries) {
+        Map<TextBlob, Integer> planIds = new IdentityHashMap<>();
+        queries.forEach((queryId, events) -> {
+            int[] ids = new int[events.size()];
+            for (int i = 0; i < ids.length; i++) {
+                TextBlob blob = events.get(i).getStoredPlan();
+                ids[i] = blob == null ? -1 : planIds.computeIfAbsent(blob, b -> {
+                    snapshot.getPlans().add(StateSnapshot.StoredPlan.of(b));
+                    return snapshot.getPlans().size() - 1;
+                });
+            }
+            snapshot.getQueries().put(queryId, new StateSnapshot.StoredQuery(events, ids));
+        });
+    }
+
+    /**
+     * Loads the newest readable snapshot; a file that fails to load is skipped for the next
+     * older one. Temporary files from incomplete writes are deleted first. Snapshots ahead of the event log (the log was deleted) are ignored, since the
+     * log tail could not be replayed on top of them.
+     */
+    public Optional<StateSnapshot> loadLatest() {
+        if (!eventLog.isEnabled() || !Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        deleteTemporaryFiles();
+        List<Path> snapshots = listSnapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path file = snapshots.get(i);
+            long start = System.nanoTime();
+            try (InputStream in = Files.newInputStream(file)) {
+                StateSnapshot snapshot = smileMapper.readValue(in, StateSnapshot.class);
+                if (snapshot.getFormatVersion() != StateSnapshot.FORMAT_VERSION) {
+                    log.warn("Skipping snapshot {} with format version {}", file.getFileName(), snapshot.getFormatVersion());
+                    continue;
+                }
+                if (snapshot.getSequence() > eventLog.nextSequence()) {
+                    log.warn("Skipping snapshot {} at sequence {}: the event log only has {} records",
+                            file.getFileName(), snapshot.getSequence(), eventLog.nextSequence());
+                    continue;
+                }
+                log.info("Loaded snapshot {} ({} bytes, {} queries, sequence {}) in {} ms",
+                        file.getFileName(), Files.size(file), snapshot.getQueries().size(),
+                        snapshot.getSequence(), (System.nanoTime() - start) / 1_000_000);
+                lastSnapshotSequence = snapshot.getSequence();
+                return Optional.of(snapshot);
+            } catch (IOException e) {
+                log.warn("Failed to load snapshot {}", file.getFileName(), e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Applies a loaded snapshot: database hierarchy, query trees and indexes, resume offsets.
+     * Plans go into the {@link TextStore} as they were stored and are not parsed again.
+     */
+    public void restore(StateSnapshot snapshot) {
+        databaseService.restoreDatabases(snapshot.getDatabases(), snapshot.getDatabaseQueryCounts());
+
+        List<TextBlob> blobs = new ArrayList<>(snapshot.getPlans().size());
+        Map<TextBlob, QueryPlan> parsedPlans = new IdentityHashMap<>();
+        for (StateSnapshot.StoredPlan plan : snapshot.getPlans()) {
+            TextBlob blob = textStore.sharePlan(plan.toBlob());
+            blobs.add(blob);
+            parsedPlans.put(blob, plan.getParsed());
+        }
+        Map<String, List<QueryEvent>> queries = new LinkedHashMap<>();
+        snapshot.getQueries().forEach((queryId, query) -> {
+            for (int i = 0; i < query.getEvents().size(); i++) {
+                QueryEvent event = query.getEvents().get(i);
+                stringPool.intern(event);
+                if (query.getPlanIds()[i] >= 0) {
+                    event.storePlan(blobs.get(query.getPlanIds()[i]));
+                }
+            }
+            queries.put(queryId, query.getEvents());
+        });
+        queryEventService.restoreQueryEvents(queries, parsedPlans);
+
+        eventLog.restoreOffsets(snapshot.getOffsets().stream().collect(Collectors.toMap(
+                offset -> new TopicPartition(offset.getTopic(), offset.getPartition()),
+                StateSnapshot.PartitionOffset::getOffset)));
+    }
+
+    private List<Path> listSnapshots() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Failed to list snapshots in {}", directory, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Deletes the log segments that even the oldest retained snapshot covers, so falling
+     * back to it at startup still finds its whole tail.
+     */
+    private void deleteCoveredSegments() {
+        List<Path> snapshots = listSnapshots();
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        try {
+            eventLog.deleteSegmentsBefore(sequenceOf(snapshots.get(0)));
+        } catch (IOException e) {
+            log.warn("Failed to delete event log segments covered by snapshots", e);
+        }
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    // Left behind by a write that failed or was cut short
+    private void deleteTemporaryFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX + ".tmp");
+            }).toList()) {
+                Files.deleteIfExists(file);
+                log.info("Deleted incomplete snapshot {}", file.getFileName());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete incomplete snapshots in {}", directory, e);
+        }
+    }
+
+    private void deleteOldSnapshots() {
+        List<Path> snapshots = listSnapshots();
+        for (Path file : snapshots.subList(0, Math.max(0, snapshots.size() - retained))) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete old snapshot {}", file.getFileName(), e);
+            }
+        }
+    }
+}
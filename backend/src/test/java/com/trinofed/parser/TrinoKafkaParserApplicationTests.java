@@ -3,7 +3,7 @@ package com.trinofed.parser;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "trino.storage.enabled=false")
 class TrinoKafkaParserApplicationTests {
 
     @Test
@@ -0,0 +1,63 @@
+package com.trinofed.parser.config;
+
+import com.trinofed.parser.service.QueryEventService;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SlowSessionInterceptorTest {
+
+    @Test
+    void dropsQueryUpdatesOverTheLimitUntilOneIsHandled() {
+        SlowSessionInterceptor interceptor = new SlowSessionInterceptor(2);
+        Message<byte[]> update = message("s1", QueryEventService.QUERY_UPDATES_TOPIC);
+        assertNotNull(interceptor.preSend(update, null));
+        assertNotNull(interceptor.preSend(update, null));
+
+        assertNull(interceptor.preSend(update, null));
+        // Other destinations and other sessions are not held back
+        assertNotNull(interceptor.preSend(message("s1", "/user/queue/snapshot"), null));
+        assertNotNull(interceptor.preSend(message("s2", QueryEventService.QUERY_UPDATES_TOPIC), null));
+        assertEquals(3, interceptor.pending("s1"));
+
+        interceptor.afterMessageHandled(update, null, null, null);
+        interceptor.afterMessageHandled(update, null, null, null);
+        assertNotNull(interceptor.preSend(update, null));
+    }
+
+    @Test
+    void failedSendsAndDisconnectsReleaseTheirCounts() {
+        SlowSessionInterceptor interceptor = new SlowSessionInterceptor(1);
+        Message<byte[]> update = message("s1", QueryEventService.QUERY_UPDATES_TOPIC);
+        assertNotNull(interceptor.preSend(update, null));
+        // Rejected by the executor: never handled
+        interceptor.afterSendCompletion(update, null, false, new IllegalStateException("rejected"));
+        assertEquals(0, interceptor.pending("s1"));
+
+        assertNotNull(interceptor.preSend(update, null));
+        interceptor.afterSendCompletion(update, null, true, null);
+        assertEquals(1, interceptor.pending("s1"));
+        assertNull(interceptor.preSend(update, null));
+
+        interceptor.onApplicationEvent(new SessionDisconnectEvent(this, message("s1", null), "s1", CloseStatus.NORMAL));
+        assertEquals(0, interceptor.pending("s1"));
+        // A message still queued for the closed session is handled without effect
+        interceptor.afterMessageHandled(update, null, null, null);
+        assertEquals(0, interceptor.pending("s1"));
+    }
+
+    private static Message<byte[]> message(String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,90 @@
+package com.trinofed.parser.consumer;
+
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryInput;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StringPoolTest {
+
+    @Test
+    void aPairKeepsTheTwoMostRecentlyUsedValues() {
+        // Two slots: every value hashes to the one pair
+        StringPool pool = new StringPool(2);
+        String a = pool.intern(copy("a"));
+        String b = pool.intern(copy("b"));
+        assertSame(a, pool.intern(copy("a")));
+        assertSame(b, pool.intern(copy("b")));
+
+        // b was used last, so c pushes a out
+        String c = pool.intern(copy("c"));
+        assertSame(b, pool.intern(copy("b")));
+        assertSame(c, pool.intern(copy("c")));
+        String again = copy("a");
+        assertSame(again, pool.intern(again));
+        assertNotSame(a, again);
+    }
+
+    @Test
+    void charRangesFindTheSameInstanceAsStrings() {
+        StringPool pool = new StringPool(64);
+        String postgres = pool.intern(copy("postgres"));
+        char[] buffer = "{\"catalog\":\"postgres\"}".toCharArray();
+
+        assertSame(postgres, pool.intern(buffer, 12, 8));
+        String key = pool.intern(buffer, 2, 7);
+        assertEquals("catalog", key);
+        assertSame(key, pool.intern(copy("catalog")));
+        // Same length, different characters
+        assertEquals("postgrex", pool.intern("postgrex".toCharArray(), 0, 8));
+        assertEquals("", pool.intern(buffer, 0, 0));
+    }
+
+    @Test
+    void longValuesAndADisabledPoolAreNotPooled() {
+        StringPool pool = new StringPool(64);
+        String longValue = "x".repeat(StringPool.MAX_LENGTH + 1);
+        pool.intern(longValue);
+        assertNotSame(longValue, pool.intern(copy(longValue)));
+        assertNotSame(pool.intern(longValue.toCharArray(), 0, longValue.length()),
+                pool.intern(longValue.toCharArray(), 0, longValue.length()));
+
+        StringPool disabled = new StringPool(0);
+        String value = copy("etl");
+        assertSame(value, disabled.intern(value));
+        assertNotSame(disabled.intern(copy("etl")), disabled.intern(copy("etl")));
+        assertNull(disabled.intern((String) null));
+    }
+
+    @Test
+    void eventFieldsAreReplacedWithPooledInstances() {
+        StringPool pool = new StringPool(64);
+        String user = pool.intern(copy("etl"));
+        String catalog = pool.intern(copy("postgres"));
+        QueryEvent event = QueryEvent.builder()
+                .user(copy("etl"))
+                .catalogs(List.of(copy("postgres")))
+                .inputTables(List.of(QueryInput.builder()
+                        .catalogName(copy("postgres"))
+                        .columns(List.of(new QueryInput.Column(copy("id"), copy("bigint"))))
+                        .build()))
+                .build();
+
+        pool.intern(event);
+        assertSame(user, event.getUser());
+        assertSame(catalog, event.getCatalogs().get(0));
+        assertSame(catalog, event.getInputTables().get(0).getCatalogName());
+        assertSame(pool.intern(copy("bigint")), event.getInputTables().get(0).getColumns().get(0).getType());
+        assertNull(event.getState());
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+}
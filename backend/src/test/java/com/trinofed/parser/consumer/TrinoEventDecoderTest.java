@@ -0,0 +1,100 @@
+package com.trinofed.parser.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.TrinoEventWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TrinoEventDecoderTest {
+
+    private static final String COMPLETED_EVENT = """
+            {
+              "eventPayload": {
+                "metadata": {
+                  "queryId": "20251002_101500_00042_abcde",
+                  "transactionId": "c0ffee",
+                  "query": "SELECT o.id, c.name FROM postgres.public.orders o JOIN mongodb.sample_db.customers c ON o.cid = c.id",
+                  "queryState": "FINISHED",
+                  "uri": "http://trino:8080/v1/query/20251002_101500_00042_abcde",
+                  "plan": "Fragment 0 [SINGLE]\\n    Output[columnNames = [id, name]]",
+                  "tables": [],
+                  "routines": []
+                },
+                "statistics": {
+                  "cpuTime": "1.25s",
+                  "wallTime": "2.50s",
+                  "queuedTime": "15.00ms",
+                  "peakMemoryBytes": 1048576,
+                  "totalBytes": 20480,
+                  "totalRows": 1200,
+                  "completedSplits": 7,
+                  "operatorSummaries": [{"operatorType": "TableScanOperator", "inputPositions": 1200}]
+                },
+                "context": {
+                  "user": "etl",
+                  "principal": "etl",
+                  "clientInfo": "{\\"app\\": \\"dashboard\\"}",
+                  "resourceGroupId": ["global"],
+                  "sessionProperties": {"query_max_memory": "1GB"}
+                },
+                "ioMetadata": {
+                  "inputs": [
+                    {
+                      "catalogName": "postgres",
+                      "schema": "public",
+                      "table": "orders",
+                      "columns": [{"name": "id", "type": "bigint"}, {"name": "cid", "type": "bigint"}],
+                      "connectorInfo": {"splits": 3},
+                      "connectorMetrics": {"metrics": {}},
+                      "physicalInputBytes": 10240,
+                      "physicalInputRows": 600
+                    },
+                    {
+                      "catalogName": "mongodb",
+                      "schema": "sample_db",
+                      "table": "customers",
+                      "columns": [{"name": "name", "type": "varchar"}],
+                      "physicalInputBytes": "10240",
+                      "physicalInputRows": null
+                    }
+                  ],
+                  "output": {"catalogName": "memory", "schema": "default", "table": "results"}
+                },
+                "createTime": "2025-10-02T10:15:00.123Z",
+                "endTime": "2025-10-02T10:15:02.623Z",
+                "warnings": []
+              },
+              "eventType": "QueryCompletedEvent"
+            }
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TrinoEventDecoder decoder = new TrinoEventDecoder(objectMapper);
+
+    @Test
+    void decodesSameEventAsWrapperPath() throws Exception {
+        QueryEvent expected = objectMapper.readValue(COMPLETED_EVENT, TrinoEventWrapper.class).toQueryEvent();
+        // The streaming decoder deliberately exposes inputs only as typed inputTables
+        expected.setIoMetadata(null);
+
+        QueryEvent actual = decoder.decode(COMPLETED_EVENT.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(expected, actual);
+        assertEquals("etl", actual.getUser());
+        assertEquals(1250L, actual.getCpuTimeMs());
+        assertEquals(2, actual.getInputTables().size());
+        assertEquals("cid", actual.getInputTables().get(0).getColumns().get(1).getName());
+    }
+
+    @Test
+    void returnsNullWithoutMetadata() throws Exception {
+        assertNull(decoder.decode("{\"eventPayload\": {\"createTime\": \"2025-10-02T10:15:00Z\"}}"
+                .getBytes(StandardCharsets.UTF_8)));
+        assertNull(decoder.decode("{\"somethingElse\": 1}".getBytes(StandardCharsets.UTF_8)));
+    }
+}
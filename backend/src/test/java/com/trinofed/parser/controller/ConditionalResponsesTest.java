@@ -0,0 +1,169 @@
+package com.trinofed.parser.controller;
+
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.service.ResponseCache;
+import com.trinofed.parser.service.TestServices;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConditionalResponsesTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void revalidatedQueryTreeIsNotModifiedUntilItChanges() {
+        TestServices services = new TestServices();
+        QueryController controller = new QueryController(services.queryEventService, services.responseCache);
+        services.queryEventService.processEvents(List.of(event("CREATED", T0)));
+
+        ResponseEntity<byte[]> first = controller.getQueryById("q1", null, null);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+        assertEquals("no-cache", first.getHeaders().getCacheControl());
+
+        ResponseEntity<byte[]> revalidated = controller.getQueryById("q1", etag, null);
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+        assertEquals(etag, revalidated.getHeaders().getETag());
+        assertNull(revalidated.getBody());
+        assertEquals(1.0, requests(services, "not_modified"));
+
+        services.queryEventService.processEvents(List.of(event("COMPLETED", T0.plusSeconds(1))));
+        ResponseEntity<byte[]> changed = controller.getQueryById("q1", etag, null);
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(etag, changed.getHeaders().getETag());
+        assertTrue(new String(changed.getBody(), StandardCharsets.UTF_8).contains("COMPLETED"));
+    }
+
+    @Test
+    void queryTreeIsRevalidatedAgainstItsRevisionAlone() {
+        TestServices services = new TestServices();
+        QueryController controller = new QueryController(services.queryEventService, services.responseCache);
+        services.queryEventService.processEvents(List.of(event("CREATED", T0)));
+        String etag = controller.getQueryById("q1", null, null).getHeaders().getETag();
+        assertEquals(services.responseCache.etag(services.queryEventService.getQueryRevision("q1")), etag);
+
+        // A tag for a revision no response was built at still revalidates, with nothing cached
+        services.queryEventService.processEvents(List.of(event("COMPLETED", T0.plusSeconds(1))));
+        String current = services.responseCache.etag(services.queryEventService.getQueryRevision("q1"));
+        long cached = services.responseCache.getBytes();
+        ResponseEntity<byte[]> revalidated = controller.getQueryById("q1", current, null);
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+        assertEquals(cached, services.responseCache.getBytes());
+
+        assertNull(services.queryEventService.getQueryRevision("missing"));
+        assertEquals(HttpStatus.NOT_FOUND, controller.getQueryById("missing", etag, null).getStatusCode());
+    }
+
+    @Test
+    void queryEvictedAndCreatedAgainDoesNotMatchItsOldTag() {
+        TestServices services = new TestServices(1);
+        QueryController controller = new QueryController(services.queryEventService, services.responseCache);
+        services.queryEventService.processEvents(List.of(event("q1", "CREATED", T0)));
+        String etag = controller.getQueryById("q1", null, null).getHeaders().getETag();
+
+        // Over the one-query limit: q1 is evicted, then a late event creates it again at version 1
+        services.queryEventService.processEvents(List.of(event("q2", "CREATED", T0)));
+        assertNull(services.queryEventService.getQueryTree("q1"));
+        services.queryEventService.processEvents(List.of(event("q1", "RUNNING", T0.plusSeconds(1))));
+        assertEquals(1, services.queryEventService.getQueryTree("q1").getVersion());
+
+        ResponseEntity<byte[]> response = controller.getQueryById("q1", etag, null);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotEquals(etag, response.getHeaders().getETag());
+        assertTrue(new String(response.getBody(), StandardCharsets.UTF_8).contains("RUNNING"));
+    }
+
+    @Test
+    void notModifiedServesNothingFromTheCache() {
+        TestServices services = new TestServices();
+        ResponseCache cache = services.responseCache;
+        HttpHeaders extra = new HttpHeaders();
+        extra.add("X-Catalog-Version", "7");
+
+        ResponseEntity<byte[]> response = ConditionalResponses.respond(cache, "k", 7, cache.etag(7), "gzip", extra,
+                () -> {
+                    throw new AssertionError("body must not be built for a 304");
+                });
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("7", response.getHeaders().getFirst("X-Catalog-Version"));
+        assertEquals(0, cache.getBytes());
+        assertEquals(0.0, requests(services, "hit") + requests(services, "miss"));
+    }
+
+    @Test
+    void unchangedVersionIsServedFromStoredBytesAndGzippedWhenAccepted() throws IOException {
+        TestServices services = new TestServices();
+        ResponseCache cache = services.responseCache;
+        String large = "x".repeat(4096);
+
+        ResponseEntity<byte[]> plain = ConditionalResponses.respond(cache, "k", 1, null, null, () -> List.of(large));
+        ResponseEntity<byte[]> gzipped = ConditionalResponses.respond(cache, "k", 1, "\"stale\"", "br, gzip;q=0.5",
+                () -> {
+                    throw new AssertionError("cached body must be reused");
+                });
+
+        assertEquals(HttpStatus.OK, gzipped.getStatusCode());
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, gzipped.getHeaders().getFirst(HttpHeaders.VARY));
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(plain.getBody(), gunzip(gzipped.getBody()));
+        assertEquals(1.0, requests(services, "miss"));
+        assertEquals(1.0, requests(services, "hit"));
+
+        ResponseEntity<byte[]> refused = ConditionalResponses.respond(cache, "k", 1, null, "gzip;q=0", () -> null);
+        assertNull(refused.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void ifNoneMatchComparesWeaklyAndAcceptsListsAndWildcard() {
+        String etag = "W/\"abc-3\"";
+        assertTrue(ConditionalResponses.matches("W/\"abc-3\"", etag));
+        assertTrue(ConditionalResponses.matches("\"abc-3\"", etag));
+        assertTrue(ConditionalResponses.matches("\"abc-1\", W/\"abc-3\"", etag));
+        assertTrue(ConditionalResponses.matches("*", etag));
+        assertFalse(ConditionalResponses.matches("W/\"abc-2\"", etag));
+        assertFalse(ConditionalResponses.matches(null, etag));
+    }
+
+    private static double requests(TestServices services, String result) {
+        return services.meterRegistry.get("trino.response-cache.requests").tag("result", result).counter().count();
+    }
+
+    private static byte[] gunzip(byte[] gzipped) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static QueryEvent event(String type, Instant timestamp) {
+        return event("q1", type, timestamp);
+    }
+
+    private static QueryEvent event(String queryId, String type, Instant timestamp) {
+        return QueryEvent.builder()
+                .queryId(queryId)
+                .eventType(type)
+                .state("RUNNING")
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NameIndexTest {
+
+    @Test
+    void keepsFirstInsertionOrderAndCreatesEachNameOnce() {
+        NameIndex<Database.Column> columns = new NameIndex<>();
+        AtomicInteger created = new AtomicInteger();
+        Database.Column id = columns.computeIfAbsent("id", name -> column(name, created));
+        columns.computeIfAbsent("total", name -> column(name, created));
+        columns.computeIfAbsent("created_at", name -> column(name, created));
+
+        assertSame(id, columns.computeIfAbsent("id", name -> column(name, created)));
+        assertEquals(3, created.get());
+        assertEquals(List.of("id", "total", "created_at"), names(columns));
+        assertSame(id, columns.get("id"));
+        assertTrue(columns.contains("total"));
+        assertFalse(columns.contains(null));
+        assertNull(columns.get(null));
+
+        // values() is a copy
+        columns.values().clear();
+        assertEquals(3, columns.size());
+    }
+
+    @Test
+    void serializesAsAPlainArrayInInsertionOrder() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Database.Table table = Database.Table.builder().name("orders").build();
+        table.getColumns().computeIfAbsent("id", name -> Database.Column.builder().name(name).type("bigint").build());
+        table.getColumns().computeIfAbsent("amount", name -> Database.Column.builder().name(name).type("double").build());
+
+        JsonNode json = mapper.readTree(mapper.writeValueAsString(table));
+        assertTrue(json.get("columns").isArray());
+        assertEquals("id", json.get("columns").get(0).get("name").asText());
+        assertEquals("amount", json.get("columns").get(1).get("name").asText());
+
+        Database.Table read = mapper.readValue(mapper.writeValueAsString(table), Database.Table.class);
+        assertEquals(table.getColumns(), read.getColumns());
+        assertEquals(List.of("id", "amount"), names(read.getColumns()));
+    }
+
+    @Test
+    void readingKeepsTheFirstOfDuplicateNamesAndSkipsUnnamed() throws Exception {
+        String json = """
+                {"name": "orders", "columns": [
+                  {"name": "id", "type": "bigint"},
+                  {"type": "varchar"},
+                  {"name": "id", "type": "varchar"},
+                  {"name": "total"}
+                ]}""";
+
+        Database.Table table = new ObjectMapper().readValue(json, Database.Table.class);
+        assertEquals(List.of("id", "total"), names(table.getColumns()));
+        assertEquals("bigint", table.getColumns().get("id").getType());
+        assertEquals(0, new NameIndex<Database.Column>(null).size());
+    }
+
+    private static Database.Column column(String name, AtomicInteger created) {
+        created.incrementAndGet();
+        return Database.Column.builder().name(name).build();
+    }
+
+    private static List<String> names(NameIndex<? extends NameIndex.Named> index) {
+        return index.values().stream().map(NameIndex.Named::getName).toList();
+    }
+}
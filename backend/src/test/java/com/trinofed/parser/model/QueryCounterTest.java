@@ -0,0 +1,94 @@
+package com.trinofed.parser.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryCounterTest {
+
+    @Test
+    void countsEachOrdinalOnce() {
+        QueryCounter counter = new QueryCounter();
+        assertTrue(counter.record(0));
+        assertTrue(counter.record(63));
+        assertTrue(counter.record(64));
+        assertTrue(counter.record(5000));
+        assertFalse(counter.record(63));
+        assertFalse(counter.record(5000));
+        assertEquals(4, counter.get());
+    }
+
+    @Test
+    void markedOrdinalsAreNotCounted() {
+        QueryCounter counter = new QueryCounter(7);
+        assertTrue(counter.markSeen(3));
+        assertFalse(counter.markSeen(3));
+        assertFalse(counter.record(3));
+        assertTrue(counter.record(4));
+        assertEquals(8, counter.get());
+    }
+
+    @Test
+    void forgettingKeepsTheCountAndRecentOrdinals() {
+        QueryCounter counter = new QueryCounter();
+        for (int ordinal = 0; ordinal < 3000; ordinal += 10) {
+            counter.record(ordinal);
+        }
+        counter.forgetBelow(2500);
+
+        assertEquals(300, counter.get());
+        // Still in the page that holds the cutoff
+        assertFalse(counter.record(2990));
+        assertFalse(counter.record(2050));
+    }
+
+    @Test
+    void concurrentRecordsCountDistinctOrdinals() throws Exception {
+        QueryCounter counter = new QueryCounter();
+        AtomicInteger newlyCounted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                // Every thread records every ordinal, in a different order
+                int offset = thread * 997;
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        if (counter.record((i + offset) % 10_000)) {
+                            newlyCounted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(10_000, counter.get());
+        assertEquals(10_000, newlyCounted.get());
+    }
+
+    @Test
+    void serializesAsThePlainCount() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        QueryCounter counter = new QueryCounter();
+        counter.record(1);
+        counter.record(2);
+
+        assertEquals("2", mapper.writeValueAsString(counter));
+        assertEquals(counter, mapper.readValue("2", QueryCounter.class));
+    }
+}
@@ -0,0 +1,110 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.CatalogSnapshot;
+import com.trinofed.parser.model.Database;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryInput;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CatalogPublisherTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void copiesOnlyChangedNodesAndVersionsEachCatalog() {
+        DatabaseService databases = new TestServices().databaseService;
+        read(databases, 0, "postgres", "public", "orders");
+        read(databases, 0, "postgres", "public", "users");
+        read(databases, 0, "postgres", "sales", "leads");
+        read(databases, 0, "mysql", "app", "items");
+        read(databases, 0, "mongodb", "shop", "products");
+        read(databases, 0, "mongodb", "shop", "reviews");
+        CatalogSnapshot first = databases.publishSnapshot();
+
+        read(databases, 1, "postgres", "public", "orders");
+        read(databases, 1, "mongodb", "shop", "products");
+        CatalogSnapshot second = databases.publishSnapshot();
+
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        // Untouched catalog: the same copy, still at the version it last changed in
+        assertSame(first.getDatabase("mysql"), second.getDatabase("mysql"));
+        assertEquals(first.getVersion(), second.getDatabaseVersion("mysql"));
+        assertEquals(second.getVersion(), second.getDatabaseVersion("postgres"));
+        assertEquals(second.getVersion(), second.getDatabaseVersion("mongodb"));
+
+        Database postgresBefore = first.getDatabase("postgres");
+        Database postgres = second.getDatabase("postgres");
+        assertNotSame(postgresBefore, postgres);
+        assertSame(postgresBefore.getSchemas().get("sales"), postgres.getSchemas().get("sales"));
+        Database.Schema publicBefore = postgresBefore.getSchemas().get("public");
+        Database.Schema publicSchema = postgres.getSchemas().get("public");
+        assertNotSame(publicBefore, publicSchema);
+        assertSame(publicBefore.getTables().get("users"), publicSchema.getTables().get("users"));
+        assertNotSame(publicBefore.getTables().get("orders"), publicSchema.getTables().get("orders"));
+        // Columns never change once added and are shared
+        assertSame(publicBefore.getTables().get("orders").getColumns().get("id"),
+                publicSchema.getTables().get("orders").getColumns().get("id"));
+
+        Database mongo = second.getDatabase("mongodb");
+        assertSame(first.getDatabase("mongodb").getCollections().get("reviews"), mongo.getCollections().get("reviews"));
+        assertNotSame(first.getDatabase("mongodb").getCollections().get("products"),
+                mongo.getCollections().get("products"));
+
+        // The earlier snapshot still shows the counts it was published with
+        assertEquals(1, publicBefore.getTables().get("orders").getTotalQueries().get());
+        assertEquals(2, publicSchema.getTables().get("orders").getTotalQueries().get());
+        assertEquals(2, postgres.getTotalQueries().get());
+    }
+
+    @Test
+    void publishWithoutChangesKeepsTheSnapshot() {
+        DatabaseService databases = new TestServices().databaseService;
+        read(databases, 0, "postgres", "public", "orders");
+        CatalogSnapshot first = databases.publishSnapshot();
+
+        assertSame(first, databases.publishSnapshot());
+        assertSame(first, databases.getSnapshot());
+    }
+
+    @Test
+    void replacedCatalogIsCopiedInFullAndRemovedOneDropped() {
+        DatabaseService databases = new TestServices().databaseService;
+        read(databases, 0, "postgres", "public", "orders");
+        read(databases, 0, "mysql", "app", "items");
+        CatalogSnapshot first = databases.publishSnapshot();
+
+        Database replacement = Database.builder().id("postgres").name("postgres").type("postgresql").build();
+        replacement.getSchemas().computeIfAbsent("public", name -> first.getDatabase("postgres").getSchemas().get(name));
+        databases.addDatabase(replacement);
+        databases.removeDatabase("mysql");
+        CatalogSnapshot second = databases.getSnapshot();
+
+        assertNotSame(first.getDatabase("postgres").getSchemas().get("public"),
+                second.getDatabase("postgres").getSchemas().get("public"));
+        assertNull(second.getDatabase("mysql"));
+        assertEquals(0, second.getDatabaseVersion("mysql"));
+        assertEquals(List.of("postgres"), second.getDatabases().stream().map(Database::getId).toList());
+    }
+
+    private static void read(DatabaseService databases, int queryOrdinal, String catalog, String schema,
+                             String table) {
+        QueryEvent event = QueryEvent.builder()
+                .queryId("q" + queryOrdinal)
+                .eventType("COMPLETED")
+                .timestamp(T0.plusSeconds(queryOrdinal))
+                .inputTables(List.of(QueryInput.builder()
+                        .catalogName(catalog).schema(schema).table(table)
+                        .columns(List.of(new QueryInput.Column("id", "bigint")))
+                        .build()))
+                .build();
+        databases.processEvent(event, null, queryOrdinal);
+    }
+}
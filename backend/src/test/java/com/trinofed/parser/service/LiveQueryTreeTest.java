@@ -0,0 +1,212 @@
+package com.trinofed.parser.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryTree;
+import com.trinofed.parser.model.QueryTreeDelta;
+import com.trinofed.parser.model.QueryTreeNode;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiveQueryTreeTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    private static final String PLAN = """
+            Fragment 0 [SINGLE]
+                Output[columnNames = [id]]
+                └─ RemoteSource[sourceFragmentIds = [1]]
+
+            Fragment 1 [SOURCE]
+                Aggregate(FINAL)
+                └─ TableScan[table = postgresql:public.orders]
+            """;
+
+    @Test
+    void insertsLateEventsInTimestampOrder() {
+        LiveQueryTree tree = new LiveQueryTree("q1");
+        tree.apply(event("RUNNING", T0.plusSeconds(2)), null);
+        tree.apply(event("COMPLETED", T0.plusSeconds(3)), null);
+        tree.apply(event("CREATED", T0), null);
+
+        QueryTree snapshot = tree.snapshot();
+        assertEquals(List.of("CREATED", "RUNNING", "COMPLETED"), eventTypes(snapshot));
+        assertEquals("q1-CREATED-" + T0.toEpochMilli(), snapshot.getRoot().getId());
+        assertEquals(T0, snapshot.getStartTime());
+        assertEquals(T0.plusSeconds(3), snapshot.getEndTime());
+    }
+
+    @Test
+    void keepsArrivalOrderForEqualTimestamps() {
+        LiveQueryTree tree = new LiveQueryTree("q1");
+        tree.apply(event("CREATED", T0), null);
+        tree.apply(event("RUNNING", T0.plusSeconds(1)), null);
+        tree.apply(event("SPLIT", T0.plusSeconds(1)), null);
+        tree.apply(event("STAGE", T0), null);
+
+        assertEquals(List.of("CREATED", "STAGE", "RUNNING", "SPLIT"), eventTypes(tree.snapshot()));
+    }
+
+    @Test
+    void sortsEventsWithoutTimestampLast() {
+        LiveQueryTree tree = new LiveQueryTree("q1");
+        tree.apply(event("CREATED", null), null);
+        tree.apply(event("RUNNING", T0.plusSeconds(1)), null);
+        tree.apply(event("SPLIT", null), null);
+        tree.apply(event("STAGE", T0), null);
+
+        assertEquals(List.of("STAGE", "RUNNING", "CREATED", "SPLIT"), eventTypes(tree.snapshot()));
+        assertEquals(4, tree.getVersion());
+    }
+
+    @Test
+    void appliedEventsAreAViewLaterEventsDontChange() {
+        LiveQueryTree tree = new LiveQueryTree("q1");
+        tree.apply(event("RUNNING", T0.plusSeconds(2)), null);
+        tree.apply(event("CREATED", T0), null);
+        List<QueryEvent> captured = tree.appliedEvents();
+
+        // Late and past the array's first capacity
+        tree.apply(event("STAGE", T0.plusSeconds(1)), null);
+        tree.apply(event("COMPLETED", T0.plusSeconds(3)), null);
+        assertEquals(List.of("RUNNING", "CREATED"), captured.stream().map(QueryEvent::getEventType).toList());
+        assertEquals(List.of("RUNNING", "CREATED", "STAGE", "COMPLETED"),
+                tree.appliedEvents().stream().map(QueryEvent::getEventType).toList());
+
+        // Applied in that order, a new tree is the same
+        LiveQueryTree rebuilt = new LiveQueryTree("q1");
+        tree.appliedEvents().forEach(event -> rebuilt.apply(event, null));
+        assertEquals(tree.snapshot().getEvents(), rebuilt.snapshot().getEvents());
+        assertEquals(tree.snapshot().getRoot().getId(), rebuilt.snapshot().getRoot().getId());
+    }
+
+    @Test
+    void recordsCompletionTimeOnce() {
+        LiveQueryTree tree = new LiveQueryTree("q1");
+        assertNull(tree.getCompletedAt());
+        tree.apply(event("COMPLETED", T0.plusSeconds(5)), null);
+        tree.apply(event("COMPLETED", T0.plusSeconds(9)), null);
+
+        assertEquals(T0.plusSeconds(5), tree.getCompletedAt());
+    }
+
+    @Test
+    void deltasChainFromVersionToVersion() {
+        LiveQueryTree tree = new LiveQueryTree("q1");
+        tree.apply(event("CREATED", T0), null);
+        QueryTreeDelta first = tree.drainDelta();
+        assertEquals(0, first.getBaseVersion());
+        assertEquals(1, first.getVersion());
+        assertEquals("q1-CREATED-" + T0.toEpochMilli(), first.getRootId());
+
+        assertNull(tree.drainDelta());
+
+        tree.apply(event("RUNNING", T0.plusSeconds(1)), null);
+        tree.apply(event("COMPLETED", T0.plusSeconds(2)), null);
+        QueryTreeDelta second = tree.drainDelta();
+        assertEquals(first.getVersion(), second.getBaseVersion());
+        assertEquals(3, second.getVersion());
+        assertEquals(2, second.getEvents().size());
+        assertNull(second.getRootId());
+        assertNull(second.getState());
+        assertEquals(T0.plusSeconds(2), second.getEndTime());
+    }
+
+    @Test
+    void mergedDeltasSpanBothVersionRanges() {
+        LiveQueryTree tree = new LiveQueryTree("q1");
+        tree.apply(event("CREATED", T0), null);
+        QueryTreeDelta first = tree.drainDelta();
+        tree.apply(event("COMPLETED", T0.plusSeconds(1)), null);
+        QueryTreeDelta second = tree.drainDelta();
+        tree.apply(event("COMPLETED", T0.plusSeconds(1)), null);
+        QueryTreeDelta third = tree.drainDelta();
+
+        QueryTreeDelta merged = QueryUpdateBroadcaster.merge(QueryUpdateBroadcaster.merge(first, second), third);
+        assertEquals(0, merged.getBaseVersion());
+        assertEquals(3, merged.getVersion());
+        assertEquals(3, merged.getEvents().size());
+        // The node the repeated event maps to is sent once, in its latest form
+        assertEquals(2, merged.getNodes().size());
+
+        // A client still at version 1 has missed the second delta and must resync
+        long clientVersion = 1;
+        assertTrue(clientVersion != third.getBaseVersion());
+        assertEquals(clientVersion, second.getBaseVersion());
+    }
+
+    @Test
+    void planAndOperatorNodeIdsAreStableAcrossUpdates() {
+        LiveQueryTree tree = new LiveQueryTree("q1");
+        tree.apply(withPlanAndStats(event("COMPLETED", T0)), PlanParser.parse(PLAN));
+        List<String> firstIds = nodeIds(tree.snapshot().getRoot());
+        tree.drainDelta();
+
+        tree.apply(withPlanAndStats(event("COMPLETED", T0)), PlanParser.parse(PLAN));
+        QueryTreeDelta delta = tree.drainDelta();
+
+        assertEquals(firstIds, nodeIds(tree.snapshot().getRoot()));
+        assertEquals(1, delta.getNodes().size());
+        assertEquals(firstIds, nodeIds(delta.getNodes().get(0)));
+        String rootId = "q1-COMPLETED-" + T0.toEpochMilli();
+        assertTrue(firstIds.contains(rootId + "-op-0"));
+        assertTrue(firstIds.contains(rootId + "-plan-0-0"));
+        assertTrue(firstIds.contains(rootId + "-plan-1-1"));
+    }
+
+    @Test
+    void deltaEventsLeaveOutPlanAndQueryText() throws Exception {
+        LiveQueryTree tree = new LiveQueryTree("q1");
+        QueryEvent completed = event("COMPLETED", T0);
+        completed.setQuery("SELECT id FROM postgres.public.orders");
+        completed.setPlan(PLAN);
+        tree.apply(completed, PlanParser.parse(PLAN));
+
+        QueryTreeDelta delta = tree.drainDelta();
+        assertTrue(delta.getEvents().get(0).isHasPlan());
+        assertEquals("SELECT id FROM postgres.public.orders", delta.getQuery());
+
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        String events = mapper.writeValueAsString(delta.getEvents());
+        assertFalse(events.contains("Fragment"));
+        assertFalse(events.contains("SELECT"));
+    }
+
+    private static QueryEvent withPlanAndStats(QueryEvent event) {
+        event.setPlan(PLAN);
+        event.setOperatorStats(Map.of("children", List.of(Map.of("operatorType", "ScanFilter"))));
+        return event;
+    }
+
+    private static List<String> nodeIds(QueryTreeNode node) {
+        List<String> ids = new ArrayList<>();
+        ids.add(node.getId());
+        for (QueryTreeNode child : node.getChildren()) {
+            ids.addAll(nodeIds(child));
+        }
+        return ids;
+    }
+
+    private static List<String> eventTypes(QueryTree tree) {
+        return tree.getEvents().stream().map(QueryEvent::getEventType).toList();
+    }
+
+    private static QueryEvent event(String type, Instant timestamp) {
+        return QueryEvent.builder()
+                .queryId("q1")
+                .eventType(type)
+                .state("RUNNING")
+                .timestamp(timestamp)
+                .build();
+    }
+}
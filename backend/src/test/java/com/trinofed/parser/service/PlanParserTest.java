@@ -0,0 +1,110 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryPlan;
+import com.trinofed.parser.model.QueryPlan.Operator;
+import com.trinofed.parser.model.QueryPlan.TableHandle;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanParserTest {
+
+    private static final String DISTRIBUTED_PLAN = """
+            Fragment 0 [SINGLE]
+                CPU: 2.56ms, Scheduled: 3.03ms, Input: 5 rows (145B); per task: avg.: 5.00 std.dev.: 0.00, Output: 5 rows (145B)
+                Output layout: [id, name]
+                Output partitioning: SINGLE []
+                Output[columnNames = [id, name]]
+                │   Layout: [id:bigint, name:varchar]
+                │   Estimates: {rows: 5 (145B), cpu: 0, memory: 0B, network: 0B}
+                │   CPU: 0.00ns (0.00%), Scheduled: 0.00ns (0.00%), Output: 5 rows (145B)
+                └─ RemoteSource[sourceFragmentIds = [1]]
+                       Layout: [id:bigint, name:varchar]
+
+            Fragment 1 [HASH]
+                Output layout: [id, name]
+                Output partitioning: SINGLE []
+                InnerJoin[criteria = ("cid" = "id_0"), hash = [$hashvalue, $hashvalue_1], distribution = PARTITIONED]
+                │   Layout: [id:bigint, name:varchar]
+                │   CPU: 1.20ms (10.00%), Scheduled: 1.50ms (9.00%), Output: 1.5K rows (2.50kB)
+                ├─ RemoteSource[sourceFragmentIds = [2]]
+                │      Layout: [id:bigint, cid:bigint]
+                └─ LocalExchange[partitioning = HASH, arguments = ["id_0"]]
+                   │   Layout: [id_0:bigint, name:varchar]
+                   └─ RemoteSource[sourceFragmentIds = [3]]
+                          Layout: [id_0:bigint, name:varchar]
+
+            Fragment 2 [SOURCE]
+                Output layout: [id, cid]
+                Output partitioning: HASH [cid]
+                ScanFilter[table = postgresql:public.orders public.orders, filterPredicate = ("total" > 100)]
+                    Layout: [id:bigint, cid:bigint]
+                    CPU: 8.00ms (60.00%), Output: 600 rows (10.00kB)
+                    id := id:bigint:int8
+                    FROM bogus:text.that_is_not_a_table
+
+            Fragment 3 [SOURCE]
+                Output layout: [id_0, name]
+                Output partitioning: HASH [id_0]
+                TableScan[table = mongodb:sample_db.customers]
+                    Layout: [id_0:bigint, name:varchar]
+            """;
+
+    @Test
+    void parsesFragmentsOperatorsAndTables() {
+        QueryPlan plan = PlanParser.parse(DISTRIBUTED_PLAN);
+
+        assertEquals(4, plan.getFragments().size());
+        assertEquals("SOURCE", plan.getFragment(2).getPartitioning());
+
+        Operator output = plan.getFragment(0).getRoot();
+        assertEquals("Output", output.getName());
+        assertEquals(5L, output.getOutputRows());
+        assertEquals(145L, output.getOutputBytes());
+        assertEquals(List.of(1), output.getChildren().get(0).getSourceFragmentIds());
+
+        Operator join = plan.getFragment(1).getRoot();
+        assertEquals("InnerJoin", join.getName());
+        assertEquals(1500L, join.getOutputRows());
+        assertEquals(2560L, join.getOutputBytes());
+        assertEquals(2, join.getChildren().size());
+        assertEquals(List.of(2), join.getChildren().get(0).getSourceFragmentIds());
+        assertEquals(List.of(3), join.getChildren().get(1).getChildren().get(0).getSourceFragmentIds());
+
+        assertEquals(List.of(
+                        new TableHandle("postgresql", "public", "orders"),
+                        new TableHandle("mongodb", "sample_db", "customers")),
+                List.copyOf(plan.tables()));
+    }
+
+    @Test
+    void parsesOlderDashFormat() {
+        QueryPlan plan = PlanParser.parse("""
+                Fragment 1 [SOURCE]
+                    Output layout: [orderkey]
+                    - Aggregate(PARTIAL)[] => [count_0:bigint]
+                            count_0 := count(*)
+                        - TableScan[tpch:tiny:orders, grouped = false] => []
+                                Cost: {rows: 15000 (0B)}
+                                CPU: 3.00ms (100.00%), Output: 15000 rows (0B)
+                """);
+
+        Operator aggregate = plan.getFragment(1).getRoot();
+        assertEquals("Aggregate(PARTIAL)", aggregate.getName());
+        Operator scan = aggregate.getChildren().get(0);
+        assertEquals(new TableHandle("tpch", "tiny", "orders"), scan.getTable());
+        assertEquals(15000L, scan.getOutputRows());
+    }
+
+    @Test
+    void toleratesTextThatIsNotAPlan() {
+        assertNull(PlanParser.parse("  "));
+        QueryPlan plan = PlanParser.parse("SELECT * FROM orders\nwhere x = 1");
+        assertTrue(plan.getFragments().isEmpty());
+        assertTrue(plan.tables().isEmpty());
+    }
+}
@@ -0,0 +1,161 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryFilter;
+import com.trinofed.parser.model.QueryIndexField;
+import com.trinofed.parser.model.QueryInput;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryIndexTest {
+
+    @Test
+    void matchesAnyValueWithinAFieldAndAllFields() {
+        QueryIndex index = new QueryIndex();
+        post(index, "q1", "postgres", "FAILED", "etl");
+        post(index, "q2", "mongodb", "FAILED", "etl");
+        post(index, "q3", "postgres", "FINISHED", "etl");
+        post(index, "q4", "hive", "FAILED", "analyst");
+
+        QueryIndex.Match match = index.match(Map.of(
+                QueryIndexField.CATALOG, List.of("postgres", "mongodb"),
+                QueryIndexField.STATE, List.of("FAILED")));
+        assertEquals(Set.of("q1", "q2"), Set.copyOf(match.queryIds(10)));
+        assertTrue(match.contains("q1"));
+        assertFalse(match.contains("q3"));
+
+        assertEquals(0, index.match(Map.of(QueryIndexField.CATALOG, List.of("oracle"))).size());
+        assertNull(index.match(Map.of()));
+        assertEquals(Map.of("FAILED", 3, "FINISHED", 1), index.counts(QueryIndexField.STATE));
+    }
+
+    @Test
+    void releaseRemovesPostingsAndNeverHandsOrdinalsToOtherQueries() {
+        QueryIndex index = new QueryIndex();
+        int first = post(index, "q1", "postgres", "FAILED", "etl");
+        post(index, "q2", "postgres", "FINISHED", "etl");
+        QueryIndex.Match before = index.match(Map.of(QueryIndexField.CATALOG, List.of("postgres")));
+
+        index.release("q1", Map.of(
+                QueryIndexField.CATALOG, Set.of("postgres"),
+                QueryIndexField.STATE, Set.of("FAILED"),
+                QueryIndexField.USER, Set.of("etl")));
+
+        assertNull(index.existingOrdinal("q1"));
+        assertNull(index.queryId(first));
+        assertEquals(1, index.size());
+        assertEquals(Map.of("FINISHED", 1), index.counts(QueryIndexField.STATE));
+        assertEquals(List.of("q2"), index.match(Map.of(QueryIndexField.CATALOG, List.of("postgres"))).queryIds(10));
+        // A match taken before the release skips the released query
+        assertEquals(List.of("q2"), before.queryIds(10));
+        assertEquals(index.existingOrdinal("q2"), index.lowestOrdinal());
+
+        // Another query never gets the released ordinal; the same one indexed again does
+        assertNotEquals(first, index.ordinal("q3"));
+        assertEquals(first, index.lowestReusableOrdinal());
+        assertEquals(first, index.ordinal("q1"));
+        assertEquals(first, index.lowestOrdinal());
+    }
+
+    @Test
+    void lowestOrdinalFollowsReleasesInAnyOrder() {
+        QueryIndex index = new QueryIndex();
+        assertEquals(0, index.lowestOrdinal());
+        for (int n = 0; n < 5; n++) {
+            index.ordinal("q" + n);
+        }
+        assertEquals(0, index.lowestOrdinal());
+
+        index.release("q2", Map.of());
+        assertEquals(0, index.lowestOrdinal());
+        index.release("q0", Map.of());
+        assertEquals(1, index.lowestOrdinal());
+        index.release("q1", Map.of());
+        assertEquals(3, index.lowestOrdinal());
+        index.release("q3", Map.of());
+        index.release("q4", Map.of());
+        // Nothing indexed: every ordinal handed out so far is gone
+        assertEquals(5, index.lowestOrdinal());
+    }
+
+    @Test
+    void lateEventForAnEvictedQueryIsNotCountedAgain() {
+        TestServices services = new TestServices(1);
+        QueryEventService service = services.queryEventService;
+        Instant start = Instant.now().minusSeconds(60);
+        service.processEvents(List.of(read("q1", "COMPLETED", start)));
+        service.processEvents(List.of(read("q2", "COMPLETED", start.plusSeconds(1))));
+        assertFalse(service.getAllQueryIds().contains("q1"));
+
+        // Delivered again after q1 was evicted: the query comes back under its old ordinal
+        service.processEvents(List.of(read("q1", "COMPLETED", start)));
+        assertEquals(2, services.databaseService.getTable("postgres", "public", "orders").getTotalQueries().get());
+        assertEquals(2, services.databaseService.getDatabaseById("postgres").getTotalQueries().get());
+    }
+
+    @Test
+    void evictionReleasesEveryIndexEntry() {
+        TestServices services = new TestServices(10);
+        // Recent, so only the count limit applies
+        Instant start = Instant.now().minusSeconds(60);
+        List<QueryEvent> events = new ArrayList<>();
+        for (int n = 0; n < 20; n++) {
+            events.add(QueryEvent.builder()
+                    .queryId(String.format("q%02d", n))
+                    .eventType("COMPLETED")
+                    .state(n % 2 == 0 ? "FAILED" : "FINISHED")
+                    .user("etl")
+                    .catalog("postgres")
+                    .schema("public")
+                    .tableName("orders")
+                    .query("SELECT * FROM orders WHERE id = " + n)
+                    .timestamp(start.plusSeconds(n))
+                    .build());
+        }
+        services.queryEventService.processEvents(events);
+
+        QueryEventService service = services.queryEventService;
+        int retained = service.getAllQueryIds().size();
+        assertTrue(retained > 0 && retained <= 10, retained + " queries retained");
+
+        int posted = service.getIndexCounts(QueryIndexField.STATE).values().stream().mapToInt(Integer::intValue).sum();
+        assertEquals(retained, posted);
+        assertEquals(Map.of("postgres", retained), service.getIndexCounts(QueryIndexField.CATALOG));
+        assertEquals(Map.of("postgres.public.orders", retained), service.getIndexCounts(QueryIndexField.TABLE));
+
+        List<String> matched = service.matchQueries(Map.of(QueryIndexField.USER, List.of("etl")), 100).getQueryIds();
+        assertEquals(Set.copyOf(service.getAllQueryIds()), Set.copyOf(matched));
+        assertEquals(retained, service.searchQueries("orders", QueryFilter.builder().limit(100).build()).getTotal());
+    }
+
+    private static QueryEvent read(String queryId, String type, Instant timestamp) {
+        return QueryEvent.builder()
+                .queryId(queryId)
+                .eventType(type)
+                .state("FINISHED")
+                .timestamp(timestamp)
+                .inputTables(List.of(QueryInput.builder()
+                        .catalogName("postgres").schema("public").table("orders")
+                        .build()))
+                .build();
+    }
+
+    private static int post(QueryIndex index, String queryId, String catalog, String state, String user) {
+        int ordinal = index.ordinal(queryId);
+        index.add(QueryIndexField.CATALOG, catalog, ordinal);
+        index.add(QueryIndexField.STATE, state, ordinal);
+        index.add(QueryIndexField.USER, user, ordinal);
+        return ordinal;
+    }
+}
@@ -0,0 +1,128 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryFilter;
+import com.trinofed.parser.model.QueryPage;
+import com.trinofed.parser.model.QuerySort;
+import com.trinofed.parser.model.QuerySummary;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryListIndexTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void pagesNewestFirstWithCursor() {
+        QueryListIndex index = indexOf(12);
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            QueryPage page = index.page(filter().limit(5).cursor(cursor).build(), null);
+            page.getItems().forEach(summary -> seen.add(summary.getQueryId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(ids(11, 0), seen);
+    }
+
+    @Test
+    void cursorResumesAcrossInsertsAndRemovals() {
+        QueryListIndex index = indexOf(12);
+        QueryPage first = index.page(filter().limit(5).build(), null);
+        assertEquals(ids(11, 7), queryIds(first));
+
+        // Newer than the cursor: belongs to an earlier page and is not repeated
+        index.update(summary("q_new", T0.plusSeconds(100), 1L));
+        // Older than the cursor: shows up in order on a later page
+        index.update(summary("q_old", T0.minusSeconds(100), 1L));
+        // The item right after the cursor is evicted before the next page is read
+        index.remove("q06");
+        // A query on the next page is updated and keeps its place after the cursor
+        index.update(summary("q05", T0.plusSeconds(5).plusMillis(500), 9L));
+
+        QueryPage second = index.page(filter().limit(5).cursor(first.getNextCursor()).build(), null);
+        assertEquals(List.of("q05", "q04", "q03", "q02", "q01"), queryIds(second));
+        QueryPage third = index.page(filter().limit(5).cursor(second.getNextCursor()).build(), null);
+        assertEquals(List.of("q00", "q_old"), queryIds(third));
+        assertNull(third.getNextCursor());
+    }
+
+    @Test
+    void ascendingSortByDurationBreaksTiesById() {
+        QueryListIndex index = new QueryListIndex();
+        index.update(summary("b", T0, 50L));
+        index.update(summary("a", T0.plusSeconds(1), 50L));
+        index.update(summary("c", T0.plusSeconds(2), null));
+        index.update(summary("d", T0.plusSeconds(3), 10L));
+
+        QueryFilter.QueryFilterBuilder byDuration = filter().sort(QuerySort.DURATION).descending(false).limit(2);
+        QueryPage first = index.page(byDuration.build(), null);
+        assertEquals(List.of("c", "d"), queryIds(first));
+        QueryPage second = index.page(byDuration.cursor(first.getNextCursor()).build(), null);
+        assertEquals(List.of("a", "b"), queryIds(second));
+    }
+
+    @Test
+    void filtersByTimeRangeAndExecutionTime() {
+        QueryListIndex index = indexOf(12);
+
+        QueryFilter range = filter().from(T0.plusSeconds(3)).to(T0.plusSeconds(7)).build();
+        assertEquals(ids(6, 3), queryIds(index.page(range, null)));
+
+        QueryFilter slow = filter().minExecutionTime(9L).build();
+        assertEquals(ids(11, 9), queryIds(index.page(slow, null)));
+    }
+
+    @Test
+    void rejectsCursorFromAnotherSortOrMalformed() {
+        QueryListIndex index = indexOf(12);
+        String cursor = index.page(filter().limit(5).build(), null).getNextCursor();
+        assertNotNull(cursor);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> index.page(filter().sort(QuerySort.CPU).cursor(cursor).build(), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.page(filter().cursor("not a cursor!").build(), null));
+    }
+
+    private static QueryListIndex indexOf(int count) {
+        QueryListIndex index = new QueryListIndex();
+        for (int n = 0; n < count; n++) {
+            index.update(summary(String.format("q%02d", n), T0.plusSeconds(n), (long) n));
+        }
+        return index;
+    }
+
+    private static QueryFilter.QueryFilterBuilder filter() {
+        return QueryFilter.builder();
+    }
+
+    private static QuerySummary summary(String queryId, Instant startTime, Long executionTime) {
+        return QuerySummary.builder()
+                .queryId(queryId)
+                .startTime(startTime)
+                .totalExecutionTime(executionTime)
+                .build();
+    }
+
+    private static List<String> queryIds(QueryPage page) {
+        return page.getItems().stream().map(QuerySummary::getQueryId).toList();
+    }
+
+    private static List<String> ids(int from, int downTo) {
+        List<String> ids = new ArrayList<>();
+        for (int n = from; n >= downTo; n--) {
+            ids.add(String.format("q%02d", n));
+        }
+        return ids;
+    }
+}
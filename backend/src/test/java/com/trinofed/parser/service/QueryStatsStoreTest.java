@@ -0,0 +1,149 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.MetricStats;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryFilter;
+import com.trinofed.parser.model.QueryIndexField;
+import com.trinofed.parser.model.QueryStatsGroup;
+import com.trinofed.parser.model.QuerySummary;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryStatsStoreTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void groupsByCatalogMostQueriesFirst() {
+        QueryStatsStore store = new QueryStatsStore();
+        record(store, 0, "hive", "etl", "FINISHED", 0, 100L);
+        record(store, 1, "postgres", "etl", "FINISHED", 1, 10L);
+        record(store, 2, "postgres", "analyst", "FAILED", 2, 30L);
+        record(store, 3, "postgres", "etl", "FAILED", 3, null);
+
+        List<QueryStatsGroup> groups = store.aggregate(QueryIndexField.CATALOG, all().build());
+
+        assertEquals(List.of("postgres", "hive"), keys(groups));
+        assertEquals(3, groups.get(0).getQueries());
+        // A statistic a query never reported is left out of count, sum, min and max
+        MetricStats cpu = groups.get(0).getMetrics().get("cpuTimeMs");
+        assertEquals(2, cpu.getCount());
+        assertEquals(40, cpu.getSum());
+        assertEquals(10, cpu.getMin());
+        assertEquals(30, cpu.getMax());
+        assertEquals(20.0, cpu.getMean());
+        assertEquals(100, groups.get(1).getMetrics().get("cpuTimeMs").getSum());
+        assertEquals(List.of("cpuTimeMs", "wallTimeMs", "queuedTimeMs", "peakMemoryBytes", "totalBytes",
+                "totalRows", "completedSplits"), List.copyOf(groups.get(0).getMetrics().keySet()));
+    }
+
+    @Test
+    void filtersByStateUserCatalogAndTimeRange() {
+        QueryStatsStore store = new QueryStatsStore();
+        record(store, 0, "hive", "etl", "FINISHED", 0, 1L);
+        record(store, 1, "postgres", "etl", "FAILED", 10, 2L);
+        record(store, 2, "postgres", "analyst", "FAILED", 20, 4L);
+        record(store, 3, "mysql", "etl", "FAILED", 30, 8L);
+
+        List<QueryStatsGroup> failedByUser = store.aggregate(QueryIndexField.USER,
+                all().states(List.of("FAILED")).build());
+        assertEquals(List.of("etl", "analyst"), keys(failedByUser));
+        assertEquals(10, failedByUser.get(0).getMetrics().get("cpuTimeMs").getSum());
+
+        List<QueryStatsGroup> etlInCatalogs = store.aggregate(null,
+                all().users(List.of("etl")).catalogs(List.of("postgres", "hive")).build());
+        assertEquals(1, etlInCatalogs.size());
+        assertNull(etlInCatalogs.get(0).getKey());
+        assertEquals(2, etlInCatalogs.get(0).getQueries());
+        assertEquals(3, etlInCatalogs.get(0).getMetrics().get("cpuTimeMs").getSum());
+
+        // From inclusive, to exclusive
+        List<QueryStatsGroup> window = store.aggregate(QueryIndexField.STATE,
+                all().from(T0.plusSeconds(10)).to(T0.plusSeconds(30)).build());
+        assertEquals(List.of("FAILED"), keys(window));
+        assertEquals(6, window.get(0).getMetrics().get("cpuTimeMs").getSum());
+
+        assertEquals(List.of(), store.aggregate(null, all().users(List.of("nobody")).build()));
+    }
+
+    @Test
+    void laterEventsUpdateTheRowInPlace() {
+        QueryStatsStore store = new QueryStatsStore();
+        record(store, 0, "postgres", "etl", "RUNNING", 0, 5L);
+        QueryEvent completed = QueryEvent.builder()
+                .queryId("q0")
+                .totalRows(42L)
+                .completedSplits(3)
+                .build();
+        store.record(0, summary("etl", "FINISHED", 0, 9L), completed);
+
+        List<QueryStatsGroup> groups = store.aggregate(QueryIndexField.CATALOG, all().build());
+        // An event without a catalog keeps the one recorded before
+        assertEquals(List.of("postgres"), keys(groups));
+        assertEquals(1, groups.get(0).getQueries());
+        assertEquals(9, groups.get(0).getMetrics().get("cpuTimeMs").getSum());
+        assertEquals(42, groups.get(0).getMetrics().get("totalRows").getSum());
+        assertEquals(3, groups.get(0).getMetrics().get("completedSplits").getSum());
+        assertEquals(List.of("FINISHED"), keys(store.aggregate(QueryIndexField.STATE, all().build())));
+    }
+
+    @Test
+    void mergesChunksAndDropsFullyEvictedOnes() {
+        QueryStatsStore store = new QueryStatsStore();
+        int rows = QueryStatsStore.CHUNK_SIZE + 10;
+        for (int ordinal = 0; ordinal < rows; ordinal++) {
+            record(store, ordinal, ordinal % 2 == 0 ? "postgres" : "hive", "etl", "FINISHED", ordinal, 1L);
+        }
+        assertEquals(2, store.chunkCount());
+        List<QueryStatsGroup> groups = store.aggregate(QueryIndexField.CATALOG, all().build());
+        assertEquals(rows / 2, groups.get(0).getQueries());
+        assertEquals(rows, groups.stream().mapToLong(QueryStatsGroup::getQueries).sum());
+
+        for (int ordinal = 0; ordinal < QueryStatsStore.CHUNK_SIZE; ordinal++) {
+            store.remove(ordinal);
+        }
+        assertEquals(1, store.chunkCount());
+        List<QueryStatsGroup> remaining = store.aggregate(null, all().build());
+        assertEquals(10, remaining.get(0).getQueries());
+    }
+
+    @Test
+    void rejectsGroupingByAnUnencodedField() {
+        QueryStatsStore store = new QueryStatsStore();
+        assertThrows(IllegalArgumentException.class, () -> store.aggregate(QueryIndexField.TABLE, all().build()));
+        assertTrue(store.aggregate(QueryIndexField.CATALOG, all().build()).isEmpty());
+    }
+
+    private static QueryFilter.QueryFilterBuilder all() {
+        return QueryFilter.builder();
+    }
+
+    private static void record(QueryStatsStore store, int ordinal, String catalog, String user, String state,
+                               int second, Long cpuTimeMs) {
+        QueryEvent event = QueryEvent.builder()
+                .queryId("q" + ordinal)
+                .catalog(catalog)
+                .build();
+        store.record(ordinal, summary(user, state, second, cpuTimeMs), event);
+    }
+
+    private static QuerySummary summary(String user, String state, int second, Long cpuTimeMs) {
+        return QuerySummary.builder()
+                .user(user)
+                .state(state)
+                .startTime(T0.plusSeconds(second))
+                .cpuTimeMs(cpuTimeMs)
+                .build();
+    }
+
+    private static List<String> keys(List<QueryStatsGroup> groups) {
+        return groups.stream().map(QueryStatsGroup::getKey).toList();
+    }
+}
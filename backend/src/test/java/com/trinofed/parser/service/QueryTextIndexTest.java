@@ -0,0 +1,92 @@
+package com.trinofed.parser.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryTextIndexTest {
+
+    @Test
+    void tokenizesIdentifiersLowerCased() {
+        // Single characters like the alias "s" are not tokens
+        assertEquals(Map.of("select", 1, "from", 1, "join", 1, "sales", 2, "orders_2024", 1, "id", 1),
+                QueryTextIndex.tokenize("SELECT id FROM Sales.orders_2024 s JOIN sales"));
+    }
+
+    @Test
+    void ranksExactTokensAboveSubstringsAndFrequentAboveRare() {
+        QueryTextIndex index = new QueryTextIndex();
+        index.index(1, "SELECT * FROM orders o JOIN orders p ON o.id = p.parent_id");
+        index.index(2, "SELECT * FROM orders WHERE status = 'open'");
+        index.index(3, "SELECT * FROM preorders");
+        index.index(4, "SELECT * FROM customers");
+
+        Map<Integer, Double> scores = index.search("orders");
+        assertEquals(Set.of(1, 2, 3), scores.keySet());
+        assertTrue(scores.get(1) > scores.get(2), "two occurrences outrank one");
+        assertTrue(scores.get(2) > scores.get(3), "a whole token outranks part of one");
+    }
+
+    @Test
+    void rareTermsWeighMoreAndShortQueriesRankHigher() {
+        QueryTextIndex index = new QueryTextIndex();
+        index.index(1, "SELECT total FROM orders");
+        index.index(2, "SELECT total FROM invoices");
+        index.index(3, "SELECT total FROM payments");
+        index.index(4, "SELECT total, a, b, c, d, e, f, g, h FROM orders WHERE region = 'eu' AND channel = 'web'");
+
+        Map<Integer, Double> scores = index.search("total orders");
+        assertEquals(Set.of(1, 4), scores.keySet());
+        assertTrue(scores.get(1) > scores.get(4));
+
+        Map<Integer, Double> total = index.search("total");
+        Map<Integer, Double> orders = index.search("orders");
+        assertTrue(orders.get(1) > total.get(1), "orders is rarer than total");
+    }
+
+    @Test
+    void termsAreWeighedIndependentlyOfEachOther() {
+        QueryTextIndex index = new QueryTextIndex();
+        index.index(1, "SELECT amount FROM ledger");
+        index.index(2, "SELECT amount FROM invoices");
+        index.index(3, "SELECT amount FROM payments");
+        index.index(4, "SELECT price FROM ledger");
+        index.index(5, "SELECT price FROM ledger_archive");
+
+        // Each term matches more queries than the two together, in either order
+        Map<Integer, Double> both = index.search("amount ledger");
+        assertEquals(Set.of(1), both.keySet());
+        assertEquals(both, index.search("ledger amount"));
+        double separately = index.search("amount").get(1) + index.search("ledger").get(1);
+        assertEquals(separately, both.get(1), 1e-9);
+    }
+
+    @Test
+    void everyTermMustMatch() {
+        QueryTextIndex index = new QueryTextIndex();
+        index.index(1, "SELECT * FROM postgres.public.orders");
+        index.index(2, "SELECT * FROM mongodb.sample.orders");
+
+        assertEquals(Set.of(2), index.search("orders mongo").keySet());
+        assertEquals(Set.of(), index.search("orders oracle").keySet());
+        assertEquals(Set.of(), index.search("  ").keySet());
+    }
+
+    @Test
+    void removedAndReindexedQueries() {
+        QueryTextIndex index = new QueryTextIndex();
+        index.index(1, "SELECT * FROM orders");
+        index.index(2, "SELECT * FROM orders");
+        index.remove(1);
+        assertEquals(Set.of(2), index.search("orders").keySet());
+        assertEquals(1, index.documentCount());
+
+        // A changed text adds its tokens and keeps the earlier ones
+        index.index(2, "SELECT * FROM customers");
+        assertEquals(Set.of(2), index.search("orders customers").keySet());
+    }
+}
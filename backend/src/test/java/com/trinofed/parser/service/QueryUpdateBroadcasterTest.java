@@ -0,0 +1,72 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.QueryTreeDelta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryUpdateBroadcasterTest {
+
+    @Test
+    void deltasWithinTheWindowAreMergedPerQuery() {
+        List<Message<?>> sent = new CopyOnWriteArrayList<>();
+        QueryUpdateBroadcaster broadcaster = broadcaster(sent, 60_000);
+        broadcaster.start();
+        try {
+            broadcaster.publish(delta("q1", 0, 1, "QUEUED"));
+            broadcaster.publish(delta("q1", 1, 2, "RUNNING"));
+            broadcaster.publish(delta("q2", 0, 1, "QUEUED"));
+            broadcaster.publish(delta("q1", 2, 3, null));
+            broadcaster.publish(null);
+            assertEquals(List.of(), sent);
+
+            broadcaster.flush();
+            assertEquals(2, sent.size());
+            QueryTreeDelta merged = sent.stream()
+                    .map(message -> (QueryTreeDelta) message.getPayload())
+                    .filter(delta -> delta.getQueryId().equals("q1"))
+                    .findFirst().orElseThrow();
+            assertEquals(0, merged.getBaseVersion());
+            assertEquals(3, merged.getVersion());
+            // A field the later delta left out keeps its latest value
+            assertEquals("RUNNING", merged.getState());
+
+            broadcaster.flush();
+            assertEquals(2, sent.size());
+        } finally {
+            broadcaster.stop();
+        }
+    }
+
+    @Test
+    void withoutAWindowEveryDeltaIsSentAtOnce() {
+        List<Message<?>> sent = new CopyOnWriteArrayList<>();
+        QueryUpdateBroadcaster broadcaster = broadcaster(sent, 0);
+        broadcaster.start();
+        broadcaster.publish(delta("q1", 0, 1, "QUEUED"));
+        broadcaster.publish(delta("q1", 1, 2, "RUNNING"));
+        assertEquals(2, sent.size());
+        assertEquals(QueryEventService.QUERY_UPDATES_TOPIC,
+                sent.get(0).getHeaders().get("simpDestination"));
+    }
+
+    private static QueryUpdateBroadcaster broadcaster(List<Message<?>> sent, long windowMs) {
+        return new QueryUpdateBroadcaster(new SimpMessagingTemplate((message, timeout) -> sent.add(message)),
+                windowMs, new SimpleMeterRegistry());
+    }
+
+    private static QueryTreeDelta delta(String queryId, long baseVersion, long version, String state) {
+        return QueryTreeDelta.builder()
+                .queryId(queryId)
+                .baseVersion(baseVersion)
+                .version(version)
+                .state(state)
+                .build();
+    }
+}
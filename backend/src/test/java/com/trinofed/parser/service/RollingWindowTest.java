@@ -0,0 +1,93 @@
+package com.trinofed.parser.service;
+
+import com.trinofed.parser.model.ActivityPoint;
+import com.trinofed.parser.model.ActivityStats;
+import com.trinofed.parser.model.Distribution;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollingWindowTest {
+
+    private static final long BUCKET = 1000;
+
+    @Test
+    void slotIsClearedWhenTimeMovesIntoItsNextPeriod() {
+        RollingWindow window = new RollingWindow("postgres", BUCKET, 4);
+        window.record(0, false, 10, 1, null);
+        window.record(500, true, 10, 1, null);
+        window.record(1500, false, 20, 2, null);
+
+        ActivityStats first = window.stats(at(0), at(4000), true);
+        assertEquals(3, first.getQueries());
+        assertEquals(1, first.getFailedQueries());
+        assertEquals(40, first.getBytesRead());
+        assertEquals(List.of(2L, 1L, 0L, 0L), queries(first));
+
+        // Period 4 maps to the slot of period 0 and replaces it
+        window.record(4200, false, 5, 1, null);
+        ActivityStats second = window.stats(at(1000), at(5000), true);
+        assertEquals(2, second.getQueries());
+        assertEquals(25, second.getBytesRead());
+        assertEquals(0, second.getFailedQueries());
+        assertEquals(List.of(1L, 0L, 0L, 1L), queries(second));
+        assertEquals(at(1000), second.getSeries().get(0).getStart());
+    }
+
+    @Test
+    void recordsOlderThanTheRingAreDropped() {
+        RollingWindow window = new RollingWindow("postgres", BUCKET, 4);
+        window.record(4200, false, 5, 1, null);
+        // Slot 0 already holds period 4
+        window.record(200, false, 5, 1, null);
+        // A range reaching further back than the ring is cut to what it holds
+        ActivityStats stats = window.stats(at(0), at(5000), false);
+        assertEquals(1, stats.getQueries());
+        assertEquals(at(1000), stats.getFrom());
+        assertEquals(at(5000), stats.getTo());
+
+        // Negative amounts count as nothing
+        window.record(4300, false, -1, -1, null);
+        assertEquals(5, window.stats(at(4000), at(5000), false).getBytesRead());
+    }
+
+    @Test
+    void percentilesAreInterpolatedWithinALatencyBucket() {
+        RollingWindow window = new RollingWindow("postgres", BUCKET, 4);
+        for (int i = 0; i < 50; i++) {
+            window.record(100, false, 0, 0, 0L);
+            window.record(100, false, 0, 0, 1000L);
+        }
+        window.record(100, false, 0, 0, null);
+
+        Distribution latency = window.stats(at(0), at(1000), false).getLatencyMs();
+        assertEquals(100, latency.getCount());
+        assertEquals(0, latency.getP50());
+        // Rank 95 is the 45th of 50 samples in [512, 1023]
+        assertEquals(512 + Math.round(511 * 45 / 50.0), latency.getP95());
+        // Never above the largest value recorded
+        assertEquals(1000, latency.getP99());
+        assertEquals(1000, latency.getMax());
+        assertEquals(500.0, latency.getMean());
+    }
+
+    @Test
+    void latencyBucketsArePowersOfTwo() {
+        assertEquals(0, RollingWindow.latencyBucket(0));
+        assertEquals(1, RollingWindow.latencyBucket(1));
+        assertEquals(2, RollingWindow.latencyBucket(3));
+        assertEquals(10, RollingWindow.latencyBucket(1000));
+        assertEquals(RollingWindow.LATENCY_BUCKETS - 1, RollingWindow.latencyBucket(Long.MAX_VALUE));
+    }
+
+    private static Instant at(long millis) {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    private static List<Long> queries(ActivityStats stats) {
+        return stats.getSeries().stream().map(ActivityPoint::getQueries).toList();
+    }
+}
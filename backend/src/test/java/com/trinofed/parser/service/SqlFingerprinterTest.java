@@ -0,0 +1,90 @@
+package com.trinofed.parser.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlFingerprinterTest {
+
+    @Test
+    void replacesStringAndNumericLiterals() {
+        assertEquals("select * from orders where id = ? and name = ? and price > ?",
+                SqlFingerprinter.normalize("SELECT * FROM orders WHERE id = 42 AND name = 'O''Brien' AND price > 1.5e-3"));
+        assertEquals("select ?, ?, ?", SqlFingerprinter.normalize("select 0x1F, .5, 1_000"));
+        // Digits inside an identifier are part of it
+        assertEquals("select col1 from t2", SqlFingerprinter.normalize("select col1 from t2"));
+    }
+
+    @Test
+    void collapsesInListsOfLiterals() {
+        assertEquals("select * from t where id in (?)",
+                SqlFingerprinter.normalize("select * from t where id in (1, 2, 3)"));
+        assertEquals(fingerprint("select * from t where id in (1)"),
+                fingerprint("select * from t where id IN ('a', 'b', 'c', 'd')"));
+        // Only literal lists collapse; a column reference keeps the list as written
+        assertEquals("select * from t where id in (?, a)",
+                SqlFingerprinter.normalize("select * from t where id in (1, a)"));
+        assertEquals("select * from t where id in (select id from u where x = ?)",
+                SqlFingerprinter.normalize("select * from t where id in (select id from u where x = 5)"));
+    }
+
+    @Test
+    void collapsesRepeatedValuesRows() {
+        assertEquals("insert into t values (?, ?)",
+                SqlFingerprinter.normalize("INSERT INTO t VALUES (1, 'a'), (2, 'b'), (3, 'c')"));
+        assertEquals(fingerprint("insert into t values (1, 'a')"),
+                fingerprint("insert into t values (1, 'a'), (2, 'b')"));
+    }
+
+    @Test
+    void dropsComments() {
+        assertEquals("select ? from t",
+                SqlFingerprinter.normalize("-- nightly report\nSELECT /* broadcast */ 1 FROM t -- trailing"));
+        assertEquals("select ?", SqlFingerprinter.normalize("select 1 /* never closed"));
+    }
+
+    @Test
+    void keepsQuotedIdentifiersAsWritten() {
+        assertEquals("select \"MyCol\" from \"Sales\".orders",
+                SqlFingerprinter.normalize("SELECT \"MyCol\" FROM \"Sales\".Orders"));
+        assertEquals("select \"a \"\"b\"\"\" from t", SqlFingerprinter.normalize("select \"a \"\"b\"\"\" from t"));
+        assertNotEquals(fingerprint("select \"Col\" from t"), fingerprint("select \"col\" from t"));
+        assertEquals(fingerprint("select Col from t"), fingerprint("select col from t"));
+    }
+
+    @Test
+    void ignoresWhitespaceAndLayout() {
+        String compact = "select a,b from t where x>=1 and f(y)<>2";
+        String spread = """
+                SELECT a ,
+                       b
+                  FROM t
+                 WHERE x >= 1
+                   AND f( y ) <> 2
+                """;
+        assertEquals("select a, b from t where x >= ? and f (y) <> ?", SqlFingerprinter.normalize(compact));
+        assertEquals(SqlFingerprinter.normalize(compact), SqlFingerprinter.normalize(spread));
+        assertEquals(fingerprint(compact), fingerprint("\tselect  a,\r\n b from t where x >= 7 and f(y) <> 8"));
+    }
+
+    @Test
+    void hashIsSixteenHexDigitsOfNormalizedText() {
+        SqlFingerprinter.Fingerprint fingerprint = SqlFingerprinter.fingerprint("SELECT 1");
+        assertEquals("select ?", fingerprint.normalized());
+        assertTrue(fingerprint.hash().matches("[0-9a-f]{16}"), fingerprint.hash());
+        assertEquals(SqlFingerprinter.hash("select ?"), fingerprint.hash());
+        assertEquals("cbf29ce484222325", SqlFingerprinter.hash(""));
+    }
+
+    @Test
+    void onlyLooksAtTheFirstCharacters() {
+        String prefix = "select * from t where id in (" + "1, ".repeat(SqlFingerprinter.MAX_INPUT_CHARS / 3) + "1)";
+        assertEquals(fingerprint(prefix), fingerprint(prefix + " union all select 2"));
+    }
+
+    private static String fingerprint(String sql) {
+        return SqlFingerprinter.fingerprint(sql).hash();
+    }
+}
@@ -0,0 +1,45 @@
+package com.trinofed.parser.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The ingestion services wired by hand, without a Spring context: one ingestion lane,
+ * deltas sent immediately to a channel that collects them in {@link #broadcasts}, and
+ * default limits apart from the retained query count.
+ */
+public final class TestServices {
+
+    public final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    public final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    public final ResponseCache responseCache =
+            new ResponseCache(objectMapper, DataSize.ofMegabytes(16), true, 1024, meterRegistry);
+    public final DatabaseService databaseService = new DatabaseService(responseCache);
+    public final TextStore textStore = new TextStore(meterRegistry);
+    public final List<Message<?>> broadcasts = new CopyOnWriteArrayList<>();
+    public final QueryEventService queryEventService;
+
+    public TestServices() {
+        this(10_000);
+    }
+
+    public TestServices(int maxQueries) {
+        QueryUpdateBroadcaster broadcaster = new QueryUpdateBroadcaster(
+                new SimpMessagingTemplate((message, timeout) -> broadcasts.add(message)), 0, meterRegistry);
+        queryEventService = new QueryEventService(broadcaster, databaseService,
+                new KeyedLaneExecutor(1, "test-lane-"),
+                new QueryRetention(maxQueries, Duration.ofHours(6), DataSize.ofMegabytes(512), meterRegistry),
+                new FingerprintAggregator(1000, meterRegistry),
+                new SourceActivityService(Duration.ofMinutes(1), 60, 16, meterRegistry),
+                responseCache, textStore, meterRegistry, 16);
+    }
+}
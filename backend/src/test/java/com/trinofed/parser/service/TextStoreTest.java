@@ -0,0 +1,101 @@
+package com.trinofed.parser.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.TextBlob;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextStoreTest {
+
+    private static final String PLAN = "Fragment 0 [SINGLE]\n    Output[columnNames = [id]]\n".repeat(50);
+
+    @Test
+    void samePlanIsStoredOnceAndCompressed() {
+        TextStore store = new TextStore(new SimpleMeterRegistry());
+        QueryEvent first = event(PLAN);
+        QueryEvent second = event(new String(PLAN.toCharArray()));
+        store.store(first);
+        store.store(second);
+
+        assertSame(first.getStoredPlan(), second.getStoredPlan());
+        assertEquals(PLAN, second.getPlan());
+        assertTrue(first.hasPlan());
+        assertTrue(first.getStoredPlan().storedBytes() < PLAN.length());
+        assertSame(first.getQuery(), second.getQuery());
+        assertNotSame(first.getStoredPlan(), store.storePlan(PLAN + " "));
+    }
+
+    @Test
+    void incompressibleTextIsKeptAsPlainBytes() {
+        TextStore store = new TextStore(new SimpleMeterRegistry());
+        Random random = new Random(42);
+        StringBuilder noise = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            noise.append((char) ('!' + random.nextInt(94)));
+        }
+        String text = noise.toString();
+
+        TextBlob blob = store.storePlan(text);
+        assertEquals(text, blob.text());
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, blob.length());
+        assertEquals(32 + blob.length(), blob.storedBytes());
+    }
+
+    @Test
+    void entriesNoEventReferencesArePurged() throws InterruptedException {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TextStore store = new TextStore(meterRegistry);
+        store.store(event(PLAN));
+        assertEquals(1.0, meterRegistry.get("trino.text-store.plans").gauge().value());
+        assertTrue(store.getStoredBytes() > 0);
+
+        // The event above is unreachable; the next store drops its entries once they are collected
+        for (int attempt = 0; attempt < 50 && store.getStoredBytes() > 0; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+            store.store(QueryEvent.builder().queryId("q2").build());
+        }
+        assertEquals(0.0, meterRegistry.get("trino.text-store.plans").gauge().value());
+        assertEquals(0.0, meterRegistry.get("trino.text-store.queries").gauge().value());
+        assertEquals(0, store.getStoredBytes());
+    }
+
+    @Test
+    void storedPlanIsLeftOutOfJsonAndToString() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        QueryEvent event = event(PLAN);
+        assertTrue(mapper.writeValueAsString(event).contains("\"plan\""));
+
+        new TextStore(new SimpleMeterRegistry()).store(event);
+        String json = mapper.writeValueAsString(event);
+        assertFalse(json.contains("plan"), json);
+        assertFalse(event.toString().contains("Fragment"));
+        assertNull(mapper.readValue(json, QueryEvent.class).getPlan());
+
+        // Stored plans compare by content, whichever store holds them
+        QueryEvent other = event(PLAN);
+        new TextStore(new SimpleMeterRegistry()).store(other);
+        assertEquals(event, other);
+        assertEquals(event.hashCode(), other.hashCode());
+    }
+
+    private static QueryEvent event(String plan) {
+        return QueryEvent.builder()
+                .queryId("q1")
+                .query(new String("SELECT 1".toCharArray()))
+                .plan(plan)
+                .build();
+    }
+}
@@ -0,0 +1,137 @@
+package com.trinofed.parser.storage;
+
+import com.trinofed.parser.model.QueryEvent;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysAcrossSegmentsAfterReopen() throws IOException {
+        EventLog eventLog = open();
+        for (int batch = 0; batch < 10; batch++) {
+            List<LoggedEvent> entries = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                int n = batch * 20 + i;
+                entries.add(new LoggedEvent("trino-query-events", n % 3, 1000 + n, event(n)));
+            }
+            eventLog.append(entries);
+        }
+        eventLog.close();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.filter(path -> path.toString().endsWith(".log")).count() > 1);
+        }
+
+        EventLog reopened = open();
+        assertEquals(200, reopened.nextSequence());
+
+        List<LoggedEvent> replayed = new ArrayList<>();
+        assertEquals(200, reopened.replay(0, 64, replayed::addAll));
+        for (int n = 0; n < 200; n++) {
+            assertEquals("query_" + n, replayed.get(n).getEvent().getQueryId());
+            assertEquals(1000 + n, replayed.get(n).getOffset());
+        }
+        assertEquals(1200L, reopened.nextOffset(new TopicPartition("trino-query-events", 199 % 3)));
+
+        List<LoggedEvent> tail = new ArrayList<>();
+        assertEquals(50, reopened.replay(150, 64, tail::addAll));
+        assertEquals("query_150", tail.get(0).getEvent().getQueryId());
+        reopened.close();
+    }
+
+    @Test
+    void truncatesIncompleteTailRecord() throws IOException {
+        EventLog eventLog = open();
+        eventLog.append(List.of(new LoggedEvent("t", 0, 0, event(0)), new LoggedEvent("t", 0, 1, event(1))));
+        eventLog.close();
+
+        Path segment = dir.resolve("00000000000000000000.log");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        EventLog reopened = open();
+        assertEquals(1, reopened.nextSequence());
+        reopened.append(List.of(new LoggedEvent("t", 0, 1, event(1))));
+
+        List<LoggedEvent> replayed = new ArrayList<>();
+        reopened.replay(0, 10, replayed::addAll);
+        assertEquals(2, replayed.size());
+        assertEquals("query_1", replayed.get(1).getEvent().getQueryId());
+        reopened.close();
+    }
+
+    @Test
+    void deletesSegmentsCoveredBeforeSequence() throws IOException {
+        EventLog eventLog = open();
+        for (int n = 0; n < 200; n += 20) {
+            List<LoggedEvent> entries = new ArrayList<>();
+            for (int i = n; i < n + 20; i++) {
+                entries.add(new LoggedEvent("t", 0, i, event(i)));
+            }
+            eventLog.append(entries);
+        }
+        long segmentsBefore = countSegments();
+
+        assertTrue(eventLog.deleteSegmentsBefore(120) > 0);
+        long first = eventLog.firstSequence();
+        assertTrue(first > 0 && first <= 120);
+        assertTrue(countSegments() < segmentsBefore);
+        assertEquals(200, eventLog.nextSequence());
+
+        // The active segment is never deleted
+        eventLog.deleteSegmentsBefore(Long.MAX_VALUE);
+        assertEquals(1, countSegments());
+        assertEquals(200, eventLog.nextSequence());
+        eventLog.close();
+
+        EventLog reopened = open();
+        assertEquals(200, reopened.nextSequence());
+        List<LoggedEvent> replayed = new ArrayList<>();
+        reopened.replay(0, 64, replayed::addAll);
+        assertEquals("query_199", replayed.get(replayed.size() - 1).getEvent().getQueryId());
+        assertEquals(reopened.firstSequence(), 200 - replayed.size());
+        reopened.close();
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".log")).count();
+        }
+    }
+
+    private EventLog open() throws IOException {
+        EventLog eventLog = new EventLog(true, dir.toString(), DataSize.ofBytes(4096), 512, false);
+        eventLog.open();
+        return eventLog;
+    }
+
+    private static QueryEvent event(int n) {
+        return QueryEvent.builder()
+                .queryId("query_" + n)
+                .eventType("COMPLETED")
+                .state("FINISHED")
+                .query("SELECT * FROM postgres.public.orders WHERE id = " + n)
+                .timestamp(Instant.ofEpochMilli(1_700_000_000_000L + n))
+                .build();
+    }
+}
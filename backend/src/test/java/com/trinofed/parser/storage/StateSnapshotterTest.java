@@ -0,0 +1,239 @@
+package com.trinofed.parser.storage;
+
+import com.trinofed.parser.consumer.StringPool;
+import com.trinofed.parser.model.QueryEvent;
+import com.trinofed.parser.model.QueryFilter;
+import com.trinofed.parser.model.QueryInput;
+import com.trinofed.parser.model.QueryTree;
+import com.trinofed.parser.service.TestServices;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateSnapshotterTest {
+
+    private static final String TOPIC = "trino-query-events";
+    private static final String PLAN = "Fragment 0 [SINGLE]\n    Output[columnNames = [id]]\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesLoadsAndRestoresSnapshot() throws IOException {
+        EventLog eventLog = openLog();
+        TestServices services = new TestServices();
+        ingest(eventLog, services, 0, 30);
+
+        StateSnapshotter snapshotter = snapshotter(eventLog, services);
+        Optional<Path> written = snapshotter.writeSnapshot();
+        assertTrue(written.isPresent());
+        assertTrue(Files.exists(written.get()));
+        assertEquals(List.of(), temporaryFiles());
+        // Nothing appended since, so nothing to write
+        assertFalse(snapshotter.writeSnapshot().isPresent());
+
+        // Events after the snapshot are only in the log tail
+        ingest(eventLog, services, 30, 40);
+        eventLog.close();
+
+        EventLog reopened = openLog();
+        TestServices restored = new TestServices();
+        StateSnapshotter loader = snapshotter(reopened, restored);
+        StateSnapshot snapshot = loader.loadLatest().orElseThrow();
+        assertEquals(30 * 2, snapshot.getSequence());
+        assertEquals(30, snapshot.getQueries().size());
+        // One plan shared by 15 events, stored as its blob and parsed
+        assertEquals(1, snapshot.getPlans().size());
+        assertEquals(PLAN.length(), snapshot.getPlans().get(0).getLength());
+        assertEquals("Output", snapshot.getPlans().get(0).getParsed().getFragments().get(0).getRoot().getName());
+        assertEquals(List.of(-1, 0), Arrays.stream(snapshot.getQueries().get("query_0").getPlanIds()).boxed().toList());
+
+        new EventLogReplayer(reopened, restored.queryEventService, loader).start();
+
+        assertEquals(40, restored.queryEventService.getAllQueryIds().size());
+        for (int n = 0; n < 40; n++) {
+            QueryTree original = services.queryEventService.getQueryTree("query_" + n);
+            QueryTree copy = restored.queryEventService.getQueryTree("query_" + n);
+            assertEquals(original.getEvents(), copy.getEvents());
+            assertEquals(original.getRoot().getId(), copy.getRoot().getId());
+        }
+        // Plans are kept by the log and the snapshot though clients never get them with the tree
+        assertEquals(PLAN, restored.queryEventService.getQueryPlan("query_0"));
+        assertEquals(PLAN, restored.queryEventService.getQueryPlan("query_38"));
+        // Restored plans are the store's, shared with the same plan from the log tail
+        QueryEvent restoredPlan = restored.queryEventService.getQueryTree("query_0").getEvents().get(1);
+        QueryEvent tailPlan = restored.queryEventService.getQueryTree("query_38").getEvents().get(1);
+        assertSame(restoredPlan.getStoredPlan(), tailPlan.getStoredPlan());
+        assertSame(restoredPlan.getStoredPlan(), restored.textStore.storePlan(PLAN));
+        assertEquals(80L, reopened.nextOffset(new TopicPartition(TOPIC, 0)));
+
+        // Secondary indexes are rebuilt from the restored events
+        QueryFilter failed = QueryFilter.builder().states(List.of("FAILED")).limit(100).build();
+        assertEquals(services.queryEventService.getQueryPage(failed).getItems().size(),
+                restored.queryEventService.getQueryPage(failed).getItems().size());
+        assertEquals(40, restored.queryEventService.searchQueries("orders", QueryFilter.builder().limit(100).build())
+                .getTotal());
+        assertNotNull(restored.databaseService.getTable("postgres", "public", "orders"));
+        reopened.close();
+    }
+
+    @Test
+    void queriesSpanningTheSnapshotAreCountedOnce() throws IOException {
+        EventLog eventLog = openLog();
+        TestServices services = new TestServices();
+        List<LoggedEvent> created = new ArrayList<>();
+        List<LoggedEvent> completed = new ArrayList<>();
+        for (int n = 0; n < 10; n++) {
+            created.add(new LoggedEvent(TOPIC, 0, n, event(n, "CREATED", "QUEUED", 0)));
+            completed.add(new LoggedEvent(TOPIC, 0, 10 + n, event(n, "COMPLETED", "FINISHED", 1)));
+        }
+        append(eventLog, services, created);
+        snapshotter(eventLog, services).writeSnapshot();
+        append(eventLog, services, completed);
+        eventLog.close();
+
+        EventLog reopened = openLog();
+        TestServices restored = new TestServices();
+        new EventLogReplayer(reopened, restored.queryEventService, snapshotter(reopened, restored)).start();
+
+        assertEquals(10, services.databaseService.getTable("postgres", "public", "orders").getTotalQueries().get());
+        assertEquals(10, restored.databaseService.getTable("postgres", "public", "orders").getTotalQueries().get());
+        assertEquals(10, restored.databaseService.getSchema("postgres", "public").getTotalQueries().get());
+        assertEquals(10, restored.databaseService.getDatabaseById("postgres").getTotalQueries().get());
+        assertEquals(10, restored.databaseService.getDatabaseQueryCounts().get("postgres"));
+        reopened.close();
+    }
+
+    @Test
+    void replayRebuildsStateWithoutBroadcasting() throws IOException {
+        EventLog eventLog = openLog();
+        TestServices services = new TestServices();
+        ingest(eventLog, services, 0, 5);
+        assertEquals(5, services.broadcasts.size());
+        eventLog.close();
+
+        EventLog reopened = openLog();
+        TestServices restored = new TestServices();
+        new EventLogReplayer(reopened, restored.queryEventService, snapshotter(reopened, restored)).start();
+        assertEquals(5, restored.queryEventService.getAllQueryIds().size());
+        assertEquals(List.of(), restored.broadcasts);
+        // The catalog is published once the replay is done
+        assertNotNull(restored.databaseService.getSnapshot().getDatabase("postgres"));
+
+        restored.queryEventService.processEvents(List.of(event(5, "CREATED", "QUEUED", 0)));
+        assertEquals(1, restored.broadcasts.size());
+        reopened.close();
+    }
+
+    @Test
+    void deletesIncompleteSnapshotsOnLoad() throws IOException {
+        EventLog eventLog = openLog();
+        TestServices services = new TestServices();
+        ingest(eventLog, services, 0, 5);
+        snapshotter(eventLog, services).writeSnapshot();
+
+        Path snapshots = dir.resolve("snapshots");
+        Files.write(snapshots.resolve("snapshot-00000000000000000099.smile.tmp"), new byte[]{1, 2, 3});
+
+        StateSnapshot snapshot = snapshotter(eventLog, new TestServices()).loadLatest().orElseThrow();
+        assertEquals(10, snapshot.getSequence());
+        assertEquals(List.of(), temporaryFiles());
+        eventLog.close();
+    }
+
+    @Test
+    void deletesLogSegmentsCoveredByRetainedSnapshots() throws IOException {
+        EventLog eventLog = openLog();
+        TestServices services = new TestServices();
+        StateSnapshotter snapshotter = snapshotter(eventLog, services);
+
+        ingest(eventLog, services, 0, 40);
+        snapshotter.writeSnapshot();
+        long afterFirst = eventLog.firstSequence();
+        assertTrue(afterFirst > 0 && afterFirst <= 80, "log starts at " + afterFirst);
+
+        // The older of the two retained snapshots still needs its tail
+        ingest(eventLog, services, 40, 80);
+        snapshotter.writeSnapshot();
+        assertEquals(afterFirst, eventLog.firstSequence());
+
+        ingest(eventLog, services, 80, 120);
+        snapshotter.writeSnapshot();
+        long afterThird = eventLog.firstSequence();
+        assertTrue(afterThird > 80 && afterThird <= 160, "log starts at " + afterThird);
+
+        ingest(eventLog, services, 120, 130);
+        eventLog.close();
+
+        EventLog reopened = openLog();
+        TestServices restored = new TestServices();
+        new EventLogReplayer(reopened, restored.queryEventService, snapshotter(reopened, restored)).start();
+        assertEquals(130, restored.queryEventService.getAllQueryIds().size());
+        reopened.close();
+    }
+
+    private StateSnapshotter snapshotter(EventLog eventLog, TestServices services) {
+        return new StateSnapshotter(eventLog, services.queryEventService, services.databaseService,
+                new StringPool(StringPool.DEFAULT_SIZE), services.textStore, dir.resolve("snapshots").toString(), 2);
+    }
+
+    private EventLog openLog() throws IOException {
+        EventLog eventLog = new EventLog(true, dir.resolve("log").toString(), DataSize.ofKilobytes(16), 1024, false);
+        eventLog.open();
+        return eventLog;
+    }
+
+    private List<Path> temporaryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("snapshots"))) {
+            return files.filter(path -> path.toString().endsWith(".tmp")).toList();
+        }
+    }
+
+    // Two events per query, each logged before it is applied as in TrinoEventConsumer
+    private static void ingest(EventLog eventLog, TestServices services, int from, int to) {
+        List<LoggedEvent> entries = new ArrayList<>();
+        for (int n = from; n < to; n++) {
+            entries.add(new LoggedEvent(TOPIC, 0, 2L * n, event(n, "CREATED", "QUEUED", 0)));
+            entries.add(new LoggedEvent(TOPIC, 0, 2L * n + 1, event(n, "COMPLETED", n % 3 == 0 ? "FAILED" : "FINISHED", 1)));
+        }
+        append(eventLog, services, entries);
+    }
+
+    private static void append(EventLog eventLog, TestServices services, List<LoggedEvent> entries) {
+        eventLog.appendAndApply(entries, () -> services.queryEventService.processEvents(
+                entries.stream().map(LoggedEvent::getEvent).toList()));
+    }
+
+    private static QueryEvent event(int n, String type, String state, int second) {
+        return QueryEvent.builder()
+                .queryId("query_" + n)
+                .eventType(type)
+                .state(state)
+                .user("user_" + (n % 4))
+                .query("SELECT * FROM postgres.public.orders WHERE id = " + n)
+                .timestamp(Instant.ofEpochSecond(1_700_000_000L + n * 10L + second))
+                .executionTime(second * 100L)
+                .plan(type.equals("COMPLETED") && n % 2 == 0 ? PLAN : null)
+                .inputTables(List.of(QueryInput.builder()
+                        .catalogName("postgres").schema("public").table("orders")
+                        .build()))
+                .build();
+    }
+}
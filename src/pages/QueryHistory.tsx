@@ -1,24 +1,27 @@
 import { useEffect, useState } from 'react';
 import { apiService } from '../services/api.service';
-import { QueryTree } from '../types/api.types';
+import { QuerySummary } from '../types/api.types';
 
 export default function QueryHistory() {
-  const [queries, setQueries] = useState<QueryTree[]>([]);
+  const [queries, setQueries] = useState<QuerySummary[]>([]);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
 
+  const loadQueries = async (cursor?: string) => {
+    try {
+      const page = await apiService.getQueries({ sort: 'startTime', order: 'desc', cursor });
+      setQueries(previous => cursor ? [...previous, ...page.items] : page.items);
+      setNextCursor(page.nextCursor);
+    } catch (err) {
+      console.error('Failed to load query history:', err);
+      setError('Failed to connect to backend');
+    } finally {
+      setLoading(false);
+    }
+  };
+
   useEffect(() => {
-    const loadQueries = async () => {
-      try {
-        const data = await apiService.getAllQueries();
-        setQueries(data);
-      } catch (err) {
-        console.error('Failed to load query history:', err);
-        setError('Failed to connect to backend');
-      } finally {
-        setLoading(false);
-      }
-    };
     loadQueries();
   }, []);
 
@@ -52,6 +55,9 @@ export default function QueryHistory() {
               )}
             </div>
           ))}
+          {nextCursor && (
+            <button onClick={() => loadQueries(nextCursor)}>Load more</button>
+          )}
         </div>
       )}
     </div>
@@ -289,18 +289,19 @@ const TreePage: React.FC = () => {
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
   const [currentQuery, setCurrentQuery] = useState<QueryTree | null>(null);
+  const [currentPlan, setCurrentPlan] = useState<string | null>(null);
 
   useEffect(() => {
     const loadData = async () => {
       try {
         // Load both queries and databases
-        const [allQueries, databases] = await Promise.all([
-          apiService.getAllQueries(),
+        const [recentQueries, databases] = await Promise.all([
+          apiService.getQueries({ sort: 'startTime', order: 'desc' }),
           apiService.getDatabases()
         ]);
         
         // Filter out system queries
-        const queries = allQueries.filter(query => 
+        const queries = recentQueries.items.filter(query => 
           query.user && 
           query.user !== 'system' && 
           !query.user.startsWith('$') &&
@@ -309,8 +310,12 @@ const TreePage: React.FC = () => {
         );
         
         if (queries.length > 0) {
-          const latest = queries[queries.length - 1];
+          const [latest, plan] = await Promise.all([
+            apiService.getQueryById(queries[0].queryId),
+            apiService.getQueryPlan(queries[0].queryId)
+          ]);
           setCurrentQuery(latest);
+          setCurrentPlan(plan);
 
           // Check if we have a complex tree structure or just simple events
           const hasComplexTree = latest.root?.children && latest.root.children.length > 0;
@@ -405,7 +410,7 @@ const TreePage: React.FC = () => {
           <QueryMetricsPanel query={currentQuery} />
           <QueryPlanPanel 
             events={currentQuery.events || []}
-            plan={currentQuery.events?.find(e => e.plan)?.plan}
+            plan={currentPlan}
           />
         </>
       )}
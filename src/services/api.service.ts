@@ -1,11 +1,15 @@
-import { QueryTree } from '../types/api.types';
+import { QueryListParams, QueryPage, QueryTree } from '../types/api.types';
 import { Database } from '../types/database.types';
 
 const BASE_URL = 'http://localhost:8080/api';
 
 export const apiService = {
-  getAllQueries: async (): Promise<QueryTree[]> => {
-    const response = await fetch(`${BASE_URL}/queries`);
+  getQueries: async (params: QueryListParams = {}): Promise<QueryPage> => {
+    const search = new URLSearchParams();
+    Object.entries(params).forEach(([key, value]) => {
+      if (value !== undefined && value !== null && value !== '') search.set(key, String(value));
+    });
+    const response = await fetch(`${BASE_URL}/queries?${search}`);
     if (!response.ok) throw new Error('Failed to fetch queries');
     return response.json();
   },
@@ -16,6 +20,14 @@ export const apiService = {
     return response.json();
   },
 
+  // Plans are left out of query trees; null when the query has none
+  getQueryPlan: async (queryId: string): Promise<string | null> => {
+    const response = await fetch(`${BASE_URL}/queries/${queryId}/plan`);
+    if (response.status === 404) return null;
+    if (!response.ok) throw new Error(`Failed to fetch plan for query ${queryId}`);
+    return response.text();
+  },
+
   getAllQueryIds: async (): Promise<string[]> => {
     const response = await fetch(`${BASE_URL}/queries/ids`);
     if (!response.ok) throw new Error('Failed to fetch query IDs');
@@ -38,7 +38,6 @@ export interface QueryEvent {
   totalBytes: number | null;
   totalRows: number | null;
   completedSplits: number | null;
-  plan: string | null;
   errorCode: string | null;
   errorMessage: string | null;
 }
@@ -56,3 +55,39 @@ export interface QueryTree {
   events: QueryEvent[];
 }
 
+export interface QuerySummary {
+  queryId: string;
+  version: number;
+  query: string;
+  fingerprint?: string;
+  user: string;
+  state: string;
+  startTime: string;
+  endTime: string;
+  totalExecutionTime: number | null;
+  cpuTimeMs: number | null;
+  peakMemoryBytes: number | null;
+  errorMessage: string | null;
+  eventCount: number;
+}
+
+export interface QueryPage {
+  items: QuerySummary[];
+  nextCursor: string | null;
+}
+
+export interface QueryListParams {
+  from?: string;
+  to?: string;
+  state?: string;
+  user?: string;
+  catalog?: string;
+  schema?: string;
+  table?: string;
+  fingerprint?: string;
+  minExecutionTime?: number;
+  sort?: 'startTime' | 'duration' | 'cpu' | 'peakMemory';
+  order?: 'asc' | 'desc';
+  limit?: number;
+  cursor?: string;
+}